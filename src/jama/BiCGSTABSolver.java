@@ -0,0 +1,80 @@
+package jama;
+
+   /** BiCGSTAB, the stabilized biconjugate gradient method.
+   <P>
+   For unsymmetric matrices.  Each iteration costs two products with A
+   and two applications of the preconditioner, and the storage does not
+   grow with the iterations, unlike GMRES.  The residual is not
+   monotone and the method may break down, in which case it stops
+   without convergence.
+   */
+
+public class BiCGSTABSolver extends IterativeSolver {
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** BiCGSTAB
+   @param  A   Square operator
+   @param  M   Preconditioner, null for none
+   */
+
+   public BiCGSTABSolver (LinearOperator A, Preconditioner M) {
+      super(A, M);
+   }
+
+/* ------------------------
+   Protected Methods
+ * ------------------------ */
+
+   protected void iterate (double[] b, double[] x) {
+      double[] r = new double[n];
+      double bnorm = norm(b);
+      if (isConverged(residual(b, x, r, bnorm))) return;
+
+      double[] rhat = r.clone();
+      double[] p = new double[n];
+      double[] v = new double[n];
+      double[] phat = new double[n];
+      double[] s = new double[n];
+      double[] shat = new double[n];
+      double[] t = new double[n];
+      double rho = 1.0, alpha = 1.0, omega = 1.0;
+
+      while (true) {
+         double rho1 = dot(rhat, r);
+         if (rho1 == 0.0) return;
+         double beta = (rho1/rho)*(alpha/omega);
+         for (int i = 0; i < n; i++) {
+            p[i] = r[i] + beta*(p[i] - omega*v[i]);
+         }
+         precondition(p, phat);
+         A.apply(phat, v);
+         double rv = dot(rhat, v);
+         if (rv == 0.0) return;
+         alpha = rho1/rv;
+         for (int i = 0; i < n; i++) {
+            s[i] = r[i] - alpha*v[i];
+         }
+         double snorm = norm(s);
+         if (isConverged(snorm/bnorm)) {
+            for (int i = 0; i < n; i++) {
+               x[i] += alpha*phat[i];
+            }
+            iteration(snorm/bnorm);
+            return;
+         }
+         precondition(s, shat);
+         A.apply(shat, t);
+         double tt = dot(t, t);
+         omega = (tt == 0.0) ? 0.0 : dot(t, s)/tt;
+         for (int i = 0; i < n; i++) {
+            x[i] += alpha*phat[i] + omega*shat[i];
+            r[i] = s[i] - omega*t[i];
+         }
+         rho = rho1;
+         if (iteration(norm(r)/bnorm) || omega == 0.0) return;
+      }
+   }
+}
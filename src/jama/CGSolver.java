@@ -0,0 +1,62 @@
+package jama;
+
+   /** Preconditioned conjugate gradient method.
+   <P>
+   For symmetric positive definite matrices, such as stiffness matrices,
+   with a symmetric positive definite preconditioner (Jacobi).  Each
+   iteration costs one product with A and the storage is four vectors.
+   The method is not suitable for the unsymmetric equilibrium matrix,
+   use GMRESSolver or BiCGSTABSolver for it.
+   */
+
+public class CGSolver extends IterativeSolver {
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Conjugate gradients
+   @param  A   Symmetric positive definite operator
+   @param  M   Preconditioner, null for none
+   */
+
+   public CGSolver (LinearOperator A, Preconditioner M) {
+      super(A, M);
+   }
+
+/* ------------------------
+   Protected Methods
+ * ------------------------ */
+
+   protected void iterate (double[] b, double[] x) {
+      double[] r = new double[n];
+      double bnorm = norm(b);
+      if (isConverged(residual(b, x, r, bnorm))) return;
+
+      double[] z = new double[n];
+      double[] p = new double[n];
+      double[] q = new double[n];
+      precondition(r, z);
+      System.arraycopy(z, 0, p, 0, n);
+      double rz = dot(r, z);
+
+      while (true) {
+         A.apply(p, q);
+         double pq = dot(p, q);
+         if (pq <= 0.0) return; // not positive definite
+         double alpha = rz/pq;
+         for (int i = 0; i < n; i++) {
+            x[i] += alpha*p[i];
+            r[i] -= alpha*q[i];
+         }
+         if (iteration(norm(r)/bnorm)) return;
+         precondition(r, z);
+         double rz1 = dot(r, z);
+         double beta = rz1/rz;
+         rz = rz1;
+         for (int i = 0; i < n; i++) {
+            p[i] = z[i] + beta*p[i];
+         }
+      }
+   }
+}
@@ -1,4 +1,5 @@
 package jama;
+import jama.util.*;
 
    /** Cholesky Decomposition.
    <P>
@@ -36,6 +37,12 @@ public class CholeskyDecomposition implements java.io.Serializable {
  * ------------------------ */
 
    /** Cholesky algorithm for symmetric and positive definite matrix.
+   <P>
+   The columns of L are computed one after another.  Once L(k,k) is
+   known, the entries below it are independent dot products of rows of
+   L, large columns are split among threads, see jama.util.Parallel.
+   Every entry is computed by the same operations as in the row by row
+   algorithm.
    @param  A   Square, symmetric matrix.
    @return     Structure to access L and isspd flag.
    */
@@ -48,27 +55,65 @@ public class CholeskyDecomposition implements java.io.Serializable {
       n = Arg.getRowDimension();
       L = new double[n][n];
       isspd = (Arg.getColumnDimension() == n);
-      // Main loop.
+      // The lower triangle is factorized in place.
       for (int j = 0; j < n; j++) {
-         double[] Lrowj = L[j];
-         double d = 0.0;
          for (int k = 0; k < j; k++) {
-            double[] Lrowk = L[k];
-            double s = 0.0;
-            for (int i = 0; i < k; i++) {
-               s += Lrowk[i]*Lrowj[i];
-            }
-            Lrowj[k] = s = (A[j][k] - s)/L[k][k];
-            d = d + s*s;
             isspd = isspd & (A[k][j] == A[j][k]); 
          }
-         d = A[j][j] - d;
-         isspd = isspd & (d > 0.0);
-         L[j][j] = Math.sqrt(Math.max(d,0.0));
-         for (int k = j+1; k < n; k++) {
-            L[j][k] = 0.0;
+         System.arraycopy(A[j], 0, L[j], 0, j+1);
+      }
+      factor();
+   }
+
+   /** Cholesky algorithm for a column packed matrix.
+   @param  A   Square, symmetric matrix.
+   @return     Structure to access L and isspd flag.
+   */
+
+   public CholeskyDecomposition (ColumnMatrix Arg) {
+      double[] A = Arg.getArray();
+      int ld = Arg.getLeadingDimension();
+      int off = Arg.getOffset();
+      n = Arg.getRowDimension();
+      L = new double[n][n];
+      isspd = (Arg.getColumnDimension() == n);
+      int nc = Math.min(n, Arg.getColumnDimension());
+      for (int k = 0; k < nc; k++) {
+         int p = off + k*ld;
+         for (int j = k; j < n; j++) {
+            L[j][k] = A[p+j];
+         }
+         for (int i = 0; i < k; i++) {
+            isspd = isspd & (A[p+i] == L[k][i]);
          }
       }
+      factor();
+   }
+
+   private void factor () {
+      // Sums of squares of the rows computed so far.
+      final double[] d = new double[n];
+      // Main loop.
+      for (int k = 0; k < n; k++) {
+         double dk = L[k][k] - d[k];
+         isspd = isspd & (dk > 0.0);
+         L[k][k] = Math.sqrt(Math.max(dk,0.0));
+         final int col = k;
+         Parallel.forRange(k+1, n, (long)(n-k-1)*k, new Parallel.Loop() {
+            public void run (int from, int to) {
+               double[] Lrowk = L[col];
+               for (int j = from; j < to; j++) {
+                  double[] Lrowj = L[j];
+                  double s = 0.0;
+                  for (int i = 0; i < col; i++) {
+                     s += Lrowk[i]*Lrowj[i];
+                  }
+                  Lrowj[col] = s = (Lrowj[col] - s)/Lrowk[col];
+                  d[j] = d[j] + s*s;
+               }
+            }
+         });
+      }
    }
 
 /* ------------------------
@@ -195,5 +240,45 @@ public class CholeskyDecomposition implements java.io.Serializable {
       
       return new Matrix(X,n,nx);
    }
+
+   /** Solve A*X = B
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that L*L'*X = B
+   @exception  IllegalArgumentException  Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is not symmetric positive definite.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (B.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (!isspd) {
+         throw new RuntimeException("Matrix is not symmetric positive definite.");
+      }
+      ColumnMatrix Xmat = B.copy();
+      double[] X = Xmat.getArray();
+      int nx = B.getColumnDimension();
+      for (int j = 0; j < nx; j++) {
+         int p = j*n;
+
+         // Solve L*Y = B;
+         for (int k = 0; k < n; k++) {
+            double[] Lrowk = L[k];
+            for (int i = 0; i < k ; i++) {
+               X[p+k] -= X[p+i]*Lrowk[i];
+            }
+            X[p+k] /= Lrowk[k];
+         }
+
+         // Solve L'*X = Y;
+         for (int k = n-1; k >= 0; k--) {
+            for (int i = k+1; i < n ; i++) {
+               X[p+k] -= X[p+i]*L[i][k];
+            }
+            X[p+k] /= L[k][k];
+         }
+      }
+      return Xmat;
+   }
 }
 
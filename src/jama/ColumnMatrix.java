@@ -0,0 +1,344 @@
+package jama;
+
+   /** Dense matrix in a single array, column by column.
+   <P>
+   Element (i,j) is stored in A[off + i + j*ld], where ld &gt;= m is the
+   leading dimension.  Every column is a contiguous piece of the array,
+   so a right hand side with one column per load case hands each column
+   to a solver without copying, and submatrices are views of the same
+   array with the same leading dimension.
+   <P>
+   Only the operations needed by the solvers are provided; use toMatrix()
+   to get a Matrix for anything else.  The decompositions accept a
+   ColumnMatrix directly and read it without an intermediate Matrix.
+   */
+
+public class ColumnMatrix implements java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Array for internal storage of elements.
+   @serial internal array storage.
+   */
+   private double[] A;
+
+   /** Row and column dimensions.
+   @serial row dimension.
+   @serial column dimension.
+   */
+   private int m, n;
+
+   /** Leading dimension and position of element (0,0).
+   @serial leading dimension.
+   @serial offset.
+   */
+   private int ld, off;
+
+/* ------------------------
+   Constructors
+ * ------------------------ */
+
+   /** Construct an m-by-n matrix of zeros.
+   @param m    Number of rows.
+   @param n    Number of colums.
+   */
+
+   public ColumnMatrix (int m, int n) {
+      this(new double[m*n], m, n, m, 0);
+   }
+
+   /** Construct a matrix from a column packed array without copying.
+   @param A    Elements, element (i,j) in A[off + i + j*ld].
+   @param m    Number of rows.
+   @param n    Number of colums.
+   @param ld   Leading dimension, at least m.
+   @param off  Position of element (0,0).
+   @exception  IllegalArgumentException Array too short or leading dimension too small.
+   */
+
+   public ColumnMatrix (double[] A, int m, int n, int ld, int off) {
+      if (ld < m || off < 0 || (n > 0 && off + (n-1)*ld + m > A.length)) {
+         throw new IllegalArgumentException("Array too short or leading dimension too small.");
+      }
+      this.A = A;
+      this.m = m;
+      this.n = n;
+      this.ld = ld;
+      this.off = off;
+   }
+
+   /** Construct a copy of a Matrix.
+   @param B    Matrix to copy.
+   */
+
+   public ColumnMatrix (Matrix B) {
+      this(B.getRowDimension(), B.getColumnDimension());
+      double[][] Barr = B.getArray();
+      for (int i = 0; i < m; i++) {
+         double[] Browi = Barr[i];
+         for (int j = 0; j < n; j++) {
+            A[i + j*ld] = Browi[j];
+         }
+      }
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Access the internal array.
+   @return     Array of the elements, see getLeadingDimension() and getOffset().
+   */
+
+   public double[] getArray () {
+      return A;
+   }
+
+   /** Get the leading dimension.
+   @return     distance of two columns in the internal array.
+   */
+
+   public int getLeadingDimension () {
+      return ld;
+   }
+
+   /** Get the position of element (0,0) in the internal array.
+   @return     offset.
+   */
+
+   public int getOffset () {
+      return off;
+   }
+
+   /** Get row dimension.
+   @return     m, the number of rows.
+   */
+
+   public int getRowDimension () {
+      return m;
+   }
+
+   /** Get column dimension.
+   @return     n, the number of columns.
+   */
+
+   public int getColumnDimension () {
+      return n;
+   }
+
+   /** Get a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @return     A(i,j)
+   */
+
+   public double get (int i, int j) {
+      return A[off + i + j*ld];
+   }
+
+   /** Set a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @param s    A(i,j).
+   */
+
+   public void set (int i, int j, double s) {
+      A[off + i + j*ld] = s;
+   }
+
+   /** Add to a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @param s    Value added to A(i,j).
+   */
+
+   public void add (int i, int j, double s) {
+      A[off + i + j*ld] += s;
+   }
+
+   /** Copy a column.
+   @param j    Column index.
+   @return     A(:,j) in a new array.
+   */
+
+   public double[] getColumn (int j) {
+      double[] c = new double[m];
+      System.arraycopy(A, off + j*ld, c, 0, m);
+      return c;
+   }
+
+   /** Get a submatrix sharing the elements of this matrix.
+   @param i0   Initial row index
+   @param i1   Final row index
+   @param j0   Initial column index
+   @param j1   Final column index
+   @return     A(i0:i1,j0:j1), changes are visible in both matrices.
+   @exception  ArrayIndexOutOfBoundsException Submatrix indices
+   */
+
+   public ColumnMatrix getMatrix (int i0, int i1, int j0, int j1) {
+      if (i0 < 0 || i1 >= m || j0 < 0 || j1 >= n || i1 < i0-1 || j1 < j0-1) {
+         throw new ArrayIndexOutOfBoundsException("Submatrix indices");
+      }
+      return new ColumnMatrix(A, i1-i0+1, j1-j0+1, ld, off + i0 + j0*ld);
+   }
+
+   /** Make a deep copy of the matrix, with leading dimension m.
+   @return     copy
+   */
+
+   public ColumnMatrix copy () {
+      ColumnMatrix X = new ColumnMatrix(m,n);
+      for (int j = 0; j < n; j++) {
+         System.arraycopy(A, off + j*ld, X.A, j*m, m);
+      }
+      return X;
+   }
+
+   /** Copy the elements into a two-dimensional array.
+   @return     Two-dimensional array copy of the elements, by rows.
+   */
+
+   public double[][] getArrayCopy () {
+      double[][] C = new double[m][n];
+      for (int j = 0; j < n; j++) {
+         int p = off + j*ld;
+         for (int i = 0; i < m; i++) {
+            C[i][j] = A[p+i];
+         }
+      }
+      return C;
+   }
+
+   /** Copy the elements into a Matrix.
+   @return     Matrix with the same elements.
+   */
+
+   public Matrix toMatrix () {
+      return new Matrix(getArrayCopy(),m,n);
+   }
+
+   /** Matrix-vector product, y = A*x
+   @param x    Vector of length n.
+   @return     A*x
+   @exception  IllegalArgumentException Vector length must agree.
+   */
+
+   public double[] times (double[] x) {
+      if (x.length != n) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      double[] y = new double[m];
+      for (int j = 0; j < n; j++) {
+         double xj = x[j];
+         int p = off + j*ld;
+         for (int i = 0; i < m; i++) {
+            y[i] += A[p+i]*xj;
+         }
+      }
+      return y;
+   }
+
+   /** Linear algebraic matrix multiplication, A * B
+   @param B    another matrix
+   @return     Matrix product, A * B
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+   */
+
+   public ColumnMatrix times (ColumnMatrix B) {
+      if (B.m != n) {
+         throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+      }
+      ColumnMatrix X = new ColumnMatrix(m,B.n);
+      double[] C = X.A;
+      for (int j = 0; j < B.n; j++) {
+         int c = j*m;
+         for (int k = 0; k < n; k++) {
+            double bkj = B.A[B.off + k + j*B.ld];
+            int p = off + k*ld;
+            for (int i = 0; i < m; i++) {
+               C[c+i] += A[p+i]*bkj;
+            }
+         }
+      }
+      return X;
+   }
+
+   /** One norm
+   @return    maximum column sum.
+   */
+
+   public double norm1 () {
+      double f = 0;
+      for (int j = 0; j < n; j++) {
+         int p = off + j*ld;
+         double s = 0;
+         for (int i = 0; i < m; i++) {
+            s += Math.abs(A[p+i]);
+         }
+         f = Math.max(f,s);
+      }
+      return f;
+   }
+
+   /** Infinity norm
+   @return    maximum row sum.
+   */
+
+   public double normInf () {
+      double[] s = new double[m];
+      for (int j = 0; j < n; j++) {
+         int p = off + j*ld;
+         for (int i = 0; i < m; i++) {
+            s[i] += Math.abs(A[p+i]);
+         }
+      }
+      double f = 0;
+      for (int i = 0; i < m; i++) {
+         f = Math.max(f,s[i]);
+      }
+      return f;
+   }
+
+   /** LU Decomposition
+   @return     LUDecomposition
+   @see LUDecomposition
+   */
+
+   public LUDecomposition lu () {
+      return new LUDecomposition(this);
+   }
+
+   /** QR Decomposition
+   @return     QRDecomposition
+   @see QRDecomposition
+   */
+
+   public QRDecomposition qr () {
+      return new QRDecomposition(this);
+   }
+
+   /** Cholesky Decomposition
+   @return     CholeskyDecomposition
+   @see CholeskyDecomposition
+   */
+
+   public CholeskyDecomposition chol () {
+      return new CholeskyDecomposition(this);
+   }
+
+   /** Solve A*X = B
+   @param B    right hand side
+   @return     solution
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (m != n) {
+         throw new IllegalArgumentException("Matrix must be square.");
+      }
+      return new LUDecomposition(this).solve(B);
+   }
+}
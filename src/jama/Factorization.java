@@ -0,0 +1,49 @@
+package jama;
+
+   /** Common interface of the decompositions used to solve square systems.
+   <P>
+   A factorization is computed once and then used for any number of
+   right hand sides.  Besides the solution it reports whether the matrix
+   is numerically singular and the pivot ratio, the smallest pivot
+   relative to the largest entry of its original column.  The pivot
+   ratio does not depend on the scaling of the columns, so it can be
+   compared with a fixed tolerance even for large or badly scaled
+   systems, unlike the determinant.
+   */
+
+public interface Factorization {
+
+   /** Is the matrix nonsingular?
+   @return     true if the factorization can be used to solve systems.
+   */
+
+   public boolean isNonsingular ();
+
+   /** Smallest pivot relative to its original column.
+   @return     min |pivot(k)| / max |A(:,k)|, zero for a singular matrix.
+   */
+
+   public double getPivotRatio ();
+
+   /** Solve A*X = B
+   @param  B   A Matrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   */
+
+   public Matrix solve (Matrix B);
+
+   /** Solve A*X = B
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B, column by column.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B);
+
+   /** Solve A*x = b
+   @param  b   Right hand side vector.
+   @return     x so that A*x = b
+   */
+
+   public double[] solve (double[] b);
+
+}
@@ -0,0 +1,146 @@
+package jama;
+
+   /** Restarted GMRES.
+   <P>
+   GMRES(m) minimizes the residual over the Krylov subspace spanned by
+   the last m preconditioned residuals, building an orthonormal basis
+   by the Arnoldi process (modified Gram-Schmidt).  It works for any
+   nonsingular matrix, symmetric or not, and its residual never grows;
+   the price is m vectors of storage and work growing with the
+   iteration within a cycle.  After m iterations the basis is dropped
+   and the process restarts from the current solution.
+   */
+
+public class GMRESSolver extends IterativeSolver {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Default restart length.
+   */
+   public static final int DEFAULT_RESTART = 50;
+
+   private int restart;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** GMRES with the default restart length
+   @param  A   Square operator
+   @param  M   Preconditioner, null for none
+   */
+
+   public GMRESSolver (LinearOperator A, Preconditioner M) {
+      this(A, M, DEFAULT_RESTART);
+   }
+
+   /** GMRES
+   @param  A        Square operator
+   @param  M        Preconditioner, null for none
+   @param  restart  Number of iterations between restarts.
+   */
+
+   public GMRESSolver (LinearOperator A, Preconditioner M, int restart) {
+      super(A, M);
+      this.restart = Math.max(1, Math.min(restart, n));
+   }
+
+/* ------------------------
+   Protected Methods
+ * ------------------------ */
+
+   protected void iterate (double[] b, double[] x) {
+      int m = restart;
+      double[][] V = new double[m+1][];
+      double[][] H = new double[m+1][m];
+      double[] cs = new double[m];
+      double[] sn = new double[m];
+      double[] g = new double[m+1];
+      double[] r = new double[n];
+      double[] z = new double[n];
+      double bnorm = norm(b);
+
+      double res = residual(b, x, r, bnorm);
+      while (!isConverged(res) && !isExhausted()) {
+         double beta = res*bnorm;
+         V[0] = r.clone();
+         for (int i = 0; i < n; i++) {
+            V[0][i] /= beta;
+         }
+         java.util.Arrays.fill(g, 0.0);
+         g[0] = beta;
+
+         int k = 0;
+         boolean stop = false;
+         while (k < m && !stop) {
+            // w = A*M^-1*v(k), orthogonalized against v(0..k)
+            precondition(V[k], z);
+            double[] w = new double[n];
+            A.apply(z, w);
+            for (int i = 0; i <= k; i++) {
+               double h = dot(w, V[i]);
+               H[i][k] = h;
+               double[] vi = V[i];
+               for (int t = 0; t < n; t++) {
+                  w[t] -= h*vi[t];
+               }
+            }
+            double h = norm(w);
+            H[k+1][k] = h;
+            if (h != 0.0) {
+               for (int t = 0; t < n; t++) {
+                  w[t] /= h;
+               }
+            }
+            V[k+1] = w;
+
+            // Givens rotations reduce H to upper triangular form.
+            for (int i = 0; i < k; i++) {
+               double t = cs[i]*H[i][k] + sn[i]*H[i+1][k];
+               H[i+1][k] = -sn[i]*H[i][k] + cs[i]*H[i+1][k];
+               H[i][k] = t;
+            }
+            double d = jama.util.Maths.hypot(H[k][k], H[k+1][k]);
+            cs[k] = (d == 0.0) ? 1.0 : H[k][k]/d;
+            sn[k] = (d == 0.0) ? 0.0 : H[k+1][k]/d;
+            H[k][k] = d;
+            H[k+1][k] = 0.0;
+            g[k+1] = -sn[k]*g[k];
+            g[k] = cs[k]*g[k];
+            k++;
+
+            // h == 0 means the exact solution lies in the subspace
+            stop = iteration(Math.abs(g[k])/bnorm) || h == 0.0;
+         }
+
+         // y = H \ g, x += M^-1*(V*y)
+         double[] y = new double[k];
+         for (int i = k-1; i >= 0; i--) {
+            double s = g[i];
+            for (int j = i+1; j < k; j++) {
+               s -= H[i][j]*y[j];
+            }
+            y[i] = (H[i][i] == 0.0) ? 0.0 : s/H[i][i];
+         }
+         double[] u = new double[n];
+         for (int j = 0; j < k; j++) {
+            double yj = y[j];
+            double[] vj = V[j];
+            for (int t = 0; t < n; t++) {
+               u[t] += yj*vj[t];
+            }
+         }
+         precondition(u, z);
+         for (int t = 0; t < n; t++) {
+            x[t] += z[t];
+         }
+         double previous = res;
+         res = residual(b, x, r, bnorm);
+
+         // a cycle without progress will not be followed by a better one
+         if (res >= previous) break;
+      }
+   }
+}
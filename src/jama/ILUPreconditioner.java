@@ -0,0 +1,265 @@
+package jama;
+
+   /** Incomplete LU preconditioner without fill-in, ILU(0).
+   <P>
+   M = L*U where L and U have the sparsity pattern of A: the Gaussian
+   elimination is carried out, but every update of an entry that is not
+   stored in A is dropped.  The factors take no more memory than A and
+   they are computed and applied in time proportional to nnz(A).
+   <P>
+   The elimination needs nonzero diagonal entries, which an equilibrium
+   matrix (equations by rows, unknown reactions by columns) usually does
+   not have.  If some diagonal entry is missing or zero, the columns are
+   first permuted by SparseOrdering.maximumTransversal() to put nonzeros
+   on the diagonal.  Rows and columns are then ordered symmetrically by
+   SparseOrdering.blockTriangular(), so that the incomplete factors are
+   exact outside the diagonal blocks; for a truss solvable joint by joint
+   the blocks are tiny and M is nearly A.  The preconditioner approximates
+   P*A*Q and applies the permutations to its argument and result.  A pivot
+   that still (nearly) vanishes during the elimination is replaced by the
+   largest entry of its row, getReplacedPivots() tells how many were.
+   */
+
+public class ILUPreconditioner implements Preconditioner, java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Matrix dimension.
+   @serial matrix dimension.
+   */
+   private int n;
+
+   /** L (below the diagonal) and U (above it) in compressed row form,
+   with the pattern of A.
+   @serial row pointers.
+   @serial column indices.
+   @serial values.
+   */
+   private int[] Bp, Bj;
+   private double[] Bx;
+
+   /** Position of the first entry right of the diagonal in each row.
+   @serial upper part pointers.
+   */
+   private int[] upper;
+
+   /** Pivots, the diagonal of U.
+   @serial pivots.
+   */
+   private double[] pivots;
+
+   /** Row and column permutation, null if none is needed.
+   @serial row permutation.
+   @serial column permutation.
+   */
+   private int[] prow, qcol;
+
+   /** Number of replaced pivots.
+   @serial replaced pivots.
+   */
+   private int replaced;
+
+   /** Pivots smaller than this fraction of the largest entry of their row
+   are replaced by that entry.  A tiny pivot would make M nearly singular,
+   the solver would then converge for the preconditioned system while the
+   true residual stays large.
+   */
+   private static final double SMALL_PIVOT = 1e-3;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** ILU(0) preconditioner
+   @param  A   Square sparse matrix
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public ILUPreconditioner (SparseMatrix A) {
+      n = A.getRowDimension();
+      if (A.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Matrix must be square.");
+      }
+      // explicit zeros (components of axis-parallel directions) would be
+      // matched as if they were usable pivots
+      A = dropZeros(A);
+      boolean zeroFree = true;
+      for (int i = 0; zeroFree && i < n; i++) {
+         zeroFree = A.get(i,i) != 0.0;
+      }
+      if (!zeroFree) {
+         int[] match = SparseOrdering.maximumTransversal(A);
+         prow = SparseOrdering.blockTriangular(permute(A, null, match));
+         qcol = new int[n];
+         for (int k = 0; k < n; k++) {
+            qcol[k] = match[prow[k]];
+         }
+      }
+      SparseMatrix B = permute(A, prow, qcol);
+      Bp = B.getRowPointers();
+      Bj = B.getColumnIndices();
+      Bx = B.getValues();
+      factor();
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Number of pivots replaced because they vanished.
+   @return     zero when the incomplete factorization did not break down.
+   */
+
+   public int getReplacedPivots () {
+      return replaced;
+   }
+
+   /** Compute z = M^-1*r.
+   @param  r   Vector of length n.
+   @param  z   Result.
+   */
+
+   public void apply (double[] r, double[] z) {
+      double[] w = (qcol == null) ? z : new double[n];
+      // Solve L*y = r(p), L has a unit diagonal.
+      for (int i = 0; i < n; i++) {
+         double s = (prow == null) ? r[i] : r[prow[i]];
+         for (int p = Bp[i]; p < Bp[i+1] && Bj[p] < i; p++) {
+            s -= Bx[p]*w[Bj[p]];
+         }
+         w[i] = s;
+      }
+      // Solve U*w = y.
+      for (int i = n-1; i >= 0; i--) {
+         double s = w[i];
+         for (int p = upper[i]; p < Bp[i+1]; p++) {
+            s -= Bx[p]*w[Bj[p]];
+         }
+         w[i] = s/pivots[i];
+      }
+      if (qcol != null) {
+         for (int k = 0; k < n; k++) {
+            z[qcol[k]] = w[k];
+         }
+      }
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Copy of A without the stored zeros.
+   */
+
+   private static SparseMatrix dropZeros (SparseMatrix A) {
+      int n = A.getRowDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+      int[] Cp = new int[n+1];
+      int[] Cj = new int[Ap[n]];
+      double[] Cx = new double[Ap[n]];
+      int nz = 0;
+      for (int i = 0; i < n; i++) {
+         for (int s = Ap[i]; s < Ap[i+1]; s++) {
+            if (Ax[s] != 0.0) {
+               Cj[nz] = Aj[s];
+               Cx[nz++] = Ax[s];
+            }
+         }
+         Cp[i+1] = nz;
+      }
+      return new SparseMatrix(n, A.getColumnDimension(), Cp, Cj, Cx);
+   }
+
+   /** Copy of A(p,q) with the column indices of each row sorted,
+   null permutations are identities.
+   */
+
+   private static SparseMatrix permute (SparseMatrix A, int[] p, int[] q) {
+      int n = A.getRowDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+      int[] Cp = new int[n+1];
+      int[] Cj = new int[Ap[n]];
+      double[] Cx = new double[Ap[n]];
+      int[] qinv = new int[n];
+      for (int k = 0; k < n; k++) {
+         qinv[q == null ? k : q[k]] = k;
+      }
+      for (int k = 0; k < n; k++) {
+         int i = (p == null) ? k : p[k];
+         int c = Cp[k];
+         // Insertion sort of each row, the rows are short.
+         for (int s = Ap[i]; s < Ap[i+1]; s++) {
+            int j = qinv[Aj[s]];
+            double x = Ax[s];
+            int r = c++;
+            while (r > Cp[k] && Cj[r-1] > j) {
+               Cj[r] = Cj[r-1];
+               Cx[r] = Cx[r-1];
+               r--;
+            }
+            Cj[r] = j;
+            Cx[r] = x;
+         }
+         Cp[k+1] = c;
+      }
+      return new SparseMatrix(n, n, Cp, Cj, Cx);
+   }
+
+   /** Incomplete elimination, row by row (IKJ variant).
+   */
+
+   private void factor () {
+      upper = new int[n];
+      pivots = new double[n];
+      int[] pos = new int[n];
+      for (int j = 0; j < n; j++) {
+         pos[j] = -1;
+      }
+      replaced = 0;
+
+      for (int i = 0; i < n; i++) {
+         double rowNorm = 0.0;
+         for (int p = Bp[i]; p < Bp[i+1]; p++) {
+            pos[Bj[p]] = p;
+            rowNorm = Math.max(rowNorm, Math.abs(Bx[p]));
+         }
+
+         // Eliminate the entries left of the diagonal, updates outside
+         // the pattern are dropped.
+         int p = Bp[i];
+         for (; p < Bp[i+1] && Bj[p] < i; p++) {
+            int k = Bj[p];
+            double lik = Bx[p] /= pivots[k];
+            if (lik == 0.0) continue;
+            for (int r = upper[k]; r < Bp[k+1]; r++) {
+               int t = pos[Bj[r]];
+               if (t >= 0) {
+                  Bx[t] -= lik*Bx[r];
+               }
+            }
+         }
+
+         double pivot = 0.0;
+         if (p < Bp[i+1] && Bj[p] == i) {
+            pivot = Bx[p];
+            p++;
+         }
+         upper[i] = p;
+         if (Math.abs(pivot) <= SMALL_PIVOT*rowNorm || pivot == 0.0) {
+            pivot = (rowNorm == 0.0) ? 1.0 : rowNorm*(pivot < 0.0 ? -1.0 : 1.0);
+            replaced++;
+         }
+         pivots[i] = pivot;
+
+         for (int r = Bp[i]; r < Bp[i+1]; r++) {
+            pos[Bj[r]] = -1;
+         }
+      }
+   }
+}
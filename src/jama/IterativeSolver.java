@@ -0,0 +1,323 @@
+package jama;
+
+   /** Common part of the Krylov subspace solvers.
+   <P>
+   An iterative solver needs only the products A*x (see LinearOperator),
+   its cost is a few products per iteration.  Unlike a factorization it
+   cannot tell a singular matrix from a slowly converging one, so the
+   caller checks hasConverged() and falls back to a direct solver if
+   needed.  The iteration stops when the relative residual
+   ||b - A*x|| / ||b|| drops below the tolerance, or after the maximum
+   number of iterations.
+   <P>
+   An initial guess close to the solution, typically the solution of a
+   slightly different system solved before, saves most of the
+   iterations.  The residual of every iteration is kept in the residual
+   history and passed to the Monitor, if one is set.
+   */
+
+public abstract class IterativeSolver {
+
+   /** Observer of the iterations.
+   */
+
+   public static interface Monitor {
+
+      /** Called after each iteration.  Throwing an unchecked exception
+      stops the solver.
+      @param  iteration   Number of iterations so far.
+      @param  residual    Relative residual (estimated by the solver).
+      */
+
+      public void iteration (int iteration, double residual);
+   }
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Default relative tolerance.
+   */
+   public static final double DEFAULT_TOLERANCE = 1e-10;
+
+   /** Operator and preconditioner (null for none).
+   */
+   protected LinearOperator A;
+   protected Preconditioner M;
+
+   /** Dimension.
+   */
+   protected int n;
+
+   private double tolerance = DEFAULT_TOLERANCE;
+   private int maxIterations;
+   private Monitor monitor;
+
+   /** Results of the last solve.
+   */
+   private int iterations;
+   private double residual;
+   private boolean converged;
+   private double[] history = new double[16];
+   private int historySize;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Iterative solver
+   @param  A   Square operator
+   @param  M   Preconditioner, null for none
+   @exception  IllegalArgumentException Operator must be square.
+   */
+
+   protected IterativeSolver (LinearOperator A, Preconditioner M) {
+      n = A.getRowDimension();
+      if (A.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Operator must be square.");
+      }
+      this.A = A;
+      this.M = M;
+      maxIterations = Math.max(100, n);
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Set the relative tolerance.
+   @param  tolerance   Required ||b - A*x|| / ||b||.
+   */
+
+   public void setTolerance (double tolerance) {
+      this.tolerance = tolerance;
+   }
+
+   /** Get the relative tolerance.
+   @return     tolerance
+   */
+
+   public double getTolerance () {
+      return tolerance;
+   }
+
+   /** Set the maximum number of iterations of one solve.
+   @param  maxIterations   Limit, max(100,n) by default.
+   */
+
+   public void setMaxIterations (int maxIterations) {
+      this.maxIterations = maxIterations;
+   }
+
+   /** Get the maximum number of iterations.
+   @return     maxIterations
+   */
+
+   public int getMaxIterations () {
+      return maxIterations;
+   }
+
+   /** Set the observer of the iterations.
+   @param  monitor   Monitor, null for none.
+   */
+
+   public void setMonitor (Monitor monitor) {
+      this.monitor = monitor;
+   }
+
+   /** Did the last solve reach the tolerance?
+   @return     true if all right hand sides converged.
+   */
+
+   public boolean hasConverged () {
+      return converged;
+   }
+
+   /** Number of iterations of the last solve.
+   @return     iterations, summed over the right hand sides.
+   */
+
+   public int getIterations () {
+      return iterations;
+   }
+
+   /** Relative residual of the last solve.
+   @return     ||b - A*x|| / ||b||, the largest over the right hand sides.
+   */
+
+   public double getResidual () {
+      return residual;
+   }
+
+   /** Relative residuals of the iterations of the last solve.
+   @return     one entry per iteration, right hand sides one after another.
+   */
+
+   public double[] getResidualHistory () {
+      double[] h = new double[historySize];
+      System.arraycopy(history, 0, h, 0, historySize);
+      return h;
+   }
+
+   /** Solve A*x = b from a zero initial guess.
+   @param  b   Right hand side.
+   @return     x, check hasConverged().
+   */
+
+   public double[] solve (double[] b) {
+      return solve(b, null);
+   }
+
+   /** Solve A*x = b
+   @param  b   Right hand side.
+   @param  x0  Initial guess, null for zero.  Not modified.
+   @return     x, check hasConverged().
+   @exception  IllegalArgumentException Vector length must agree.
+   */
+
+   public double[] solve (double[] b, double[] x0) {
+      start();
+      return solveColumn(b, x0);
+   }
+
+   /** Solve A*X = B, column by column.
+   @param  B   Right hand sides.
+   @param  X0  Initial guesses, null for zero.
+   @return     X, check hasConverged().
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B, ColumnMatrix X0) {
+      if (B.getRowDimension() != n || (X0 != null && (X0.getRowDimension() != n
+            || X0.getColumnDimension() != B.getColumnDimension()))) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      start();
+      int nx = B.getColumnDimension();
+      ColumnMatrix X = new ColumnMatrix(n,nx);
+      boolean all = true;
+      double worst = 0.0;
+      int total = 0;
+      for (int j = 0; j < nx; j++) {
+         double[] x = solveColumn(B.getColumn(j), X0 == null ? null : X0.getColumn(j));
+         System.arraycopy(x, 0, X.getArray(), j*n, n);
+         all = all && converged;
+         worst = Math.max(worst, residual);
+         total += iterations;
+      }
+      converged = all;
+      residual = worst;
+      iterations = total;
+      return X;
+   }
+
+/* ------------------------
+   Protected Methods
+ * ------------------------ */
+
+   /** Solve one system.  Implementations call iteration() after each
+   iteration and stop when it returns true.
+   @param  b   Right hand side.
+   @param  x   Initial guess, overwritten by the solution.
+   */
+
+   protected abstract void iterate (double[] b, double[] x);
+
+   /** Record an iteration.
+   @param  r   Relative residual.
+   @return     true to stop, the tolerance is met or the iterations are used up.
+   */
+
+   protected boolean iteration (double r) {
+      iterations++;
+      if (historySize == history.length) {
+         double[] h = new double[2*history.length];
+         System.arraycopy(history, 0, h, 0, historySize);
+         history = h;
+      }
+      history[historySize++] = r;
+      if (monitor != null) {
+         monitor.iteration(iterations, r);
+      }
+      return r <= tolerance || iterations >= maxIterations;
+   }
+
+   /** Is the relative residual within the tolerance?
+   */
+
+   protected boolean isConverged (double r) {
+      return r <= tolerance;
+   }
+
+   /** Maximum number of iterations reached?
+   */
+
+   protected boolean isExhausted () {
+      return iterations >= maxIterations;
+   }
+
+   /** z = M^-1*r, or a copy of r without a preconditioner.
+   */
+
+   protected void precondition (double[] r, double[] z) {
+      if (M == null) {
+         System.arraycopy(r, 0, z, 0, n);
+      } else {
+         M.apply(r, z);
+      }
+   }
+
+   /** Relative residual ||b - A*x|| / ||b||, r is overwritten by b - A*x.
+   */
+
+   protected double residual (double[] b, double[] x, double[] r, double bnorm) {
+      A.apply(x, r);
+      for (int i = 0; i < n; i++) {
+         r[i] = b[i] - r[i];
+      }
+      return norm(r)/bnorm;
+   }
+
+   protected static double dot (double[] x, double[] y) {
+      double s = 0.0;
+      for (int i = 0; i < x.length; i++) {
+         s += x[i]*y[i];
+      }
+      return s;
+   }
+
+   protected static double norm (double[] x) {
+      return Math.sqrt(dot(x,x));
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   private void start () {
+      historySize = 0;
+   }
+
+   private double[] solveColumn (double[] b, double[] x0) {
+      if (b.length != n || (x0 != null && x0.length != n)) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      iterations = 0;
+      double[] x = new double[n];
+      if (x0 != null) {
+         System.arraycopy(x0, 0, x, 0, n);
+      }
+      double bnorm = norm(b);
+      if (bnorm == 0.0) {
+         // the solution of a zero right hand side is zero
+         java.util.Arrays.fill(x, 0.0);
+         residual = 0.0;
+         converged = true;
+         return x;
+      }
+      iterate(b, x);
+      residual = residual(b, x, new double[n], bnorm);
+      converged = isConverged(residual);
+      return x;
+   }
+}
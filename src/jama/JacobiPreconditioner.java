@@ -0,0 +1,56 @@
+package jama;
+
+   /** Jacobi (diagonal) preconditioner.
+   <P>
+   M is the diagonal of A.  It is cheap and suits diagonally dominant
+   matrices such as stiffness matrices.  Zero diagonal entries are
+   replaced by one, so those rows are left unscaled.
+   */
+
+public class JacobiPreconditioner implements Preconditioner, java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Inverse of the diagonal.
+   @serial inverse diagonal.
+   */
+   private double[] invDiag;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Jacobi preconditioner
+   @param  A   Square sparse matrix
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public JacobiPreconditioner (SparseMatrix A) {
+      int n = A.getRowDimension();
+      if (A.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Matrix must be square.");
+      }
+      invDiag = new double[n];
+      for (int i = 0; i < n; i++) {
+         double d = A.get(i,i);
+         invDiag[i] = (d == 0.0) ? 1.0 : 1.0/d;
+      }
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Compute z = M^-1*r.
+   @param  r   Vector of length n.
+   @param  z   Result.
+   */
+
+   public void apply (double[] r, double[] z) {
+      for (int i = 0; i < invDiag.length; i++) {
+         z[i] = r[i]*invDiag[i];
+      }
+   }
+}
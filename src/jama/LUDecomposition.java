@@ -1,4 +1,5 @@
 package jama;
+import jama.util.*;
 
    /** LU Decomposition.
    <P>
@@ -13,7 +14,7 @@ package jama;
    linear equations.  This will fail if isNonsingular() returns false.
    */
 
-public class LUDecomposition implements java.io.Serializable {
+public class LUDecomposition implements Factorization, java.io.Serializable {
 
 /* ------------------------
    Class variables
@@ -36,6 +37,11 @@ public class LUDecomposition implements java.io.Serializable {
    */
    private int[] piv;
 
+   /** Smallest pivot relative to the largest entry of its column.
+   @serial pivot ratio.
+   */
+   private double pivotRatio;
+
 /* ------------------------
    Constructor
  * ------------------------ */
@@ -46,67 +52,204 @@ public class LUDecomposition implements java.io.Serializable {
    */
 
    public LUDecomposition (Matrix A) {
+      LU = A.getArrayCopy();
+      m = A.getRowDimension();
+      n = A.getColumnDimension();
+      factor();
+   }
 
-   // Use a "left-looking", dot-product, Crout/Doolittle algorithm.
+   /** LU Decomposition of a column packed matrix
+   @param  A   Rectangular matrix
+   @return     Structure to access L, U and piv.
+   */
 
+   public LUDecomposition (ColumnMatrix A) {
       LU = A.getArrayCopy();
       m = A.getRowDimension();
       n = A.getColumnDimension();
+      factor();
+   }
+
+   /** LU Decomposition of a sparse matrix
+   <P>
+   The sparse matrix is scattered directly into the internal storage,
+   no intermediate dense Matrix is created.
+   @param  A   Rectangular sparse matrix
+   @return     Structure to access L, U and piv.
+   */
+
+   public LUDecomposition (SparseMatrix A) {
+      m = A.getRowDimension();
+      n = A.getColumnDimension();
+      LU = new double[m][n];
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+      for (int i = 0; i < m; i++) {
+         double[] LUrowi = LU[i];
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            LUrowi[Aj[p]] = Ax[p];
+         }
+      }
+      factor();
+   }
+
+   /** Number of columns in a panel.
+   */
+   private static final int BLOCK = 48;
+
+   /** Width of the column strips of the trailing update, chosen so
+   that a BLOCK-by-STRIP piece of U stays in cache.
+   */
+   private static final int STRIP = 256;
+
+   /** Blocked right-looking factorization.
+   <P>
+   The columns are processed in panels of BLOCK columns.  A panel is
+   factorized with partial pivoting by the unblocked algorithm, the
+   rows of U to the right of it are obtained by a triangular solve with
+   the unit lower triangle of the panel, and the trailing matrix gets a
+   single rank-BLOCK update, A22 -= L21*U12.  The update streams the
+   rows of A22 against a strip of U12 that stays in cache, four rows
+   of U12 at a time, instead of sweeping the whole matrix once per
+   column.  Every row is a contiguous array and the inner loops run
+   along the rows.  Large triangular solves and trailing updates are
+   split among threads, see jama.util.Parallel.
+   <P>
+   The pivots are the same as in the unblocked algorithm: in each column
+   the first entry of the largest magnitude is chosen.
+   */
+
+   private void factor () {
       piv = new int[m];
       for (int i = 0; i < m; i++) {
          piv[i] = i;
       }
       pivsign = 1;
-      double[] LUrowi;
-      double[] LUcolj = new double[m];
-
-      // Outer loop.
-
-      for (int j = 0; j < n; j++) {
+      pivotRatio = Double.POSITIVE_INFINITY;
 
-         // Make a copy of the j-th column to localize references.
+      // Largest entries of the original columns, for the pivot ratio.
 
-         for (int i = 0; i < m; i++) {
-            LUcolj[i] = LU[i][j];
+      double[] colmax = new double[n];
+      for (int i = 0; i < m; i++) {
+         double[] LUrowi = LU[i];
+         for (int j = 0; j < n; j++) {
+            colmax[j] = Math.max(colmax[j], Math.abs(LUrowi[j]));
          }
+      }
 
-         // Apply previous transformations.
+      int kmax = Math.min(m,n);
+      for (int k0 = 0; k0 < kmax; k0 += BLOCK) {
+         int k1 = Math.min(k0+BLOCK, kmax);
 
-         for (int i = 0; i < m; i++) {
-            LUrowi = LU[i];
+         // Factorize the panel, columns k0..k1-1.
 
-            // Most of the time is spent in the following dot product.
+         for (int j = k0; j < k1; j++) {
 
-            int kmax = Math.min(i,j);
-            double s = 0.0;
-            for (int k = 0; k < kmax; k++) {
-               s += LUrowi[k]*LUcolj[k];
+            // Find pivot and exchange whole rows if necessary.
+
+            int p = j;
+            double max = Math.abs(LU[j][j]);
+            for (int i = j+1; i < m; i++) {
+               double t = Math.abs(LU[i][j]);
+               if (t > max) {
+                  max = t;
+                  p = i;
+               }
+            }
+            if (p != j) {
+               double[] t = LU[p]; LU[p] = LU[j]; LU[j] = t;
+               int k = piv[p]; piv[p] = piv[j]; piv[j] = k;
+               pivsign = -pivsign;
             }
 
-            LUrowi[j] = LUcolj[i] -= s;
+            double[] LUrowj = LU[j];
+            double pivot = LUrowj[j];
+            pivotRatio = Math.min(pivotRatio,
+               colmax[j] == 0.0 ? 0.0 : Math.abs(pivot)/colmax[j]);
+
+            // Compute multipliers and update the rest of the panel.
+
+            if (pivot != 0.0) {
+               for (int i = j+1; i < m; i++) {
+                  double[] LUrowi = LU[i];
+                  double lij = LUrowi[j] /= pivot;
+                  if (lij != 0.0) {
+                     for (int c = j+1; c < k1; c++) {
+                        LUrowi[c] -= lij*LUrowj[c];
+                     }
+                  }
+               }
+            }
          }
-   
-         // Find pivot and exchange if necessary.
 
-         int p = j;
-         for (int i = j+1; i < m; i++) {
-            if (Math.abs(LUcolj[i]) > Math.abs(LUcolj[p])) {
-               p = i;
+         if (k1 >= n) continue;
+
+         // U12 = L11 \ A12, rows k0..k1-1 right of the panel.  The columns
+         // are independent, large solves are split among threads.
+
+         final int pk0 = k0, pk1 = k1;
+         Parallel.forRange(k1, n, (long)(k1-k0)*(k1-k0)/2*(n-k1), new Parallel.Loop() {
+            public void run (int from, int to) {
+               solvePanelRows(pk0, pk1, from, to);
             }
-         }
-         if (p != j) {
-            for (int k = 0; k < n; k++) {
-               double t = LU[p][k]; LU[p][k] = LU[j][k]; LU[j][k] = t;
+         });
+
+         // A22 -= L21*U12, the rows are independent.
+
+         Parallel.forRange(k1, m, (long)(m-k1)*(n-k1)*(k1-k0), new Parallel.Loop() {
+            public void run (int from, int to) {
+               updateTrailing(pk0, pk1, from, to);
+            }
+         });
+      }
+   }
+
+   /** U12 = L11 \ A12 for the panel k0..k1-1, columns c0..c1-1.
+   */
+
+   private void solvePanelRows (int k0, int k1, int c0, int c1) {
+      for (int j = k0+1; j < k1; j++) {
+         double[] LUrowj = LU[j];
+         for (int k = k0; k < j; k++) {
+            double ljk = LUrowj[k];
+            if (ljk == 0.0) continue;
+            double[] LUrowk = LU[k];
+            for (int c = c0; c < c1; c++) {
+               LUrowj[c] -= ljk*LUrowk[c];
             }
-            int k = piv[p]; piv[p] = piv[j]; piv[j] = k;
-            pivsign = -pivsign;
          }
+      }
+   }
 
-         // Compute multipliers.
-         
-         if (j < m & LU[j][j] != 0.0) {
-            for (int i = j+1; i < m; i++) {
-               LU[i][j] /= LU[j][j];
+   /** A22 -= L21*U12 for the panel k0..k1-1, rows i0..i1-1.
+   <P>
+   The columns are processed in strips, the rows of the strip are
+   streamed against the rows of U12, four at a time, so that every row
+   is loaded and stored once for all four of them.
+   */
+
+   private void updateTrailing (int k0, int k1, int i0, int i1) {
+      for (int c0 = k1; c0 < n; c0 += STRIP) {
+         int c1 = Math.min(c0+STRIP, n);
+         for (int i = i0; i < i1; i++) {
+            double[] LUrowi = LU[i];
+            int k = k0;
+            for (; k+3 < k1; k += 4) {
+               double l0 = LUrowi[k], l1 = LUrowi[k+1];
+               double l2 = LUrowi[k+2], l3 = LUrowi[k+3];
+               double[] u0 = LU[k], u1 = LU[k+1], u2 = LU[k+2], u3 = LU[k+3];
+               for (int c = c0; c < c1; c++) {
+                  LUrowi[c] -= l0*u0[c] + l1*u1[c] + l2*u2[c] + l3*u3[c];
+               }
+            }
+            for (; k < k1; k++) {
+               double lik = LUrowi[k];
+               if (lik == 0.0) continue;
+               double[] LUrowk = LU[k];
+               for (int c = c0; c < c1; c++) {
+                  LUrowi[c] -= lik*LUrowk[c];
+               }
             }
          }
       }
@@ -187,6 +330,14 @@ public class LUDecomposition implements java.io.Serializable {
       return true;
    }
 
+   /** Smallest pivot relative to the largest entry of its original column.
+   @return     min |U(j,j)| / max |A(:,j)|
+   */
+
+   public double getPivotRatio () {
+      return pivotRatio;
+   }
+
    /** Return lower triangular factor
    @return     L
    */
@@ -308,4 +459,77 @@ public class LUDecomposition implements java.io.Serializable {
       }
       return Xmat;
    }
+
+   /** Solve A*x = b
+   @param  b   Right hand side of length m.
+   @return     x so that L*U*x = b(piv)
+   @exception  IllegalArgumentException Vector length must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public double[] solve (double[] b) {
+      if (b.length != m) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      if (!this.isNonsingular()) {
+         throw new RuntimeException("Matrix is singular.");
+      }
+      double[] x = new double[n];
+      solveColumn(b, 0, x, 0);
+      return x;
+   }
+
+   /** Solve A*X = B
+   <P>
+   Each column of B is solved directly in the corresponding column of X.
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that L*U*X = B(piv,:)
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (B.getRowDimension() != m) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (!this.isNonsingular()) {
+         throw new RuntimeException("Matrix is singular.");
+      }
+      int nx = B.getColumnDimension();
+      ColumnMatrix X = new ColumnMatrix(n,nx);
+      double[] b = B.getArray();
+      double[] x = X.getArray();
+      for (int j = 0; j < nx; j++) {
+         solveColumn(b, B.getOffset() + j*B.getLeadingDimension(), x, j*n);
+      }
+      return X;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** x(xo:xo+n-1) = A \ b(bo:bo+m-1)
+   */
+
+   private void solveColumn (double[] b, int bo, double[] x, int xo) {
+      for (int i = 0; i < n; i++) {
+         x[xo+i] = b[bo+piv[i]];
+      }
+      // Solve L*Y = B(piv)
+      for (int k = 0; k < n; k++) {
+         double xk = x[xo+k];
+         for (int i = k+1; i < n; i++) {
+            x[xo+i] -= xk*LU[i][k];
+         }
+      }
+      // Solve U*X = Y;
+      for (int k = n-1; k >= 0; k--) {
+         x[xo+k] /= LU[k][k];
+         double xk = x[xo+k];
+         for (int i = 0; i < k; i++) {
+            x[xo+i] -= xk*LU[i][k];
+         }
+      }
+   }
 }
@@ -0,0 +1,32 @@
+package jama;
+
+   /** A linear operator y = A*x, for the iterative solvers.
+   <P>
+   The iterative solvers only need the product of the matrix with a
+   vector, so the matrix does not have to be stored at all.  SparseMatrix
+   implements this interface; a matrix-free operator computes the
+   product directly from the model (for example element by element).
+   */
+
+public interface LinearOperator {
+
+   /** Get row dimension.
+   @return     m, the length of y.
+   */
+
+   public int getRowDimension ();
+
+   /** Get column dimension.
+   @return     n, the length of x.
+   */
+
+   public int getColumnDimension ();
+
+   /** Compute y = A*x.
+   @param  x   Vector of length n, not modified.
+   @param  y   Vector of length m, overwritten by the product.
+   */
+
+   public void apply (double[] x, double[] y);
+
+}
@@ -70,6 +70,10 @@ public class Matrix implements Cloneable, java.io.Serializable {
    */
    private int m, n;
 
+   /** Tile of B in times(), rows and columns.
+   */
+   private static final int TIMES_BLOCK = 64, TIMES_STRIP = 512;
+
 /* ------------------------
    Constructors
  * ------------------------ */
@@ -733,31 +737,46 @@ public class Matrix implements Cloneable, java.io.Serializable {
    }
 
    /** Linear algebraic matrix multiplication, A * B
+   <P>
+   Row i of the product is accumulated as a combination of the rows of B,
+   so that the inner loop runs along rows.  B is traversed in tiles of
+   TIMES_BLOCK rows by TIMES_STRIP columns that stay in cache while the
+   rows of A pass over them; the sums are still taken in the order of k.
+   Large products are computed in parallel by blocks of rows, see
+   jama.util.Parallel.
    @param B    another matrix
    @return     Matrix product, A * B
    @exception  IllegalArgumentException Matrix inner dimensions must agree.
    */
 
-   public Matrix times (Matrix B) {
+   public Matrix times (final Matrix B) {
       if (B.m != n) {
          throw new IllegalArgumentException("Matrix inner dimensions must agree.");
       }
       Matrix X = new Matrix(m,B.n);
-      double[][] C = X.getArray();
-      double[] Bcolj = new double[n];
-      for (int j = 0; j < B.n; j++) {
-         for (int k = 0; k < n; k++) {
-            Bcolj[k] = B.A[k][j];
-         }
-         for (int i = 0; i < m; i++) {
-            double[] Arowi = A[i];
-            double s = 0;
-            for (int k = 0; k < n; k++) {
-               s += Arowi[k]*Bcolj[k];
+      final double[][] C = X.getArray();
+      final int p = B.n;
+      Parallel.forRange(0, m, (long)m*n*p, new Parallel.Loop() {
+         public void run (int from, int to) {
+            for (int k0 = 0; k0 < n; k0 += TIMES_BLOCK) {
+               int k1 = Math.min(k0+TIMES_BLOCK, n);
+               for (int j0 = 0; j0 < p; j0 += TIMES_STRIP) {
+                  int j1 = Math.min(j0+TIMES_STRIP, p);
+                  for (int i = from; i < to; i++) {
+                     double[] Arowi = A[i];
+                     double[] Crowi = C[i];
+                     for (int k = k0; k < k1; k++) {
+                        double aik = Arowi[k];
+                        double[] Browk = B.A[k];
+                        for (int j = j0; j < j1; j++) {
+                           Crowi[j] += aik*Browk[j];
+                        }
+                     }
+                  }
+               }
             }
-            C[i][j] = s;
          }
-      }
+      });
       return X;
    }
 
@@ -0,0 +1,500 @@
+package jama;
+
+   /** Sparse LU Decomposition in single precision with iterative refinement.
+   <P>
+   The factors L and U of P*A*Q = L*U are computed and stored in float,
+   which halves the memory traffic of the factorization and of every
+   triangular solve.  Each solution is then refined in double precision:
+   the residual r = b - A*x is computed with the original matrix, the
+   correction A*d = r is solved with the single precision factors and
+   x = x + d, until the relative residual
+   ||r|| / (||A||*||x|| + ||b||) (infinity norms) drops below the
+   tolerance, by default sqrt(n) times the double precision machine
+   epsilon (as in LAPACK dsgesv).  As long as A is not too ill
+   conditioned for single precision, the result is as accurate as with
+   a double precision factorization.
+   <P>
+   If the single precision factorization finds a negligible pivot (below
+   FALLBACK_PIVOT_RATIO of its column), or the refinement of some right
+   hand side stalls, the matrix is factorized again by
+   SparseLUDecomposition in double precision and that factorization is
+   used from then on.  Singularity and the pivot ratio are then decided
+   in double precision too.  The number of refinement steps and the
+   residual of the last solve can be queried.
+   */
+
+public class MixedPrecisionLUDecomposition implements Factorization, java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Pivot ratio of the single precision factors below which the
+   matrix is factorized in double precision instead.
+   */
+   public static final double FALLBACK_PIVOT_RATIO = 1e-6;
+
+   /** Largest number of refinement steps for one right hand side.
+   */
+   private static final int MAX_STEPS = 30;
+
+   /** Original matrix, needed for the residuals.
+   @serial matrix.
+   */
+   private SparseMatrix A;
+
+   /** Matrix dimension, infinity norm of A and the required residual.
+   @serial matrix dimension.
+   @serial norm of A.
+   @serial tolerance.
+   */
+   private int n;
+   private double normA, tolerance;
+
+   /** L and U in compressed column form, values in single precision,
+   see SparseLUDecomposition.
+   @serial column pointers of L.
+   @serial row indices of L.
+   @serial values of L.
+   @serial column pointers of U.
+   @serial row indices of U.
+   @serial values of U.
+   */
+   private int[] Lp, Li, Up, Ui;
+   private float[] Lx, Ux;
+
+   /** Inverse row permutation and column permutation.
+   @serial inverse row permutation.
+   @serial column permutation.
+   */
+   private int[] pinv, q;
+
+   /** Pivot ratio of the single precision factors.
+   @serial pivot ratio.
+   */
+   private double pivotRatio;
+
+   /** Double precision factorization, once the single precision one
+   failed; null otherwise.
+   @serial fallback factorization.
+   */
+   private SparseLUDecomposition fallback;
+
+   /** Largest number of refinement steps and largest relative residual
+   of the last solve.
+   @serial refinement steps.
+   @serial residual.
+   */
+   private int steps;
+   private double residual;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Mixed precision LU Decomposition with the default tolerance.
+   @param  A   Square sparse matrix
+   @return     Structure to access the factors.
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public MixedPrecisionLUDecomposition (SparseMatrix A) {
+      this(A, Math.sqrt(A.getRowDimension())*Math.pow(2.0,-53.0));
+   }
+
+   /** Mixed precision LU Decomposition
+   @param  A          Square sparse matrix
+   @param  tolerance  Relative residual at which the refinement stops.
+   @return     Structure to access the factors.
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public MixedPrecisionLUDecomposition (SparseMatrix A, double tolerance) {
+      n = A.getRowDimension();
+      if (A.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Matrix must be square.");
+      }
+      this.A = A;
+      this.tolerance = tolerance;
+      normA = A.normInf();
+      q = SparseOrdering.columnOrdering(A);
+      if (!factor() || pivotRatio < FALLBACK_PIVOT_RATIO) {
+         useFallback();
+      }
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Is the matrix nonsingular?
+   @return     true if the factors can be used to solve systems.
+   */
+
+   public boolean isNonsingular () {
+      return fallback == null || fallback.isNonsingular();
+   }
+
+   /** Smallest pivot relative to the largest entry of its original column.
+   @return     pivot ratio of the factors in use.
+   */
+
+   public double getPivotRatio () {
+      return fallback == null ? pivotRatio : fallback.getPivotRatio();
+   }
+
+   /** Are the single precision factors in use?
+   @return     false after the fallback to double precision.
+   */
+
+   public boolean isSinglePrecision () {
+      return fallback == null;
+   }
+
+   /** Number of refinement steps of the last solve.
+   @return     the largest number of steps over the right hand sides.
+   */
+
+   public int getRefinementSteps () {
+      return steps;
+   }
+
+   /** Relative residual of the last solve.
+   @return     max over the right hand sides of ||b - A*x|| / (||A||*||x|| + ||b||).
+   */
+
+   public double getResidual () {
+      return residual;
+   }
+
+   /** Number of entries in the factors.
+   @return     nnz(L) + nnz(U)
+   */
+
+   public int getNonZeros () {
+      return fallback == null ? Lp[n] + Up[n] : fallback.getNonZeros();
+   }
+
+   /** Solve A*X = B
+   @param  B   A Matrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public Matrix solve (Matrix B) {
+      return solve(new ColumnMatrix(B)).toMatrix();
+   }
+
+   /** Solve A*x = b
+   @param  b   Right hand side of length n.
+   @return     x so that A*x = b
+   @exception  IllegalArgumentException Vector length must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public double[] solve (double[] b) {
+      if (b.length != n) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      return solve(new ColumnMatrix(b, n, 1, n, 0)).getArray();
+   }
+
+   /** Solve A*X = B
+   <P>
+   Every column is refined separately.  If the refinement of a column
+   stalls, the whole system is solved again with the double precision
+   factorization.
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (B.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (fallback != null) {
+         return solveFallback(B);
+      }
+      int nx = B.getColumnDimension();
+      ColumnMatrix X = new ColumnMatrix(n,nx);
+      double[] x = X.getArray();
+      double[] b = new double[n];
+      double[] r = new double[n];
+      float[] y = new float[n];
+      steps = 0;
+      residual = 0.0;
+      for (int j = 0; j < nx; j++) {
+         double bNorm = 0.0;
+         for (int i = 0; i < n; i++) {
+            b[i] = B.get(i,j);
+            r[i] = b[i];
+            bNorm = Math.max(bNorm, Math.abs(b[i]));
+         }
+         double last = Double.POSITIVE_INFINITY;
+         for (int step = 1; ; step++) {
+            // x = x + A \ r in single precision
+            correct(r, x, j*n, y);
+            double res = residual(x, j*n, b, r, bNorm);
+            if (res <= tolerance) {
+               steps = Math.max(steps, step);
+               residual = Math.max(residual, res);
+               break;
+            }
+            if (step == MAX_STEPS || !(res < 0.5*last)) {
+               useFallback();
+               return solveFallback(B);
+            }
+            last = res;
+         }
+      }
+      return X;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Left-looking factorization in single precision, see
+   SparseLUDecomposition.
+   @return     false if a pivot vanishes.
+   */
+
+   private boolean factor () {
+      SparseMatrix At = A.transpose();
+      int[] Ap = At.getRowPointers();
+      int[] Ai = At.getColumnIndices();
+      double[] Ax = At.getValues();
+
+      int capacity = 4*Ap[n] + n;
+      Lp = new int[n+1];
+      Li = new int[capacity];
+      Lx = new float[capacity];
+      Up = new int[n+1];
+      Ui = new int[capacity];
+      Ux = new float[capacity];
+      pinv = new int[n];
+      for (int i = 0; i < n; i++) {
+         pinv[i] = -1;
+      }
+
+      float[] x = new float[n];
+      int[] xi = new int[2*n];
+      int[] mark = new int[n];
+      for (int i = 0; i < n; i++) {
+         mark[i] = -1;
+      }
+      double eps = Math.pow(2.0,-23.0);
+      pivotRatio = Double.POSITIVE_INFINITY;
+      int lnz = 0, unz = 0;
+
+      for (int k = 0; k < n; k++) {
+         Lp[k] = lnz;
+         Up[k] = unz;
+         if (lnz + n > Li.length) {
+            int size = 2*Li.length + n;
+            Li = grow(Li, size);
+            Lx = grow(Lx, size);
+         }
+         if (unz + n > Ui.length) {
+            int size = 2*Ui.length + n;
+            Ui = grow(Ui, size);
+            Ux = grow(Ux, size);
+         }
+
+         // x = L \ A(:,col)
+         int col = q[k];
+         int top = reach(Ap, Ai, col, xi, mark, k);
+         double colmax = 0.0;
+         for (int p = Ap[col]; p < Ap[col+1]; p++) {
+            x[Ai[p]] = (float)Ax[p];
+            colmax = Math.max(colmax, Math.abs(Ax[p]));
+         }
+         for (int px = top; px < n; px++) {
+            int j = xi[px];
+            int J = pinv[j];
+            if (J < 0) continue;
+            float xj = x[j];
+            for (int p = Lp[J]+1; p < Lp[J+1]; p++) {
+               x[Li[p]] -= Lx[p]*xj;
+            }
+         }
+
+         int ipiv = -1;
+         float a = -1.0f;
+         for (int px = top; px < n; px++) {
+            int i = xi[px];
+            if (pinv[i] < 0) {
+               float t = Math.abs(x[i]);
+               if (t > a) {
+                  a = t;
+                  ipiv = i;
+               }
+            } else {
+               Ui[unz] = pinv[i];
+               Ux[unz++] = x[i];
+            }
+         }
+         if (ipiv == -1 || a <= n*eps*colmax || a == 0.0f) {
+            pivotRatio = 0.0;
+            return false;
+         }
+
+         pivotRatio = Math.min(pivotRatio, a/colmax);
+         float pivot = x[ipiv];
+         Ui[unz] = k;
+         Ux[unz++] = pivot;
+         pinv[ipiv] = k;
+         Li[lnz] = ipiv;
+         Lx[lnz++] = 1.0f;
+         for (int px = top; px < n; px++) {
+            int i = xi[px];
+            if (pinv[i] < 0) {
+               Li[lnz] = i;
+               Lx[lnz++] = x[i]/pivot;
+            }
+            x[i] = 0.0f;
+         }
+         Lp[k+1] = lnz;
+         Up[k+1] = unz;
+      }
+
+      for (int p = 0; p < lnz; p++) {
+         Li[p] = pinv[Li[p]];
+      }
+      return true;
+   }
+
+   /** Factorizes A in double precision and drops the single precision
+   factors.
+   */
+
+   private void useFallback () {
+      fallback = new SparseLUDecomposition(A, q);
+      Lp = Li = Up = Ui = null;
+      Lx = Ux = null;
+   }
+
+   private ColumnMatrix solveFallback (ColumnMatrix B) {
+      ColumnMatrix X = fallback.solve(B);
+      steps = 0;
+      residual = 0.0;
+      int nx = B.getColumnDimension();
+      double[] b = new double[n];
+      double[] r = new double[n];
+      for (int j = 0; j < nx; j++) {
+         double bNorm = 0.0;
+         for (int i = 0; i < n; i++) {
+            b[i] = B.get(i,j);
+            bNorm = Math.max(bNorm, Math.abs(b[i]));
+         }
+         residual = Math.max(residual, residual(X.getArray(), j*n, b, r, bNorm));
+      }
+      return X;
+   }
+
+   /** x(xo:xo+n-1) += A \ r with the single precision factors, y is
+   a work array of length n.
+   */
+
+   private void correct (double[] r, double[] x, int xo, float[] y) {
+      for (int i = 0; i < n; i++) {
+         y[pinv[i]] = (float)r[i];
+      }
+      for (int j = 0; j < n; j++) {
+         float yj = y[j];
+         if (yj == 0.0f) continue;
+         for (int p = Lp[j]+1; p < Lp[j+1]; p++) {
+            y[Li[p]] -= Lx[p]*yj;
+         }
+      }
+      for (int j = n-1; j >= 0; j--) {
+         y[j] /= Ux[Up[j+1]-1];
+         float yj = y[j];
+         if (yj == 0.0f) continue;
+         for (int p = Up[j]; p < Up[j+1]-1; p++) {
+            y[Ui[p]] -= Ux[p]*yj;
+         }
+      }
+      for (int k = 0; k < n; k++) {
+         x[xo+q[k]] += y[k];
+      }
+   }
+
+   /** r = b - A*x(xo:xo+n-1) in double precision.
+   @return     relative residual ||r|| / (||A||*||x|| + ||b||).
+   */
+
+   private double residual (double[] x, int xo, double[] b, double[] r, double bNorm) {
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+      double rNorm = 0.0, xNorm = 0.0;
+      for (int i = 0; i < n; i++) {
+         double s = b[i];
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            s -= Ax[p]*x[xo+Aj[p]];
+         }
+         r[i] = s;
+         rNorm = Math.max(rNorm, Math.abs(s));
+         xNorm = Math.max(xNorm, Math.abs(x[xo+i]));
+      }
+      double scale = normA*xNorm + bNorm;
+      return scale > 0 ? rNorm/scale : 0.0;
+   }
+
+   /** Nonzero pattern of L \ A(:,col), see SparseLUDecomposition.
+   */
+
+   private int reach (int[] Ap, int[] Ai, int col, int[] xi, int[] mark, int k) {
+      int top = n;
+      for (int p = Ap[col]; p < Ap[col+1]; p++) {
+         if (mark[Ai[p]] != k) {
+            top = dfs(Ai[p], xi, top, mark, k);
+         }
+      }
+      return top;
+   }
+
+   private int dfs (int start, int[] xi, int top, int[] mark, int k) {
+      int head = 0;
+      xi[0] = start;
+      while (head >= 0) {
+         int j = xi[head];
+         int J = pinv[j];
+         if (mark[j] != k) {
+            mark[j] = k;
+            xi[n+head] = (J < 0) ? 0 : Lp[J]+1;
+         }
+         boolean done = true;
+         int end = (J < 0) ? 0 : Lp[J+1];
+         for (int p = xi[n+head]; p < end; p++) {
+            int i = Li[p];
+            if (mark[i] == k) continue;
+            xi[n+head] = p+1;
+            xi[++head] = i;
+            done = false;
+            break;
+         }
+         if (done) {
+            head--;
+            xi[--top] = j;
+         }
+      }
+      return top;
+   }
+
+   private static int[] grow (int[] a, int size) {
+      int[] b = new int[size];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+   }
+
+   private static float[] grow (float[] a, int size) {
+      float[] b = new float[size];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+   }
+}
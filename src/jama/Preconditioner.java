@@ -0,0 +1,20 @@
+package jama;
+
+   /** Preconditioner of an iterative solver.
+   <P>
+   A preconditioner is an easily solvable approximation M of the matrix
+   A.  The solvers apply it on the right, they solve A*M^-1*u = b and
+   set x = M^-1*u, so the residual they report is the true residual of
+   A*x = b.
+   */
+
+public interface Preconditioner {
+
+   /** Compute z = M^-1*r.
+   @param  r   Vector of length n, not modified.
+   @param  z   Vector of length n, overwritten by the result.
+   */
+
+   public void apply (double[] r, double[] z);
+
+}
@@ -46,10 +46,26 @@ public class QRDecomposition implements java.io.Serializable {
    */
 
    public QRDecomposition (Matrix A) {
-      // Initialize.
       QR = A.getArrayCopy();
       m = A.getRowDimension();
       n = A.getColumnDimension();
+      factor();
+   }
+
+   /** QR Decomposition of a column packed matrix.
+   @param A    Rectangular matrix
+   @return     Structure to access R and the Householder vectors and compute Q.
+   */
+
+   public QRDecomposition (ColumnMatrix A) {
+      QR = A.getArrayCopy();
+      m = A.getRowDimension();
+      n = A.getColumnDimension();
+      factor();
+   }
+
+   private void factor () {
+      // Initialize.
       Rdiag = new double[n];
 
       // Main loop.
@@ -70,22 +86,52 @@ public class QRDecomposition implements java.io.Serializable {
             }
             QR[k][k] += 1.0;
 
-            // Apply transformation to remaining columns.
-            for (int j = k+1; j < n; j++) {
-               double s = 0.0; 
-               for (int i = k; i < m; i++) {
-                  s += QR[i][k]*QR[i][j];
-               }
-               s = -s/QR[k][k];
-               for (int i = k; i < m; i++) {
-                  QR[i][j] += s*QR[i][k];
+            // Apply transformation to remaining columns, they are
+            // independent and large updates are split among threads.
+            final int hk = k;
+            Parallel.forRange(k+1, n, 2L*(n-k-1)*(m-k), new Parallel.Loop() {
+               public void run (int from, int to) {
+                  reflect(hk, from, to);
                }
-            }
+            });
          }
          Rdiag[k] = -nrm;
       }
    }
 
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Apply the k-th Householder reflection to columns j0..j1-1.
+   <P>
+   The products with the reflection vector are accumulated row by row,
+   so that both passes run along the rows of QR.
+   */
+
+   private void reflect (int k, int j0, int j1) {
+      int w = j1-j0;
+      double[] s = new double[w];
+      for (int i = k; i < m; i++) {
+         double[] QRrowi = QR[i];
+         double qik = QRrowi[k];
+         for (int j = 0; j < w; j++) {
+            s[j] += qik*QRrowi[j0+j];
+         }
+      }
+      double qkk = QR[k][k];
+      for (int j = 0; j < w; j++) {
+         s[j] = -s[j]/qkk;
+      }
+      for (int i = k; i < m; i++) {
+         double[] QRrowi = QR[i];
+         double qik = QRrowi[k];
+         for (int j = 0; j < w; j++) {
+            QRrowi[j0+j] += s[j]*qik;
+         }
+      }
+   }
+
 /* ------------------------
    Public Methods
  * ------------------------ */
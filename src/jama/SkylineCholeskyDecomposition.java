@@ -0,0 +1,264 @@
+package jama;
+
+   /** Cholesky Decomposition in skyline (profile) storage.
+   <P>
+   Row i of a symmetric, positive definite matrix A is stored from its
+   first nonzero column first(i) up to the diagonal.  The factor L of
+   A = L*L' has no entries left of first(i) either, so only this envelope
+   is stored and factorized.  Unlike the band storage, every row keeps
+   its own width: a few long rows (a beam connecting distant joints) do
+   not widen the whole matrix.  The work is proportional to the sum of
+   the squared row widths, n*b^2 for a band of half width b.
+   <P>
+   The envelope depends on the numbering of the unknowns, a symmetric
+   permutation p (see SparseOrdering.reverseCuthillMcKee()) may be given;
+   A(p,p) is then factorized and solve() permutes its argument.  Only the
+   lower triangle of A is used.  If A is not positive definite, or a pivot
+   nearly vanishes compared to its diagonal entry, the constructor returns
+   a partial decomposition and isSPD() returns false.
+   */
+
+public class SkylineCholeskyDecomposition implements java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Pivots below this fraction of their diagonal entry of A are
+   considered to vanish.
+   */
+   public static final double DEFAULT_TOLERANCE = 1e-12;
+
+   /** Rows of L from the first nonzero column, L(i,j) is L[i][j-first[i]].
+   @serial internal array storage.
+   @serial first columns.
+   */
+   private double[][] L;
+   private int[] first;
+
+   /** Row and column dimension (square matrix).
+   @serial matrix dimension.
+   */
+   private int n;
+
+   /** Symmetric permutation, null if none.
+   @serial permutation.
+   */
+   private int[] p;
+
+   /** Symmetric and positive definite flag.
+   @serial is symmetric and positive definite flag.
+   */
+   private boolean isspd;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Cholesky algorithm for a sparse matrix in its own numbering.
+   @param  A   Square, symmetric sparse matrix.
+   @return     Structure to access L and isspd flag.
+   */
+
+   public SkylineCholeskyDecomposition (SparseMatrix A) {
+      this(A, null);
+   }
+
+   /** Cholesky algorithm for a symmetrically permuted sparse matrix.
+   @param  A   Square, symmetric sparse matrix.
+   @param  p   Permutation, A(p,p) is factorized; null for none.
+   @return     Structure to access L and isspd flag.
+   */
+
+   public SkylineCholeskyDecomposition (SparseMatrix A, int[] p) {
+      n = A.getRowDimension();
+      isspd = (A.getColumnDimension() == n);
+      this.p = (p == null) ? null : p.clone();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+      int[] pinv = new int[n];
+      for (int k = 0; k < n; k++) {
+         pinv[p == null ? k : p[k]] = k;
+      }
+
+      // Envelope of the lower triangle of A(p,p).
+      first = new int[n];
+      for (int i = 0; i < n; i++) {
+         first[i] = i;
+      }
+      for (int r = 0; r < n; r++) {
+         int i = pinv[r];
+         for (int s = Ap[r]; s < Ap[r+1]; s++) {
+            int j = pinv[Aj[s]];
+            if (j < first[i]) first[i] = j;
+            else if (i < first[j]) first[j] = i;
+         }
+      }
+      L = new double[n][];
+      for (int i = 0; i < n; i++) {
+         L[i] = new double[i-first[i]+1];
+      }
+      for (int r = 0; r < n; r++) {
+         int i = pinv[r];
+         for (int s = Ap[r]; s < Ap[r+1]; s++) {
+            int j = pinv[Aj[s]];
+            if (j <= i && Aj[s] <= r) L[i][j-first[i]] += Ax[s];
+            else if (j > i && Aj[s] < r) L[j][i-first[j]] += Ax[s];
+         }
+      }
+      factor();
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Is the matrix symmetric and positive definite?
+   @return     true if A is symmetric and positive definite.
+   */
+
+   public boolean isSPD () {
+      return isspd;
+   }
+
+   /** Number of stored entries of L, the size of the envelope.
+   @return     Sum of the row widths.
+   */
+
+   public long getProfile () {
+      long size = 0;
+      for (int i = 0; i < n; i++) {
+         size += L[i].length;
+      }
+      return size;
+   }
+
+   /** Half bandwidth, the widest row of the envelope.
+   @return     max(i - first(i)).
+   */
+
+   public int getBandwidth () {
+      int b = 0;
+      for (int i = 0; i < n; i++) {
+         b = Math.max(b, i-first[i]);
+      }
+      return b;
+   }
+
+   /** Return triangular factor of A(p,p).
+   @return     L
+   */
+
+   public Matrix getL () {
+      Matrix X = new Matrix(n,n);
+      double[][] A = X.getArray();
+      for (int i = 0; i < n; i++) {
+         for (int j = first[i]; j <= i; j++) {
+            A[i][j] = L[i][j-first[i]];
+         }
+      }
+      return X;
+   }
+
+   /** Solve A*x = y in place.
+   @param  x   Right hand side of length n, overwritten by the solution.
+   @exception  IllegalArgumentException  Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is not symmetric positive definite.
+   */
+
+   public void solve (double[] x) {
+      solve(x, 0, new double[n]);
+   }
+
+   /** Solve A*X = B
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   @exception  IllegalArgumentException  Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is not symmetric positive definite.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (B.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      ColumnMatrix Xmat = B.copy();
+      double[] X = Xmat.getArray();
+      double[] w = new double[n];
+      int nx = B.getColumnDimension();
+      for (int j = 0; j < nx; j++) {
+         solve(X, j*n, w);
+      }
+      return Xmat;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Row by row factorization of the envelope, in place.  Every entry
+   is a dot product of the overlapping parts of two rows.
+   */
+
+   private void factor () {
+      for (int i = 0; i < n; i++) {
+         double[] Li = L[i];
+         int fi = first[i];
+         for (int j = fi; j < i; j++) {
+            double[] Lj = L[j];
+            int fj = first[j];
+            int k0 = Math.max(fi, fj);
+            double s = Li[j-fi];
+            for (int k = k0; k < j; k++) {
+               s -= Li[k-fi]*Lj[k-fj];
+            }
+            Li[j-fi] = s/Lj[j-fj];
+         }
+         double d = Li[i-fi];
+         double s = d;
+         for (int k = 0; k < i-fi; k++) {
+            s -= Li[k]*Li[k];
+         }
+         isspd = isspd & (s > DEFAULT_TOLERANCE*Math.abs(d));
+         Li[i-fi] = Math.sqrt(Math.max(s, 0.0));
+         if (!isspd) return;
+      }
+   }
+
+   /** Forward and back substitution of x[off..off+n-1], w is workspace.
+   */
+
+   private void solve (double[] x, int off, double[] w) {
+      if (x.length < off+n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (!isspd) {
+         throw new RuntimeException("Matrix is not symmetric positive definite.");
+      }
+      for (int k = 0; k < n; k++) {
+         w[k] = x[off + (p == null ? k : p[k])];
+      }
+      // Solve L*y = x(p);
+      for (int i = 0; i < n; i++) {
+         double[] Li = L[i];
+         int fi = first[i];
+         double s = w[i];
+         for (int k = fi; k < i; k++) {
+            s -= Li[k-fi]*w[k];
+         }
+         w[i] = s/Li[i-fi];
+      }
+      // Solve L'*z = y;
+      for (int i = n-1; i >= 0; i--) {
+         double[] Li = L[i];
+         int fi = first[i];
+         double s = w[i] /= Li[i-fi];
+         for (int k = fi; k < i; k++) {
+            w[k] -= Li[k-fi]*s;
+         }
+      }
+      for (int k = 0; k < n; k++) {
+         x[off + (p == null ? k : p[k])] = w[k];
+      }
+   }
+}
@@ -0,0 +1,457 @@
+package jama;
+
+   /** Sparse LU Decomposition.
+   <P>
+   For a square sparse matrix A, the sparse LU decomposition is a unit
+   lower triangular matrix L, an upper triangular matrix U, a row
+   permutation P and a column permutation Q so that P*A*Q = L*U.
+   <P>
+   The column permutation is a fill-reducing ordering computed by
+   SparseOrdering.columnOrdering() before the numerical factorization.
+   The row permutation comes from partial pivoting, in each column the
+   entry of the largest magnitude is selected as the pivot.  The
+   factorization is left-looking (Gilbert-Peierls): column k of L and U
+   is obtained by a sparse triangular solve with the columns already
+   computed, so the work is proportional to the number of floating
+   point operations rather than to n^3.
+   <P>
+   A pivot that is zero, or negligible compared to the entries of its
+   original column, marks the matrix as singular.  The factorization
+   stops at that column and isNonsingular() returns false.
+   */
+
+public class SparseLUDecomposition implements Factorization, java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Matrix dimension.
+   @serial matrix dimension.
+   */
+   private int n;
+
+   /** L in compressed column form, rows in pivoted order.
+   @serial column pointers of L.
+   @serial row indices of L.
+   @serial values of L.
+   */
+   private int[] Lp, Li;
+   private double[] Lx;
+
+   /** U in compressed column form, the diagonal is the last entry
+   of each column.
+   @serial column pointers of U.
+   @serial row indices of U.
+   @serial values of U.
+   */
+   private int[] Up, Ui;
+   private double[] Ux;
+
+   /** Inverse row permutation (row i of A is row pinv[i] of L*U)
+   and column permutation.
+   @serial inverse row permutation.
+   @serial column permutation.
+   */
+   private int[] pinv, q;
+
+   /** Nonsingularity flag.
+   @serial is nonsingular flag.
+   */
+   private boolean nonsingular;
+
+   /** Smallest pivot relative to the largest entry of its column.
+   @serial pivot ratio.
+   */
+   private double pivotRatio;
+
+   /** Number of entries in L and U.
+   */
+   private int lnz, unz;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Sparse LU Decomposition
+   @param  A   Square sparse matrix
+   @return     Structure to access the factors.
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public SparseLUDecomposition (SparseMatrix A) {
+      this(A, SparseOrdering.columnOrdering(A));
+   }
+
+   /** Sparse LU Decomposition with a given column ordering
+   @param  A   Square sparse matrix
+   @param  q   Column permutation, column q[k] is factorized k-th.
+   @return     Structure to access the factors.
+   @exception  IllegalArgumentException Matrix must be square.
+   */
+
+   public SparseLUDecomposition (SparseMatrix A, int[] q) {
+      n = A.getRowDimension();
+      if (A.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Matrix must be square.");
+      }
+      this.q = q;
+
+      // Columns of A are the rows of A'.
+      SparseMatrix At = A.transpose();
+      int[] Ap = At.getRowPointers();
+      int[] Ai = At.getColumnIndices();
+      double[] Ax = At.getValues();
+
+      int capacity = 4*Ap[n] + n;
+      Lp = new int[n+1];
+      Li = new int[capacity];
+      Lx = new double[capacity];
+      Up = new int[n+1];
+      Ui = new int[capacity];
+      Ux = new double[capacity];
+      pinv = new int[n];
+      for (int i = 0; i < n; i++) {
+         pinv[i] = -1;
+      }
+
+      double[] x = new double[n];
+      int[] xi = new int[2*n];
+      int[] mark = new int[n];
+      for (int i = 0; i < n; i++) {
+         mark[i] = -1;
+      }
+      double eps = Math.pow(2.0,-52.0);
+      nonsingular = true;
+      pivotRatio = Double.POSITIVE_INFINITY;
+      lnz = 0;
+      unz = 0;
+
+      for (int k = 0; k < n; k++) {
+         Lp[k] = lnz;
+         Up[k] = unz;
+
+         // Make room for the worst case of column k.
+         if (lnz + n > Li.length) {
+            int size = 2*Li.length + n;
+            Li = grow(Li, size);
+            Lx = grow(Lx, size);
+         }
+         if (unz + n > Ui.length) {
+            int size = 2*Ui.length + n;
+            Ui = grow(Ui, size);
+            Ux = grow(Ux, size);
+         }
+
+         // x = L \ A(:,col)
+         int col = q[k];
+         int top = reach(Ap, Ai, col, xi, mark, k);
+         double colmax = 0.0;
+         for (int p = Ap[col]; p < Ap[col+1]; p++) {
+            x[Ai[p]] = Ax[p];
+            colmax = Math.max(colmax, Math.abs(Ax[p]));
+         }
+         for (int px = top; px < n; px++) {
+            int j = xi[px];
+            int J = pinv[j];
+            if (J < 0) continue;
+            double xj = x[j];
+            for (int p = Lp[J]+1; p < Lp[J+1]; p++) {
+               x[Li[p]] -= Lx[p]*xj;
+            }
+         }
+
+         // Find the pivot among rows that are not pivotal yet, the other
+         // entries go to U.
+         int ipiv = -1;
+         double a = -1.0;
+         for (int px = top; px < n; px++) {
+            int i = xi[px];
+            if (pinv[i] < 0) {
+               double t = Math.abs(x[i]);
+               if (t > a) {
+                  a = t;
+                  ipiv = i;
+               }
+            } else {
+               Ui[unz] = pinv[i];
+               Ux[unz++] = x[i];
+            }
+         }
+         if (ipiv == -1 || a <= n*eps*colmax || a == 0.0) {
+            nonsingular = false;
+            pivotRatio = 0.0;
+            for (int px = top; px < n; px++) {
+               x[xi[px]] = 0.0;
+            }
+            for (int j = k; j < n; j++) {
+               Lp[j+1] = lnz;
+               Up[j+1] = unz;
+            }
+            break;
+         }
+
+         pivotRatio = Math.min(pivotRatio, a/colmax);
+         double pivot = x[ipiv];
+         Ui[unz] = k;
+         Ux[unz++] = pivot;
+         pinv[ipiv] = k;
+         Li[lnz] = ipiv;
+         Lx[lnz++] = 1.0;
+         for (int px = top; px < n; px++) {
+            int i = xi[px];
+            if (pinv[i] < 0) {
+               Li[lnz] = i;
+               Lx[lnz++] = x[i]/pivot;
+            }
+            x[i] = 0.0;
+         }
+         Lp[k+1] = lnz;
+         Up[k+1] = unz;
+      }
+
+      // Renumber the rows of L to the pivoted order.
+      if (nonsingular) {
+         for (int p = 0; p < lnz; p++) {
+            Li[p] = pinv[Li[p]];
+         }
+      }
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Is the matrix nonsingular?
+   @return     true if U, and hence A, is nonsingular.
+   */
+
+   public boolean isNonsingular () {
+      return nonsingular;
+   }
+
+   /** Smallest pivot relative to the largest entry of its original column.
+   @return     min |U(k,k)| / max |A(:,q[k])|, zero if singular.
+   */
+
+   public double getPivotRatio () {
+      return pivotRatio;
+   }
+
+   /** Number of entries in the factors.
+   @return     nnz(L) + nnz(U)
+   */
+
+   public int getNonZeros () {
+      return lnz + unz;
+   }
+
+   /** Return the column permutation
+   @return     q
+   */
+
+   public int[] getColumnPermutation () {
+      int[] p = new int[n];
+      System.arraycopy(q, 0, p, 0, n);
+      return p;
+   }
+
+   /** Determinant
+   @return     det(A)
+   */
+
+   public double det () {
+      if (!nonsingular) {
+         return 0.0;
+      }
+      double d = permutationSign(pinv) * permutationSign(q);
+      for (int j = 0; j < n; j++) {
+         d *= Ux[Up[j+1]-1];
+      }
+      return d;
+   }
+
+   /** Solve A*X = B
+   @param  B   A Matrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public Matrix solve (Matrix B) {
+      if (B.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (!nonsingular) {
+         throw new RuntimeException("Matrix is singular.");
+      }
+      int nx = B.getColumnDimension();
+      Matrix Xmat = new Matrix(n,nx);
+      double[][] X = Xmat.getArray();
+      double[][] Barr = B.getArray();
+      double[] b = new double[n];
+      for (int j = 0; j < nx; j++) {
+         for (int i = 0; i < n; i++) {
+            b[i] = Barr[i][j];
+         }
+         double[] x = solve(b);
+         for (int i = 0; i < n; i++) {
+            X[i][j] = x[i];
+         }
+      }
+      return Xmat;
+   }
+
+   /** Solve A*x = b
+   @param  b   Right hand side of length n.
+   @return     x so that A*x = b
+   @exception  IllegalArgumentException Vector length must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public double[] solve (double[] b) {
+      if (b.length != n) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      if (!nonsingular) {
+         throw new RuntimeException("Matrix is singular.");
+      }
+      double[] x = new double[n];
+      solveColumn(b, 0, x, 0, new double[n]);
+      return x;
+   }
+
+   /** Solve A*X = B
+   <P>
+   Each column of B is solved directly in the corresponding column of X.
+   @param  B   A ColumnMatrix with as many rows as A and any number of columns.
+   @return     X so that A*X = B
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException  Matrix is singular.
+   */
+
+   public ColumnMatrix solve (ColumnMatrix B) {
+      if (B.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix row dimensions must agree.");
+      }
+      if (!nonsingular) {
+         throw new RuntimeException("Matrix is singular.");
+      }
+      int nx = B.getColumnDimension();
+      ColumnMatrix X = new ColumnMatrix(n,nx);
+      double[] b = B.getArray();
+      double[] x = X.getArray();
+      double[] y = new double[n];
+      for (int j = 0; j < nx; j++) {
+         solveColumn(b, B.getOffset() + j*B.getLeadingDimension(), x, j*n, y);
+      }
+      return X;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** x(xo:xo+n-1) = A \ b(bo:bo+n-1), y is a work array of length n.
+   */
+
+   private void solveColumn (double[] b, int bo, double[] x, int xo, double[] y) {
+      for (int i = 0; i < n; i++) {
+         y[pinv[i]] = b[bo+i];
+      }
+      // Solve L*z = P*b
+      for (int j = 0; j < n; j++) {
+         double yj = y[j];
+         if (yj == 0.0) continue;
+         for (int p = Lp[j]+1; p < Lp[j+1]; p++) {
+            y[Li[p]] -= Lx[p]*yj;
+         }
+      }
+      // Solve U*w = z
+      for (int j = n-1; j >= 0; j--) {
+         y[j] /= Ux[Up[j+1]-1];
+         double yj = y[j];
+         if (yj == 0.0) continue;
+         for (int p = Up[j]; p < Up[j+1]-1; p++) {
+            y[Ui[p]] -= Ux[p]*yj;
+         }
+      }
+      for (int k = 0; k < n; k++) {
+         x[xo+q[k]] = y[k];
+      }
+   }
+
+   /** Nonzero pattern of L \ A(:,col).
+   <P>
+   Depth-first search in the graph of L from every row index of column
+   col.  The reached rows are stored in xi[top..n) in topological order,
+   xi[0..n) is used as the recursion stack and xi[n..2n) as the
+   position stack.  mark[i] == k marks rows visited in step k.
+   */
+
+   private int reach (int[] Ap, int[] Ai, int col, int[] xi, int[] mark, int k) {
+      int top = n;
+      for (int p = Ap[col]; p < Ap[col+1]; p++) {
+         if (mark[Ai[p]] != k) {
+            top = dfs(Ai[p], xi, top, mark, k);
+         }
+      }
+      return top;
+   }
+
+   private int dfs (int start, int[] xi, int top, int[] mark, int k) {
+      int head = 0;
+      xi[0] = start;
+      while (head >= 0) {
+         int j = xi[head];
+         int J = pinv[j];
+         if (mark[j] != k) {
+            mark[j] = k;
+            xi[n+head] = (J < 0) ? 0 : Lp[J]+1;
+         }
+         boolean done = true;
+         int end = (J < 0) ? 0 : Lp[J+1];
+         for (int p = xi[n+head]; p < end; p++) {
+            int i = Li[p];
+            if (mark[i] == k) continue;
+            xi[n+head] = p+1;
+            xi[++head] = i;
+            done = false;
+            break;
+         }
+         if (done) {
+            head--;
+            xi[--top] = j;
+         }
+      }
+      return top;
+   }
+
+   private static int permutationSign (int[] p) {
+      int len = p.length;
+      boolean[] seen = new boolean[len];
+      int sign = 1;
+      for (int i = 0; i < len; i++) {
+         if (seen[i]) continue;
+         int cycle = 0;
+         for (int j = i; !seen[j]; j = p[j]) {
+            seen[j] = true;
+            cycle++;
+         }
+         if (cycle % 2 == 0) sign = -sign;
+      }
+      return sign;
+   }
+
+   private static int[] grow (int[] a, int size) {
+      int[] b = new int[size];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+   }
+
+   private static double[] grow (double[] a, int size) {
+      double[] b = new double[size];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+   }
+}
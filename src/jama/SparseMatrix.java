@@ -0,0 +1,257 @@
+package jama;
+
+   /** Sparse matrix in compressed row form.
+   <P>
+   Row i of the matrix is stored in positions Ap[i] to Ap[i+1]-1 of the
+   column index array Aj and the value array Ax, with the column indices
+   sorted in ascending order.  Sparse matrices are normally created by
+   assembling a TripletMatrix and calling its compress() method.
+   <P>
+   Only the operations needed by the sparse solvers are provided; use
+   toDense() to get a Matrix for anything else.
+   */
+
+public class SparseMatrix implements LinearOperator, java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Row and column dimensions.
+   @serial row dimension.
+   @serial column dimension.
+   */
+   private int m, n;
+
+   /** Row pointers (length m+1).
+   @serial row pointers.
+   */
+   private int[] Ap;
+
+   /** Column indices and values of the stored entries.
+   @serial column indices.
+   @serial values.
+   */
+   private int[] Aj;
+   private double[] Ax;
+
+/* ------------------------
+   Constructors
+ * ------------------------ */
+
+   /** Construct a sparse matrix from compressed row arrays without copying.
+   @param m    Number of rows.
+   @param n    Number of colums.
+   @param Ap   Row pointers, length m+1.
+   @param Aj   Column indices, sorted within each row.
+   @param Ax   Values.
+   */
+
+   public SparseMatrix (int m, int n, int[] Ap, int[] Aj, double[] Ax) {
+      this.m = m;
+      this.n = n;
+      this.Ap = Ap;
+      this.Aj = Aj;
+      this.Ax = Ax;
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Get row dimension.
+   @return     m, the number of rows.
+   */
+
+   public int getRowDimension () {
+      return m;
+   }
+
+   /** Get column dimension.
+   @return     n, the number of columns.
+   */
+
+   public int getColumnDimension () {
+      return n;
+   }
+
+   /** Number of stored entries.
+   @return     nnz
+   */
+
+   public int getNonZeros () {
+      return Ap[m];
+   }
+
+   /** Access the internal row pointer array.
+   @return     Ap
+   */
+
+   public int[] getRowPointers () {
+      return Ap;
+   }
+
+   /** Access the internal column index array.
+   @return     Aj
+   */
+
+   public int[] getColumnIndices () {
+      return Aj;
+   }
+
+   /** Access the internal value array.
+   @return     Ax
+   */
+
+   public double[] getValues () {
+      return Ax;
+   }
+
+   /** Get a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @return     A(i,j), zero if the entry is not stored.
+   @exception  ArrayIndexOutOfBoundsException
+   */
+
+   public double get (int i, int j) {
+      if (j < 0 || j >= n) {
+         throw new ArrayIndexOutOfBoundsException("Column index out of bounds.");
+      }
+      int lo = Ap[i], hi = Ap[i+1]-1;
+      while (lo <= hi) {
+         int mid = (lo+hi) >>> 1;
+         if (Aj[mid] < j) {
+            lo = mid+1;
+         } else if (Aj[mid] > j) {
+            hi = mid-1;
+         } else {
+            return Ax[mid];
+         }
+      }
+      return 0.0;
+   }
+
+   /** Sparse matrix-vector product, y = A*x
+   @param x    Vector of length n.
+   @return     A*x
+   @exception  IllegalArgumentException Vector length must agree.
+   */
+
+   public double[] times (double[] x) {
+      if (x.length != n) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      double[] y = new double[m];
+      for (int i = 0; i < m; i++) {
+         double s = 0.0;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            s += Ax[p]*x[Aj[p]];
+         }
+         y[i] = s;
+      }
+      return y;
+   }
+
+   /** Sparse matrix-vector product without allocation, y = A*x
+   @param x    Vector of length n.
+   @param y    Vector of length m, overwritten by A*x.
+   */
+
+   public void apply (double[] x, double[] y) {
+      for (int i = 0; i < m; i++) {
+         double s = 0.0;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            s += Ax[p]*x[Aj[p]];
+         }
+         y[i] = s;
+      }
+   }
+
+   /** Sparse times dense, Y = A*X
+   @param X    Matrix with n rows.
+   @return     A*X, computed column by column.
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+   */
+
+   public ColumnMatrix times (ColumnMatrix X) {
+      if (X.getRowDimension() != n) {
+         throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+      }
+      int nx = X.getColumnDimension();
+      ColumnMatrix Ymat = new ColumnMatrix(m,nx);
+      double[] x = X.getArray();
+      double[] y = Ymat.getArray();
+      for (int j = 0; j < nx; j++) {
+         int xo = X.getOffset() + j*X.getLeadingDimension();
+         int yo = j*m;
+         for (int i = 0; i < m; i++) {
+            double s = 0.0;
+            for (int p = Ap[i]; p < Ap[i+1]; p++) {
+               s += Ax[p]*x[xo+Aj[p]];
+            }
+            y[yo+i] = s;
+         }
+      }
+      return Ymat;
+   }
+
+   /** Sparse matrix transpose.
+   @return     A'
+   */
+
+   public SparseMatrix transpose () {
+      int nz = Ap[m];
+      int[] Cp = new int[n+1];
+      int[] Cj = new int[nz];
+      double[] Cx = new double[nz];
+      for (int p = 0; p < nz; p++) {
+         Cp[Aj[p]+1]++;
+      }
+      for (int j = 0; j < n; j++) {
+         Cp[j+1] += Cp[j];
+      }
+      int[] next = new int[n];
+      System.arraycopy(Cp, 0, next, 0, n);
+      for (int i = 0; i < m; i++) {
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            int q = next[Aj[p]]++;
+            Cj[q] = i;
+            Cx[q] = Ax[p];
+         }
+      }
+      return new SparseMatrix(n, m, Cp, Cj, Cx);
+   }
+
+   /** Infinity norm
+   @return    maximum row sum.
+   */
+
+   public double normInf () {
+      double f = 0;
+      for (int i = 0; i < m; i++) {
+         double s = 0;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            s += Math.abs(Ax[p]);
+         }
+         f = Math.max(f,s);
+      }
+      return f;
+   }
+
+   /** Dense copy of the matrix.
+   @return     Matrix with the same elements.
+   */
+
+   public Matrix toDense () {
+      Matrix X = new Matrix(m,n);
+      double[][] C = X.getArray();
+      for (int i = 0; i < m; i++) {
+         double[] Ci = C[i];
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            Ci[Aj[p]] = Ax[p];
+         }
+      }
+      return X;
+   }
+}
@@ -0,0 +1,419 @@
+package jama;
+
+import java.util.PriorityQueue;
+
+   /** Fill-reducing orderings for sparse factorizations.
+   <P>
+   The orderings work on the sparsity pattern only.  columnOrdering()
+   returns a column permutation for an unsymmetric LU factorization,
+   computed as a minimum degree ordering of the pattern of A'*A (the
+   same idea as COLAMD, without the approximate degree updates).
+   reverseCuthillMcKee() reduces the bandwidth and profile of a
+   symmetric matrix for band and skyline factorizations.
+   */
+
+public class SparseOrdering {
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Column ordering for the LU factorization of A.
+   <P>
+   Two columns are adjacent when they share a row of A.  Eliminating a
+   column in the resulting graph of A'*A models the fill created in
+   both L and U by partial pivoting, so a minimum degree ordering of
+   this graph keeps the factors sparse.
+   @param  A   Sparse matrix.
+   @return     Column permutation q, column q[k] is eliminated k-th.
+   */
+
+   public static int[] columnOrdering (SparseMatrix A) {
+      int m = A.getRowDimension();
+      int n = A.getColumnDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+
+      // Dense rows would make the whole graph a clique and do not
+      // influence the ordering much, they are skipped (as in COLAMD).
+      int dense = Math.max(16, (int)(10*Math.sqrt(n)));
+
+      // Count the adjacency of each column.
+      int[] count = new int[n];
+      for (int i = 0; i < m; i++) {
+         int len = Ap[i+1]-Ap[i];
+         if (len > dense) continue;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            count[Aj[p]] += len-1;
+         }
+      }
+      int[][] adj = new int[n][];
+      int[] size = new int[n];
+      for (int j = 0; j < n; j++) {
+         adj[j] = new int[count[j]];
+      }
+      for (int i = 0; i < m; i++) {
+         int len = Ap[i+1]-Ap[i];
+         if (len > dense) continue;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            int j = Aj[p];
+            for (int r = Ap[i]; r < Ap[i+1]; r++) {
+               if (r != p) adj[j][size[j]++] = Aj[r];
+            }
+         }
+      }
+      for (int j = 0; j < n; j++) {
+         size[j] = unique(adj[j], size[j]);
+      }
+      return minimumDegree(adj, size, n);
+   }
+
+   /** Column permutation with a zero-free diagonal.
+   <P>
+   A maximum matching of rows and columns in the bipartite graph of the
+   pattern, found by depth-first searches for augmenting paths (the
+   algorithm of Duff, MC21).  Column q[i] has a nonzero in row i for
+   every matched row; if A is structurally singular, the unmatched rows
+   get the remaining columns.
+   @param  A   Square sparse matrix.
+   @return     Column permutation q, A(:,q) has the matched entries on
+               its diagonal.
+   */
+
+   public static int[] maximumTransversal (SparseMatrix A) {
+      int n = A.getRowDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+
+      int[] rowMatch = new int[n];
+      int[] colMatch = new int[n];
+      for (int i = 0; i < n; i++) {
+         rowMatch[i] = -1;
+         colMatch[i] = -1;
+      }
+
+      // Cheap assignment first, most rows are matched without a search.
+      for (int i = 0; i < n; i++) {
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            int j = Aj[p];
+            if (colMatch[j] < 0) {
+               rowMatch[i] = j;
+               colMatch[j] = i;
+               break;
+            }
+         }
+      }
+
+      // Augmenting paths for the rest.  stack holds the rows of the path,
+      // next the position to continue in each of them, visited marks the
+      // columns seen in the current search.
+      int[] stack = new int[n];
+      int[] next = new int[n];
+      int[] visited = new int[n];
+      for (int j = 0; j < n; j++) {
+         visited[j] = -1;
+      }
+      for (int start = 0; start < n; start++) {
+         if (rowMatch[start] >= 0) continue;
+         int head = 0;
+         stack[0] = start;
+         next[0] = Ap[start];
+         int found = -1;
+         while (head >= 0 && found < 0) {
+            int i = stack[head];
+            int p = next[head];
+            for (; p < Ap[i+1]; p++) {
+               int j = Aj[p];
+               if (visited[j] == start) continue;
+               visited[j] = start;
+               if (colMatch[j] < 0) {
+                  found = j;
+                  break;
+               }
+               next[head] = p+1;
+               head++;
+               stack[head] = colMatch[j];
+               next[head] = Ap[colMatch[j]];
+               break;
+            }
+            if (found < 0 && p >= Ap[i+1]) {
+               head--;
+            }
+         }
+         // Flip the matching along the path.
+         for (int j = found; j >= 0 && head >= 0; head--) {
+            int i = stack[head];
+            int previous = rowMatch[i];
+            rowMatch[i] = j;
+            colMatch[j] = i;
+            j = previous;
+         }
+      }
+
+      // Unmatched rows take the unmatched columns.
+      int free = 0;
+      for (int i = 0; i < n; i++) {
+         if (rowMatch[i] >= 0) continue;
+         while (colMatch[free] >= 0) {
+            free++;
+         }
+         rowMatch[i] = free;
+         colMatch[free] = i;
+      }
+      return rowMatch;
+   }
+
+   /** Symmetric permutation to block lower triangular form.
+   <P>
+   Row i of A depends on the unknowns j with a nonzero A(i,j).  The
+   strongly connected components of this dependency graph (Tarjan's
+   algorithm) are the diagonal blocks, they are ordered so that every
+   block depends only on the blocks before it.  A statically determinate
+   structure that can be solved joint by joint falls apart into many
+   small blocks.  A should have a zero-free diagonal, see
+   maximumTransversal().
+   @param  A   Square sparse matrix.
+   @return     Permutation p, A(p,p) is block lower triangular.
+   */
+
+   public static int[] blockTriangular (SparseMatrix A) {
+      int n = A.getRowDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+
+      int[] index = new int[n];
+      int[] low = new int[n];
+      for (int i = 0; i < n; i++) {
+         index[i] = -1;
+      }
+      int[] stack = new int[n];
+      boolean[] onStack = new boolean[n];
+      int[] call = new int[n];
+      int[] next = new int[n];
+      int[] p = new int[n];
+      int top = 0, counter = 0, emitted = 0;
+
+      for (int root = 0; root < n; root++) {
+         if (index[root] >= 0) continue;
+         // call stack of the depth-first search
+         int depth = 0;
+         call[0] = root;
+         index[root] = low[root] = counter++;
+         next[root] = Ap[root];
+         stack[top++] = root;
+         onStack[root] = true;
+         while (depth >= 0) {
+            int v = call[depth];
+            if (next[v] < Ap[v+1]) {
+               int w = Aj[next[v]++];
+               if (index[w] < 0) {
+                  index[w] = low[w] = counter++;
+                  next[w] = Ap[w];
+                  stack[top++] = w;
+                  onStack[w] = true;
+                  call[++depth] = w;
+               } else if (onStack[w]) {
+                  low[v] = Math.min(low[v], index[w]);
+               }
+               continue;
+            }
+            // v is finished, a root of a component pops it
+            if (low[v] == index[v]) {
+               int w;
+               do {
+                  w = stack[--top];
+                  onStack[w] = false;
+                  p[emitted++] = w;
+               } while (w != v);
+            }
+            depth--;
+            if (depth >= 0) {
+               int u = call[depth];
+               low[u] = Math.min(low[u], low[v]);
+            }
+         }
+      }
+      return p;
+   }
+
+   /** Bandwidth and profile reducing ordering of a symmetric matrix.
+   <P>
+   Reverse Cuthill-McKee: a breadth first search numbers the nodes level
+   by level, the neighbours of each node by increasing degree, and the
+   order is finally reversed.  Adjacent nodes then lie in the same or in
+   neighbouring levels, so the half bandwidth of A(p,p) is bounded by the
+   width of two levels.  Every connected component starts from a pseudo
+   peripheral node (George and Liu), the end of a long path through it,
+   which makes the levels many and narrow.  A long structure numbered
+   along its length gets a bandwidth of its cross section.
+   @param  A   Square sparse matrix with a symmetric pattern.
+   @return     Permutation p, node p[k] is numbered k-th.
+   */
+
+   public static int[] reverseCuthillMcKee (SparseMatrix A) {
+      int n = A.getRowDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      int[] degree = new int[n];
+      for (int i = 0; i < n; i++) {
+         degree[i] = Ap[i+1] - Ap[i];
+      }
+
+      int[] p = new int[n];
+      boolean[] numbered = new boolean[n];
+      int[] level = new int[n];
+      int[] mark = new int[n];
+      int[] queue = new int[n];
+      int k = 0, search = 0;
+      for (int root = 0; root < n; root++) {
+         if (numbered[root]) continue;
+         // pseudo peripheral node: move to the farthest node of smallest
+         // degree while the number of levels grows
+         int start = root;
+         int size = levels(Ap, Aj, start, numbered, level, mark, ++search, queue);
+         while (true) {
+            int last = level[queue[size-1]];
+            int far = queue[size-1];
+            for (int s = size-1; s >= 0 && level[queue[s]] == last; s--) {
+               if (degree[queue[s]] < degree[far]) far = queue[s];
+            }
+            size = levels(Ap, Aj, far, numbered, level, mark, ++search, queue);
+            if (level[queue[size-1]] <= last) break;
+            start = far;
+         }
+
+         // Cuthill-McKee from the start node
+         int head = k, tail = k;
+         p[tail++] = start;
+         numbered[start] = true;
+         while (head < tail) {
+            int v = p[head++];
+            int first = tail;
+            for (int s = Ap[v]; s < Ap[v+1]; s++) {
+               int w = Aj[s];
+               if (numbered[w]) continue;
+               numbered[w] = true;
+               // insertion by degree, the neighbour lists are short
+               int t = tail++;
+               while (t > first && degree[p[t-1]] > degree[w]) {
+                  p[t] = p[t-1];
+                  t--;
+               }
+               p[t] = w;
+            }
+         }
+         k = tail;
+      }
+
+      for (int i = 0, j = n-1; i < j; i++, j--) {
+         int t = p[i]; p[i] = p[j]; p[j] = t;
+      }
+      return p;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Breadth first search from start over the nodes not yet numbered,
+   level[] gets the distance from start, mark[] the number of the search.
+   Returns the number of nodes reached, queue[0..size) holds them in the
+   order of the search.
+   */
+
+   private static int levels (int[] Ap, int[] Aj, int start, boolean[] numbered,
+                              int[] level, int[] mark, int search, int[] queue) {
+      int head = 0, tail = 0;
+      queue[tail++] = start;
+      level[start] = 0;
+      mark[start] = search;
+      while (head < tail) {
+         int v = queue[head++];
+         for (int s = Ap[v]; s < Ap[v+1]; s++) {
+            int w = Aj[s];
+            if (numbered[w] || mark[w] == search) continue;
+            mark[w] = search;
+            level[w] = level[v] + 1;
+            queue[tail++] = w;
+         }
+      }
+      return tail;
+   }
+
+   /** Minimum degree ordering of an explicit adjacency structure.
+   <P>
+   When a node is eliminated, its neighbours become a clique.  The
+   degrees are kept in a priority queue with lazy deletion, stale
+   entries are skipped when they are polled.
+   */
+
+   static int[] minimumDegree (int[][] adj, int[] size, int n) {
+      boolean[] eliminated = new boolean[n];
+      int[] perm = new int[n];
+      int[] merged = new int[16];
+      PriorityQueue<Long> queue = new PriorityQueue<Long>(Math.max(n,1));
+      for (int j = 0; j < n; j++) {
+         queue.add(key(size[j], j));
+      }
+
+      int k = 0;
+      while (k < n) {
+         long top = queue.poll();
+         int v = (int)(top & 0xffffffffL);
+         int degree = (int)(top >>> 32);
+         if (eliminated[v] || degree != size[v]) continue;
+         eliminated[v] = true;
+         perm[k++] = v;
+
+         // Neighbours of v, without v itself.
+         int[] nv = adj[v];
+         int dv = size[v];
+         for (int a = 0; a < dv; a++) {
+            int u = nv[a];
+            // adj[u] = (adj[u] + adj[v]) - {u, v}
+            int[] nu = adj[u];
+            int du = size[u];
+            if (merged.length < du+dv) {
+               merged = new int[2*(du+dv)];
+            }
+            int len = 0, p = 0, q = 0;
+            while (p < du || q < dv) {
+               int x;
+               if (q >= dv || (p < du && nu[p] < nv[q])) {
+                  x = nu[p++];
+               } else if (p >= du || nv[q] < nu[p]) {
+                  x = nv[q++];
+               } else {
+                  x = nu[p++]; q++;
+               }
+               if (x != u && x != v && !eliminated[x]) merged[len++] = x;
+            }
+            if (adj[u].length < len) {
+               adj[u] = new int[len+len/2];
+            }
+            System.arraycopy(merged, 0, adj[u], 0, len);
+            if (len != size[u]) {
+               size[u] = len;
+               queue.add(key(len, u));
+            }
+         }
+         adj[v] = null;
+      }
+      return perm;
+   }
+
+   /** Sort and remove duplicates in a[0..len), return the new length. */
+
+   static int unique (int[] a, int len) {
+      java.util.Arrays.sort(a, 0, len);
+      int r = 0;
+      for (int p = 0; p < len; p++) {
+         if (r == 0 || a[r-1] != a[p]) a[r++] = a[p];
+      }
+      return r;
+   }
+
+   private static long key (int degree, int node) {
+      return ((long)degree << 32) | node;
+   }
+}
@@ -0,0 +1,294 @@
+package jama;
+import jama.util.*;
+
+   /** Rank revealing sparse QR Decomposition.
+   <P>
+   For an m-by-n sparse matrix A, the decomposition is an upper
+   triangular matrix R and a column permutation Q so that A*Q = Q1*R for
+   some orthogonal Q1, which is not stored.  R is computed row by row with
+   Givens rotations (the method of George and Heath): each row of A is
+   rotated into the rows of R found so far, so only R is kept in memory.
+   The columns are ordered by SparseOrdering.columnOrdering(), the pattern
+   of R is that of the Cholesky factor of A'*A and stays sparse.
+   <P>
+   An entry that would become a diagonal of R but is negligible compared
+   to its original column is dropped (Heath's rule), the column then has
+   no diagonal at all.  Such a column is a linear combination of the
+   columns eliminated before it; rank() is the number of columns with a
+   diagonal.  Every dropped column gives one vector of the null space of A.
+   */
+
+public class SparseQRDecomposition implements java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Default tolerance, relative to the norm of a column.
+   */
+   public static final double DEFAULT_TOLERANCE = 1e-10;
+
+   /** Row and column dimensions.
+   @serial row dimension.
+   @serial column dimension.
+   */
+   private int m, n;
+
+   /** Rows of R in the permuted column order, the diagonal is the first
+   entry; null for a column without a diagonal.
+   @serial column indices of the rows of R.
+   @serial values of the rows of R.
+   */
+   private int[][] Rj;
+   private double[][] Rx;
+
+   /** Column permutation, column q[k] of A is column k of R.
+   @serial column permutation.
+   */
+   private int[] q;
+
+   /** Numerical rank.
+   @serial rank.
+   */
+   private int rank;
+
+/* ------------------------
+   Constructor
+ * ------------------------ */
+
+   /** Sparse QR Decomposition with the default tolerance
+   @param  A   Sparse matrix
+   @return     Structure to access R and the null space.
+   */
+
+   public SparseQRDecomposition (SparseMatrix A) {
+      this(A, DEFAULT_TOLERANCE);
+   }
+
+   /** Sparse QR Decomposition
+   @param  A     Sparse matrix
+   @param  tol   Entries below tol times the norm of their column do not
+                 become diagonals of R.
+   @return       Structure to access R and the null space.
+   */
+
+   public SparseQRDecomposition (SparseMatrix A, double tol) {
+      m = A.getRowDimension();
+      n = A.getColumnDimension();
+      int[] Ap = A.getRowPointers();
+      int[] Aj = A.getColumnIndices();
+      double[] Ax = A.getValues();
+
+      q = SparseOrdering.columnOrdering(A);
+      int[] qinv = new int[n];
+      for (int k = 0; k < n; k++) {
+         qinv[q[k]] = k;
+      }
+
+      // Thresholds for the diagonal, in the permuted order.
+      double[] small = new double[n];
+      for (int p = 0; p < Ap[m]; p++) {
+         small[qinv[Aj[p]]] += Ax[p]*Ax[p];
+      }
+      for (int k = 0; k < n; k++) {
+         small[k] = tol*Math.sqrt(small[k]);
+      }
+
+      // Rows sorted by their first column, so that most of them meet
+      // few rows of R.
+      int[] first = new int[m];
+      int[] count = new int[n+2];
+      for (int i = 0; i < m; i++) {
+         first[i] = n;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            first[i] = Math.min(first[i], qinv[Aj[p]]);
+         }
+         count[first[i]+1]++;
+      }
+      for (int k = 0; k <= n; k++) {
+         count[k+1] += count[k];
+      }
+      int[] order = new int[m];
+      for (int i = 0; i < m; i++) {
+         order[count[first[i]]++] = i;
+      }
+
+      Rj = new int[n][];
+      Rx = new double[n][];
+      rank = 0;
+      int[] wj = new int[n];
+      double[] wx = new double[n];
+      int[] tj = new int[n];
+      double[] tx = new double[n];
+      int[] sj = new int[n];
+      double[] sx = new double[n];
+
+      for (int r = 0; r < m; r++) {
+         int i = order[r];
+         // Row i in the permuted order, sorted.
+         int len = 0;
+         for (int p = Ap[i]; p < Ap[i+1]; p++) {
+            int k = qinv[Aj[p]];
+            int s = len++;
+            while (s > 0 && wj[s-1] > k) {
+               wj[s] = wj[s-1];
+               wx[s] = wx[s-1];
+               s--;
+            }
+            wj[s] = k;
+            wx[s] = Ax[p];
+         }
+
+         int start = 0;
+         while (start < len) {
+            int k = wj[start];
+            double w = wx[start];
+            if (w == 0.0) {
+               start++;
+               continue;
+            }
+            if (Rj[k] == null) {
+               if (Math.abs(w) <= small[k]) {
+                  // Heath's rule, the column depends on the previous ones.
+                  start++;
+                  continue;
+               }
+               Rj[k] = new int[len-start];
+               Rx[k] = new double[len-start];
+               System.arraycopy(wj, start, Rj[k], 0, len-start);
+               System.arraycopy(wx, start, Rx[k], 0, len-start);
+               rank++;
+               break;
+            }
+
+            // Rotate the row into row k of R, the union of both patterns.
+            int[] rj = Rj[k];
+            double[] rx = Rx[k];
+            double h = Maths.hypot(rx[0], w);
+            double c = rx[0]/h;
+            double s = w/h;
+            int a = 1, b = start+1, nr = 1, nw = 0;
+            sj[0] = k;
+            sx[0] = h;
+            while (a < rj.length || b < len) {
+               int j;
+               double ra = 0.0, wb = 0.0;
+               if (b >= len || (a < rj.length && rj[a] < wj[b])) {
+                  j = rj[a];
+                  ra = rx[a++];
+               } else if (a >= rj.length || wj[b] < rj[a]) {
+                  j = wj[b];
+                  wb = wx[b++];
+               } else {
+                  j = rj[a];
+                  ra = rx[a++];
+                  wb = wx[b++];
+               }
+               sj[nr] = j;
+               sx[nr++] = c*ra + s*wb;
+               double t = c*wb - s*ra;
+               if (t != 0.0) {
+                  tj[nw] = j;
+                  tx[nw++] = t;
+               }
+            }
+            if (nr != rj.length) {
+               Rj[k] = rj = new int[nr];
+               Rx[k] = rx = new double[nr];
+            }
+            System.arraycopy(sj, 0, rj, 0, nr);
+            System.arraycopy(sx, 0, rx, 0, nr);
+            int[] ti = wj; wj = tj; tj = ti;
+            double[] td = wx; wx = tx; tx = td;
+            len = nw;
+            start = 0;
+         }
+      }
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Effective numerical matrix rank
+   @return     Number of columns with a diagonal in R.
+   */
+
+   public int rank () {
+      return rank;
+   }
+
+   /** Is the matrix full rank?
+   @return     true if R, and hence A, has full rank.
+   */
+
+   public boolean isFullRank () {
+      return rank == n;
+   }
+
+   /** Column permutation
+   @return     q, column q[k] of A is column k of R.
+   */
+
+   public int[] getColumnPermutation () {
+      int[] p = new int[n];
+      System.arraycopy(q, 0, p, 0, n);
+      return p;
+   }
+
+   /** Return the upper triangular factor, in the permuted column order.
+   @return     R, with zero rows for the columns without a diagonal.
+   */
+
+   public Matrix getR () {
+      Matrix X = new Matrix(n,n);
+      double[][] R = X.getArray();
+      for (int k = 0; k < n; k++) {
+         if (Rj[k] == null) continue;
+         for (int p = 0; p < Rj[k].length; p++) {
+            R[k][Rj[k][p]] = Rx[k][p];
+         }
+      }
+      return X;
+   }
+
+   /** Basis of the null space of A.
+   <P>
+   Column t belongs to the t-th column of R without a diagonal, it is one
+   in that column, zero in the other such columns, and A times it is
+   zero.  The columns are scaled to the largest element one in magnitude.
+   @return     n-by-(n-rank) ColumnMatrix.
+   */
+
+   public ColumnMatrix getNullSpace () {
+      ColumnMatrix N = new ColumnMatrix(n, n-rank);
+      double[] X = N.getArray();
+      double[] x = new double[n];
+      int t = 0;
+      for (int d = 0; d < n; d++) {
+         if (Rj[d] != null) continue;
+         java.util.Arrays.fill(x, 0.0);
+         x[d] = 1.0;
+         // Back substitution with the rows that have a diagonal, the
+         // ones below d only see zeros.
+         double max = 1.0;
+         for (int k = d-1; k >= 0; k--) {
+            int[] rj = Rj[k];
+            if (rj == null) continue;
+            double[] rx = Rx[k];
+            double s = 0.0;
+            for (int p = 1; p < rj.length; p++) {
+               s += rx[p]*x[rj[p]];
+            }
+            x[k] = -s/rx[0];
+            max = Math.max(max, Math.abs(x[k]));
+         }
+         int c = t*n;
+         for (int k = 0; k < n; k++) {
+            X[c + q[k]] = x[k]/max;
+         }
+         t++;
+      }
+      return N;
+   }
+}
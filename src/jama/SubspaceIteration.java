@@ -0,0 +1,282 @@
+package jama;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+   /** Subspace iteration for the lowest eigenpairs of K*x = lambda*M*x.
+   <P>
+   K is a sparse symmetric positive definite matrix (stiffness), M a sparse
+   symmetric one (mass, or the negative geometric stiffness for buckling).  A block of q > k vectors
+   is repeatedly multiplied by inv(K)*M, one multi-column solve with the
+   skyline Cholesky factor of K per step, and projected onto the q-by-q
+   problem (Rayleigh-Ritz) which is solved densely.  The lowest k Ritz
+   values converge with the ratio lambda(k)/lambda(q+1); q = max(2k, k+8)
+   and the starting vectors follow Bathe.  The factor of K may be passed
+   in and shared with a static solution.
+   <P>
+   The eigenvalues are returned in ascending order, the eigenvectors are
+   normalized so that V'*M*V = I.  The projected problem is solved for
+   1/lambda, so M may be singular or indefinite; eigenvectors with
+   x'*M*x <= 0 get lambda = +Infinity and come last.  If K is not
+   positive definite or the iteration does not converge, isConverged()
+   returns false and getConvergedCount() tells how many of the lowest
+   eigenvalues did.
+   */
+
+public class SubspaceIteration implements java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Relative change of the eigenvalues at which the iteration stops.
+   */
+   public static final double DEFAULT_TOLERANCE = 1e-10;
+
+   /** Eigenvalues of the projected K below this fraction of the largest
+   mark dependent subspace vectors.
+   */
+   private static final double DROP_TOLERANCE = 1e-12;
+
+   /** Maximum number of iterations.
+   */
+   public static final int MAX_ITERATIONS = 100;
+
+   /** Eigenvalues, ascending.
+   @serial internal storage of eigenvalues.
+   */
+   private double[] d;
+
+   /** Eigenvectors, one per column.
+   @serial internal storage of eigenvectors.
+   */
+   private ColumnMatrix V;
+
+   /** Number of iterations.
+   @serial iteration count.
+   */
+   private int iterations;
+
+   /** Convergence flag and the number of converged eigenvalues.
+   @serial converged flag.
+   @serial converged count.
+   */
+   private boolean converged;
+   private int nconv;
+
+/* ------------------------
+   Constructors
+ * ------------------------ */
+
+   /** Lowest k eigenpairs, K is factorized in reverse Cuthill-McKee order.
+   @param  K   Symmetric positive definite sparse matrix.
+   @param  M   Symmetric sparse matrix.
+   @param  k   Number of eigenpairs.
+   */
+
+   public SubspaceIteration (SparseMatrix K, SparseMatrix M, int k) {
+      this(new SkylineCholeskyDecomposition(K, SparseOrdering.reverseCuthillMcKee(K)), K, M, k, DEFAULT_TOLERANCE);
+   }
+
+   /** Lowest k eigenpairs with a given factor of K.
+   @param  chol       Skyline Cholesky decomposition of K.
+   @param  K          Symmetric positive definite sparse matrix.
+   @param  M          Symmetric sparse matrix.
+   @param  k          Number of eigenpairs.
+   @param  tolerance  Relative change of the eigenvalues to stop at.
+   @exception  IllegalArgumentException  Matrix dimensions must agree.
+   */
+
+   public SubspaceIteration (SkylineCholeskyDecomposition chol, SparseMatrix K, SparseMatrix M, int k, double tolerance) {
+      int n = K.getRowDimension();
+      if (K.getColumnDimension() != n || M.getRowDimension() != n || M.getColumnDimension() != n) {
+         throw new IllegalArgumentException("Matrix dimensions must agree.");
+      }
+      k = Math.max(0, Math.min(k, n));
+      d = new double[0];
+      V = new ColumnMatrix(n, 0);
+      if (k == 0 || !chol.isSPD()) return;
+
+      int q = Math.min(n, Math.max(2*k, k+8));
+      ColumnMatrix Y = M.times(start(K, M, q));
+      double[] last = null;
+      while (iterations < MAX_ITERATIONS) {
+         iterations++;
+         ColumnMatrix X = chol.solve(Y);
+         Matrix Kr = transposeTimes(X, Y);
+         ColumnMatrix Z = M.times(X);
+         Matrix Mr = transposeTimes(X, Z);
+
+         // Kr*Q = Mr*Q*Lambda through the reciprocal problem in a basis
+         // P with P'*Kr*P = I.  Mr may be singular, then M*X and Kr lose
+         // rank and the dependent directions (lambda = Infinity) drop out.
+         EigenvalueDecomposition KrEig = new EigenvalueDecomposition(Kr);
+         double[] kd = KrEig.getRealEigenvalues();
+         Matrix KrV = KrEig.getV();
+         if (!(kd[q-1] > 0.0)) {
+            converged = false;
+            nconv = 0;
+            break;
+         }
+         int r = 0;
+         for (int j = 0; j < q; j++) {
+            if (kd[j] > DROP_TOLERANCE*kd[q-1]) r++;
+         }
+         Matrix P = new Matrix(q, r);
+         for (int j = 0; j < r; j++) {
+            int c = q-r+j;
+            double s = 1.0/Math.sqrt(kd[c]);
+            for (int i = 0; i < q; i++) {
+               P.set(i, j, KrV.get(i, c)*s);
+            }
+         }
+         EigenvalueDecomposition Eig = new EigenvalueDecomposition(symmetric(P.transpose().times(Mr).times(P)));
+         double[] mu = Eig.getRealEigenvalues();
+         Matrix W = P.times(Eig.getV());
+
+         // Largest mu first, columns normalized to Q'*Mr*Q = I.
+         Matrix Q = new Matrix(q, q);
+         double[] lambda = new double[q];
+         Arrays.fill(lambda, Double.POSITIVE_INFINITY);
+         for (int j = 0; j < r; j++) {
+            int c = r-1-j;
+            double s = mu[c] > 0.0 ? 1.0/Math.sqrt(mu[c]) : 1.0;
+            if (mu[c] > 0.0) lambda[j] = 1.0/mu[c];
+            for (int i = 0; i < q; i++) {
+               Q.set(i, j, W.get(i, c)*s);
+            }
+         }
+         ColumnMatrix Qc = new ColumnMatrix(Q);
+         V = X.times(Qc);
+         Y = Z.times(Qc);
+         d = lambda;
+
+         if (last != null) {
+            nconv = 0;
+            while (nconv < k && (lambda[nconv] == last[nconv]
+                  || Math.abs(lambda[nconv] - last[nconv]) <= tolerance*Math.abs(lambda[nconv]))) {
+               nconv++;
+            }
+            converged = (nconv == k);
+            if (converged) break;
+         }
+         last = lambda;
+      }
+      k = Math.min(k, d.length);
+      d = Arrays.copyOf(d, k);
+      V = V.getMatrix(0, n-1, 0, k-1).copy();
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Has the iteration converged?
+   @return     true if the lowest k eigenvalues settled within the tolerance.
+   */
+
+   public boolean isConverged () {
+      return converged;
+   }
+
+   /** Number of converged eigenvalues, counted from the lowest.  Less
+   than k if the iteration stopped at MAX_ITERATIONS, the lowest ones
+   may still be used.
+   @return     Number of leading eigenvalues that settled.
+   */
+
+   public int getConvergedCount () {
+      return nconv;
+   }
+
+   /** Number of iterations.
+   @return     Subspace iterations performed.
+   */
+
+   public int getIterations () {
+      return iterations;
+   }
+
+   /** Return the eigenvalues
+   @return     lambda, ascending.
+   */
+
+   public double[] getRealEigenvalues () {
+      return d.clone();
+   }
+
+   /** Return the eigenvector matrix
+   @return     V, n-by-k with V'*M*V = I.
+   */
+
+   public ColumnMatrix getV () {
+      return V;
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Starting vectors: the diagonal of M, unit vectors at the largest
+   ratios M(i,i)/K(i,i) and one random vector.  The whole space if q = n.
+   */
+
+   private static ColumnMatrix start (SparseMatrix K, SparseMatrix M, int q) {
+      int n = K.getRowDimension();
+      ColumnMatrix X = new ColumnMatrix(n, q);
+      if (q == n) {
+         for (int i = 0; i < n; i++) {
+            X.set(i, i, 1.0);
+         }
+         return X;
+      }
+      final double[] ratio = new double[n];
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++) {
+         double m = M.get(i, i);
+         X.set(i, 0, m != 0.0 ? m : 1.0);
+         ratio[i] = m/K.get(i, i);
+         order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         public int compare (Integer a, Integer b) {
+            return Double.compare(ratio[b], ratio[a]);
+         }
+      });
+      for (int j = 1; j < q-1; j++) {
+         X.set(order[j-1], j, 1.0);
+      }
+      Random random = new Random(1);
+      for (int i = 0; i < n; i++) {
+         X.set(i, q-1, random.nextDouble());
+      }
+      return X;
+   }
+
+   /** A'*B for n-by-q matrices, symmetrized. */
+
+   private static Matrix transposeTimes (ColumnMatrix A, ColumnMatrix B) {
+      int n = A.getRowDimension();
+      int q = A.getColumnDimension();
+      Matrix C = new Matrix(q, q);
+      double[] a = A.getArray();
+      double[] b = B.getArray();
+      for (int i = 0; i < q; i++) {
+         int pa = A.getOffset() + i*A.getLeadingDimension();
+         for (int j = 0; j < q; j++) {
+            int pb = B.getOffset() + j*B.getLeadingDimension();
+            double s = 0.0;
+            for (int r = 0; r < n; r++) {
+               s += a[pa+r]*b[pb+r];
+            }
+            C.set(i, j, s);
+         }
+      }
+      return symmetric(C);
+   }
+
+   private static Matrix symmetric (Matrix A) {
+      return A.plus(A.transpose()).times(0.5);
+   }
+}
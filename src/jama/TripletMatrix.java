@@ -0,0 +1,196 @@
+package jama;
+
+   /** Sparse matrix in triplet (coordinate) form.
+   <P>
+   The triplet form is meant for assembly: entries are appended one at
+   a time as (row, column, value) and duplicates are allowed.  Once the
+   assembly is finished, compress() converts the triplets into a
+   SparseMatrix in compressed row form, summing the duplicate entries.
+   */
+
+public class TripletMatrix implements java.io.Serializable {
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Row and column dimensions.
+   @serial row dimension.
+   @serial column dimension.
+   */
+   private int m, n;
+
+   /** Number of stored triplets.
+   @serial number of triplets.
+   */
+   private int nz;
+
+   /** Row indices, column indices and values of the triplets.
+   @serial row indices.
+   @serial column indices.
+   @serial values.
+   */
+   private int[] Ti, Tj;
+   private double[] Tx;
+
+/* ------------------------
+   Constructors
+ * ------------------------ */
+
+   /** Construct an empty m-by-n triplet matrix.
+   @param m         Number of rows.
+   @param n         Number of colums.
+   @param capacity  Expected number of entries.
+   */
+
+   public TripletMatrix (int m, int n, int capacity) {
+      this.m = m;
+      this.n = n;
+      capacity = Math.max(capacity, 4);
+      Ti = new int[capacity];
+      Tj = new int[capacity];
+      Tx = new double[capacity];
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Append an entry, duplicate entries are summed by compress().
+   @param i    Row index.
+   @param j    Column index.
+   @param x    A(i,j) increment.
+   @exception  ArrayIndexOutOfBoundsException
+   */
+
+   public void add (int i, int j, double x) {
+      if (i < 0 || i >= m || j < 0 || j >= n) {
+         throw new ArrayIndexOutOfBoundsException("Triplet index out of bounds.");
+      }
+      if (nz == Ti.length) {
+         int[] newTi = new int[2*nz];
+         int[] newTj = new int[2*nz];
+         double[] newTx = new double[2*nz];
+         System.arraycopy(Ti, 0, newTi, 0, nz);
+         System.arraycopy(Tj, 0, newTj, 0, nz);
+         System.arraycopy(Tx, 0, newTx, 0, nz);
+         Ti = newTi;
+         Tj = newTj;
+         Tx = newTx;
+      }
+      Ti[nz] = i;
+      Tj[nz] = j;
+      Tx[nz] = x;
+      nz++;
+   }
+
+   /** Get row dimension.
+   @return     m, the number of rows.
+   */
+
+   public int getRowDimension () {
+      return m;
+   }
+
+   /** Get column dimension.
+   @return     n, the number of columns.
+   */
+
+   public int getColumnDimension () {
+      return n;
+   }
+
+   /** Number of stored triplets (including duplicates).
+   @return     nz
+   */
+
+   public int getTripletCount () {
+      return nz;
+   }
+
+   /** Convert to compressed row form.
+   <P>
+   Duplicate entries are summed and column indices within each row
+   are sorted.  Entries that sum to an exact zero are kept, so that the
+   sparsity pattern depends only on which triplets were added.
+   @return     SparseMatrix with the same entries.
+   */
+
+   public SparseMatrix compress () {
+      // Count entries per row.
+      int[] rowPtr = new int[m+1];
+      for (int k = 0; k < nz; k++) {
+         rowPtr[Ti[k]+1]++;
+      }
+      for (int i = 0; i < m; i++) {
+         rowPtr[i+1] += rowPtr[i];
+      }
+
+      // Bucket the triplets by row, keeping the insertion order.
+      int[] next = new int[m];
+      System.arraycopy(rowPtr, 0, next, 0, m);
+      int[] cols = new int[nz];
+      double[] vals = new double[nz];
+      for (int k = 0; k < nz; k++) {
+         int p = next[Ti[k]]++;
+         cols[p] = Tj[k];
+         vals[p] = Tx[k];
+      }
+
+      // Sum duplicates and sort each row by column.  The marker array
+      // remembers where a column was last stored in the current row.
+      int[] mark = new int[n];
+      java.util.Arrays.fill(mark, -1);
+      int[] Ap = new int[m+1];
+      int[] Aj = new int[nz];
+      double[] Ax = new double[nz];
+      int count = 0;
+      for (int i = 0; i < m; i++) {
+         int start = count;
+         for (int p = rowPtr[i]; p < rowPtr[i+1]; p++) {
+            int j = cols[p];
+            if (mark[j] >= start) {
+               Ax[mark[j]] += vals[p];
+            } else {
+               mark[j] = count;
+               Aj[count] = j;
+               Ax[count] = vals[p];
+               count++;
+            }
+         }
+         sortRow(Aj, Ax, start, count);
+         Ap[i+1] = count;
+      }
+
+      if (count < nz) {
+         int[] newAj = new int[count];
+         double[] newAx = new double[count];
+         System.arraycopy(Aj, 0, newAj, 0, count);
+         System.arraycopy(Ax, 0, newAx, 0, count);
+         Aj = newAj;
+         Ax = newAx;
+      }
+      return new SparseMatrix(m, n, Ap, Aj, Ax);
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   /** Insertion sort of one row, rows are short. */
+
+   private static void sortRow (int[] Aj, double[] Ax, int from, int to) {
+      for (int p = from+1; p < to; p++) {
+         int j = Aj[p];
+         double x = Ax[p];
+         int q = p-1;
+         while (q >= from && Aj[q] > j) {
+            Aj[q+1] = Aj[q];
+            Ax[q+1] = Ax[q];
+            q--;
+         }
+         Aj[q+1] = j;
+         Ax[q+1] = x;
+      }
+   }
+}
@@ -855,6 +855,435 @@ public class TestMatrix {
          errorCount = try_failure(errorCount,"EigenvalueDecomposition (nonsymmetric)...","incorrect nonsymmetric Eigenvalue decomposition calculation");
       }
 
+/**
+      Sparse matrices:
+         TripletMatrix, compress
+         SparseMatrix times, transpose
+         LUDecomposition(SparseMatrix)
+         SparseLUDecomposition
+**/
+
+      print("\nTesting sparse matrices...\n");
+      A = new Matrix(pvals);
+      TripletMatrix TA = new TripletMatrix(3,3,4);
+      for (int i = 0; i < 3; i++) {
+         for (int j = 2; j >= 0; j--) {
+            TA.add(i,j,0.5*pvals[i][j]);
+            TA.add(i,j,0.5*pvals[i][j]);
+         }
+      }
+      SparseMatrix SA = TA.compress();
+      try {
+         check(SA.toDense(),A);
+         check(SA.transpose().toDense(),A.transpose());
+         try_success("TripletMatrix compress()...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"TripletMatrix compress()...","incorrect compressed matrix");
+      }
+      try {
+         check(SA.times(new double[] {1.,2.,3.}),
+               A.times(new Matrix(new double[] {1.,2.,3.},3)).getColumnPackedCopy());
+         try_success("SparseMatrix times(double[])...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SparseMatrix times(double[])...","incorrect sparse product");
+      }
+      try {
+         check(new LUDecomposition(SA).solve(Matrix.identity(3,3)),A.inverse());
+         try_success("LUDecomposition(SparseMatrix)...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"LUDecomposition(SparseMatrix)...","incorrect LU decomposition of a sparse matrix");
+      }
+
+      TA = new TripletMatrix(6,6,18);
+      for (int i = 0; i < 6; i++) {
+         TA.add(i,(i+1)%6,2.+i);
+         TA.add(i,(i+3)%6,-1.);
+         if (i % 2 == 0) TA.add(i,i,1.e-3);
+      }
+      SA = TA.compress();
+      A = SA.toDense();
+      SparseLUDecomposition SLU = new SparseLUDecomposition(SA);
+      try {
+         check(SLU.solve(Matrix.identity(6,6)),A.inverse());
+         check(SLU.det(),A.det());
+         try_success("SparseLUDecomposition...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SparseLUDecomposition...","incorrect sparse LU decomposition calculation");
+      }
+      TA = new TripletMatrix(3,3,6);
+      TA.add(0,0,1.); TA.add(0,1,2.);
+      TA.add(1,0,2.); TA.add(1,1,4.);
+      TA.add(2,2,1.);
+      if (!new SparseLUDecomposition(TA.compress()).isNonsingular()) {
+         try_success("SparseLUDecomposition isNonsingular()...","");
+      } else {
+         errorCount = try_failure(errorCount,"SparseLUDecomposition isNonsingular()...","singular matrix not detected");
+      }
+      Factorization F = new LUDecomposition(A);
+      try {
+         check(F.solve(new double[] {1.,0.,0.,0.,0.,0.}),
+               SLU.solve(new double[] {1.,0.,0.,0.,0.,0.}));
+         if (!(F.getPivotRatio() > 0. && SLU.getPivotRatio() > 0.)) {
+            throw new RuntimeException("Pivot ratio of a nonsingular matrix is zero.");
+         }
+         try_success("Factorization solve(double[])...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"Factorization solve(double[])...","dense and sparse solutions differ");
+      }
+      B = new Matrix(3,3);
+      B.set(0,0,1.); B.set(0,1,2.);
+      B.set(1,0,2.); B.set(1,1,4.+1.e-14);
+      B.set(2,2,1.);
+      if (new LUDecomposition(B).getPivotRatio() < 1.e-10) {
+         try_success("LUDecomposition getPivotRatio()...","");
+      } else {
+         errorCount = try_failure(errorCount,"LUDecomposition getPivotRatio()...","nearly singular matrix not detected");
+      }
+
+      /** 
+         Column packed matrices:
+            ColumnMatrix(Matrix), getMatrix view, times, toMatrix
+            LUDecomposition, SparseLUDecomposition, CholeskyDecomposition solve(ColumnMatrix)
+      **/
+
+      print("\nTesting column packed matrices...\n");
+      B = new Matrix(3,3);
+      B.set(0,0,4.); B.set(0,1,1.); B.set(0,2,2.);
+      B.set(1,0,1.); B.set(1,1,5.); B.set(1,2,3.);
+      B.set(2,0,2.); B.set(2,1,3.); B.set(2,2,6.);
+      ColumnMatrix CB = new ColumnMatrix(B);
+      try {
+         check(CB.toMatrix(),B);
+         check(CB.times(CB).toMatrix(),B.times(B));
+         ColumnMatrix view = CB.getMatrix(1,2,1,2);
+         view.set(0,0,7.);
+         if (CB.get(1,1) != 7. || view.get(1,0) != B.get(2,1)) {
+            throw new RuntimeException("Submatrix is not a view.");
+         }
+         view.set(0,0,5.);
+         try_success("ColumnMatrix...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"ColumnMatrix...","incorrect column packed matrix");
+      }
+      Matrix RHS = new Matrix(3,2);
+      RHS.set(0,0,1.); RHS.set(1,1,2.); RHS.set(2,0,3.);
+      double[] RHSvals = new double[8];
+      ColumnMatrix CRHS = new ColumnMatrix(RHSvals,3,2,4,1);
+      for (int i = 0; i < 3; i++) {
+         for (int j = 0; j < 2; j++) {
+            CRHS.set(i,j,RHS.get(i,j));
+         }
+      }
+      TA = new TripletMatrix(3,3,9);
+      for (int i = 0; i < 3; i++) {
+         for (int j = 0; j < 3; j++) {
+            TA.add(i,j,B.get(i,j));
+         }
+      }
+      try {
+         check(new LUDecomposition(CB).solve(CRHS).toMatrix(),B.solve(RHS));
+         check(new SparseLUDecomposition(TA.compress()).solve(CRHS).toMatrix(),B.solve(RHS));
+         check(CB.chol().solve(CRHS).toMatrix(),B.chol().solve(RHS));
+         try_success("solve(ColumnMatrix)...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"solve(ColumnMatrix)...","incorrect solution with a column packed right hand side");
+      }
+
+      /** 
+         Parallel kernels:
+            times, LUDecomposition, QRDecomposition, CholeskyDecomposition
+            computed with the threshold forced to zero must equal
+            the sequential results exactly
+      **/
+
+      print("\nTesting parallel kernels...\n");
+      int oldParallelism = jama.util.Parallel.getParallelism();
+      long oldThreshold = jama.util.Parallel.getThreshold();
+      java.util.Random rnd = new java.util.Random(7);
+      int np = 120;
+      Matrix PA = new Matrix(np,np);
+      for (int i = 0; i < np; i++) {
+         for (int j = 0; j < np; j++) {
+            PA.set(i,j,rnd.nextDouble()-0.5);
+         }
+      }
+      Matrix PS = PA.transpose().times(PA).plus(Matrix.identity(np,np).times(np));
+      Matrix[] seq = new Matrix[4];
+      Matrix[] par = new Matrix[4];
+      for (int pass = 0; pass < 2; pass++) {
+         Matrix[] res = (pass == 0) ? seq : par;
+         jama.util.Parallel.setParallelism(pass == 0 ? 1 : 4);
+         jama.util.Parallel.setThreshold(pass == 0 ? oldThreshold : 0);
+         res[0] = PA.times(PS);
+         res[1] = new LUDecomposition(PA).getU();
+         res[2] = new QRDecomposition(PA).getR();
+         res[3] = new CholeskyDecomposition(PS).getL();
+      }
+      jama.util.Parallel.setParallelism(oldParallelism);
+      jama.util.Parallel.setThreshold(oldThreshold);
+      String[] names = {"times","LUDecomposition","QRDecomposition","CholeskyDecomposition"};
+      for (int i = 0; i < 4; i++) {
+         if (java.util.Arrays.deepEquals(seq[i].getArray(),par[i].getArray())) {
+            try_success("parallel " + names[i] + "...","");
+         } else {
+            errorCount = try_failure(errorCount,"parallel " + names[i] + "...","differs from the sequential result");
+         }
+      }
+
+      /**
+         SparseQRDecomposition:
+            rank of a rank deficient matrix and its null space
+      **/
+
+      print("\nTesting sparse QR...\n");
+      // row 2 is the sum of rows 0 and 1, columns 1 and 3 are equal, rank 3
+      double[][] qrvals = {{1.,2.,0.,2.},{0.,1.,3.,1.},{1.,3.,3.,3.},{4.,0.,1.,0.}};
+      TripletMatrix TQ = new TripletMatrix(4,4,16);
+      for (int i = 0; i < 4; i++) {
+         for (int j = 0; j < 4; j++) {
+            if (qrvals[i][j] != 0.) TQ.add(i,j,qrvals[i][j]);
+         }
+      }
+      SparseQRDecomposition SQR = new SparseQRDecomposition(TQ.compress());
+      SparseQRDecomposition SQRt = new SparseQRDecomposition(TQ.compress().transpose());
+      try {
+         check(SQR.rank(),new Matrix(qrvals).rank());
+         check(SQRt.rank(),SQR.rank());
+         try_success("SparseQRDecomposition rank()...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SparseQRDecomposition rank()...","incorrect rank");
+      }
+      try {
+         ColumnMatrix NQ = SQR.getNullSpace();
+         ColumnMatrix NQt = SQRt.getNullSpace();
+         double eps = Math.pow(2.0,-52.0);
+         double qrnorm = new Matrix(qrvals).norm1();
+         if (new Matrix(qrvals).times(NQ.toMatrix()).norm1() > 1000*eps*qrnorm
+               || new Matrix(qrvals).transpose().times(NQt.toMatrix()).norm1() > 1000*eps*qrnorm
+               || NQ.getColumnDimension() != 1 || NQt.getColumnDimension() != 1) {
+            throw new RuntimeException("Wrong null space dimension.");
+         }
+         try_success("SparseQRDecomposition getNullSpace()...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SparseQRDecomposition getNullSpace()...","A times the null space is not zero");
+      }
+
+      /**
+         Iterative solvers:
+            GMRESSolver, BiCGSTABSolver with ILUPreconditioner,
+            CGSolver with JacobiPreconditioner
+            must agree with SparseLUDecomposition to the tolerance
+      **/
+
+      print("\nTesting iterative solvers...\n");
+      int ni = 40;
+      TripletMatrix TN = new TripletMatrix(ni,ni,3*ni);
+      TripletMatrix TS = new TripletMatrix(ni,ni,3*ni);
+      double[] bi = new double[ni];
+      for (int i = 0; i < ni; i++) {
+         // rows shifted by one, the diagonal of TN is zero
+         int r = (i+1) % ni;
+         TN.add(r,i,4.);
+         TS.add(i,i,4.);
+         if (i+1 < ni) {
+            TN.add(r,i+1,-1.);
+            TS.add(i,i+1,-1.);
+            TS.add(i+1,i,-1.);
+         }
+         if (i > 0) {
+            TN.add(r,i-1,-2.);
+         }
+         bi[i] = rnd.nextDouble();
+      }
+      SparseMatrix SN = TN.compress();
+      SparseMatrix SS = TS.compress();
+      IterativeSolver[] solvers = {
+         new GMRESSolver(SN, new ILUPreconditioner(SN)),
+         new BiCGSTABSolver(SN, new ILUPreconditioner(SN)),
+         new CGSolver(SS, new JacobiPreconditioner(SS))
+      };
+      for (int k = 0; k < solvers.length; k++) {
+         String name = solvers[k].getClass().getSimpleName();
+         double[] xd = new SparseLUDecomposition(k < 2 ? SN : SS).solve(bi);
+         double[] xi = solvers[k].solve(bi);
+         double err = 0.0;
+         for (int i = 0; i < ni; i++) {
+            err = Math.max(err, Math.abs(xi[i]-xd[i]));
+         }
+         if (solvers[k].hasConverged() && err < 1e-8) {
+            try_success(name + "...","");
+         } else {
+            errorCount = try_failure(errorCount,name + "...","differs from the direct solution");
+         }
+      }
+
+      /**
+         Skyline Cholesky:
+            reverseCuthillMcKee restores the band of a shuffled tridiagonal
+            matrix, SkylineCholeskyDecomposition of it must agree with
+            CholeskyDecomposition
+      **/
+
+      print("\nTesting skyline Cholesky...\n");
+      int[] shuffle = new int[ni];
+      for (int i = 0; i < ni; i++) {
+         shuffle[i] = i;
+      }
+      for (int i = ni-1; i > 0; i--) {
+         int k = rnd.nextInt(i+1);
+         int t = shuffle[i]; shuffle[i] = shuffle[k]; shuffle[k] = t;
+      }
+      TripletMatrix TP = new TripletMatrix(ni,ni,3*ni);
+      for (int i = 0; i < ni; i++) {
+         TP.add(shuffle[i],shuffle[i],4.);
+         if (i+1 < ni) {
+            TP.add(shuffle[i],shuffle[i+1],-1.);
+            TP.add(shuffle[i+1],shuffle[i],-1.);
+         }
+      }
+      SparseMatrix SP = TP.compress();
+      int[] rcm = SparseOrdering.reverseCuthillMcKee(SP);
+      SkylineCholeskyDecomposition SChol = new SkylineCholeskyDecomposition(SP, rcm);
+      try {
+         check(SChol.getBandwidth(),1);
+         check(SChol.getL().times(SChol.getL().transpose()),SP.toDense().getMatrix(rcm,rcm));
+         try_success("SkylineCholeskyDecomposition...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SkylineCholeskyDecomposition...","incorrect skyline Cholesky decomposition calculation");
+      }
+      try {
+         double[] xs = bi.clone();
+         SChol.solve(xs);
+         check(new Matrix(xs,ni),SP.toDense().chol().solve(new Matrix(bi,ni)));
+         check(SChol.solve(new ColumnMatrix(new Matrix(bi,ni))).toMatrix(),new Matrix(xs,ni));
+         double[] negative = SP.getValues().clone();
+         for (int k = 0; k < negative.length; k++) {
+            negative[k] = -negative[k];
+         }
+         if (!new SkylineCholeskyDecomposition(new SparseMatrix(ni,ni,SP.getRowPointers(),SP.getColumnIndices(),negative),rcm).isSPD()) {
+            try_success("SkylineCholeskyDecomposition solve()...","");
+         } else {
+            throw new RuntimeException("Wrong isSPD flag.");
+         }
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SkylineCholeskyDecomposition solve()...","incorrect skyline Cholesky solve calculation");
+      }
+
+      /**
+         Static condensation:
+            condensing the interior of the shuffled tridiagonal matrix
+            above (every third unknown is on the boundary) to
+            S = K_bb - K_bi*X with X = K_ii^-1*K_ib, solving the boundary
+            and recovering the interior from u_i = K_ii^-1*f_i - X*u_b
+            must agree with the uncondensed solve
+      **/
+
+      print("\nTesting static condensation...\n");
+      int[] bnd = new int[(ni+2)/3];
+      int[] inr = new int[ni-bnd.length];
+      for (int i = 0, nb = 0, nr = 0; i < ni; i++) {
+         if (i % 3 == 0) bnd[nb++] = i;
+         else inr[nr++] = i;
+      }
+      Matrix KC = SP.toDense();
+      TripletMatrix TC = new TripletMatrix(inr.length,inr.length,3*inr.length);
+      for (int i = 0; i < inr.length; i++) {
+         for (int j = 0; j < inr.length; j++) {
+            if (KC.get(inr[i],inr[j]) != 0) TC.add(i,j,KC.get(inr[i],inr[j]));
+         }
+      }
+      SparseMatrix SII = TC.compress();
+      SkylineCholeskyDecomposition CI = new SkylineCholeskyDecomposition(SII, SparseOrdering.reverseCuthillMcKee(SII));
+      Matrix KIB = KC.getMatrix(inr,bnd);
+      Matrix XC = CI.solve(new ColumnMatrix(KIB)).toMatrix();
+      Matrix SC = KC.getMatrix(bnd,bnd).minus(KIB.transpose().times(XC));
+      Matrix BC = new Matrix(bi,ni);
+      Matrix FI = BC.getMatrix(inr,0,0);
+      try {
+         Matrix UB = SC.solve(BC.getMatrix(bnd,0,0).minus(XC.transpose().times(FI)));
+         Matrix UI = CI.solve(new ColumnMatrix(FI)).toMatrix().minus(XC.times(UB));
+         Matrix UC = KC.chol().solve(BC);
+         check(UB,UC.getMatrix(bnd,0,0));
+         check(UI,UC.getMatrix(inr,0,0));
+         try_success("static condensation...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"static condensation...","condensed solve does not agree with the full solve");
+      }
+
+      /**
+         Mixed precision LU:
+            MixedPrecisionLUDecomposition of the nonsymmetric matrix above
+            must agree with SparseLUDecomposition after refinement,
+            a matrix too ill conditioned for single precision falls back
+            to the double precision factorization
+      **/
+
+      print("\nTesting mixed precision LU...\n");
+      MixedPrecisionLUDecomposition MLU = new MixedPrecisionLUDecomposition(SN);
+      try {
+         check(new Matrix(MLU.solve(bi),ni),new Matrix(new SparseLUDecomposition(SN).solve(bi),ni));
+         if (!MLU.isSinglePrecision() || MLU.getRefinementSteps() < 1
+               || MLU.getResidual() > Math.sqrt(ni)*Math.pow(2.0,-53.0)) {
+            throw new RuntimeException("refinement did not converge");
+         }
+         try_success("MixedPrecisionLUDecomposition solve()...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"MixedPrecisionLUDecomposition solve()...","incorrect refined solution");
+      }
+      TA = new TripletMatrix(2,2,4);
+      TA.add(0,0,1.); TA.add(0,1,1.);
+      TA.add(1,0,1.); TA.add(1,1,1.+1e-9);
+      MLU = new MixedPrecisionLUDecomposition(TA.compress());
+      try {
+         if (MLU.isSinglePrecision() || !MLU.isNonsingular()) {
+            throw new RuntimeException("no fallback");
+         }
+         check(MLU.solve(new double[] {2.,2.+1e-9}),new double[] {1.,1.});
+         try_success("MixedPrecisionLUDecomposition fallback...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"MixedPrecisionLUDecomposition fallback...","ill conditioned matrix not refactorized in double precision");
+      }
+
+      /**
+         Subspace iteration:
+            SubspaceIteration of a second difference matrix with a
+            diagonal mass matrix must agree with the lowest eigenvalues of
+            the dense EigenvalueDecomposition of M^-1/2*K*M^-1/2,
+            the eigenvectors must be mass normalized.
+      **/
+
+      print("\nTesting subspace iteration...\n");
+      TripletMatrix TK = new TripletMatrix(ni,ni,3*ni);
+      for (int i = 0; i < ni; i++) {
+         TK.add(i,i,2.);
+         if (i+1 < ni) {
+            TK.add(i,i+1,-1.);
+            TK.add(i+1,i,-1.);
+         }
+      }
+      SparseMatrix SK = TK.compress();
+      TripletMatrix TM = new TripletMatrix(ni,ni,ni);
+      Matrix MH = new Matrix(ni,ni);
+      for (int i = 0; i < ni; i++) {
+         double mi = 1. + (i % 3);
+         TM.add(i,i,mi);
+         MH.set(i,i,1./Math.sqrt(mi));
+      }
+      SparseMatrix SM = TM.compress();
+      SubspaceIteration SI = new SubspaceIteration(SK,SM,3);
+      try {
+         if (!SI.isConverged()) {
+            throw new RuntimeException("no convergence");
+         }
+         double[] lambda = new EigenvalueDecomposition(MH.times(SK.toDense()).times(MH)).getRealEigenvalues();
+         check(new Matrix(SI.getRealEigenvalues(),3),new Matrix(lambda,ni).getMatrix(0,2,0,0));
+         Matrix VS = SI.getV().toMatrix();
+         check(VS.transpose().times(SM.toDense()).times(VS),Matrix.identity(3,3));
+         try_success("SubspaceIteration...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"SubspaceIteration...","incorrect lowest eigenpairs");
+      }
+
       print("\nTestMatrix completed.\n");
       print("Total errors reported: " + Integer.toString(errorCount) + "\n");
       print("Total warnings reported: " + Integer.toString(warningCount) + "\n");
@@ -0,0 +1,187 @@
+package jama.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+   /** Fork-join execution of the matrix kernels.
+   <P>
+   A kernel hands over a range of independent rows or columns together
+   with an estimate of its work (the number of multiply-adds).  Ranges
+   with at least getThreshold() operations are split into chunks that
+   run in a shared fork-join pool, smaller ones run in the calling thread
+   so that the many small systems are not slowed down by the overhead.
+   <P>
+   The parallelism is the number of available processors by default, it
+   may be set by the system property jama.parallelism or by
+   setParallelism().  A parallelism of 1 turns the parallel execution off.
+   The results do not depend on the parallelism, every chunk performs the
+   same operations in the same order as the sequential code.
+   */
+
+public class Parallel {
+
+   /** A loop over a range of indices.
+   */
+
+   public static interface Loop {
+
+      /** Run the loop for the indices from..to-1.
+      @param from  First index.
+      @param to    Last index plus one.
+      */
+
+      public void run (int from, int to);
+   }
+
+/* ------------------------
+   Class variables
+ * ------------------------ */
+
+   /** Default number of multiply-adds from which a loop runs in parallel.
+   */
+   public static final long DEFAULT_THRESHOLD = 1L << 17;
+
+   /** Number of chunks per worker thread, more chunks balance the load
+   when the work per index is not uniform.
+   */
+   private static final int CHUNKS_PER_THREAD = 4;
+
+   private static volatile int parallelism = defaultParallelism();
+
+   private static volatile long threshold = DEFAULT_THRESHOLD;
+
+   /** Pool of worker threads, created on first use.
+   */
+   private static ForkJoinPool pool;
+
+   private Parallel () {
+   }
+
+/* ------------------------
+   Public Methods
+ * ------------------------ */
+
+   /** Get the number of worker threads.
+   @return     parallelism, 1 if the kernels run sequentially.
+   */
+
+   public static int getParallelism () {
+      return parallelism;
+   }
+
+   /** Set the number of worker threads.
+   @param p    parallelism, 1 runs the kernels sequentially.
+   @exception  IllegalArgumentException Parallelism must be positive.
+   */
+
+   public static synchronized void setParallelism (int p) {
+      if (p < 1) {
+         throw new IllegalArgumentException("Parallelism must be positive.");
+      }
+      if (p == parallelism) {
+         return;
+      }
+      parallelism = p;
+      if (pool != null) {
+         pool.shutdown();
+         pool = null;
+      }
+   }
+
+   /** Get the amount of work from which a loop runs in parallel.
+   @return     number of multiply-adds.
+   */
+
+   public static long getThreshold () {
+      return threshold;
+   }
+
+   /** Set the amount of work from which a loop runs in parallel.
+   @param t    number of multiply-adds.
+   */
+
+   public static void setThreshold (long t) {
+      threshold = t;
+   }
+
+   /** Run a loop over the indices from..to-1, in parallel if it is big enough.
+   <P>
+   The loop body is called for disjoint subranges covering from..to-1.
+   The subranges must be independent of each other.
+   @param from  First index.
+   @param to    Last index plus one.
+   @param work  Estimated number of multiply-adds of the whole range.
+   @param loop  Loop body.
+   */
+
+   public static void forRange (int from, int to, long work, Loop loop) {
+      int p = parallelism;
+      if (p <= 1 || work < threshold || to - from < 2) {
+         loop.run(from, to);
+         return;
+      }
+      int chunks = Math.min(to - from, p*CHUNKS_PER_THREAD);
+      int grain = (to - from + chunks - 1)/chunks;
+      RangeTask task = new RangeTask(from, to, grain, loop);
+      if (ForkJoinTask.inForkJoinPool()) {
+         // nested call from a worker, the pool is already busy
+         task.invoke();
+      } else {
+         pool().invoke(task);
+      }
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   private static synchronized ForkJoinPool pool () {
+      if (pool == null) {
+         pool = new ForkJoinPool(parallelism);
+      }
+      return pool;
+   }
+
+   private static int defaultParallelism () {
+      int p = Runtime.getRuntime().availableProcessors();
+      try {
+         String s = System.getProperty("jama.parallelism");
+         if (s != null) {
+            p = Integer.parseInt(s.trim());
+         }
+      } catch (SecurityException e) {
+         // applet, keep the default
+      } catch (NumberFormatException e) {
+         // keep the default
+      }
+      return Math.max(p, 1);
+   }
+
+   /** Splits its range in halves down to the grain size.
+   */
+
+   private static class RangeTask extends RecursiveAction {
+      private static final long serialVersionUID = 1;
+
+      private final int from, to, grain;
+      private final Loop loop;
+
+      RangeTask (int from, int to, int grain, Loop loop) {
+         this.from = from;
+         this.to = to;
+         this.grain = grain;
+         this.loop = loop;
+      }
+
+      protected void compute () {
+         if (to - from <= grain) {
+            loop.run(from, to);
+            return;
+         }
+         int mid = (from + to) >>> 1;
+         invokeAll(new RangeTask(from, mid, grain, loop),
+                   new RangeTask(mid, to, grain, loop));
+      }
+   }
+}
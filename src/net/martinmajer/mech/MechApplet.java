@@ -46,8 +46,9 @@ public class MechApplet extends JApplet {
 		}*/
 
 		MechCanvas canvas = new MechCanvas(true);
-		canvas.model = new Model();
-		canvas.model.recalculate();
+		Model model = new Model();
+		model.recalculate();
+		canvas.setModel(model);
 		getContentPane().add(canvas);
 	}
 
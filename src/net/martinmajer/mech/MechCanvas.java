@@ -46,6 +46,9 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 	/** Model. */
 	public Model model;
 
+	/** Přepočet modelu na pozadí. */
+	public MechSolver solver = new MechSolver(this);
+
 	// ====== ZOBRAZENÍ MODELU ======
 
 	/** Počátek souřadného systému. */
@@ -74,25 +77,30 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 	private ArrayList <ModelEntity> activeObjects = new ArrayList <ModelEntity>();
 
 
-	public static enum ViewMode { EDITOR, NORMAL_FORCE, SHEAR_FORCE, BENDING_MOMENT };
+	public static enum ViewMode { EDITOR, NORMAL_FORCE, SHEAR_FORCE, BENDING_MOMENT, MODE_SHAPE, BUCKLING_SHAPE };
 
 	public ViewMode viewMode = ViewMode.EDITOR;
 
 	public Beam isolatedBeam = null;
 
+	/** Zobrazený vlastní tvar kmitání (nebo vybočení) a časovač jeho animace. */
+	private int modeIndex = 0;
+	private javax.swing.Timer modeTimer;
+
 
 	// ====== PŘÍDAVNÉ KOMPONENTY ======
 
 	// tlačítka
 	private MechCanvasButton btnBeam, btnForce, btnMoment, btnLoad, btnSupport;
-	private MechCanvasButton btnEditor, btnShear, btnNormal, btnBendMoment;
+	private MechCanvasButton btnEditor, btnShear, btnNormal, btnBendMoment, btnModeShape;
 
 	/** Vyskakovací menu. */
 	private JPopupMenu popupMenu = new JPopupMenu();
 
 	private JMenu menuModel;
+	private JMenu menuLoadCases;
 	private JMenu menuViewMode;
-	private JRadioButtonMenuItem menuViewModeEditor, menuViewModeShear, menuViewModeNormal, menuViewModeBendMoment;
+	private JRadioButtonMenuItem menuViewModeEditor, menuViewModeShear, menuViewModeNormal, menuViewModeBendMoment, menuViewModeModeShape, menuViewModeBuckling;
 	private JMenuItem menuShowAll;
 	private JMenuItem menuScale;
 	private JMenuItem menuInfo;
@@ -268,6 +276,23 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 			}
 		});
 		this.add(btnBendMoment);
+
+		btnModeShape = new MechCanvasButton("f");
+		btnModeShape.setToolTipText("Vlastní tvary kmitání (další tvar opětovným stiskem)");
+		btnModeShape.setSize(45, 30);
+		btnModeShape.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				setViewMode(ViewMode.MODE_SHAPE);
+			}
+		});
+		this.add(btnModeShape);
+
+		modeTimer = new javax.swing.Timer(MODE_FRAME_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				repaint();
+			}
+		});
 	}
 
 	private void setupPopupMenu() {
@@ -276,9 +301,13 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		JMenuItem menuModelExport = new JMenuItem("Exportovat...");
 		JMenuItem menuModelImport = new JMenuItem("Importovat...");
 
+		menuLoadCases = new JMenu("Zatěžovací stavy");
+
 		menuModel.add(menuModelClear);
 		menuModel.add(menuModelExport);
 		menuModel.add(menuModelImport);
+		menuModel.addSeparator();
+		menuModel.add(menuLoadCases);
 		if (applet) {
 			menuModelExport.setEnabled(false);
 			menuModelImport.setEnabled(false);
@@ -290,7 +319,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 				int result = JOptionPane.showConfirmDialog(getCanvas(), "Opravdu chcete smazat současný model?", TITLE, JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 				if (result == JOptionPane.NO_OPTION) return;
 
-				getCanvas().model = new Model();
+				setModel(new Model());
 			}
 		});
 		menuModelExport.addActionListener(new ActionListener() {
@@ -333,7 +362,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 						Model newModel = (Model)ois.readObject();
 						newModel.afterLoad();
 						newModel.recalculate();
-						getCanvas().model = newModel;
+						setModel(newModel);
 						fitView();
 						repaint();
 					} catch (Exception ex) {
@@ -371,16 +400,32 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 				setViewMode(ViewMode.BENDING_MOMENT);
 			}
 		});
+		menuViewModeModeShape = new JRadioButtonMenuItem("Vlastní tvary kmitání");
+		menuViewModeModeShape.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setViewMode(ViewMode.MODE_SHAPE);
+			}
+		});
+		menuViewModeBuckling = new JRadioButtonMenuItem("Tvary vybočení");
+		menuViewModeBuckling.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setViewMode(ViewMode.BUCKLING_SHAPE);
+			}
+		});
 		menuViewMode.add(menuViewModeEditor);
 		menuViewMode.add(menuViewModeNormal);
 		menuViewMode.add(menuViewModeShear);
 		menuViewMode.add(menuViewModeBendMoment);
+		menuViewMode.add(menuViewModeModeShape);
+		menuViewMode.add(menuViewModeBuckling);
 
 		ButtonGroup group = new ButtonGroup();
 		group.add(menuViewModeEditor);
 		group.add(menuViewModeNormal);
 		group.add(menuViewModeShear);
 		group.add(menuViewModeBendMoment);
+		group.add(menuViewModeModeShape);
+		group.add(menuViewModeBuckling);
 
 		menuViewModeEditor.setSelected(true);
 
@@ -460,7 +505,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 				try {
 					int scale = Integer.parseInt(scaleStr);
 					model.scale = scale;
-					model.recalculate();
+					recalculate();
 					repaint();
 				}
 				catch (NumberFormatException ex) {
@@ -521,11 +566,19 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		btnNormal.setActive(false);
 		btnShear.setActive(false);
 		btnBendMoment.setActive(false);
+		btnModeShape.setActive(false);
 		menuViewModeEditor.setSelected(false);
 		menuViewModeNormal.setSelected(false);
 		menuViewModeShear.setSelected(false);
 		menuViewModeBendMoment.setSelected(false);
+		menuViewModeModeShape.setSelected(false);
+		menuViewModeBuckling.setSelected(false);
 
+		// opětovná volba vlastních tvarů přepne na další tvar
+		boolean shapes = (viewMode == ViewMode.MODE_SHAPE || viewMode == ViewMode.BUCKLING_SHAPE);
+		if (shapes) {
+			modeIndex = (this.viewMode == viewMode) ? modeIndex + 1 : 0;
+		}
 		this.viewMode = viewMode;
 
 		if (viewMode == ViewMode.EDITOR) {
@@ -544,6 +597,16 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 			btnBendMoment.setActive(true);
 			menuViewModeBendMoment.setSelected(true);
 		}
+		else if (viewMode == ViewMode.MODE_SHAPE) {
+			btnModeShape.setActive(true);
+			menuViewModeModeShape.setSelected(true);
+		}
+		else if (viewMode == ViewMode.BUCKLING_SHAPE) {
+			menuViewModeBuckling.setSelected(true);
+		}
+
+		if (shapes) modeTimer.start();
+		else modeTimer.stop();
 
 		repaint();
 	}
@@ -599,11 +662,14 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		drawBackground(g);	// pozadí
 		if (showGrid) drawGrid(g); // mřížka
 		drawModel(g);		// model
+		drawMechanism(g);	// tvar mechanismu u pohyblivé konstrukce
+		drawModeShape(g);	// animovaný vlastní tvar kmitání
 		drawNewObjects(g);	// nové objekty přidávané do modelu
 		if (showAxes) drawAxes(g); // osy
 		drawStatus(g);		// statový řádek
 		if (showReactions) drawReactions(g);   // reakce
 		drawInnerForcesScale(g);
+		if (solver.isBusy()) drawBusy(g);	// probíhá výpočet
 
 		this.paintChildren(g); // tlačítka apod.
 	}
@@ -662,7 +728,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 	public void drawInnerForcesScale(Graphics2D g) {
 		float scale = 1;
 
-		if (viewMode == ViewMode.EDITOR) return;
+		if (viewMode == ViewMode.EDITOR || viewMode == ViewMode.MODE_SHAPE || viewMode == ViewMode.BUCKLING_SHAPE) return;
 		else if (viewMode == ViewMode.NORMAL_FORCE) {
 			scale = 0.1f*0.2f*model.innerForcesScale/100f*model.scale;
 		}
@@ -834,6 +900,14 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		}
 	}
 
+	/** Vykreslí informaci o probíhajícím výpočtu. */
+	private void drawBusy(Graphics2D g) {
+		g.setColor(CL_TEXT);
+		g.setFont(FNT_TEXT);
+		String text = "Počítám...";
+		g.drawString(text, getWidth() - g.getFontMetrics().stringWidth(text) - 10, 20);
+	}
+
 	/** Vykreslí bod pod myší. */
 	public void drawMousePosition(Graphics2D g) {
 		g.setColor(CL_TEXT);
@@ -893,6 +967,66 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		}
 	}
 
+	/**
+	 * U pohyblivé konstrukce nakreslí přerušovaně posunutý tvar prvního
+	 * mechanismu, největší posun je MECHANISM_AMPLITUDE pixelů.
+	 */
+	private void drawMechanism(Graphics2D g) {
+		if (isolatedBeam != null || model.mechanisms.isEmpty()) return;
+		Mechanism mechanism = model.mechanisms.get(0);
+		float amplitude = (float)MECHANISM_AMPLITUDE / model.scale;
+
+		g.setColor(CL_MECHANISM);
+		g.setStroke(ST_MECHANISM);
+		for (Beam beam: model.beams) {
+			if (!mechanism.moves(beam)) continue;
+			VectorXZ prev = null;
+			for (VectorXZ p: beam.mainPoints) {
+				VectorXZ d = mechanism.getDisplacement(beam, p);
+				VectorXZ moved = new VectorXZ(p.x + amplitude*d.x, p.z + amplitude*d.z);
+				if (prev != null) g.drawLine(m2cx(prev.x), m2cz(prev.z), m2cx(moved.x), m2cz(moved.z));
+				prev = moved;
+			}
+		}
+		g.setStroke(ST_DEFAULT);
+	}
+
+	/**
+	 * Nakreslí vlastní tvar kmitání (nebo tvar vybočení) s amplitudou
+	 * měnící se podle sinu (časovač animace překresluje plátno) a jeho
+	 * frekvenci (kritický násobek zatížení).
+	 */
+	private void drawModeShape(Graphics2D g) {
+		if (viewMode != ViewMode.MODE_SHAPE && viewMode != ViewMode.BUCKLING_SHAPE) return;
+		if (isolatedBeam != null || !model.determinate) return;
+		boolean buckling = (viewMode == ViewMode.BUCKLING_SHAPE);
+		java.util.List <Mode> modes = buckling ? model.getBucklingModes() : model.getModes();
+		String text;
+		if (modes.isEmpty()) {
+			text = buckling ? "Tvary vybočení nenalezeny" : "Vlastní tvary nelze spočítat";
+		}
+		else {
+			Mode mode = modes.get(modeIndex % modes.size());
+			double phase = 2*Math.PI * (System.currentTimeMillis() % MODE_PERIOD) / MODE_PERIOD;
+			float amplitude = (float)(MODE_AMPLITUDE * Math.sin(phase)) / model.scale;
+
+			g.setColor(CL_MODE_SHAPE);
+			g.setStroke(ST_MODE_SHAPE);
+			for (Beam beam: model.beams) {
+				java.util.List <VectorXZ> points = mode.getPoints(beam), displacements = mode.getDisplacements(beam);
+				for (int i = 1; i < points.size(); i++) {
+					VectorXZ a = points.get(i-1), da = displacements.get(i-1);
+					VectorXZ b = points.get(i), db = displacements.get(i);
+					g.drawLine(m2cx(a.x + amplitude*da.x), m2cz(a.z + amplitude*da.z), m2cx(b.x + amplitude*db.x), m2cz(b.z + amplitude*db.z));
+				}
+			}
+			g.setStroke(ST_DEFAULT);
+			text = mode.toString();
+		}
+		g.setColor(CL_TEXT);
+		g.drawString(text, getWidth() - 10 - g.getFontMetrics().stringWidth(text), 65);
+	}
+
 	/** Kreslení přidávaných objektů. */
 	private void drawNewObjects(Graphics2D g) {
 		if (drawingState != null) {
@@ -1067,8 +1201,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		}
 
 		// Projdeme klouby
-		for (VectorXZ jointPoint: model.joints.keySet()) {
-			Joint joint = model.joints.get(jointPoint);
+		for (Joint joint: model.joints.values()) {
 			int x = m2cx(joint.position.x);
 			int z = m2cz(joint.position.z);
 			if (isPointUnderMouse(x, z)) {
@@ -1160,9 +1293,85 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		adapter.fillPopupMenu(menu, en);
 	}
 
+	/** Naplní menu zatěžovacích stavů podle aktuálního modelu. */
+	private void fillLoadCasesMenu() {
+		menuLoadCases.removeAll();
+
+		ButtonGroup group = new ButtonGroup();
+		for (final LoadCase loadCase: model.loadCases) {
+			JRadioButtonMenuItem item = new JRadioButtonMenuItem(loadCase.name);
+			item.setSelected(loadCase == model.activeLoadCase);
+			item.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					model.setActiveLoadCase(loadCase);
+					repaint();
+				}
+			});
+			group.add(item);
+			menuLoadCases.add(item);
+		}
+
+		menuLoadCases.addSeparator();
+		menuLoadCases.add("Nový...").addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Toolkit.getDefaultToolkit().beep();
+				String name = (String)JOptionPane.showInputDialog(getCanvas(), "Jméno zatěžovacího stavu: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, "Z" + (model.loadCases.size() + 1));
+				if (name == null) return;
+				LoadCase loadCase = new LoadCase(name);
+				model.addLoadCase(loadCase);
+				model.setActiveLoadCase(loadCase);
+				repaint();
+			}
+		});
+		JMenuItem menuRemoveLoadCase = new JMenuItem("Odstranit aktivní");
+		menuRemoveLoadCase.setEnabled(model.loadCases.size() > 1);
+		menuRemoveLoadCase.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Toolkit.getDefaultToolkit().beep();
+				int result = JOptionPane.showConfirmDialog(getCanvas(), "Opravdu chcete odstranit zatěžovací stav '" + model.activeLoadCase.name + "' i s jeho zatíženími?", TITLE, JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+				if (result == JOptionPane.NO_OPTION) return;
+				model.removeLoadCase(model.activeLoadCase);
+				repaint();
+			}
+		});
+		menuLoadCases.add(menuRemoveLoadCase);
+
+		menuLoadCases.addSeparator();
+		menuLoadCases.add("Nová kombinace...").addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				boolean ok = false;
+				while (!ok) {
+					Toolkit.getDefaultToolkit().beep();
+					String text = (String)JOptionPane.showInputDialog(getCanvas(), "Kombinace (např. 1.35*Z1 + 1.5*Z2): ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, "");
+					if (text == null) return;
+					try {
+						LoadCombination combination = LoadCombination.parse("K" + (model.loadCombinations.size() + 1), text, model.loadCases);
+						model.addLoadCombination(combination);
+						ok = true;
+					}
+					catch (IllegalArgumentException ex) {
+						Toolkit.getDefaultToolkit().beep();
+						JOptionPane.showMessageDialog(getCanvas(), ex.getMessage(), TITLE, JOptionPane.ERROR_MESSAGE);
+					}
+				}
+			}
+		});
+		JMenu menuRemoveCombination = new JMenu("Odstranit kombinaci");
+		menuRemoveCombination.setEnabled(model.loadCombinations.size() > 0);
+		for (final LoadCombination combination: model.loadCombinations) {
+			menuRemoveCombination.add(combination.toString()).addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					model.removeLoadCombination(combination);
+				}
+			});
+		}
+		menuLoadCases.add(menuRemoveCombination);
+	}
+
 	/** Vytvoří a aktivuje vyskakovací menu. */
 	private void popupMenu() {
 		popupMenu.removeAll();
+		fillLoadCasesMenu();
 		if (activeObjects.size() > 0) {
 			for (ModelEntity active: activeObjects) {
 				JMenu menu = new JMenu(active.toString());
@@ -1210,25 +1419,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 
 			VectorXZ newPosition = new VectorXZ(c2mx(gridX(mouseX)), c2mz(gridZ(mouseZ)));
 			if (!newPosition.equals(draggedJoint.position)) {
-
-				// projdeme všechny nosníky a změníme jim topologii...
-				for (Beam beam: draggedJoint.beams) {
-					for (int i = 0; i < beam.mainPoints.size(); i++) {
-						if (beam.mainPoints.get(i).equals(draggedJoint.position)) {
-							beam.mainPoints.set(i, newPosition);
-							break;
-						}
-					}
-				}
-
-				if (model.stiffJoints.contains(draggedJoint.position)) {
-					model.stiffJoints.remove(draggedJoint.position);
-					model.stiffJoints.add(newPosition);
-				}
-
-				draggedJoint.position = newPosition;
-
-				model.recalculate();
+				model.moveJoint(draggedJoint, newPosition);
 				//findActiveObjects();
 				repaint();
 			}
@@ -1277,6 +1468,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 					draggedJoint = (Joint)en;
 				}
 			}
+			if (draggedJoint != null && !solver.isBusy()) model.startDrag(draggedJoint);
 		}
 
 		// Obsloužení kreslení
@@ -1314,7 +1506,7 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 	public void mouseReleased(MouseEvent e) {
 		mouseMiddlePressed = false;
 		if (draggedJoint != null) {
-			
+			model.endDrag();
 			draggedJoint = null;
 		}
 		setCursor(Cursor.getDefaultCursor());
@@ -1348,10 +1540,11 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 		this.oldWidth = getWidth();
 		this.oldHeight = getHeight();
 
-		btnEditor.setLocation(getWidth() - 220, 10);
-		btnNormal.setLocation(getWidth() - 165, 10);
-		btnShear.setLocation(getWidth() - 110, 10);
-		btnBendMoment.setLocation(getWidth() - 55, 10);
+		btnEditor.setLocation(getWidth() - 275, 10);
+		btnNormal.setLocation(getWidth() - 220, 10);
+		btnShear.setLocation(getWidth() - 165, 10);
+		btnBendMoment.setLocation(getWidth() - 110, 10);
+		btnModeShape.setLocation(getWidth() - 55, 10);
 	}
 
 	public void componentMoved(ComponentEvent e) {}
@@ -1359,6 +1552,59 @@ public class MechCanvas extends JPanel implements ComponentListener, MouseListen
 	public void componentHidden(ComponentEvent e) {}
 
 
+	/** Nastaví model plátna, rozpracovaný výpočet předchozího modelu se zahodí. */
+	public void setModel(Model model) {
+		solver.cancel();
+		model.recalculator = solver;
+		this.model = model;
+	}
+
+	/** Přepočítá model po změně provedené mimo metody modelu. */
+	public void recalculate() {
+		model.changed(false);
+	}
+
+	/** Přepočítá model po změně, která se týká jen zatížení. */
+	public void recalculateLoads() {
+		model.changed(true);
+	}
+
+	/**
+	 * Nahradí model jeho přepočítanou kopií (volá MechSolver). Kopie
+	 * odpovídá aktuálnímu stavu modelu, objekty, se kterými plátno
+	 * právě pracuje, se proto dají dohledat podle polohy nebo jména.
+	 */
+	public void modelSolved(Model solved) {
+		solved.recalculator = solver;
+		int activeIndex = model.loadCases.indexOf(model.activeLoadCase);
+		if (activeIndex >= 0 && solved.loadCases.get(activeIndex) != solved.activeLoadCase) {
+			solved.setActiveLoadCase(solved.loadCases.get(activeIndex));
+		}
+
+		if (draggedJoint != null) {
+			draggedJoint = solved.joints.get(draggedJoint.position);
+			if (draggedJoint != null) solved.startDrag(draggedJoint);
+		}
+		if (isolatedBeam != null) {
+			isolatedBeam = findBeam(solved, isolatedBeam.name);
+		}
+		editor.modelReplaced(solved);
+
+		model = solved;
+		activeObjects.clear();
+		if (draggedJoint != null) activeObjects.add(draggedJoint);
+		else if (drawingState == null) findActiveObjects();
+		repaint();
+	}
+
+	/** Najde v modelu nosník podle jména. */
+	public static Beam findBeam(Model model, String name) {
+		for (Beam beam: model.beams) {
+			if (beam.name.equals(name)) return beam;
+		}
+		return null;
+	}
+
 	public void fitView() {
 		int width = oldWidth == -1 ? getPreferredSize().width : oldWidth;
 		int height = oldHeight == -1 ? getPreferredSize().height : oldHeight;
@@ -64,6 +64,9 @@ public class MechConsts {
 	public static final Color CL_INTERNAL_FORCE_POSITIVE = Color.BLUE;
 	public static final Color CL_INTERNAL_FORCE_POSITIVE_FILL = new Color(0, 0, 255, 80);
 
+	public static final Color CL_MECHANISM = new Color(255, 96, 0);
+	public static final Color CL_MODE_SHAPE = new Color(0, 128, 96);
+
 	public static final Color CL_TEXT = Color.BLACK;
 
 	// ====== PÍSMA ======
@@ -90,6 +93,8 @@ public class MechConsts {
 	public static final Stroke ST_BEAM = new BasicStroke(3);
 	public static final Stroke ST_SUPPORT_ROD = new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_MITER, 2, new float[] {5, 5}, 0);
 	public static final Stroke ST_ROD = new BasicStroke(1);
+	public static final Stroke ST_MECHANISM = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 2, new float[] {6, 4}, 0);
+	public static final Stroke ST_MODE_SHAPE = new BasicStroke(2);
 
 	// ====== OSTATNÍ KONSTANTY ======
 	public static final int GRID_SPACING = 10;
@@ -98,6 +103,10 @@ public class MechConsts {
 	public static final int ARROW_LENGTH = 30;
 	public static final int LOAD_ARROW_LENGTH = 20;
 	public static final int SUPPORT_VIRTUAL_LENGTH = 13;
+	public static final int MECHANISM_AMPLITUDE = 30;
+	public static final int MODE_AMPLITUDE = 40;
+	public static final int MODE_PERIOD = 2000;		// doba kmitu animace [ms]
+	public static final int MODE_FRAME_DELAY = 40;	// [ms]
 
 	public static final String VERSION = "1.0";
 	public static final String TITLE = "Mechanika";
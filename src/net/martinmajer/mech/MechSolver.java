@@ -0,0 +1,219 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.*;
+import net.martinmajer.mech.model.*;
+
+/**
+ * Přepočítává model plátna na pozadí, aby se při úpravách velkých modelů
+ * nezasekávalo uživatelské rozhraní.
+ *
+ * Po změně se v EDT udělá kopie modelu (serializací) a ta se přepočítá
+ * ve výpočetním vlákně. Kopie se dělá až po zpracování ostatních čekajících
+ * událostí, takže několik změn za sebou dá jedinou kopii. Každá změna
+ * dostane pořadové číslo, rozpracovaný výpočet starší změny se přeruší
+ * a výsledek se zveřejní, jen pokud se model mezitím znovu nezměnil - při
+ * rychlém sledu změn (tažení kloubu) se tak počítá jen poslední stav.
+ * Přepočítaná kopie pak na plátně nahradí upravovaný model
+ * (MechCanvas.modelSolved()), do té doby plátno zobrazuje poslední
+ * platné výsledky.
+ *
+ * Změny samotného zatížení se počítají hned, pokud neběží jiný výpočet,
+ * protože se použije rozklad matice z posledního přepočtu.
+ *
+ * Všechny metody kromě solve() se volají z EDT.
+ *
+ * @author Martin
+ */
+public class MechSolver implements Model.Recalculator {
+
+	/** Jak dlouho se čeká se zveřejněním výsledku, když je otevřený dialog nebo menu (ms). */
+	private static final int PUBLISH_RETRY_DELAY = 200;
+
+	private MechCanvas canvas;
+
+	/** Výpočetní vlákno, výpočty jdou jeden po druhém. */
+	private ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Mechanika - výpočet");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	});
+
+	/** Pořadové číslo poslední změny modelu, čte ho i výpočetní vlákno. */
+	private AtomicLong generation = new AtomicLong();
+
+	/** Výpočet poslední změny, null pokud se nic nepočítá. */
+	private Future <?> pending = null;
+
+	/** Kopie modelu se teprve udělá (čeká ve frontě událostí). */
+	private boolean scheduled = false;
+
+
+	public MechSolver(MechCanvas canvas) {
+		this.canvas = canvas;
+	}
+
+	/** Počítá se právě model? */
+	public boolean isBusy() {
+		return pending != null || scheduled;
+	}
+
+	/** Zahodí rozpracovaný výpočet (např. při otevření jiného modelu). */
+	public void cancel() {
+		generation.incrementAndGet();
+		if (pending != null) pending.cancel(true);
+		pending = null;
+		scheduled = false;
+	}
+
+	public void modelChanged(Model model, boolean loadsOnly) {
+		if (loadsOnly && !isBusy()) {
+			// recalculateLoads() si o úplný přepočet případně řekne sama
+			model.recalculateLoads();
+			canvas.repaint();
+			return;
+		}
+
+		generation.incrementAndGet();
+		if (pending != null) pending.cancel(true);
+		pending = null;
+
+		if (!scheduled) {
+			scheduled = true;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					submit();
+				}
+			});
+		}
+		canvas.repaint();
+	}
+
+	/** Udělá kopii aktuálního modelu plátna a předá ji výpočetnímu vláknu. */
+	private void submit() {
+		if (!scheduled) return; // zrušeno
+		scheduled = false;
+
+		Model model = canvas.model;
+		final long current = generation.get();
+		final byte[] snapshot;
+		try {
+			snapshot = serialize(model);
+		}
+		catch (IOException e) {
+			// bez kopie nezbývá než počítat hned
+			e.printStackTrace();
+			model.recalculate();
+			canvas.repaint();
+			return;
+		}
+		final int activeIndex = model.loadCases.indexOf(model.activeLoadCase);
+		// poslední řešení zobrazeného modelu je dobrým odhadem pro iterační řešič
+		final Model.Solution guess = model.getSolution();
+		// spojení nosníků převezme kopie, přepočítají se jen změněné nosníky
+		final Topology topology = model.detachTopology();
+
+		pending = executor.submit(new Runnable() {
+			public void run() {
+				solve(current, snapshot, activeIndex, guess, topology);
+			}
+		});
+		canvas.repaint();
+	}
+
+	/** Výpočet ve výpočetním vlákně. */
+	private void solve(final long current, byte[] snapshot, int activeIndex, Model.Solution guess, Topology topology) {
+		if (current != generation.get()) return; // model se už znovu změnil
+
+		Model solved = null;
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(snapshot));
+			solved = (Model)ois.readObject();
+			solved.afterLoad();
+			if (activeIndex >= 0) solved.activeLoadCase = solved.loadCases.get(activeIndex);
+			solved.initialGuess = guess;
+			solved.attachTopology(topology);
+			solved.recalculate();
+		}
+		catch (CancellationException e) {
+			return;
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			solved = null;
+		}
+		if (Thread.currentThread().isInterrupted()) return;
+
+		final Model result = solved;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				publish(current, result);
+			}
+		});
+	}
+
+	/** Předá výsledek plátnu, pokud pořád odpovídá upravovanému modelu. */
+	private void publish(final long current, final Model solved) {
+		if (current != generation.get()) return;
+
+		// dokud je otevřený dialog nebo menu, pracuje se s objekty
+		// stávajícího modelu, se zveřejněním se proto počká
+		if (isInteracting()) {
+			Timer timer = new Timer(PUBLISH_RETRY_DELAY, new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					publish(current, solved);
+				}
+			});
+			timer.setRepeats(false);
+			timer.start();
+			return;
+		}
+
+		pending = null;
+		if (solved != null) canvas.modelSolved(solved);
+		canvas.repaint();
+	}
+
+	/** Je otevřené menu nebo modální dialog? */
+	private boolean isInteracting() {
+		if (MenuSelectionManager.defaultManager().getSelectedPath().length > 0) return true;
+		for (Window window: Window.getWindows()) {
+			if (window instanceof Dialog && window.isVisible() && ((Dialog)window).isModal()) return true;
+		}
+		return false;
+	}
+
+	private static byte[] serialize(Model model) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(model);
+		oos.close();
+		return bytes.toByteArray();
+	}
+
+}
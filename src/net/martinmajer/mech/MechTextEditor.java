@@ -62,6 +62,13 @@ public class MechTextEditor extends javax.swing.JFrame {
 		textArea.setText(sb.toString());
 	}
 
+	/** Najde upravovaný objekt v nové kopii modelu (text formuláře se nemění). */
+	public void modelReplaced(Model model) {
+		if (edited instanceof Beam) {
+			edited = MechCanvas.findBeam(model, ((Beam)edited).name);
+		}
+	}
+
     /** This method is called from within the constructor to
      * initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is
@@ -177,7 +184,7 @@ public class MechTextEditor extends javax.swing.JFrame {
 			beam.reset();
 			beam.closed = closed;
 
-			parent.model.recalculate();
+			parent.recalculate();
 
 			parent.repaint();
 			return true;
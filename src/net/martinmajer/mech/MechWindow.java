@@ -69,7 +69,7 @@ public class MechWindow extends JFrame {
 		}
 
 		model.recalculate();
-		canvas.model = model;
+		canvas.setModel(model);
 		canvas.fitView();
 
 		this.getContentPane().add(canvas);
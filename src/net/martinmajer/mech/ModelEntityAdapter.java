@@ -21,8 +21,11 @@ package net.martinmajer.mech;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import javax.swing.JMenu;
+import javax.swing.JOptionPane;
 import net.martinmajer.mech.model.*;
 
+import static net.martinmajer.mech.MechConsts.*;
+
 /**
  * Rozhraní, které převádí objekty modelu na objekty,
  * které lze nakreslit, prohlížet a editovat na plátně.
@@ -46,4 +49,12 @@ public abstract class ModelEntityAdapter {
 	/** Naplní vyskakovací menu. */
 	public abstract void fillPopupMenu(JMenu menu, ModelEntity e);
 
+
+	/** Nechá uživatele vybrat zatěžovací stav, vrátí null při zrušení. */
+	protected LoadCase chooseLoadCase(LoadCase current) {
+		Toolkit.getDefaultToolkit().beep();
+		Object[] loadCases = canvas.model.loadCases.toArray();
+		return (LoadCase)JOptionPane.showInputDialog(canvas, "Zatěžovací stav: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, loadCases, current);
+	}
+
 }
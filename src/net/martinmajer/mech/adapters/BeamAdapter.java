@@ -58,6 +58,12 @@ public class BeamAdapter extends ModelEntityAdapter {
 			else {
 				g.setColor(CL_BEAM);
 			}
+			for (Mechanism mechanism: model.mechanisms) {
+				if (mechanism.moves(beam)) {
+					g.setColor(CL_MECHANISM);
+					break;
+				}
+			}
 		}
 
 		for (int i = 0; i < beam.mainPoints.size(); i++) {
@@ -565,7 +571,7 @@ public class BeamAdapter extends ModelEntityAdapter {
 				Toolkit.getDefaultToolkit().beep();
 				String newName = (String)JOptionPane.showInputDialog(canvas, "Jméno: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, beam.name);
 				if (newName != null) beam.name = newName;
-				canvas.model.recalculate();
+				canvas.recalculate();
 			}
 		});
 	}
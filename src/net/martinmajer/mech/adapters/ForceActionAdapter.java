@@ -38,7 +38,7 @@ public class ForceActionAdapter extends ModelEntityAdapter {
 		Force.Action force = (Force.Action)e;
 
 		if (active) g.setColor(CL_ACTIVE_FORCE);
-		else if (force.enabled) g.setColor(CL_FORCE);
+		else if (force.enabled && force.loadCase == canvas.model.activeLoadCase) g.setColor(CL_FORCE);
 		else g.setColor(CL_DISABLED_FORCE);
 		canvas.drawArrow(g, canvas.m2cx(force.origin.x), canvas.m2cz(force.origin.z), force.getDirectionAngle(), ARROW_LENGTH);
 	}
@@ -129,7 +129,7 @@ public class ForceActionAdapter extends ModelEntityAdapter {
 
 							force.origin = new VectorXZ(newX, newZ);
 
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -153,7 +153,7 @@ public class ForceActionAdapter extends ModelEntityAdapter {
 						try {
 							int angle = (int)Math.round(Float.parseFloat(newAngle));
 							force.direction = canvas.getDirection(angle);
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -177,7 +177,7 @@ public class ForceActionAdapter extends ModelEntityAdapter {
 						try {
 							float size = Float.parseFloat(newSize);
 							force.size = size;
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -190,12 +190,21 @@ public class ForceActionAdapter extends ModelEntityAdapter {
 				}
 			}
 		});
+		menu.add("Zatěžovací stav...").addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				LoadCase loadCase = chooseLoadCase(force.loadCase);
+				if (loadCase == null) return;
+				force.loadCase = loadCase;
+				canvas.recalculateLoads();
+				canvas.repaint();
+			}
+		});
 		menu.add("Přejmenovat...").addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				Toolkit.getDefaultToolkit().beep();
 				String newName = (String)JOptionPane.showInputDialog(canvas, "Jméno: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, force.name);
 				if (newName != null) force.name = newName;
-				canvas.model.recalculate();
+				canvas.recalculateLoads();
 			}
 		});
 	}
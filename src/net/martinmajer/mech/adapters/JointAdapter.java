@@ -84,8 +84,8 @@ public class JointAdapter extends ModelEntityAdapter {
 		if (joint.stiff) {
 			menu.add("Zrušit tuhý kloub").addActionListener(new ActionListener() {
 				public void	actionPerformed(ActionEvent e) {
-					canvas.model.stiffJoints.remove(joint.position);
-					canvas.model.recalculate();
+					canvas.model.stiffPoints.remove(joint.position);
+					canvas.recalculate();
 					canvas.repaint();
 				}
 			});
@@ -93,8 +93,8 @@ public class JointAdapter extends ModelEntityAdapter {
 		else {
 			menu.add("Vytvořit tuhý kloub").addActionListener(new ActionListener() {
 				public void	actionPerformed(ActionEvent e) {
-					canvas.model.stiffJoints.add(joint.position);
-					canvas.model.recalculate();
+					canvas.model.stiffPoints.add(joint.position);
+					canvas.recalculate();
 					canvas.repaint();
 				}
 			});
@@ -92,6 +92,9 @@ public class LoadAdapter extends ModelEntityAdapter {
 				}
 			}
 
+			// zatížení jiného než zobrazovaného stavu
+			if (!active && load.loadCase != canvas.model.activeLoadCase) g.setColor(CL_DISABLED_LOAD);
+
 			canvas.drawArrow(g, (int)Math.round(x1 + i*xStep), (int)Math.round(z1 + i*zStep), angle, 12);
 		}
 	}
@@ -218,7 +221,7 @@ public class LoadAdapter extends ModelEntityAdapter {
 							load.start = new VectorXZ(newX1, newZ1);
 							load.end = new VectorXZ(newX2, newZ2);
 
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -242,7 +245,7 @@ public class LoadAdapter extends ModelEntityAdapter {
 						try {
 							int angle = (int)Math.round(Float.parseFloat(newAngle));
 							load.direction = canvas.getDirection(angle);
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -266,7 +269,7 @@ public class LoadAdapter extends ModelEntityAdapter {
 						try {
 							float size = Float.parseFloat(newSize);
 							load.sizePerPixel = size;
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -279,12 +282,21 @@ public class LoadAdapter extends ModelEntityAdapter {
 				}
 			}
 		});
+		menu.add("Zatěžovací stav...").addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				LoadCase loadCase = chooseLoadCase(load.loadCase);
+				if (loadCase == null) return;
+				load.loadCase = loadCase;
+				canvas.recalculateLoads();
+				canvas.repaint();
+			}
+		});
 		menu.add("Přejmenovat...").addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				Toolkit.getDefaultToolkit().beep();
 				String newName = (String)JOptionPane.showInputDialog(canvas, "Jméno: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, load.name);
 				if (newName != null) load.name = newName;
-				canvas.model.recalculate();
+				canvas.recalculateLoads();
 			}
 		});
 	}
@@ -38,7 +38,7 @@ public class MomentActionAdapter extends ModelEntityAdapter {
 		Moment.Action moment = (Moment.Action)e;
 
 		if (active) g.setColor(CL_ACTIVE_FORCE);
-		else if (moment.enabled) g.setColor(CL_FORCE);
+		else if (moment.enabled && moment.loadCase == canvas.model.activeLoadCase) g.setColor(CL_FORCE);
 		else g.setColor(CL_DISABLED_FORCE);
 		canvas.drawMomentSymbol(g, canvas.m2cx(moment.origin.x), canvas.m2cz(moment.origin.z), moment.size > 0);
 	}
@@ -111,7 +111,7 @@ public class MomentActionAdapter extends ModelEntityAdapter {
 
 							moment.origin = new VectorXZ(newX, newZ);
 
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -135,7 +135,7 @@ public class MomentActionAdapter extends ModelEntityAdapter {
 						try {
 							float size = Float.parseFloat(newSize);
 							moment.size = size;
-							canvas.model.recalculate();
+							canvas.recalculateLoads();
 							ok = true;
 							canvas.repaint();
 						}
@@ -148,12 +148,21 @@ public class MomentActionAdapter extends ModelEntityAdapter {
 				}
 			}
 		});
+		menu.add("Zatěžovací stav...").addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				LoadCase loadCase = chooseLoadCase(moment.loadCase);
+				if (loadCase == null) return;
+				moment.loadCase = loadCase;
+				canvas.recalculateLoads();
+				canvas.repaint();
+			}
+		});
 		menu.add("Přejmenovat...").addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				Toolkit.getDefaultToolkit().beep();
 				String newName = (String)JOptionPane.showInputDialog(canvas, "Jméno: ", TITLE, JOptionPane.QUESTION_MESSAGE, null, null, moment.name);
 				if (newName != null) moment.name = newName;
-				canvas.model.recalculate();
+				canvas.recalculateLoads();
 			}
 		});
 	}
@@ -181,7 +181,7 @@ public class SupportAdapter extends ModelEntityAdapter {
 							support.origin.z = newZ;*/
 							support.origin = new VectorXZ(newX, newZ);
 
-							canvas.model.recalculate();
+							canvas.recalculate();
 							ok = true;
 							canvas.repaint();
 						}
@@ -220,7 +220,7 @@ public class SupportAdapter extends ModelEntityAdapter {
 								rod.direction = line.normalize();
 								rod.length = line.size();
 
-								canvas.model.recalculate();
+								canvas.recalculate();
 								ok = true;
 								canvas.repaint();
 							}
@@ -247,7 +247,7 @@ public class SupportAdapter extends ModelEntityAdapter {
 							try {
 								int angle = (int)Math.round(Float.parseFloat(newAngle));
 								support.direction = canvas.getDirection(angle);
-								canvas.model.recalculate();
+								canvas.recalculate();
 								//System.out.println("recalc\n");
 								ok = true;
 								canvas.repaint();
@@ -46,14 +46,37 @@ public class Beam implements ModelEntity, Serializable {
 
 	public String name = null;
 
+	/** Tuhost v tahu EA [kN] pro deformační metodu, 0 = výchozí hodnota. */
+	public float axialStiffness = 0;
+
+	/** Tuhost v ohybu EI [kNm2] pro deformační metodu, 0 = výchozí hodnota. */
+	public float bendingStiffness = 0;
+
+	/** Hmotnost na jednotku délky [t/m] pro vlastní kmitání, 0 = výchozí hodnota. */
+	public float mass = 0;
+
+	/** Výchozí tuhosti nosníků. */
+	public static final float DEFAULT_AXIAL_STIFFNESS = 1e6f, DEFAULT_BENDING_STIFFNESS = 1e4f;
+
+	/** Výchozí hmotnost nosníků. */
+	public static final float DEFAULT_MASS = 1f;
+
 	public transient List <Load> loads;
 	public transient boolean isRod = false;
 
-	public transient String rodReactionName = null;
 	public transient Force.Reaction rodReaction = null;
 
 	public transient List <ForcesDistribution> internalForces = null;
 
+	/** Mohl by být nosník táhlem, kdyby na něj nepůsobilo žádné zatížení? */
+	public transient boolean rodCandidate = false;
+
+	/** Index prvního řádku rovnic rovnováhy nosníku v soustavě, -1 pro táhlo. */
+	public transient int row = -1;
+
+	/** Zatěžovací stav, pro který se počítají průběhy vnitřních sil (null = všechna zatížení). */
+	public transient LoadCase loadCase = null;
+
 
 	public Beam() {
 		reset();
@@ -81,6 +104,21 @@ public class Beam implements ModelEntity, Serializable {
 		}
 	}
 
+	/** Tuhost v tahu EA. */
+	public float getAxialStiffness() {
+		return axialStiffness > 0 ? axialStiffness : DEFAULT_AXIAL_STIFFNESS;
+	}
+
+	/** Tuhost v ohybu EI. */
+	public float getBendingStiffness() {
+		return bendingStiffness > 0 ? bendingStiffness : DEFAULT_BENDING_STIFFNESS;
+	}
+
+	/** Hmotnost na jednotku délky. */
+	public float getMass() {
+		return mass > 0 ? mass : DEFAULT_MASS;
+	}
+
 	/** Vrátí true, pokud je možné považovat nosník za táhlo. */
 	public boolean canBeRod(Model model) {
 		// nosník vede pouze mezi dvěma body a mimo hlavní body na něj nic nepůsobí
@@ -95,14 +133,28 @@ public class Beam implements ModelEntity, Serializable {
 	public void reset() {
 		loads = new LinkedList <Load>();
 		isRod = false;
-		rodReactionName = null;
 		rodReaction = null;
 		internalForces = null;
+		rodCandidate = false;
+		row = -1;
 		this.allPoints = new LinkedList <VectorXZ>();
 		this.allJoints = new LinkedList <VectorXZ>();
 		copyMainPointsToAll();
 	}
 
+	/**
+	 * Úseky nosníku mezi hlavními body jako dvojice {začátek, konec}.
+	 * U uzavřeného nosníku je prvním úsekem ten z posledního bodu do prvního.
+	 */
+	public List <VectorXZ[]> getSegments() {
+		int n = mainPoints.size();
+		List <VectorXZ[]> segments = new ArrayList <VectorXZ[]>(n);
+		for (int i = closed ? 0 : 1; i < n; i++) {
+			segments.add(new VectorXZ[] { mainPoints.get(i == 0 ? n-1 : i-1), mainPoints.get(i) });
+		}
+		return segments;
+	}
+
 	/**
 	 * Rozhodne, zda je zadaná úsečka částí nosníku.
 	 * @return 1, pokud jde o část nosníku v zadaném pořadí,
@@ -193,13 +245,32 @@ public class Beam implements ModelEntity, Serializable {
 	}
 
 
+	/**
+	 * Přesune všechny body nosníku ležící v zadaném bodě (hlavní body
+	 * v allPoints a allJoints i vnitřní body s reakcemi) do nového bodu.
+	 * Seznam mainPoints se nemění.
+	 */
+	public void movePoint(VectorXZ from, VectorXZ to) {
+		ListIterator <VectorXZ> it = allPoints.listIterator();
+		while (it.hasNext()) {
+			VectorXZ p = it.next();
+			if (p.equals(from)) it.set(p instanceof InnerPoint ? ((InnerPoint)p).moveTo(to) : to);
+		}
+		it = allJoints.listIterator();
+		while (it.hasNext()) {
+			VectorXZ p = it.next();
+			if (p.equals(from)) it.set(p instanceof InnerPoint ? ((InnerPoint)p).moveTo(to) : to);
+		}
+	}
+
+
 	@Override
 	public String toString() {
 		return String.format(Locale.ENGLISH, "Nosník %s", this.name);
 	}
 
 	public String toLongString() {
-		return String.format(Locale.ENGLISH, "Nosník %s%s", this.name, isRod ? (String.format(Locale.ENGLISH, " (táhlo %s = %.3f)", rodReactionName, rodReaction.size)) : "");
+		return String.format(Locale.ENGLISH, "Nosník %s%s", this.name, isRod ? (String.format(Locale.ENGLISH, " (táhlo %s = %.3f)", rodReaction.name, rodReaction.size)) : "");
 	}
 
 
@@ -298,13 +369,74 @@ public class Beam implements ModelEntity, Serializable {
 		public VectorXZ getStartingPoint() {
 			return new VectorXZ(x, z);
 		}
+
+		/** Najde extrém momentu uvnitř úseku (pokud existuje, jinak zůstane msExtreme NaN). */
+		public void findExtreme() {
+			mExtreme = 0;
+			msExtreme = Float.NaN;
+			if (ddm != 0) {
+				float exS = -0.5f*dm/ddm; // parametr s, kde je vrchol
+				if (exS > 0 && exS < length) {
+					mExtreme = ddm*exS*exS + dm*exS + m;
+					msExtreme = exS;
+				}
+				// pokud exS neleží uprostřed nosníků, zůstává NaN
+			}
+		}
+	}
+
+	/**
+	 * Sečte průběhy vnitřních sil s danými součiniteli. Všechny průběhy musí
+	 * mít stejné úseky, tj. musí jít o průběhy stejného nosníku v různých
+	 * zatěžovacích stavech.
+	 */
+	public static List <ForcesDistribution> superpose(List <List <ForcesDistribution>> parts, float[] factors) {
+		List <ForcesDistribution> first = parts.get(0);
+		List <ForcesDistribution> result = new ArrayList <ForcesDistribution>(first.size());
+
+		for (int i = 0; i < first.size(); i++) {
+			ForcesDistribution shape = first.get(i);
+			ForcesDistribution dist = new ForcesDistribution();
+			dist.x = shape.x;
+			dist.z = shape.z;
+			dist.dirN = shape.dirN;
+			dist.dirV = shape.dirV;
+			dist.length = shape.length;
+
+			for (int k = 0; k < parts.size(); k++) {
+				float f = factors[k];
+				if (f == 0) continue;
+				ForcesDistribution d = parts.get(k).get(i);
+				dist.dfx += f*d.dfx; dist.fx += f*d.fx;
+				dist.dfz += f*d.dfz; dist.fz += f*d.fz;
+				dist.ddm += f*d.ddm; dist.dm += f*d.dm; dist.m += f*d.m;
+				dist.nStart += f*d.nStart; dist.nEnd += f*d.nEnd;
+				dist.vStart += f*d.vStart; dist.vEnd += f*d.vEnd;
+				dist.mEnd += f*d.mEnd;
+			}
+
+			if (dist.dirN != null) dist.findExtreme();
+			result.add(dist);
+		}
+
+		return result;
 	}
 
 	/** Vypočítá průběhy vnitřních sil. */
 	public void computeInternalForces() {
 		if (internalForces != null) return;
 
-		internalForces = new ArrayList <ForcesDistribution>();
+		internalForces = computeInternalForces(loadCase);
+	}
+
+	/**
+	 * Vypočítá průběhy vnitřních sil od zatížení zadaného zatěžovacího stavu
+	 * (null = všechna zatížení) a od reakcí s právě nastavenými velikostmi.
+	 * Úseky průběhů nezávisí na zatěžovacím stavu, takže průběhy různých
+	 * stavů lze sčítat úsek po úseku.
+	 */
+	public List <ForcesDistribution> computeInternalForces(LoadCase loadCase) {
+		List <ForcesDistribution> internalForces = new ArrayList <ForcesDistribution>();
 
 		float fx = 0, fz = 0;
 		float dfx = 0, dfz = 0;
@@ -330,11 +462,11 @@ public class Beam implements ModelEntity, Serializable {
 			while (samePoint) {
 				if (current instanceof InnerPoint) {
 					InnerPoint inner = (InnerPoint)current;
-					if (inner.force != null) {
+					if (inner.force != null && isInLoadCase(inner.force, loadCase)) {
 						fx -= inner.force.size * inner.force.direction.x;
 						fz -= inner.force.size * inner.force.direction.z;
 					}
-					if (inner.load != null) {
+					if (inner.load != null && isInLoadCase(inner.load, loadCase)) {
 						if (!inner.load.started) {
 							inner.load.started = true;
 							dfx -= inner.load.sizePerPixel * inner.load.direction.x;
@@ -348,7 +480,7 @@ public class Beam implements ModelEntity, Serializable {
 					}
 					// započítáváme pouze skokové změny momentu, zbytek dopočítáme
 					// při vykreslování pomocí Schwedlerovy věty
-					if (inner.moment != null) {
+					if (inner.moment != null && isInLoadCase(inner.moment, loadCase)) {
 						if (inner.moment instanceof Moment.Reaction && ((Moment.Reaction)inner.moment).opposite) {
 							mJump += inner.moment.size;
 						}
@@ -436,17 +568,21 @@ public class Beam implements ModelEntity, Serializable {
 			current.mEnd = current.ddm*length*length + current.dm*length + current.m;
 
 			// zkusíme najít extrém
-			if (current.ddm != 0) {
-				float exS = -0.5f*current.dm/current.ddm; // parametr s, kde je vrchol
-				if (exS > 0 && exS < length) {
-					current.mExtreme = current.ddm*exS*exS + current.dm*exS + current.m;
-					current.msExtreme = exS;
-				}
-				// pokud exS neleží uprostřed nosníků, zůstává NaN
-			}
+			current.findExtreme();
 
 			endMoment = current.mEnd; // bude sloužit jako počáteční podmínka pro další úsek
 		}
+
+		return internalForces;
+	}
+
+	/** Rozhodne, zda se síla, moment nebo zatížení započítává do zadaného stavu (reakce vždy). */
+	private static boolean isInLoadCase(Object o, LoadCase loadCase) {
+		if (loadCase == null) return true;
+		if (o instanceof Force.Action) return ((Force.Action)o).loadCase == loadCase;
+		if (o instanceof Moment.Action) return ((Moment.Action)o).loadCase == loadCase;
+		if (o instanceof Load) return ((Load)o).loadCase == loadCase;
+		return true;
 	}
 
 
@@ -476,6 +612,18 @@ public class Beam implements ModelEntity, Serializable {
 			super(point);
 		}
 
+		/** Vytvoří kopii vnitřního bodu v jiném místě. */
+		public InnerPoint moveTo(VectorXZ point) {
+			InnerPoint ip = new InnerPoint(point);
+			ip.joint = joint;
+			ip.force = force;
+			ip.moment = moment;
+			ip.support = support;
+			ip.load = load;
+			ip.centerOfLoad = centerOfLoad;
+			return ip;
+		}
+
 	}
 
 }
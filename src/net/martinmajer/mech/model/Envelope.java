@@ -0,0 +1,74 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Obálka vnitřních sil a reakcí - nejmenší a největší hodnoty přes všechny
+ * kombinace zatížení.
+ *
+ * @author Martin
+ */
+public class Envelope {
+
+	/** Obálka jednoho úseku průběhu vnitřních sil. */
+	public static class Segment {
+
+		// normálová síla na začátku a konci úseku
+		public float nStartMin = Float.POSITIVE_INFINITY, nStartMax = Float.NEGATIVE_INFINITY;
+		public float nEndMin = Float.POSITIVE_INFINITY, nEndMax = Float.NEGATIVE_INFINITY;
+
+		// posouvající síla na začátku a konci úseku
+		public float vStartMin = Float.POSITIVE_INFINITY, vStartMax = Float.NEGATIVE_INFINITY;
+		public float vEndMin = Float.POSITIVE_INFINITY, vEndMax = Float.NEGATIVE_INFINITY;
+
+		// moment na začátku a konci úseku
+		public float mStartMin = Float.POSITIVE_INFINITY, mStartMax = Float.NEGATIVE_INFINITY;
+		public float mEndMin = Float.POSITIVE_INFINITY, mEndMax = Float.NEGATIVE_INFINITY;
+
+		// moment kdekoli v úseku (včetně extrémů uvnitř)
+		public float mMin = Float.POSITIVE_INFINITY, mMax = Float.NEGATIVE_INFINITY;
+
+		/** Rozšíří obálku o úsek průběhu. */
+		public void add(Beam.ForcesDistribution d) {
+			nStartMin = Math.min(nStartMin, d.nStart); nStartMax = Math.max(nStartMax, d.nStart);
+			nEndMin = Math.min(nEndMin, d.nEnd); nEndMax = Math.max(nEndMax, d.nEnd);
+			vStartMin = Math.min(vStartMin, d.vStart); vStartMax = Math.max(vStartMax, d.vStart);
+			vEndMin = Math.min(vEndMin, d.vEnd); vEndMax = Math.max(vEndMax, d.vEnd);
+			mStartMin = Math.min(mStartMin, d.m); mStartMax = Math.max(mStartMax, d.m);
+			mEndMin = Math.min(mEndMin, d.mEnd); mEndMax = Math.max(mEndMax, d.mEnd);
+
+			mMin = Math.min(mMin, Math.min(d.m, d.mEnd));
+			mMax = Math.max(mMax, Math.max(d.m, d.mEnd));
+			if (!Float.isNaN(d.msExtreme)) {
+				mMin = Math.min(mMin, d.mExtreme);
+				mMax = Math.max(mMax, d.mExtreme);
+			}
+		}
+	}
+
+
+	/** Obálky úseků nosníků, ve stejném pořadí jako úseky průběhů vnitřních sil. */
+	public Map <Beam, Segment[]> beams = new HashMap <Beam, Segment[]>();
+
+	/** Nejmenší a největší velikosti reakcí podle indexu sloupce matice. */
+	public double[] reactionMin, reactionMax;
+
+}
@@ -70,6 +70,9 @@ public abstract class Force implements ModelEntity, Serializable {
 
 		public static final long serialVersionUID = 2101L;
 
+		/** Zatěžovací stav, do kterého síla patří. */
+		public LoadCase loadCase;
+
 		/** False, pokud síla nepůsobí na žádný nosník / kloub. */
 		public transient boolean enabled = false;
 
@@ -89,6 +92,9 @@ public abstract class Force implements ModelEntity, Serializable {
 	/** Reakce (osamělá síla). */
 	public static class Reaction extends Force implements net.martinmajer.mech.model.Reaction {
 
+		/** Index neznámé, viz Model.newUnknown(). */
+		public int unknown = -1;
+
 		public String getName() {
 			return name;
 		}
@@ -97,6 +103,14 @@ public abstract class Force implements ModelEntity, Serializable {
 			this.name = name;
 		}
 
+		public int getUnknown() {
+			return unknown;
+		}
+
+		public void setUnknown(int unknown) {
+			this.unknown = unknown;
+		}
+
 		public void setSize(float size) {
 			this.size = size;
 		}
@@ -51,6 +51,12 @@ public class Joint implements ModelEntity {
 
 	/** Je kloub pevný, vytváří i moment? */
 	public boolean stiff = false;
+
+	/** Index prvního řádku rovnic rovnováhy hmotného bodu v soustavě. */
+	public int row = -1;
+
+	/** Pořadí kloubu v očíslování zužujícím pás matice tuhosti (viz Model.renumberJoints()). */
+	public int index = -1;
 	
 
 	public Joint(VectorXZ p) {
@@ -0,0 +1,256 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Klouby podle polohy. Klíčem je poloha zaokrouhlená na jednotku modelu
+ * (VectorXZ.key(), Model.getPrecision()), tabulka s otevřeným adresováním
+ * bez obalování klíčů. Bod patří ke kloubu, pokud s bodem, pod kterým byl
+ * kloub vložen, splývá (VectorXZ.isNear()): hledá se nejdřív ve vlastní
+ * buňce a pak v sousedních, takže se spojí i body těsně na opačných
+ * stranách hranice zaokrouhlení. Souřadnice bodů samotné se nemění.
+ * Klouby se procházejí v pořadí vložení, takže očíslování reakcí nezávisí
+ * na rozptylovací funkci.
+ * @author Martin
+ */
+public class JointMap {
+
+	/** Tabulka: klíče a indexy kloubů v poli joints zvětšené o 1 (0 = volno). */
+	private long[] keys;
+	private int[] slots;
+
+	/** Klouby v pořadí vložení, odebrané jsou null, a body, pod kterými byly vloženy. */
+	private Joint[] joints;
+	private VectorXZ[] jointPoints;
+	private long[] jointKeys;
+	private int count = 0;
+
+	private int size = 0;
+
+	/** Jednotka zaokrouhlení klíčů. */
+	private final double unit;
+
+	public JointMap(double unit) {
+		this.unit = unit;
+		keys = new long[16];
+		slots = new int[16];
+		joints = new Joint[8];
+		jointPoints = new VectorXZ[8];
+		jointKeys = new long[8];
+	}
+
+	/** Počet kloubů. */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Vrátí kloub v zadaném bodě, nebo null. */
+	public Joint get(VectorXZ point) {
+		int i = find(point);
+		return i >= 0 ? joints[slots[i]-1] : null;
+	}
+
+	public boolean containsKey(VectorXZ point) {
+		return find(point) >= 0;
+	}
+
+	/** Vloží kloub do zadaného bodu, vrátí kloub, který tam byl předtím. */
+	public Joint put(VectorXZ point, Joint joint) {
+		if (joint == null) throw new NullPointerException();
+		int i = find(point);
+		if (i >= 0) {
+			Joint old = joints[slots[i]-1];
+			joints[slots[i]-1] = joint;
+			return old;
+		}
+		if (count == joints.length) {
+			joints = Arrays.copyOf(joints, 2*count);
+			jointPoints = Arrays.copyOf(jointPoints, 2*count);
+			jointKeys = Arrays.copyOf(jointKeys, 2*count);
+		}
+		long key = point.key(unit);
+		joints[count] = joint;
+		jointPoints[count] = point;
+		jointKeys[count] = key;
+		count++;
+		size++;
+		if (2*size > keys.length) rehash(2*keys.length);
+		else insert(key, count);
+		return null;
+	}
+
+	/** Odebere kloub v zadaném bodě a vrátí ho. */
+	public Joint remove(VectorXZ point) {
+		int i = find(point);
+		if (i < 0) return null;
+		Joint old = joints[slots[i]-1];
+		joints[slots[i]-1] = null;
+		jointPoints[slots[i]-1] = null;
+		delete(i);
+		size--;
+		if (count > 2*size + 16) compact();
+		return old;
+	}
+
+	/**
+	 * Přesune kloub na novou polohu, jeho pořadí mezi klouby se nemění
+	 * (na rozdíl od remove() a put()).
+	 * @throws IllegalArgumentException v cílovém bodě už je jiný kloub
+	 */
+	public void move(VectorXZ from, VectorXZ to) {
+		int i = find(from);
+		if (i < 0) return;
+		int j = find(to);
+		if (j >= 0 && j != i) throw new IllegalArgumentException("V bodě " + to + " už je kloub.");
+		int index = slots[i];
+		jointPoints[index-1] = to;
+		long key = to.key(unit);
+		if (keys[i] == key) return;
+		delete(i);
+		jointKeys[index-1] = key;
+		insert(key, index);
+	}
+
+	/** Všechny klouby v pořadí vložení (pohled na tabulku, bez odebírání). */
+	public Collection <Joint> values() {
+		return new AbstractCollection <Joint>() {
+			@Override
+			public Iterator <Joint> iterator() {
+				return new Iterator <Joint>() {
+					private int next = advance(0);
+
+					private int advance(int i) {
+						while (i < count && joints[i] == null) i++;
+						return i;
+					}
+
+					public boolean hasNext() {
+						return next < count;
+					}
+
+					public Joint next() {
+						if (next >= count) throw new NoSuchElementException();
+						Joint joint = joints[next];
+						next = advance(next+1);
+						return joint;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+
+	/**
+	 * Pozice kloubu, se kterým bod splývá, nebo -1. Kloub ve vlastní buňce
+	 * bodu má přednost, v sousedních buňkách se bere první splývající.
+	 */
+	private int find(VectorXZ point) {
+		long key = point.key(unit);
+		int i = find(key);
+		if (i >= 0) return i;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dz = -1; dz <= 1; dz++) {
+				if (dx == 0 && dz == 0) continue;
+				i = find(VectorXZ.neighborKey(key, dx, dz));
+				if (i >= 0 && jointPoints[slots[i]-1].isNear(point, unit)) return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Pozice klíče v tabulce, nebo -1. */
+	private int find(long key) {
+		int i = slot(key);
+		while (slots[i] != 0) {
+			if (keys[i] == key) return i;
+			i = (i+1) & (keys.length-1);
+		}
+		return -1;
+	}
+
+	/** Výchozí pozice klíče. */
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & (keys.length-1);
+	}
+
+	private void insert(long key, int index) {
+		int i = slot(key);
+		while (slots[i] != 0) i = (i+1) & (keys.length-1);
+		keys[i] = key;
+		slots[i] = index;
+	}
+
+	/** Uvolní pozici v tabulce a posune za ni následující položky, aby nevznikla díra. */
+	private void delete(int i) {
+		int mask = keys.length-1;
+		int j = i;
+		while (true) {
+			j = (j+1) & mask;
+			if (slots[j] == 0) break;
+			int k = slot(keys[j]);
+			// položku j lze přesunout do i, pokud její výchozí pozice k neleží v (i; j>
+			if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j))) {
+				keys[i] = keys[j];
+				slots[i] = slots[j];
+				i = j;
+			}
+		}
+		slots[i] = 0;
+	}
+
+	/** Odstraní díry po odebraných kloubech. */
+	private void compact() {
+		int c = 0;
+		for (int i = 0; i < count; i++) {
+			if (joints[i] == null) continue;
+			joints[c] = joints[i];
+			jointPoints[c] = jointPoints[i];
+			jointKeys[c] = jointKeys[i];
+			c++;
+		}
+		Arrays.fill(joints, c, count, null);
+		Arrays.fill(jointPoints, c, count, null);
+		count = c;
+		rehash(keys.length);
+	}
+
+	private void rehash(int capacity) {
+		keys = new long[capacity];
+		slots = new int[capacity];
+		for (int i = 0; i < count; i++) {
+			if (joints[i] != null) insert(jointKeys[i], i+1);
+		}
+	}
+}
@@ -45,6 +45,9 @@ public class Load implements ModelEntity, Serializable {
 	
 	public String name;
 
+	/** Zatěžovací stav, do kterého zatížení patří. */
+	public LoadCase loadCase;
+
 
 	/** Aktivní úseky zatížení. */
 	public transient List <Float> activeParts;
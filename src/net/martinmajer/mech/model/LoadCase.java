@@ -0,0 +1,78 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Zatěžovací stav - pojmenovaná skupina zatížení (stálé, užitné, vítr, sníh...).
+ * Každá síla, moment a spojité zatížení patří do právě jednoho stavu, stavy
+ * se řeší najednou jako sloupce pravé strany jedné soustavy.
+ *
+ * @author Martin
+ */
+public class LoadCase implements Serializable {
+
+	public static final long serialVersionUID = 7001L;
+
+	/** Jméno zatěžovacího stavu. */
+	public String name;
+
+
+	public LoadCase(String name) {
+		this.name = name;
+	}
+
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+
+	/** Výsledky výpočtu jednoho zatěžovacího stavu. */
+	public static class Result {
+
+		/** Zatěžovací stav, ke kterému výsledky patří. */
+		public LoadCase loadCase;
+
+		/** Řešení soustavy - velikosti reakcí podle indexu sloupce matice. */
+		public double[] solution;
+
+		/** Největší síla mezi reakcemi. */
+		public float maxForce;
+
+		/** Relativní reziduum řešení ||Ax - b|| / (||A|| ||x|| + ||b||). */
+		public double residual;
+
+		/** Výpis reakcí. */
+		public String reactionsString;
+
+		/** Průběhy vnitřních sil nosníků, počítají se až při prvním použití. */
+		public Map <Beam, List <Beam.ForcesDistribution>> internalForces = null;
+
+
+		public Result(LoadCase loadCase, double[] solution) {
+			this.loadCase = loadCase;
+			this.solution = solution;
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Kombinace zatížení - součet zatěžovacích stavů násobených součiniteli
+ * (např. 1,35 * stálé + 1,5 * užitné). Výsledky se nepočítají řešením
+ * soustavy, ale sečtením výsledků jednotlivých stavů.
+ *
+ * @author Martin
+ */
+public class LoadCombination implements Serializable {
+
+	public static final long serialVersionUID = 7101L;
+
+	/** Jméno kombinace. */
+	public String name;
+
+	/** Součinitele zatěžovacích stavů, stavy, které v mapě nejsou, mají součinitel 0. */
+	public Map <LoadCase, Float> factors = new LinkedHashMap <LoadCase, Float>();
+
+
+	public LoadCombination(String name) {
+		this.name = name;
+	}
+
+	/** Vrátí součinitel zadaného zatěžovacího stavu. */
+	public float getFactor(LoadCase loadCase) {
+		Float factor = factors.get(loadCase);
+		return factor == null ? 0 : factor;
+	}
+
+	/**
+	 * Vytvoří kombinaci z textu ve tvaru "1.35*Z1 + 1.5*Z2" (součinitel
+	 * lze vynechat, hvězdičku také).
+	 * @throws IllegalArgumentException pokud text nejde přečíst nebo neexistuje některý stav
+	 */
+	public static LoadCombination parse(String name, String text, List <LoadCase> loadCases) {
+		LoadCombination combination = new LoadCombination(name);
+
+		for (String term: text.split("\\+")) {
+			term = term.trim();
+			if (term.equals("")) continue;
+
+			String factorStr = "1", caseName = term;
+			int star = term.indexOf('*');
+			if (star >= 0) {
+				factorStr = term.substring(0, star).trim();
+				caseName = term.substring(star + 1).trim();
+			}
+			else {
+				String[] parts = term.split("\\s+");
+				if (parts.length == 2) {
+					factorStr = parts[0];
+					caseName = parts[1];
+				}
+			}
+
+			LoadCase loadCase = null;
+			for (LoadCase lc: loadCases) {
+				if (lc.name.equals(caseName)) loadCase = lc;
+			}
+			if (loadCase == null) throw new IllegalArgumentException("Neznámý zatěžovací stav " + caseName);
+
+			float factor;
+			try {
+				factor = Float.parseFloat(factorStr.replace(',', '.'));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Chybný součinitel " + factorStr);
+			}
+			combination.factors.put(loadCase, combination.getFactor(loadCase) + factor);
+		}
+
+		return combination;
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(name); sb.append(" = ");
+		boolean first = true;
+		for (Map.Entry <LoadCase, Float> entry: factors.entrySet()) {
+			if (!first) sb.append(" + ");
+			sb.append(String.format(Locale.ENGLISH, "%.2f*%s", entry.getValue(), entry.getKey().name));
+			first = false;
+		}
+		return sb.toString();
+	}
+
+
+	/** Výsledky jedné kombinace. */
+	public static class Result {
+
+		/** Kombinace, ke které výsledky patří. */
+		public LoadCombination combination;
+
+		/** Velikosti reakcí podle indexu sloupce matice. */
+		public double[] solution;
+
+		/** Průběhy vnitřních sil nosníků. */
+		public Map <Beam, List <Beam.ForcesDistribution>> internalForces;
+
+
+		public Result(LoadCombination combination, double[] solution) {
+			this.combination = combination;
+			this.solution = solution;
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Mechanismus - virtuální posun konstrukce, při kterém žádná reakce
+ * nekoná práci. Je to vektor levého nulového prostoru matice rovnic
+ * rovnováhy: složky u řádků nosníku jsou posun (ux, uz) a pootočení fi
+ * nosníku jako tuhé desky, složky u řádků hmotného bodu jeho posun.
+ * Posuny jsou normované tak, aby největší posun bodu konstrukce byl 1.
+ *
+ * @author Martin
+ */
+public class Mechanism {
+
+	/** Posuny menší než tato část největšího posunu se považují za nulové. */
+	private static final float MOVE_TOLERANCE = 1e-3f;
+
+	/** Posun a pootočení {ux, uz, fi} nosníků (kromě táhel). */
+	private Map <Beam, float[]> beams = new HashMap <Beam, float[]>();
+
+	/** Posuny hmotných bodů. */
+	private Map <Joint, VectorXZ> points = new HashMap <Joint, VectorXZ>();
+
+	private JointMap joints;
+
+
+	/**
+	 * Převede vektor nulového prostoru (po řádcích soustavy) na posuny
+	 * nosníků a hmotných bodů modelu.
+	 */
+	Mechanism(Model model, double[] u) {
+		joints = model.joints;
+		for (Joint joint: joints.values()) {
+			if (joint.allRods && joint.row >= 0) {
+				points.put(joint, new VectorXZ((float)u[joint.row], (float)u[joint.row+1]));
+			}
+		}
+		for (Beam beam: model.beams) {
+			if (!beam.isRod && beam.row >= 0) {
+				beams.put(beam, new float[] {(float)u[beam.row], (float)u[beam.row+1], (float)u[beam.row+2]});
+			}
+		}
+
+		// normování podle největšího posunu
+		float max = 0;
+		for (Joint joint: joints.values()) {
+			max = Math.max(max, getDisplacement(joint).size());
+		}
+		for (Beam beam: beams.keySet()) {
+			for (VectorXZ p: beam.mainPoints) {
+				max = Math.max(max, getDisplacement(beam, p).size());
+			}
+		}
+		if (max == 0) return;
+		for (Map.Entry <Joint, VectorXZ> entry: points.entrySet()) {
+			VectorXZ d = entry.getValue();
+			entry.setValue(new VectorXZ(d.x / max, d.z / max));
+		}
+		for (float[] d: beams.values()) {
+			d[0] /= max;
+			d[1] /= max;
+			d[2] /= max;
+		}
+	}
+
+
+	/**
+	 * Posun bodu nosníku. Moment reakce se v rovnicích bere k počátku
+	 * souřadnic, bod [x; z] se proto posune o (ux + fi*z, uz - fi*x).
+	 * U táhla se posun interpoluje mezi posuny koncových kloubů.
+	 */
+	public VectorXZ getDisplacement(Beam beam, VectorXZ p) {
+		float[] d = beams.get(beam);
+		if (d != null) return new VectorXZ(d[0] + d[2]*p.z, d[1] - d[2]*p.x);
+
+		if (beam.isRod && beam.mainPoints.size() == 2) {
+			VectorXZ a = beam.mainPoints.get(0), b = beam.mainPoints.get(1);
+			VectorXZ da = getDisplacement(joints.get(a)), db = getDisplacement(joints.get(b));
+			float length2 = (b.x-a.x)*(b.x-a.x) + (b.z-a.z)*(b.z-a.z);
+			float t = (length2 == 0) ? 0 : ((p.x-a.x)*(b.x-a.x) + (p.z-a.z)*(b.z-a.z)) / length2;
+			return new VectorXZ(da.x + t*(db.x-da.x), da.z + t*(db.z-da.z));
+		}
+		return new VectorXZ(0, 0);
+	}
+
+	/** Posun kloubu - hmotného bodu, nebo nosníků, které se v něm stýkají. */
+	public VectorXZ getDisplacement(Joint joint) {
+		if (joint == null) return new VectorXZ(0, 0);
+		VectorXZ d = points.get(joint);
+		if (d != null) return d;
+		for (Beam beam: joint.beams) {
+			if (beams.containsKey(beam)) return getDisplacement(beam, joint.position);
+		}
+		return new VectorXZ(0, 0);
+	}
+
+	/** Pohybuje se nosník (některý z jeho bodů)? */
+	public boolean moves(Beam beam) {
+		for (VectorXZ p: beam.mainPoints) {
+			if (getDisplacement(beam, p).size() > MOVE_TOLERANCE) return true;
+		}
+		return false;
+	}
+
+	/** Pohybuje se kloub? */
+	public boolean moves(Joint joint) {
+		return getDisplacement(joint).size() > MOVE_TOLERANCE;
+	}
+
+}
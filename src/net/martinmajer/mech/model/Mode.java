@@ -0,0 +1,113 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Vlastní tvar kmitání - posuny bodů nosníků při kmitání s vlastní
+ * frekvencí, nebo tvar vybočení při ztrátě stability s kritickým
+ * násobkem zatížení. Ohybová čára prvku se mezi uzly interpoluje stejně jako
+ * v matici tuhosti (kubicky z posunů a pootočení konců), podélný posun
+ * lineárně. Posuny jsou normované tak, aby největší posun byl 1.
+ *
+ * @author Martin
+ */
+public class Mode {
+
+	/** Pořadí tvaru od nejnižší frekvence (od 1). */
+	public final int number;
+
+	/** Vlastní číslo - omega^2 u kmitání, kritický násobek zatížení u vzpěru. */
+	public final double eigenvalue;
+
+	/** Tvar vybočení (jinak tvar kmitání). */
+	public final boolean buckling;
+
+	/** Body nosníků a jejich posuny. */
+	private Map <Beam, List <VectorXZ>> points = new HashMap <Beam, List <VectorXZ>>();
+	private Map <Beam, List <VectorXZ>> displacements = new HashMap <Beam, List <VectorXZ>>();
+
+
+	Mode(int number, double eigenvalue, boolean buckling) {
+		this.number = number;
+		this.eigenvalue = eigenvalue;
+		this.buckling = buckling;
+	}
+
+	/** Přidá bod nosníku (v pořadí podél nosníku) a jeho posun. */
+	void add(Beam beam, VectorXZ p, VectorXZ d) {
+		List <VectorXZ> list = points.get(beam);
+		if (list == null) {
+			list = new ArrayList <VectorXZ>();
+			points.put(beam, list);
+			displacements.put(beam, new ArrayList <VectorXZ>());
+		}
+		list.add(p);
+		displacements.get(beam).add(d);
+	}
+
+	/** Normuje posuny podle největšího. */
+	void normalize() {
+		float max = 0;
+		for (List <VectorXZ> list: displacements.values()) {
+			for (VectorXZ d: list) max = Math.max(max, d.size());
+		}
+		if (max == 0) return;
+		for (List <VectorXZ> list: displacements.values()) {
+			for (int i = 0; i < list.size(); i++) {
+				VectorXZ d = list.get(i);
+				list.set(i, new VectorXZ(d.x / max, d.z / max));
+			}
+		}
+	}
+
+	/** Vlastní úhlová frekvence [rad/s]. */
+	public double getOmega() {
+		return buckling ? 0 : Math.sqrt(Math.max(eigenvalue, 0));
+	}
+
+	/** Vlastní frekvence [Hz]. */
+	public double getFrequency() {
+		return getOmega() / (2*Math.PI);
+	}
+
+	/** Kritický násobek zatížení (zatížení krát násobek vyvolá ztrátu stability). */
+	public double getCriticalFactor() {
+		return buckling ? eigenvalue : Double.NaN;
+	}
+
+	/** Body nosníku, ve kterých je známý posun (prázdný seznam, pokud nosník nekmitá). */
+	public List <VectorXZ> getPoints(Beam beam) {
+		List <VectorXZ> list = points.get(beam);
+		return list != null ? list : Collections.<VectorXZ>emptyList();
+	}
+
+	/** Posuny bodů nosníku ve stejném pořadí jako getPoints(). */
+	public List <VectorXZ> getDisplacements(Beam beam) {
+		List <VectorXZ> list = displacements.get(beam);
+		return list != null ? list : Collections.<VectorXZ>emptyList();
+	}
+
+	@Override
+	public String toString() {
+		if (buckling) return String.format(Locale.ENGLISH, "Tvar vybočení %d: kritický násobek %.4g", number, eigenvalue);
+		return String.format(Locale.ENGLISH, "Vlastní tvar %d: f = %.4g Hz", number, getFrequency());
+	}
+
+}
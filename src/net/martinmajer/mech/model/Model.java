@@ -18,9 +18,25 @@
 
 package net.martinmajer.mech.model;
 
-import jama.Matrix;
+import jama.ColumnMatrix;
+import jama.Factorization;
+import jama.GMRESSolver;
+import jama.BiCGSTABSolver;
+import jama.ILUPreconditioner;
+import jama.IterativeSolver;
+import jama.LUDecomposition;
+import jama.MixedPrecisionLUDecomposition;
+import jama.SparseLUDecomposition;
+import jama.SparseMatrix;
+import jama.SparseOrdering;
+import jama.SparseQRDecomposition;
+import jama.TripletMatrix;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 /**
  * Model.
@@ -64,17 +80,61 @@ public class Model implements Serializable {
 	/** Seznam podpor. */
 	public List <Support> supports = new LinkedList <Support>();
 
+	/** Zatěžovací stavy, první z nich je výchozí. */
+	public List <LoadCase> loadCases = new ArrayList <LoadCase>();
+
+	/** Zatěžovací stav, jehož výsledky se zobrazují a do kterého se přidávají nová zatížení. */
+	public transient LoadCase activeLoadCase;
+
+	/** Výsledky výpočtu pro jednotlivé zatěžovací stavy (ve stejném pořadí jako loadCases). */
+	public transient List <LoadCase.Result> loadCaseResults;
+
+	/** Kombinace zatížení. */
+	public List <LoadCombination> loadCombinations = new ArrayList <LoadCombination>();
+
+	/** Výsledky kombinací a obálka, počítají se až při prvním použití. */
+	private transient List <LoadCombination.Result> combinationResults;
+	private transient Envelope envelope;
+
+	/** Opakující se podkonstrukce, jejichž vnitřek deformační metoda kondenzuje. */
+	public List <Substructure> substructures = new ArrayList <Substructure>();
+
+	/** Počet počítaných vlastních tvarů kmitání. */
+	public static final int MODE_COUNT = 6;
+
+	/** Vlastní tvary kmitání a tvary vybočení, počítají se až při prvním použití. */
+	private transient List <Mode> modes;
+	private transient List <Mode> bucklingModes;
+
 
 	/** Množina všech kloubů (do některých však může být připojen jen jeden styčník). */
-	public transient Map <VectorXZ, Joint> joints;
+	public transient JointMap joints;
+
+	/** Spojení nosníků udržované mezi přepočty, viz Topology. */
+	private transient Topology topology;
 
 	/** Body, ve kterých jsou pevné klouby. */
-	public Set <VectorXZ> stiffJoints = new HashSet <VectorXZ>();
+	public transient PointSet stiffPoints = new PointSet(getPrecision());
+
+	/** Pevné klouby v uloženém souboru (viz writeObject()). */
+	private Set <VectorXZ> stiffJoints;
+
+	/**
+	 * Počet neznámých (sloupců matice soustavy). Každá reakce dostane při
+	 * zavedení index neznámé, reakce jedné dvojice sdílejí stejný.
+	 */
+	private transient int unknowns;
 
-	/** Jména zavedených reakcí. */
-	public transient List <String> reactionNames;
+	/** Pro neznámou táhla jeho nosník (podle něj se reakce jmenuje), jinak null. */
+	private transient List <Beam> unknownRods;
 
-	private transient int reactionsCounter = 0;
+	/**
+	 * Jména neznámých a pořadí, ve kterém se vypisují. Slouží jen pro
+	 * výpis a pro párování s jiným řešením (Solution), vytvoří se až po
+	 * zavedení všech reakcí.
+	 */
+	private transient String[] unknownNames;
+	private transient int[] unknownOrder;
 
 	public transient List <Reaction> allReactions;
 
@@ -87,8 +147,169 @@ public class Model implements Serializable {
 
 	public transient boolean determinate = false;
 
+	/** Nejmenší pivot LU rozkladu vztažený k největšímu prvku jeho sloupce (NaN při iteračním řešení). */
+	public transient double pivotRatio = 0;
+
+	/** Počet iterací posledního iteračního řešení, 0 při řešení rozkladem. */
+	public transient int iterations = 0;
+
+	/**
+	 * Počet kroků zpřesňování při řešení rozkladem v jednoduché přesnosti
+	 * (SolverType.MIXED), 0 pokud se použil rozklad v dvojnásobné přesnosti.
+	 */
+	public transient int refinementSteps = 0;
+
+	/** Relativní rezidua řešení po zatěžovacích stavech (viz residual). */
+	private transient double[] residuals;
+
+	/** Hodnost matice rovnic, určuje se jen u soustav, které nejsou staticky určité. */
+	public transient int rank = 0;
+
+	/** Stupeň statické neurčitosti (počet neznámých bez hodnosti matice). */
+	public transient int indeterminacy = 0;
+
+	/** Mechanismy (báze levého nulového prostoru matice rovnic), prázdné u nepohyblivé konstrukce. */
+	public transient List <Mechanism> mechanisms = new ArrayList <Mechanism>();
+
+	/** Relativní reziduum řešení soustavy rovnic. */
+	public transient double residual = 0;
+
+	/** Matice soustavy a její rozklad z posledního úplného přepočtu. */
+	private transient SparseMatrix equationsMatrix;
+	private transient Factorization factorization;
+
+	/** Iterační řešič z posledního úplného přepočtu, pokud se soustava nerozkládala. */
+	private transient IterativeSolver iterativeSolver;
+
+	/**
+	 * Řešení, ze kterého vyjde iterační řešič při příštím úplném přepočtu.
+	 * Pokud není nastaveno, použije se vlastní poslední řešení modelu.
+	 */
+	public transient Solution initialGuess;
+
+	/** Deformační metoda posledního řešení staticky neurčité soustavy. */
+	private transient StiffnessMethod stiffnessMethod;
+
+	/** Rozpracované tažení kloubu, viz startDrag(). */
+	private transient DragSession drag;
+
+	/**
+	 * Kdo model přepočítá po změně. Pokud není nastaven, přepočítá se
+	 * model hned při změně (v aktuálním vlákně).
+	 */
+	public transient Recalculator recalculator;
+
+
+	/** Počet neznámých, od kterého se soustava řeší řídkým LU rozkladem. */
+	private static final int SPARSE_SOLVER_THRESHOLD = 150;
+
+	/** Poměr pivotu, pod kterým je soustava považována za singulární (výjimkový případ). */
+	private static final double PIVOT_TOLERANCE = 1e-10;
+
+	/** Relativní tolerance, pod kterou rozklad QR považuje rovnici za závislou na ostatních. */
+	private static final double RANK_TOLERANCE = 1e-10;
+
+	/** Způsob řešení soustavy rovnic. */
+	public static enum SolverType {
+		/** LU rozklad, do SPARSE_SOLVER_THRESHOLD neznámých plný, jinak řídký. */
+		DIRECT,
+		/** GMRES s předpodmíněním ILU(0). */
+		GMRES,
+		/** BiCGSTAB s předpodmíněním ILU(0). */
+		BICGSTAB,
+		/**
+		 * Řídký LU rozklad v jednoduché přesnosti, řešení se zpřesňuje
+		 * v dvojnásobné přesnosti (viz MixedPrecisionLUDecomposition).
+		 */
+		MIXED
+	}
+
+	/**
+	 * Způsob řešení soustavy, společný pro všechny modely (platí tak i pro
+	 * kopie přepočítávané na pozadí). Pokud iterační řešič nezkonverguje,
+	 * použije se rozklad, který zároveň rozhodne o singularitě.
+	 */
+	public static volatile SolverType solverType = SolverType.DIRECT;
+
+	/** Požadované relativní reziduum iteračního řešení. */
+	private static final double ITERATIVE_TOLERANCE = 1e-12;
+
+	/** Nejvyšší počet iterací pro jeden zatěžovací stav, pak se soustava rozloží. */
+	private static final int ITERATIVE_MAX_ITERATIONS = 1000;
+
+	/** Počet iterací GMRES mezi restarty. */
+	private static final int GMRES_RESTART = 100;
+
+
+	/**
+	 * Přepočet modelu po změně, např. na pozadí nad kopií modelu (viz
+	 * MechSolver). Metoda se volá po každé změně modelu provedené přes
+	 * add* / remove*, loadsOnly říká, že se změnilo jen zatížení.
+	 */
+	public static interface Recalculator {
+		public void modelChanged(Model model, boolean loadsOnly);
+	}
+
+	/**
+	 * Řešení soustavy spolu s rozložením neznámých, slouží jako počáteční
+	 * odhad iteračního řešiče. Neznámé se párují podle jmen reakcí (ta jsou
+	 * při stejné konstrukci stejná), zatěžovací stavy podle jména, takže
+	 * odhad lze převzít i z jiné kopie modelu nebo po změně topologie.
+	 */
+	public static class Solution {
+		private final String[] names;
+		private final List <LoadCase.Result> results;
+
+		private Solution(String[] names, List <LoadCase.Result> results) {
+			this.names = names;
+			this.results = results;
+		}
+
+		/** Sestaví počáteční odhad pro nové rozložení neznámých, null pokud nic nenavazuje. */
+		private ColumnMatrix guess(String[] newNames, List <LoadCase> loadCases, int rows) {
+			// neznámé nového rozložení -> neznámé tohoto řešení
+			int[] old = new int[newNames.length];
+			if (newNames == names) {
+				for (int i = 0; i < old.length; i++) old[i] = i;
+			}
+			else {
+				Map <String, Integer> index = new HashMap <String, Integer>(2*names.length);
+				for (int i = 0; i < names.length; i++) index.put(names[i], i);
+				for (int i = 0; i < old.length; i++) {
+					Integer o = index.get(newNames[i]);
+					old[i] = o != null ? o : -1;
+				}
+			}
+
+			ColumnMatrix x0 = new ColumnMatrix(rows, loadCases.size());
+			boolean any = false;
+			for (int k = 0; k < loadCases.size(); k++) {
+				for (LoadCase.Result result: results) {
+					if (!result.loadCase.name.equals(loadCases.get(k).name)) continue;
+					for (int i = 0; i < old.length; i++) {
+						if (old[i] >= 0) {
+							x0.set(i, k, result.solution[old[i]]);
+							any = true;
+						}
+					}
+					break;
+				}
+			}
+			return any ? x0 : null;
+		}
+	}
+
+	/** Zapamatovaná struktura soustavy během tažení kloubu. */
+	private static class DragSession {
+		Joint joint;
+		SparseMatrix pattern;
+		int[] columnOrdering;	// null pro plný LU rozklad
+	}
+
 
 	public Model() {
+		loadCases.add(new LoadCase("Z1"));
+		activeLoadCase = loadCases.get(0);
 		reset();
 	}
 
@@ -99,83 +320,366 @@ public class Model implements Serializable {
 	 */
 	public void afterLoad() {
 		if (innerForcesScale == 0) innerForcesScale = 100;
+		if (loadCombinations == null) loadCombinations = new ArrayList <LoadCombination>();
+		if (substructures == null) substructures = new ArrayList <Substructure>();
+		assignLoadCases();
+	}
+
+	/** Pevné klouby se ukládají jako množina bodů, stejně jako ve starších verzích. */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		stiffJoints = new HashSet <VectorXZ>(stiffPoints.toList());
+		try {
+			out.defaultWriteObject();
+		} finally {
+			stiffJoints = null;
+		}
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		stiffPoints = new PointSet(getPrecision());
+		if (stiffJoints != null) {
+			for (VectorXZ p: stiffJoints) {
+				stiffPoints.add(p);
+			}
+			stiffJoints = null;
+		}
+	}
 
 	/** Přidá nosník do modelu. */
 	public void addBeam(Beam beam) {
 		beams.add(beam);
 		beam.name = Integer.toString(++beamsCounter);
-		recalculate();
+		changed(false);
 	}
 
 	/** Odstraní nosník z modelu. */
 	public void removeBeam(Beam beam) {
 		beams.remove(beam);
-		recalculate();
+		changed(false);
 	}
 
 	/** Přidá sílu do modelu. */
 	public void addForce(Force.Action force) {
 		forces.add(force);
+		if (force.loadCase == null) force.loadCase = activeLoadCase;
 		force.name = "F" + Integer.toString(++forcesCounter);
-		recalculate();
+		changed(true);
 	}
 
 	/** Odstraní sílu z modelu. */
 	public void removeForce(Force.Action force) {
 		forces.remove(force);
-		recalculate();
+		changed(true);
 	}
 
 	/** Přidá moment do modelu. */
 	public void addMoment(Moment.Action moment) {
 		moments.add(moment);
+		if (moment.loadCase == null) moment.loadCase = activeLoadCase;
 		moment.name = "M" + Integer.toString(++forcesCounter);
-		recalculate();
+		changed(true);
 	}
 
 	/** Odstraní moment z modelu. */
 	public void removeMoment(Moment.Action moment) {
 		moments.remove(moment);
-		recalculate();
+		changed(true);
 	}
 
 	/** Přidá spojité zatížení do modelu. */
 	public void addLoad(Load load) {
 		loads.add(load);
+		if (load.loadCase == null) load.loadCase = activeLoadCase;
 		load.name = "f" + Integer.toString(++forcesCounter);
-		recalculate();
+		changed(true);
 	}
 
 	/** Odstraní spojité zatížení z modelu. */
 	public void removeLoad(Load load) {
 		loads.remove(load);
-		recalculate();
+		changed(true);
 	}
 
 	/** Přidá podporu do modelu. */
 	public void addSupport(Support support) {
 		supports.add(support);
-		recalculate();
+		changed(false);
 	}
 
 	/** Odstraní podporu z modelu. */
 	public void removeSupport(Support support) {
 		supports.remove(support);
-		recalculate();
+		changed(false);
+	}
+
+	/** Přidá do modelu zatěžovací stav. */
+	public void addLoadCase(LoadCase loadCase) {
+		loadCases.add(loadCase);
+		changed(false);
+	}
+
+	/** Odstraní zatěžovací stav i se všemi jeho zatíženími, poslední stav odstranit nelze. */
+	public void removeLoadCase(LoadCase loadCase) {
+		if (loadCases.size() <= 1) return;
+		loadCases.remove(loadCase);
+
+		Iterator <Force.Action> forceIt = forces.iterator();
+		while (forceIt.hasNext()) {
+			if (forceIt.next().loadCase == loadCase) forceIt.remove();
+		}
+		Iterator <Moment.Action> momentIt = moments.iterator();
+		while (momentIt.hasNext()) {
+			if (momentIt.next().loadCase == loadCase) momentIt.remove();
+		}
+		Iterator <Load> loadIt = loads.iterator();
+		while (loadIt.hasNext()) {
+			if (loadIt.next().loadCase == loadCase) loadIt.remove();
+		}
+
+		for (LoadCombination combination: loadCombinations) {
+			combination.factors.remove(loadCase);
+		}
+
+		if (activeLoadCase == loadCase) activeLoadCase = loadCases.get(0);
+		changed(false);
+	}
+
+	/** Přidá kombinaci zatížení. */
+	public void addLoadCombination(LoadCombination combination) {
+		loadCombinations.add(combination);
+		combinationResults = null;
+		envelope = null;
+	}
+
+	/** Odstraní kombinaci zatížení. */
+	public void removeLoadCombination(LoadCombination combination) {
+		loadCombinations.remove(combination);
+		combinationResults = null;
+		envelope = null;
+	}
+
+	/** Přidá podkonstrukci. */
+	public void addSubstructure(Substructure substructure) {
+		substructures.add(substructure);
+		changed(false);
+	}
+
+	/** Odstraní podkonstrukci. */
+	public void removeSubstructure(Substructure substructure) {
+		substructures.remove(substructure);
+		changed(false);
+	}
+
+	/**
+	 * Vrátí výsledky všech kombinací zatížení (ve stejném pořadí jako
+	 * loadCombinations), nebo null, pokud model není vyřešen.
+	 */
+	public List <LoadCombination.Result> getCombinationResults() {
+		if (combinationResults == null) evaluateCombinations();
+		return combinationResults;
+	}
+
+	/** Vrátí obálku přes všechny kombinace, nebo null, pokud model není vyřešen nebo nemá kombinace. */
+	public Envelope getEnvelope() {
+		if (combinationResults == null) evaluateCombinations();
+		return envelope;
+	}
+
+	/**
+	 * Vrátí vlastní tvary kmitání s nejnižšími frekvencemi (deformační
+	 * metodou se stejnými prvky jako při výpočtu), nebo prázdný seznam,
+	 * pokud model není vyřešen nebo je pohyblivý.
+	 */
+	public List <Mode> getModes() {
+		if (!determinate) return Collections.<Mode>emptyList();
+		if (modes == null) modes = getStiffnessMethod().modes(MODE_COUNT);
+		return modes;
+	}
+
+	/**
+	 * Vrátí tvary vybočení s nejnižšími kritickými násobky zatížení
+	 * zobrazeného zatěžovacího stavu (z normálových sil lineárního výpočtu),
+	 * nebo prázdný seznam, pokud model není vyřešen, je pohyblivý nebo
+	 * v něm nic není tlačené.
+	 */
+	public List <Mode> getBucklingModes() {
+		if (!determinate) return Collections.<Mode>emptyList();
+		if (bucklingModes == null) bucklingModes = getStiffnessMethod().buckling(activeLoadCase, MODE_COUNT);
+		return bucklingModes;
+	}
+
+	/**
+	 * Deformační metoda z výpočtu (u staticky neurčité soustavy), nebo
+	 * nová - její matice tuhosti a rozklad sdílejí vlastní tvary i vybočení.
+	 */
+	private StiffnessMethod getStiffnessMethod() {
+		if (stiffnessMethod == null) stiffnessMethod = new StiffnessMethod(this, unknowns);
+		return stiffnessMethod;
+	}
+
+	/** Vrátí nejmenší a největší velikost reakce přes všechny kombinace. */
+	public float[] getReactionEnvelope(Reaction reaction) {
+		Envelope envelope = getEnvelope();
+		if (envelope == null) return null;
+		int col = reaction.getUnknown();
+		return new float[] { (float)envelope.reactionMin[col], (float)envelope.reactionMax[col] };
+	}
+
+	/**
+	 * Spočítá kombinace a obálku sečtením výsledků zatěžovacích stavů,
+	 * soustava se znovu neřeší.
+	 */
+	private void evaluateCombinations() {
+		if (!determinate || loadCombinations.isEmpty()) return;
+
+		// průběhy stavů se počítají postupně (nastavují velikosti reakcí),
+		// samotné sčítání už stav modelu nemění a běží paralelně
+		List <Beam> solidBeams = new ArrayList <Beam>();
+		for (Beam beam: beams) {
+			if (!beam.isRod) solidBeams.add(beam);
+		}
+		Beam[] beamArray = solidBeams.toArray(new Beam[solidBeams.size()]);
+
+		List <List <List <Beam.ForcesDistribution>>> caseForces = new ArrayList <List <List <Beam.ForcesDistribution>>>(beamArray.length);
+		for (int b = 0; b < beamArray.length; b++) {
+			List <List <Beam.ForcesDistribution>> beamForces = new ArrayList <List <Beam.ForcesDistribution>>();
+			for (LoadCase loadCase: loadCases) {
+				beamForces.add(getInternalForces(beamArray[b], loadCase));
+			}
+			caseForces.add(beamForces);
+		}
+
+		double[][] caseSolutions = new double[loadCases.size()][];
+		for (int k = 0; k < loadCases.size(); k++) {
+			caseSolutions[k] = loadCaseResults.get(k).solution;
+		}
+
+		float[][] factors = new float[loadCombinations.size()][loadCases.size()];
+		for (int c = 0; c < loadCombinations.size(); c++) {
+			for (int k = 0; k < loadCases.size(); k++) {
+				factors[c][k] = loadCombinations.get(c).getFactor(loadCases.get(k));
+			}
+		}
+
+		Superposition superposition = new Superposition(caseSolutions, beamArray, caseForces, factors);
+		superposition.combine();
+
+		combinationResults = new ArrayList <LoadCombination.Result>();
+		for (int c = 0; c < loadCombinations.size(); c++) {
+			LoadCombination.Result result = new LoadCombination.Result(loadCombinations.get(c), superposition.getSolution(c));
+			result.internalForces = new HashMap <Beam, List <Beam.ForcesDistribution>>();
+			for (int b = 0; b < beamArray.length; b++) {
+				result.internalForces.put(beamArray[b], superposition.getForces(c, b));
+			}
+			combinationResults.add(result);
+		}
+		envelope = superposition.envelope();
+	}
+
+	/** Zobrazí výsledky zadaného zatěžovacího stavu. */
+	public void setActiveLoadCase(LoadCase loadCase) {
+		if (activeLoadCase != loadCase) bucklingModes = null;
+		activeLoadCase = loadCase;
+		LoadCase.Result result = getResult(loadCase);
+		if (result != null) showResult(result);
+	}
+
+	/** Vrátí výsledky zadaného zatěžovacího stavu, nebo null, pokud model není vyřešen. */
+	public LoadCase.Result getResult(LoadCase loadCase) {
+		for (LoadCase.Result result: loadCaseResults) {
+			if (result.loadCase == loadCase) return result;
+		}
+		return null;
+	}
+
+	/** Vrátí velikost reakce v zadaném zatěžovacím stavu. */
+	public float getReactionSize(Reaction reaction, LoadCase loadCase) {
+		LoadCase.Result result = getResult(loadCase);
+		if (result == null) return Float.NaN;
+		return (float)result.solution[reaction.getUnknown()];
+	}
+
+	/**
+	 * Vrátí průběhy vnitřních sil nosníku v zadaném zatěžovacím stavu,
+	 * nebo null, pokud model není vyřešen nebo je nosník táhlem.
+	 */
+	public List <Beam.ForcesDistribution> getInternalForces(Beam beam, LoadCase loadCase) {
+		LoadCase.Result result = getResult(loadCase);
+		if (result == null || beam.isRod) return null;
+
+		if (result.internalForces == null) {
+			// průběhy spočítáme pro všechny nosníky najednou s reakcemi
+			// zadaného stavu, potom vrátíme reakce zobrazovaného stavu
+			setReactionSizes(result.solution);
+			result.internalForces = new HashMap <Beam, List <Beam.ForcesDistribution>>();
+			for (Beam b: beams) {
+				if (!b.isRod) result.internalForces.put(b, b.computeInternalForces(loadCase));
+			}
+			setReactionSizes(getResult(activeLoadCase).solution);
+		}
+		return result.internalForces.get(beam);
+	}
+
+	/**
+	 * Zajistí, že model má alespoň jeden zatěžovací stav a že každé
+	 * zatížení patří do některého z nich (starší soubory stavy nemají).
+	 */
+	private void assignLoadCases() {
+		if (loadCases == null) loadCases = new ArrayList <LoadCase>();
+		if (loadCases.isEmpty()) loadCases.add(new LoadCase("Z1"));
+		LoadCase first = loadCases.get(0);
+
+		for (Force.Action force: forces) {
+			if (!loadCases.contains(force.loadCase)) force.loadCase = first;
+		}
+		for (Moment.Action moment: moments) {
+			if (!loadCases.contains(moment.loadCase)) moment.loadCase = first;
+		}
+		for (Load load: loads) {
+			if (!loadCases.contains(load.loadCase)) load.loadCase = first;
+		}
+		if (!loadCases.contains(activeLoadCase)) activeLoadCase = first;
 	}
 
 	/** Resetuje model. */
 	private void reset() {
-		reactionNames = new ArrayList <String>();
-		reactionsCounter = 0;
+		unknowns = 0;
+		unknownRods = new ArrayList <Beam>();
+		unknownNames = null;
+		unknownOrder = null;
 		allReactions  = new LinkedList <Reaction>();
 		reactionsString = null;
 		maxForce = 0;
 		maxMoment = 0;
 		determinate = false;
-		joints = new HashMap <VectorXZ, Joint>();
+		pivotRatio = 0;
+		iterations = 0;
+		refinementSteps = 0;
+		residuals = null;
+		rank = 0;
+		indeterminacy = 0;
+		mechanisms = new ArrayList <Mechanism>();
+		stiffnessMethod = null;
+		modes = null;
+		bucklingModes = null;
+		residual = 0;
+		equationsMatrix = null;
+		factorization = null;
+		iterativeSolver = null;
+		drag = null;
+		loadCaseResults = new ArrayList <LoadCase.Result>();
+		combinationResults = null;
+		envelope = null;
+		joints = new JointMap(getPrecision());
+		if (stiffPoints.getUnit() != getPrecision()) {
+			// změnilo se měřítko
+			PointSet points = new PointSet(getPrecision());
+			for (VectorXZ p: stiffPoints.toList()) {
+				points.add(p);
+			}
+			stiffPoints = points;
+		}
 		for (Beam beam: beams) {
 			beam.reset();
 		}
@@ -193,27 +697,82 @@ public class Model implements Serializable {
 		}
 	}
 
-	/** Vytvoří jméno pro novou reakci. */
-	private String getReactionName() {
-		String name = null;
-		do {
-			name = "R" + ++reactionsCounter;
-			if (reactionNames.contains(name)) {
-				name = null;
+	/**
+	 * Zavede novou neznámou a vrátí její index. Neznámá táhla se bude
+	 * jmenovat podle nosníku (rod), ostatní R1, R2, ...
+	 */
+	private int newUnknown(Beam rod) {
+		unknownRods.add(rod);
+		return unknowns++;
+	}
+
+	/**
+	 * Pojmenuje neznámé a reakce: táhla "R" + jméno nosníku, ostatní podle
+	 * pořadí R1, R2, ... (obsazená jména se přeskočí). Určí také pořadí
+	 * výpisu podle čísla ve jméně.
+	 */
+	private void nameUnknowns() {
+		final String[] names = new String[unknowns];
+		Set <String> used = new HashSet <String>(2*unknowns);
+		int counter = 0;
+		for (int i = 0; i < unknowns; i++) {
+			Beam rod = unknownRods.get(i);
+			String name = rod != null ? "R" + rod.name : null;
+			while (name == null || used.contains(name)) {
+				name = "R" + ++counter;
+			}
+			used.add(name);
+			names[i] = name;
+		}
+		for (Reaction reaction: allReactions) {
+			reaction.setName(names[reaction.getUnknown()]);
+		}
+
+		// jména jsou "R" + číslo, řadí se podle délky a pak abecedně
+		Integer[] order = new Integer[unknowns];
+		for (int i = 0; i < unknowns; i++) order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				String s1 = names[i1], s2 = names[i2];
+				if (s1.length() != s2.length()) return s1.length() - s2.length();
+				return s1.compareTo(s2);
 			}
-		} while (name == null);
-		return name;
+		});
+		unknownOrder = new int[unknowns];
+		for (int i = 0; i < unknowns; i++) unknownOrder[i] = order[i];
+		unknownNames = names;
+	}
+
+	/**
+	 * Oznámí změnu modelu. Přepočet provede recalculator, pokud je nastaven,
+	 * jinak se model přepočítá hned.
+	 */
+	public void changed(boolean loadsOnly) {
+		drag = null;
+		if (recalculator != null) recalculator.modelChanged(this, loadsOnly);
+		else if (loadsOnly) recalculateLoads();
+		else recalculate();
 	}
 
-	/** Vrátí jméno pro reakci, nebo vytvoří nové, ještě neobsazené. */
-	private String getReactionName(String attempt) {
-		if (reactionNames.contains(attempt)) return getReactionName();
-		else return attempt;
+	/**
+	 * Ukončí výpočet, pokud bylo vlákno přerušeno (výpočet na pozadí byl
+	 * zrušen, protože se model mezitím znovu změnil).
+	 */
+	private static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("Výpočet byl zrušen.");
+		}
 	}
 
-	/** Přepočítá model. */
+	/**
+	 * Přepočítá model. Při přerušení vlákna se výpočet ukončí výjimkou
+	 * CancellationException a model zůstane v nekonzistentním stavu.
+	 */
 	public void recalculate() {
+		Solution guess = (initialGuess != null) ? initialGuess : getSolution();
+		initialGuess = null;
 		reset();
+		assignLoadCases();
 
 		// seřadíme nosníky podle jména, ať vznikají stejné reakce
 		// při různém pořadí přidání do modelu
@@ -223,10 +782,11 @@ public class Model implements Serializable {
 			}
 		});
 
-		// Přidáme do modelu nosníky a vytvoříme klouby
-		for (Beam beam: beams) {
-			bindBeam(beam);
-		}
+		// Přidáme do modelu nosníky a vytvoříme klouby, spojení se najdou
+		// jen pro nosníky přidané nebo změněné od posledního přepočtu
+		updateTopology();
+		topology.apply(this);
+		checkCancelled();
 
 		// Přidáme do modelu síly
 		for (Force.Action force: forces) {
@@ -247,11 +807,18 @@ public class Model implements Serializable {
 		for (Support support: supports) {
 			bindSupport(support);
 		}
+		checkCancelled();
+
+		for (VectorXZ p: stiffPoints.toList()) {
+			if (!joints.containsKey(p)) stiffPoints.remove(p);
+		}
 
-		Iterator <VectorXZ> stiffIt = stiffJoints.iterator();
-		while (stiffIt.hasNext()) {
-			VectorXZ p = stiffIt.next();
-			if (!joints.containsKey(p)) stiffIt.remove();
+		// Zapamatujeme si, které nosníky by mohly být táhly bez ohledu
+		// na zatížení - podle toho se při změně zatížení pozná, zda se
+		// nezměnil tvar soustavy
+		for (Beam beam: beams) {
+			beam.rodCandidate = beam.mainPoints.size() == 2 && !beam.closed
+					&& beam.allPoints.size() - countActionPoints(beam) == 2;
 		}
 
 		// Nejdřív se podíváme, jestli nemůžeme některé nosníky převést na táhla,
@@ -274,23 +841,21 @@ public class Model implements Serializable {
 					VectorXZ dirA = new VectorXZ(b.x-a.x, b.z-a.z).normalize();
 					VectorXZ dirB = new VectorXZ(-dirA.x, -dirA.z);
 
-					String name = getReactionName("R" + beam.name);
+					int unknown = newUnknown(beam);
 
 					Force.Reaction forceA = new Force.Reaction();
-					forceA.origin = a.clone();
+					forceA.origin = jointA.position.clone();
 					forceA.direction = dirA;
-					forceA.setName(name);
+					forceA.unknown = unknown;
 
 					Force.Reaction forceB = new Force.Reaction();
-					forceB.origin = b.clone();
+					forceB.origin = jointB.position.clone();
 					forceB.direction = dirB;
-					forceB.setName(name);
+					forceB.unknown = unknown;
 
 					jointA.forces.add(forceA);
 					jointB.forces.add(forceB);
 
-					reactionNames.add(name);
-					beam.rodReactionName = name;
 					beam.rodReaction = forceA;
 					allReactions.add(forceA);
 					allReactions.add(forceB);
@@ -300,13 +865,10 @@ public class Model implements Serializable {
 
 		// Nahradíme všechny podpory silami resp. momenty
 		// a) na kloubech
-		for (VectorXZ p: joints.keySet()) {
-			Joint joint = joints.get(p);
+		for (Joint joint: joints.values()) {
 			for (Support support: joint.supports) {
 				for (Reaction reaction: support.getReactions()) {
-					String name = getReactionName();
-					reaction.setName(name);
-					reactionNames.add(name);
+					reaction.setUnknown(newUnknown(null));
 					allReactions.add(reaction);
 					if (reaction instanceof Force) joint.forces.add((Force)reaction);
 					else joint.moments.add((Moment)reaction);
@@ -324,9 +886,7 @@ public class Model implements Serializable {
 			for (Beam.InnerPoint toReplace: pointsWithSupport) {
 				List <Beam.InnerPoint> newPoints = new LinkedList <Beam.InnerPoint>();
 				for (Reaction reaction: toReplace.support.getReactions()) {
-					String name = getReactionName();
-					reaction.setName(name);
-					reactionNames.add(name);
+					reaction.setUnknown(newUnknown(null));
 					allReactions.add(reaction);
 					Beam.InnerPoint newPoint = new Beam.InnerPoint(toReplace);
 					if (reaction instanceof Force) newPoint.force = (Force)reaction;
@@ -338,8 +898,8 @@ public class Model implements Serializable {
 		}
 
 		// Nahradíme klouby silami
-		for (VectorXZ p: joints.keySet()) {
-			Joint joint = joints.get(p);
+		checkCancelled();
+		for (Joint joint: joints.values()) {
 
 			Beam current = null, prev = null;
 
@@ -357,29 +917,29 @@ public class Model implements Serializable {
 				if (prev != null) {
 					// spojíme nosníky dvojicí sil
 					Force.Reaction xPlus = new Force.Reaction();
-					xPlus.setName(getReactionName());
+					xPlus.unknown = newUnknown(null);
 					xPlus.direction = new VectorXZ(1, 0);
 					xPlus.origin = joint.position;
 
 					Force.Reaction xMinus = new Force.Reaction();
-					xMinus.setName(xPlus.getName());
+					xMinus.unknown = xPlus.unknown;
 					xMinus.direction = new VectorXZ(-1, 0);
 					xMinus.origin = joint.position;
 
 					Moment.Reaction mPlus = null;
 					if (joint.stiff) {
 						mPlus = new Moment.Reaction();
-						mPlus.setName(getReactionName());
+						mPlus.unknown = newUnknown(null);
 						mPlus.origin = joint.position;
 					}
 
 					Force.Reaction zPlus = new Force.Reaction();
-					zPlus.setName(getReactionName());
+					zPlus.unknown = newUnknown(null);
 					zPlus.direction = new VectorXZ(0, 1);
 					zPlus.origin = joint.position;
 
 					Force.Reaction zMinus = new Force.Reaction();
-					zMinus.setName(zPlus.getName());
+					zMinus.unknown = zPlus.unknown;
 					zMinus.direction = new VectorXZ(0, -1);
 					zMinus.origin = joint.position;
 
@@ -387,14 +947,10 @@ public class Model implements Serializable {
 					if (joint.stiff) {
 						mMinus = new Moment.Reaction();
 						mMinus.opposite = true;
-						mMinus.setName(mPlus.getName());
+						mMinus.unknown = mPlus.unknown;
 						mMinus.origin = joint.position;
 					}
 
-					reactionNames.add(xPlus.name);
-					reactionNames.add(zPlus.name);
-					if (joint.stiff) reactionNames.add(mPlus.name);
-
 					allReactions.add(xPlus);
 					allReactions.add(xMinus);
 					allReactions.add(zPlus);
@@ -461,167 +1017,114 @@ public class Model implements Serializable {
 			}
 		}
 
-		// Vytvoříme mapu jméno reakce -> index sloupce v matici
-		Map <String, Integer> nameMap = new HashMap <String, Integer>();
-		int reactions = 0;
-		for (String name: reactionNames) {
-			nameMap.put(name, reactions++);
-		}
+		// Pojmenujeme reakce pro výpis
+		nameUnknowns();
 
-		// Sestavíme matici
-		ArrayList <double[]> leftRows = new ArrayList<double[]>();
-		ArrayList <Double> rightRows = new ArrayList<Double>();
+		// Očíslujeme klouby pro deformační metodu
+		checkCancelled();
+		renumberJoints();
+		int reactions = unknowns;
 
-		// Projdeme klouby (dva řádky za každý kloub)
-		for (VectorXZ p: joints.keySet()) {
-			Joint joint = joints.get(p);
+		// Spočítáme rovnice - dvě za každý hmotný bod, tři za každý nosník
+		int rows = 0;
+		for (Joint joint: joints.values()) {
 			if (joint.allRods) {
-				double[] xEq = new double[reactions];
-				double[] zEq = new double[reactions];
-				double xSum = 0, zSum = 0;
-
-				for (Force f: joint.forces) {
-					if (f instanceof Force.Action) {
-						xSum -= f.size*f.direction.x;
-						zSum -= f.size*f.direction.z;
-					}
-					else if (f instanceof Force.Reaction) {
-						xEq[nameMap.get(f.name)] += f.direction.x;
-						zEq[nameMap.get(f.name)] += f.direction.z;
-					}
-				}
-
-				leftRows.add(xEq);
-				leftRows.add(zEq);
-				rightRows.add(xSum);
-				rightRows.add(zSum);
+				joint.row = rows;
+				rows += 2;
 			}
 		}
-
-		// Projdeme nosníky (tři řádky za každý nosník)
 		for (Beam beam: beams) {
 			if (!beam.isRod) {
-				double[] xEq = new double[reactions];
-				double[] zEq = new double[reactions];
-				double[] mEq = new double[reactions];
-				double xSum = 0, zSum = 0, mSum = 0;
-
-				// osamělé síly / momenty
-				for (VectorXZ p: beam.allPoints) {
-					if (p instanceof Beam.InnerPoint) {
-						Beam.InnerPoint ip = (Beam.InnerPoint)p;
-						if (ip.force != null && ip.force instanceof Force.Action) {
-							Force f = ip.force;
-							xSum -= f.size*f.direction.x;
-							zSum -= f.size*f.direction.z;
-							mSum -= f.size*(f.direction.x*f.origin.z - f.direction.z*f.origin.x);
-						}
-						else if (ip.force != null && ip.force instanceof Force.Reaction) {
-							Force f = ip.force;
-							xEq[nameMap.get(f.name)] += f.direction.x;
-							zEq[nameMap.get(f.name)] += f.direction.z;
-							mEq[nameMap.get(f.name)] += (f.direction.x*f.origin.z - f.direction.z*f.origin.x);
-						}
-						else if (ip.moment != null && ip.moment instanceof Moment.Action) {
-							mSum -= ip.moment.size;
-						}
-						else if (ip.moment != null && ip.moment instanceof Moment.Reaction) {
-							mEq[nameMap.get(ip.moment.name)] += ((Moment.Reaction)ip.moment).opposite ? -1 : 1;
-						}
-					}
-				}
-
-				// spojitá zatížení
-				for (Load load: beam.loads) {
-					float size = load.getSize();
-					VectorXZ center = load.getCenter();
-					VectorXZ direction = load.direction;
-					xSum -= size*direction.x;
-					zSum -= size*direction.z;
-					mSum -= size*(direction.x*center.z - direction.z*center.x);
-				}
-
-				leftRows.add(xEq);
-				leftRows.add(zEq);
-				leftRows.add(mEq);
-				rightRows.add(xSum);
-				rightRows.add(zSum);
-				rightRows.add(mSum);
+				beam.row = rows;
+				rows += 3;
 			}
 		}
 
-		double[][] leftRowsArray = new double[leftRows.size()][reactions];
-		double[][] rightRowsArray = new double[leftRowsArray.length][1];
-		//rightRowsArray[0] = new double[leftRowsArray.length];
-
-		for (int row = 0; row < leftRows.size(); row++) {
-			leftRowsArray[row] = new double[reactions];
-			for (int col = 0; col < reactions; col++) {
-				leftRowsArray[row][col] = leftRows.get(row)[col];
-			}
-			rightRowsArray[row] = new double[] {rightRows.get(row)};
-		}
+		TripletMatrix leftTriplets = assembleLeftSide(rows, reactions);
 
-		if (leftRowsArray.length > 0) {
-			Matrix equationsMatrix = new Matrix(leftRowsArray);
-			Matrix sumMatrix = new Matrix(rightRowsArray);
+		// Pravá strana soustavy - zatížení, sloupec za každý zatěžovací stav
+		ColumnMatrix rightRows = assembleRightSide(rows);
+		checkCancelled();
 
-			//System.out.printf(Locale.ENGLISH, ("Řádky: %d, neznámé: %d\n", leftRowsArray.length, reactions);
+		if (rows > 0) {
+			//System.out.printf(Locale.ENGLISH, ("Řádky: %d, neznámé: %d\n", rows, reactions);
 
-			if (reactions > leftRowsArray.length) {
-				reactionsString = (reactions - leftRowsArray.length) + "x staticky neurčitá.";
-			}
-			else if (reactions < leftRowsArray.length) {
-				reactionsString = (leftRowsArray.length - reactions) + "x staticky přeurčitá.";
+			SparseMatrix equationsMatrix = leftTriplets.compress();
+			// beze změny spojení nosníků a se stejnou strukturou soustavy se
+			// převezme pořadí sloupců rozkladu, při stejných hodnotách i rozklad
+			// a rozbor hodnosti z minulého přepočtu
+			Topology.Layout previous = topology.replaceLayout(equationsMatrix);
+			boolean sameValues = previous != null && previous.hasValues(equationsMatrix);
+			if (reactions != rows) {
+				analyzeRank(equationsMatrix, rows, reactions, sameValues ? previous : null);
+				if (indeterminacy > 0 && rank == rows) solveIndeterminate(equationsMatrix, rightRows);
 			}
 			else {
 				try {
-					double det = equationsMatrix.det();
-					System.out.println(det);
-					if (Math.abs(det) < 0.0000001) throw new Exception();
-
-					//LUDecomposition lud = new LUDecomposition(equationsMatrix);
-					Matrix solutionMatrix = equationsMatrix.solve(sumMatrix);
-					double[][] solution = solutionMatrix.getArray();
-
-
-					for (Reaction reaction: allReactions) {
-						float size = (float)solution[nameMap.get(reaction.getName())][0];
-						reaction.setSize(size);
 
-						// zapamatujeme si největší sílu
-						if (reaction instanceof Force.Reaction) {
-							if (Math.abs(size) > maxForce) maxForce = Math.abs(size);
+					// všechny zatěžovací stavy najednou, každý je jeden sloupec
+					ColumnMatrix solution = null;
+					if (solverType == SolverType.GMRES || solverType == SolverType.BICGSTAB) {
+						IterativeSolver iterative = createIterativeSolver(equationsMatrix);
+						ColumnMatrix x0 = (guess == null) ? null : guess.guess(unknownNames, loadCases, rows);
+						solution = iterative.solve(rightRows, x0);
+						iterations = iterative.getIterations();
+						if (iterative.hasConverged()) {
+							pivotRatio = Double.NaN;
+							this.iterativeSolver = iterative;
+						}
+						else {
+							solution = null;
 						}
 					}
 
-					Collections.sort(reactionNames, new Comparator<String>() {
-						public int compare(String o1, String o2) {
-							try {
-								String s1 = o1.substring(1);
-								String s2 = o2.substring(1);
-								if (s1.length() > s2.length()) return 1;
-								else if (s1.length() < s2.length()) return -1;
-								else return s1.compareTo(s2);
+					if (solution == null) {
+						// jediný rozklad rozhodne o singularitě i vyřeší soustavu
+						Factorization lu;
+						if (solverType == SolverType.MIXED) {
+							lu = new MixedPrecisionLUDecomposition(equationsMatrix);
+						}
+						else if (sameValues && previous.factorization != null) {
+							lu = previous.factorization;
+						}
+						else if (reactions >= SPARSE_SOLVER_THRESHOLD) {
+							if (previous != null && previous.columnOrdering != null) {
+								lu = new SparseLUDecomposition(equationsMatrix, previous.columnOrdering);
 							}
-							catch (IndexOutOfBoundsException e) {
-								return o1.compareTo(o2);
+							else {
+								lu = new SparseLUDecomposition(equationsMatrix);
+							}
+						}
+						else {
+							lu = new LUDecomposition(equationsMatrix);
+						}
+						pivotRatio = lu.getPivotRatio();
+						if (!lu.isNonsingular() || pivotRatio < PIVOT_TOLERANCE) throw new Exception();
+
+						solution = lu.solve(rightRows);
+						this.factorization = lu;
+						updateRefinement();
+						if (!(lu instanceof MixedPrecisionLUDecomposition)) {
+							Topology.Layout layout = topology.getLayout();
+							layout.factorization = lu;
+							if (lu instanceof SparseLUDecomposition) {
+								layout.columnOrdering = ((SparseLUDecomposition)lu).getColumnPermutation();
 							}
 						}
-					});
-
-					StringBuilder sb = new StringBuilder();
-
-					for (String reactionName: reactionNames) {
-						sb.append(String.format(Locale.ENGLISH, "%3s = % 9.3f\n", reactionName, solution[nameMap.get(reactionName)][0]));
 					}
+					residual = relativeResidual(equationsMatrix, solution, rightRows);
 
-					reactionsString = sb.toString();
-					
-					determinate = true;
+					this.equationsMatrix = equationsMatrix;
+
+					applySolution(solution);
+				}
+				catch (CancellationException e) {
+					throw e;
 				}
 				catch (Exception e) {
-					reactionsString = "Výjimkový případ.";
+					// singulární soustava, rozklad QR najde mechanismy
+					analyzeRank(equationsMatrix, rows, reactions, sameValues ? previous : null);
+					if (indeterminacy > 0 && rank == rows) solveIndeterminate(equationsMatrix, rightRows);
 				}
 			}
 		}
@@ -631,26 +1134,670 @@ public class Model implements Serializable {
 	}
 
 
-	private static final float EPSILON = 0.03f;
-
-	/** Rozhodne, zda bod C leží na úsečce AB. */
-	private boolean isPointOnLine(VectorXZ a, VectorXZ b, VectorXZ c) {
-		// vertikální čára
-		if (a.x == b.x) {
-			if (c.x == a.x && ((a.z <= c.z && c.z <= b.z) || (a.z >= c.z && c.z >= b.z))) return true;
-			else return false;
+	/**
+	 * Určí hodnost matice rovnic rozkladem QR a z ní stupeň statické
+	 * neurčitosti a mechanismy. Mechanismy jsou levý nulový prostor matice
+	 * (virtuální posuny, při kterých reakce nekonají práci), tedy nulový
+	 * prostor transponované matice. Rozbor se převezme z předchozího
+	 * přepočtu se stejnou soustavou (previous), pokud je zadaný.
+	 */
+	private void analyzeRank(SparseMatrix equationsMatrix, int rows, int reactions, Topology.Layout previous) {
+		ColumnMatrix modes;
+		if (previous != null && previous.nullSpace != null) {
+			rank = previous.rank;
+			modes = previous.nullSpace;
 		}
-		// horizontální čára
-		else if (a.z == b.z) {
-			if (c.z == a.z && ((a.x <= c.x && c.x <= b.x) || (a.x >= c.x && c.x >= b.x))) return true;
-			else return false;
+		else {
+			SparseQRDecomposition qr = new SparseQRDecomposition(equationsMatrix.transpose(), RANK_TOLERANCE);
+			checkCancelled();
+			rank = qr.rank();
+			modes = qr.getNullSpace();
+		}
+		Topology.Layout layout = topology.getLayout();
+		layout.rank = rank;
+		layout.nullSpace = modes;
+		indeterminacy = reactions - rank;
+		for (int k = 0; k < modes.getColumnDimension(); k++) {
+			mechanisms.add(new Mechanism(this, modes.getColumn(k)));
+		}
+
+		int movable = rows - rank;
+		if (rank == Math.min(rows, reactions)) {
+			// plná hodnost, rozhoduje jen počet rovnic a neznámých
+			if (indeterminacy > 0) reactionsString = indeterminacy + "x staticky neurčitá.";
+			else if (movable > 0) reactionsString = movable + "x staticky přeurčitá.";
+			else reactionsString = "Výjimkový případ.";
 		}
-		// ostatní případy... nehrozí žádné dělení nulou
 		else {
-			float alpha1 = (c.x - a.x) / (b.x - a.x);
-			float alpha2 = (c.z - a.z) / (b.z - a.z);
+			StringBuilder sb = new StringBuilder("Výjimkový případ");
+			if (movable > 0) sb.append(String.format(Locale.ENGLISH, ":\n%dx staticky přeurčitá", movable));
+			if (indeterminacy > 0) sb.append(String.format(Locale.ENGLISH, "%s%dx staticky neurčitá", movable > 0 ? ",\n" : ":\n", indeterminacy));
+			sb.append(".");
+			reactionsString = sb.toString();
+		}
+	}
 
-			// tolerance závislá na délce čáry
+	/**
+	 * Očísluje klouby (Joint.index) metodou reverse Cuthill-McKee na grafu,
+	 * ve kterém jsou sousední klouby spojené nosníkem. Neznámé deformační
+	 * metody se číslují po kloubech, matice tuhosti pak má úzký profil -
+	 * u dlouhého mostu nebo haly odpovídá šířka pásu příčnému řezu
+	 * konstrukcí, ne pořadí, ve kterém byly nosníky nakresleny.
+	 */
+	private void renumberJoints() {
+		List <Joint> list = new ArrayList <Joint>(joints.values());
+		Map <Joint, Integer> position = new HashMap <Joint, Integer>();
+		for (Joint joint: list) {
+			position.put(joint, position.size());
+		}
+		int n = list.size();
+		TripletMatrix graph = new TripletMatrix(n, n, 4*n);
+		for (int i = 0; i < n; i++) {
+			graph.add(i, i, 1);
+		}
+		for (Beam beam: beams) {
+			Joint last = null;
+			for (VectorXZ p: beam.allJoints) {
+				Joint joint = joints.get(p);
+				if (joint == null) continue;
+				if (last != null && last != joint) {
+					int a = position.get(last), b = position.get(joint);
+					graph.add(a, b, 1);
+					graph.add(b, a, 1);
+				}
+				last = joint;
+			}
+		}
+		int[] order = SparseOrdering.reverseCuthillMcKee(graph.compress());
+		for (int k = 0; k < n; k++) {
+			list.get(order[k]).index = k;
+		}
+	}
+
+	/**
+	 * Staticky neurčitou soustavu bez mechanismů vyřeší deformační metodou.
+	 * Hodnoty reakcí z ní splňují rovnice rovnováhy, použijí se proto jako
+	 * řešení soustavy; průběhy vnitřních sil se spočítají jako obvykle.
+	 */
+	private void solveIndeterminate(SparseMatrix equationsMatrix, ColumnMatrix rightRows) {
+		stiffnessMethod = new StiffnessMethod(this, unknowns);
+		ColumnMatrix solution = stiffnessMethod.solve();
+		checkCancelled();
+		if (solution == null) return;
+
+		pivotRatio = Double.NaN;
+		residual = relativeResidual(equationsMatrix, solution, rightRows);
+		applySolution(solution);
+	}
+
+	/**
+	 * Přepočítá model po změně, která se týká pouze zatížení (přidání,
+	 * odebrání, posunutí nebo změna velikosti síly, momentu či spojitého
+	 * zatížení). Matice soustavy zůstává stejná, sestaví se proto jen nová
+	 * pravá strana a použije se rozklad z posledního úplného přepočtu
+	 * (nebo iterační řešič, který vyjde z dosavadního řešení).
+	 * Pokud zatížení změní tvar soustavy (nosník přestane nebo začne být
+	 * táhlem, moment vytvoří nebo zruší pevný kloub), vyžádá se úplný přepočet
+	 * (viz changed()).
+	 */
+	public void recalculateLoads() {
+		if (factorization == null && iterativeSolver == null) {
+			changed(false);
+			return;
+		}
+
+		// zatížení může změnit body nosníků, a tím prvky deformační metody
+		stiffnessMethod = null;
+		modes = null;
+		bucklingModes = null;
+		assignLoadCases();
+
+		// odebereme staré zatížení z kloubů a nosníků, tuhost kloubů
+		// nastavíme tak, jak by byla bez momentů
+		Set <Joint> stiffBefore = new HashSet <Joint>();
+		for (Joint joint: joints.values()) {
+			if (joint.stiff) stiffBefore.add(joint);
+			joint.stiff = stiffPoints.contains(joint.position) || joint.hasFixedSupport();
+
+			Iterator <Force> forceIt = joint.forces.iterator();
+			while (forceIt.hasNext()) {
+				if (forceIt.next() instanceof Force.Action) forceIt.remove();
+			}
+			Iterator <Moment> momentIt = joint.moments.iterator();
+			while (momentIt.hasNext()) {
+				if (momentIt.next() instanceof Moment.Action) momentIt.remove();
+			}
+		}
+		for (Beam beam: beams) {
+			Iterator <VectorXZ> pointIt = beam.allPoints.iterator();
+			while (pointIt.hasNext()) {
+				if (isActionPoint(pointIt.next())) pointIt.remove();
+			}
+			beam.loads.clear();
+			beam.internalForces = null;
+		}
+		for (Force.Action force: forces) {
+			force.reset();
+		}
+		for (Moment.Action moment: moments) {
+			moment.reset();
+		}
+		for (Load load: loads) {
+			load.reset();
+		}
+
+		// navážeme nové zatížení
+		updateTopology();
+		for (Force.Action force: forces) {
+			bindForce(force);
+		}
+		for (Moment.Action moment: moments) {
+			bindMoment(moment);
+		}
+		for (Load load: loads) {
+			bindLoad(load);
+		}
+
+		// změnil se tvar soustavy?
+		for (Joint joint: joints.values()) {
+			if (joint.stiff != stiffBefore.contains(joint)) {
+				changed(false);
+				return;
+			}
+		}
+		for (Beam beam: beams) {
+			boolean rod = beam.rodCandidate && countActionPoints(beam) == 0
+					&& !joints.get(beam.mainPoints.get(0)).stiff
+					&& !joints.get(beam.mainPoints.get(1)).stiff;
+			if (rod != beam.isRod) {
+				changed(false);
+				return;
+			}
+		}
+
+		// zatížení působící na kloub necháme působit na první nosník
+		// (stejně jako při úplném přepočtu)
+		for (Joint joint: joints.values()) {
+			if (joint.allRods) continue;
+			Beam firstBeam = null;
+			for (Beam beam: joint.beams) {
+				if (!beam.isRod) {
+					firstBeam = beam;
+					break;
+				}
+			}
+			for (Force force: joint.forces) {
+				if (!(force instanceof Force.Action)) continue;
+				Beam.InnerPoint ip = new Beam.InnerPoint(joint.position);
+				ip.force = force;
+				firstBeam.insertInnerPoint(joint.position, ip);
+			}
+			for (Moment moment: joint.moments) {
+				if (!(moment instanceof Moment.Action)) continue;
+				Beam.InnerPoint ip = new Beam.InnerPoint(joint.position);
+				ip.moment = moment;
+				firstBeam.insertInnerPoint(joint.position, ip);
+			}
+		}
+
+		ColumnMatrix rightRows = assembleRightSide(equationsMatrix.getRowDimension());
+		ColumnMatrix solution;
+		if (factorization != null) {
+			solution = factorization.solve(rightRows);
+			updateRefinement();
+		}
+		else {
+			Solution previous = getSolution();
+			solution = iterativeSolver.solve(rightRows,
+					previous == null ? null : previous.guess(unknownNames, loadCases, rightRows.getRowDimension()));
+			iterations = iterativeSolver.getIterations();
+			if (!iterativeSolver.hasConverged()) {
+				changed(false);
+				return;
+			}
+		}
+		residual = relativeResidual(equationsMatrix, solution, rightRows);
+		applySolution(solution);
+	}
+
+	/**
+	 * Vrátí poslední řešení modelu (např. pro počáteční odhad iteračního
+	 * řešiče kopie modelu, viz initialGuess), null pokud model není spočítán.
+	 */
+	public Solution getSolution() {
+		if (unknownNames == null || loadCaseResults == null || loadCaseResults.isEmpty()) return null;
+		return new Solution(unknownNames, loadCaseResults);
+	}
+
+	/**
+	 * Převezme počet kroků zpřesňování z rozkladu v jednoduché přesnosti.
+	 * Pokud zpřesňování nekonvergovalo, rozklad se už přepnul do dvojnásobné
+	 * přesnosti, zobrazí se proto i poměr pivotů tohoto rozkladu.
+	 */
+	private void updateRefinement() {
+		refinementSteps = 0;
+		if (factorization instanceof MixedPrecisionLUDecomposition) {
+			MixedPrecisionLUDecomposition mixed = (MixedPrecisionLUDecomposition)factorization;
+			refinementSteps = mixed.getRefinementSteps();
+			pivotRatio = mixed.getPivotRatio();
+		}
+	}
+
+	/** Vytvoří iterační řešič soustavy podle solverType. */
+	private static IterativeSolver createIterativeSolver(SparseMatrix equationsMatrix) {
+		ILUPreconditioner ilu = new ILUPreconditioner(equationsMatrix);
+		IterativeSolver solver;
+		if (solverType == SolverType.BICGSTAB) {
+			solver = new BiCGSTABSolver(equationsMatrix, ilu);
+		}
+		else {
+			solver = new GMRESSolver(equationsMatrix, ilu, GMRES_RESTART);
+		}
+		solver.setTolerance(ITERATIVE_TOLERANCE);
+		solver.setMaxIterations(ITERATIVE_MAX_ITERATIONS);
+		// výpočet na pozadí musí jít přerušit i uprostřed iterací
+		solver.setMonitor(new IterativeSolver.Monitor() {
+			public void iteration(int iteration, double residual) {
+				checkCancelled();
+			}
+		});
+		return solver;
+	}
+
+	/**
+	 * Začne tažení kloubu. Během tažení se obvykle nemění tvar soustavy
+	 * (stejné nosníky, klouby i reakce), mění se jen souřadnice a tedy
+	 * hodnoty v matici. Pokud to kloub dovoluje (nepůsobí v něm zatížení
+	 * ani podpory a na připojených nosnících nic dalšího není), zapamatuje
+	 * se rozložení neznámých, struktura matice a pořadí sloupců rozkladu
+	 * a moveJoint() pak jen přepočítá hodnoty.
+	 */
+	public void startDrag(Joint joint) {
+		drag = null;
+		if (factorization == null || joints.get(joint.position) != joint) return;
+
+		if (!joint.supports.isEmpty()) return;
+		for (Force force: joint.forces) {
+			if (force instanceof Force.Action) return;
+		}
+		for (Moment moment: joint.moments) {
+			if (moment instanceof Moment.Action) return;
+		}
+		for (Beam beam: joint.beams) {
+			// kloub uprostřed nosníku by se s ním nepohnul
+			if (!beam.mainPoints.contains(joint.position)) return;
+			// zatížení, podpory a další klouby na nosníku by se posunutím odpojily
+			if (!beam.loads.isEmpty()) return;
+			for (VectorXZ p: beam.allPoints) {
+				if (!beam.mainPoints.contains(p) || isActionPoint(p)) return;
+			}
+			for (VectorXZ p: beam.allJoints) {
+				if (!beam.mainPoints.contains(p)) return;
+			}
+		}
+
+		drag = new DragSession();
+		drag.joint = joint;
+		drag.pattern = equationsMatrix;
+		if (factorization instanceof SparseLUDecomposition) {
+			drag.columnOrdering = ((SparseLUDecomposition)factorization).getColumnPermutation();
+		}
+	}
+
+	/** Ukončí tažení kloubu. */
+	public void endDrag() {
+		drag = null;
+	}
+
+	/**
+	 * Přesune kloub (a s ním konce připojených nosníků) na novou pozici.
+	 * Během tažení (startDrag()) se jen znovu naplní hodnoty matice
+	 * a soustava se rozloží se stejnou strukturou, pokud posunutí nevytvoří
+	 * ani nezruší žádné spojení. Jinak se model přepočítá celý.
+	 */
+	public void moveJoint(Joint joint, VectorXZ position) {
+		VectorXZ old = joint.position;
+		position = position.quantize(getPrecision());
+
+		// projdeme všechny nosníky a změníme jim topologii...
+		for (Beam beam: joint.beams) {
+			for (int i = 0; i < beam.mainPoints.size(); i++) {
+				VectorXZ p = beam.mainPoints.get(i);
+				if (p.equals(old) || joints.get(p) == joint) {
+					beam.mainPoints.set(i, position);
+					break;
+				}
+			}
+		}
+
+		if (stiffPoints.contains(old)) {
+			stiffPoints.remove(old);
+			stiffPoints.add(position);
+		}
+
+		joint.position = position;
+
+		if (drag != null && drag.joint == joint && dragStep(old, position)) return;
+		drag = null;
+		changed(false);
+	}
+
+	/**
+	 * Krok tažení se zachovanou strukturou soustavy, vrátí false, pokud
+	 * je potřeba úplný přepočet.
+	 */
+	private boolean dragStep(VectorXZ old, VectorXZ position) {
+		Joint joint = drag.joint;
+
+		// nový bod nesmí splynout s jiným kloubem ani ležet na jiném nosníku
+		if (joints.containsKey(position)) return false;
+		for (Beam beam: beams) {
+			if (!joint.beams.contains(beam) && isPointOnBeam(beam, position)) return false;
+		}
+
+		// posunuté úseky nosníků nesmí procházet klouby, podporami ani zatížením
+		// (kromě pevného konce úseku, tam se nic nemění)
+		for (Beam beam: joint.beams) {
+			for (VectorXZ[] segment: beam.getSegments()) {
+				VectorXZ a = segment[0];
+				VectorXZ b = segment[1];
+				VectorXZ fixed;
+				if (a.equals(position)) fixed = b;
+				else if (b.equals(position)) fixed = a;
+				else continue;
+				for (Joint j: joints.values()) {
+					if (j != joint && joints.get(fixed) != j && isPointOnLine(a, b, j.position)) return false;
+				}
+				for (Support support: supports) {
+					if (!support.origin.equals(fixed) && isPointOnLine(a, b, support.origin)) return false;
+				}
+				for (Force.Action force: forces) {
+					if (!force.origin.equals(fixed) && isPointOnLine(a, b, force.origin)) return false;
+				}
+				for (Moment.Action moment: moments) {
+					if (!moment.origin.equals(fixed) && isPointOnLine(a, b, moment.origin)) return false;
+				}
+				for (Load load: loads) {
+					if ((!load.start.equals(fixed) && isPointOnLine(a, b, load.start))
+							|| (!load.end.equals(fixed) && isPointOnLine(a, b, load.end))) return false;
+				}
+			}
+		}
+
+		// přesuneme navázané body a reakce
+		joints.move(old, position);
+		for (Beam beam: joint.beams) {
+			beam.movePoint(old, position);
+		}
+		for (Reaction reaction: allReactions) {
+			if (reaction instanceof Force && ((Force)reaction).origin.equals(old)) {
+				((Force)reaction).origin = position;
+			}
+			else if (reaction instanceof Moment && ((Moment)reaction).origin.equals(old)) {
+				((Moment)reaction).origin = position;
+			}
+		}
+		// táhla mění směr
+		for (Beam beam: joint.beams) {
+			if (!beam.isRod) continue;
+			VectorXZ a = beam.mainPoints.get(0);
+			VectorXZ b = beam.mainPoints.get(1);
+			VectorXZ dirA = new VectorXZ(b.x-a.x, b.z-a.z).normalize();
+			for (Force force: joints.get(b).forces) {
+				if (force instanceof Force.Reaction && ((Force.Reaction)force).unknown == beam.rodReaction.unknown) {
+					force.direction = new VectorXZ(-dirA.x, -dirA.z);
+				}
+			}
+			beam.rodReaction.direction = dirA;
+		}
+
+		// nové hodnoty se stejnou strukturou, rozklad se stejným pořadím sloupců
+		int rows = drag.pattern.getRowDimension();
+		SparseMatrix equationsMatrix = assembleLeftSide(rows, unknowns).compress();
+		if (!Arrays.equals(equationsMatrix.getRowPointers(), drag.pattern.getRowPointers())
+				|| !Arrays.equals(equationsMatrix.getColumnIndices(), drag.pattern.getColumnIndices())) {
+			return false;
+		}
+		Factorization lu;
+		if (drag.columnOrdering != null) {
+			lu = new SparseLUDecomposition(equationsMatrix, drag.columnOrdering);
+		}
+		else {
+			lu = new LUDecomposition(equationsMatrix);
+		}
+		if (!lu.isNonsingular() || lu.getPivotRatio() < PIVOT_TOLERANCE) return false;
+
+		ColumnMatrix rightRows = assembleRightSide(rows);
+		ColumnMatrix solution = lu.solve(rightRows);
+		pivotRatio = lu.getPivotRatio();
+		residual = relativeResidual(equationsMatrix, solution, rightRows);
+		this.equationsMatrix = equationsMatrix;
+		this.factorization = lu;
+		applySolution(solution);
+		return true;
+	}
+
+	/**
+	 * Sestaví matici soustavy z reakcí kloubů a nosníků (řádky už musí
+	 * být přidělené). V každém řádku je jen několik nenulových prvků,
+	 * takže je zadáváme rovnou jako trojice (řádek, sloupec, hodnota)
+	 * a ne jako plné řádky. Struktura matice závisí jen na tom, které
+	 * reakce kde působí, ne na souřadnicích.
+	 */
+	private TripletMatrix assembleLeftSide(int rows, int reactions) {
+		TripletMatrix leftTriplets = new TripletMatrix(rows, reactions, 4*reactions);
+
+		// Projdeme klouby (dva řádky za každý kloub)
+		for (Joint joint: joints.values()) {
+			if (joint.allRods) {
+				int row = joint.row;
+				for (Force f: joint.forces) {
+					if (f instanceof Force.Reaction) {
+						int col = ((Force.Reaction)f).unknown;
+						leftTriplets.add(row, col, f.direction.x);
+						leftTriplets.add(row+1, col, f.direction.z);
+					}
+				}
+			}
+		}
+
+		// Projdeme nosníky (tři řádky za každý nosník)
+		for (Beam beam: beams) {
+			if (!beam.isRod) {
+				int row = beam.row;
+				for (VectorXZ p: beam.allPoints) {
+					if (p instanceof Beam.InnerPoint) {
+						Beam.InnerPoint ip = (Beam.InnerPoint)p;
+						if (ip.force != null && ip.force instanceof Force.Reaction) {
+							Force f = ip.force;
+							int col = ((Force.Reaction)f).unknown;
+							leftTriplets.add(row, col, f.direction.x);
+							leftTriplets.add(row+1, col, f.direction.z);
+							leftTriplets.add(row+2, col, (f.direction.x*f.origin.z - f.direction.z*f.origin.x));
+						}
+						else if (ip.moment != null && ip.moment instanceof Moment.Reaction) {
+							leftTriplets.add(row+2, ((Moment.Reaction)ip.moment).unknown, ((Moment.Reaction)ip.moment).opposite ? -1 : 1);
+						}
+					}
+				}
+			}
+		}
+		return leftTriplets;
+	}
+
+	/**
+	 * Sestaví pravou stranu soustavy ze zatížení kloubů a nosníků, každý
+	 * zatěžovací stav tvoří jeden sloupec.
+	 */
+	private ColumnMatrix assembleRightSide(int rows) {
+		Map <LoadCase, Integer> columns = new HashMap <LoadCase, Integer>();
+		for (LoadCase loadCase: loadCases) {
+			columns.put(loadCase, columns.size());
+		}
+		ColumnMatrix rightMatrix = new ColumnMatrix(rows, loadCases.size());
+
+		// hmotné body (dva řádky)
+		for (Joint joint: joints.values()) {
+			if (joint.allRods) {
+				for (Force f: joint.forces) {
+					if (f instanceof Force.Action) {
+						int col = columns.get(((Force.Action)f).loadCase);
+						rightMatrix.add(joint.row, col, -f.size*f.direction.x);
+						rightMatrix.add(joint.row+1, col, -f.size*f.direction.z);
+					}
+				}
+			}
+		}
+
+		// nosníky (tři řádky)
+		for (Beam beam: beams) {
+			if (!beam.isRod) {
+				int row = beam.row;
+
+				// osamělé síly / momenty
+				for (VectorXZ p: beam.allPoints) {
+					if (p instanceof Beam.InnerPoint) {
+						Beam.InnerPoint ip = (Beam.InnerPoint)p;
+						if (ip.force != null && ip.force instanceof Force.Action) {
+							Force f = ip.force;
+							int col = columns.get(((Force.Action)f).loadCase);
+							rightMatrix.add(row, col, -f.size*f.direction.x);
+							rightMatrix.add(row+1, col, -f.size*f.direction.z);
+							rightMatrix.add(row+2, col, -f.size*(f.direction.x*f.origin.z - f.direction.z*f.origin.x));
+						}
+						else if (ip.moment != null && ip.moment instanceof Moment.Action) {
+							int col = columns.get(((Moment.Action)ip.moment).loadCase);
+							rightMatrix.add(row+2, col, -ip.moment.size);
+						}
+					}
+				}
+
+				// spojitá zatížení
+				for (Load load: beam.loads) {
+					int col = columns.get(load.loadCase);
+					float size = load.getSize();
+					VectorXZ center = load.getCenter();
+					VectorXZ direction = load.direction;
+					rightMatrix.add(row, col, -size*direction.x);
+					rightMatrix.add(row+1, col, -size*direction.z);
+					rightMatrix.add(row+2, col, -size*(direction.x*center.z - direction.z*center.x));
+				}
+			}
+		}
+
+		return rightMatrix;
+	}
+
+	/**
+	 * Uloží řešení soustavy jako výsledky jednotlivých zatěžovacích stavů
+	 * a zobrazí výsledky aktivního stavu.
+	 */
+	private void applySolution(ColumnMatrix solution) {
+		loadCaseResults = new ArrayList <LoadCase.Result>();
+		combinationResults = null;
+		envelope = null;
+		for (int k = 0; k < loadCases.size(); k++) {
+			double[] column = solution.getColumn(k);
+			LoadCase.Result result = new LoadCase.Result(loadCases.get(k), column);
+			if (residuals != null && k < residuals.length) result.residual = residuals[k];
+
+			// největší síla
+			for (Reaction reaction: allReactions) {
+				if (reaction instanceof Force.Reaction) {
+					float size = (float)column[reaction.getUnknown()];
+					if (Math.abs(size) > result.maxForce) result.maxForce = Math.abs(size);
+				}
+			}
+
+			StringBuilder sb = new StringBuilder();
+			if (loadCases.size() > 1) {
+				sb.append(result.loadCase.name); sb.append(":\n");
+			}
+			for (int u: unknownOrder) {
+				sb.append(String.format(Locale.ENGLISH, "%3s = % 9.3f\n", unknownNames[u], column[u]));
+			}
+			result.reactionsString = sb.toString();
+
+			loadCaseResults.add(result);
+		}
+
+		determinate = true;
+		showResult(getResult(activeLoadCase));
+	}
+
+	/** Nastaví reakcím velikosti podle výsledků stavu a zobrazí je. */
+	private void showResult(LoadCase.Result result) {
+		setReactionSizes(result.solution);
+		maxForce = result.maxForce;
+		reactionsString = result.reactionsString;
+		for (Beam beam: beams) {
+			beam.loadCase = result.loadCase;
+			beam.internalForces = null;
+		}
+	}
+
+	/** Nastaví velikosti reakcí podle řešení soustavy. */
+	private void setReactionSizes(double[] solution) {
+		for (Reaction reaction: allReactions) {
+			reaction.setSize((float)solution[reaction.getUnknown()]);
+		}
+	}
+
+	/** Rozhodne, zda jde o vnitřní bod, který na nosník umístilo zatížení. */
+	private static boolean isActionPoint(VectorXZ point) {
+		if (!(point instanceof Beam.InnerPoint)) return false;
+		Beam.InnerPoint ip = (Beam.InnerPoint)point;
+		return ip.force instanceof Force.Action || ip.moment instanceof Moment.Action
+				|| ip.load != null || ip.centerOfLoad;
+	}
+
+	/** Vrátí počet vnitřních bodů nosníku, které na něj umístilo zatížení. */
+	private static int countActionPoints(Beam beam) {
+		int count = 0;
+		for (VectorXZ point: beam.allPoints) {
+			if (isActionPoint(point)) count++;
+		}
+		return count;
+	}
+
+
+	static final float EPSILON = 0.03f;
+
+	/**
+	 * Jednotka, na kterou se zaokrouhlují polohy při hledání kloubů (tisícina
+	 * tolerance isPointOnLine() v metrech). Body, které se zaokrouhlí stejně,
+	 * patří ke stejnému kloubu, souřadnice v modelu se ale nemění.
+	 */
+	public double getPrecision() {
+		return EPSILON * 200 / Math.max(scale, 1) / 1000;
+	}
+
+	/** Leží bod na některém úseku nosníku? */
+	private boolean isPointOnBeam(Beam beam, VectorXZ point) {
+		for (VectorXZ[] segment: beam.getSegments()) {
+			if (isPointOnLine(segment[0], segment[1], point)) return true;
+		}
+		return false;
+	}
+
+	/** Rozhodne, zda bod C leží na úsečce AB. */
+	boolean isPointOnLine(VectorXZ a, VectorXZ b, VectorXZ c) {
+		// vertikální čára
+		if (a.x == b.x) {
+			if (c.x == a.x && ((a.z <= c.z && c.z <= b.z) || (a.z >= c.z && c.z >= b.z))) return true;
+			else return false;
+		}
+		// horizontální čára
+		else if (a.z == b.z) {
+			if (c.z == a.z && ((a.x <= c.x && c.x <= b.x) || (a.x >= c.x && c.x >= b.x))) return true;
+			else return false;
+		}
+		// ostatní případy... nehrozí žádné dělení nulou
+		else {
+			float alpha1 = (c.x - a.x) / (b.x - a.x);
+			float alpha2 = (c.z - a.z) / (b.z - a.z);
+
+			// tolerance závislá na délce čáry
 			float lengthFactor = (float)Math.sqrt((b.x-a.x)*(b.x-a.x)+(b.z-a.z)*(b.z-a.z))/200*scale;
 
 			if (Math.abs(alpha1 - alpha2) < EPSILON / lengthFactor && (alpha1 >= 0 && alpha1 <= 1)) return true;
@@ -692,106 +1839,53 @@ public class Model implements Serializable {
 
 
 	/**
-	 * Zjistí, zda zadaný bod leží na zadaném nosníku a pokud ano, připojí nosník ke
-	 * kloubu v daném bodě, nebo na něj naváže zadaný objekt.
+	 * Zjistí, zda zadaný bod leží na zadaném nosníku a pokud ano, naváže na
+	 * nosník zadaný objekt (síla, moment, podpora).
 	 */
 	private void testPointOnBeam(Beam testedBeam, VectorXZ testedPoint, Object addObject) {
 		// projdeme všechny segmenty testovaného nosníku
-		for (int i = 0; i < testedBeam.mainPoints.size(); i++) {
-			// testujeme současný a předchozí bod
-			VectorXZ lineA = null, lineB = null;
-			if (i == 0) {
-				if (testedBeam.closed) {
-					lineA = testedBeam.mainPoints.get(testedBeam.mainPoints.size()-1);
-					lineB = testedBeam.mainPoints.get(i);
+		for (VectorXZ[] segment: testedBeam.getSegments()) {
+			VectorXZ lineA = segment[0], lineB = segment[1];
+			if (lineA.equals(testedPoint) || lineB.equals(testedPoint)) continue;
+			if (isPointOnLine(lineA, lineB, testedPoint) == true) {
+				Beam.InnerPoint innerPoint = new Beam.InnerPoint(testedPoint);
+				if (addObject instanceof Force.Action) {
+					innerPoint.force = (Force.Action)addObject;
+					((Force.Action)addObject).enabled = true;
 				}
-			}
-			else {
-				lineA = testedBeam.mainPoints.get(i-1);
-				lineB = testedBeam.mainPoints.get(i);
-			}
-
-			if (lineA != null && lineB != null) {
-				if (lineA.equals(testedPoint) || lineB.equals(testedPoint)) continue;
-				if (isPointOnLine(lineA, lineB, testedPoint) == true) {
-					if (addObject == null) {
-						Joint joint = joints.get(testedPoint);
-						if (!joint.beams.contains(testedBeam)) {
-							joint.beams.add(testedBeam);
-							Beam.InnerPoint innerPoint = new Beam.InnerPoint(testedPoint);
-							innerPoint.joint = joint;
-							testedBeam.insertInnerPoint(lineA, innerPoint);
-							testedBeam.insertInnerJoint(lineA, innerPoint);
-						}
-					}
-					else {
-						Beam.InnerPoint innerPoint = new Beam.InnerPoint(testedPoint);
-						if (addObject instanceof Force.Action) {
-							innerPoint.force = (Force.Action)addObject;
-							((Force.Action)addObject).enabled = true;
-						}
-						else if (addObject instanceof Moment.Action) {
-							innerPoint.moment = (Moment.Action)addObject;
-							((Moment.Action)addObject).enabled = true;
-						}
-						else if (addObject instanceof Support) {
-							innerPoint.support = (Support)addObject;
-							innerPoint.support.enabled = true;
-						}
-						testedBeam.insertInnerPoint(lineA, innerPoint);
-					}
-					return;
+				else if (addObject instanceof Moment.Action) {
+					innerPoint.moment = (Moment.Action)addObject;
+					((Moment.Action)addObject).enabled = true;
+				}
+				else if (addObject instanceof Support) {
+					innerPoint.support = (Support)addObject;
+					innerPoint.support.enabled = true;
 				}
+				testedBeam.insertInnerPoint(joints.get(lineA).position, innerPoint);
+				return;
 			}
 		}
 	}
 
-	/** Přidá do modelu nový nosník a připojí ho do kloubů. */
-	private void bindBeam(Beam beam) {
-		// Můžeme narazit na následující situace při spojování nosníků:
-		// 1) Nosník se jedním ze svých konců/zlomů dotýká konce/zlomu jiného nosníku
-		//		-> z bodu vytvoříme kloub
-		// 2) Nosník se jedním ze svých konců/zlomů dotýká jiného nosníku, ne na konci/zlomu
-		//		-> na druhý nosník vložíme bod navíc
-		// 3) Jiný nosník se jedním ze svých konců/zlomů dotýká tohoto nosníku, ne na konci/zlomu
-		//		-> dtto
-		// Pokud se nosníky kříží, žádný spoj nebude vytvořen.
-
-		// připojíme nosník do kloubů v hlavních bodech
-		for (VectorXZ point: beam.mainPoints) {
-			// podíváme se, jestli je na zadané pozici nějaký kloub
-			Joint joint = joints.get(point);
-			if (joint == null) { // kloub neexistuje, vytvoříme ho
-				joint = new Joint(point);
-				if (stiffJoints.contains(point)) joint.stiff = true;
-				joints.put(point.clone(), joint);
-			}
-
-			// přidáme do kloubu nosník
-			joint.beams.add(beam);
-		}
-
-		// otestujeme všechny nosníky pro všechny body přidávaného nosníku
-		for (Beam testedBeam: beams) {
-			if (testedBeam.mainPoints.size() < 2) continue;
-			if (testedBeam == beam) continue;
-			for (VectorXZ testedPoint: beam.mainPoints) {
-				// pokud je na místě bodu kloub s alespoň dvěma nosníky,
-				// testovaný nosník už musel být připojen
-				// Joint j = joints.get(testedPoint);
-				testPointOnBeam(testedBeam, testedPoint, null);
-			}
-		}
+	/** Srovná spojení nosníků s nosníky modelu, případně ho vytvoří znovu. */
+	private void updateTopology() {
+		if (topology == null || !topology.update(this)) topology = new Topology(this);
+	}
 
-		// otestujeme nosník na všechny existující klouby
-		outerLoop: for (VectorXZ testedPoint: joints.keySet()) {
-			// nejdřív se ujistíme, že kloub není součástí nosníku
-			for (VectorXZ beamPoint: beam.mainPoints) {
-				if (testedPoint.equals(beamPoint)) continue outerLoop;
-			}
-			testPointOnBeam(beam, testedPoint, null);
-		}
+	/**
+	 * Odebere modelu udržované spojení nosníků, aby ho mohla převzít kopie
+	 * modelu přepočítávaná na pozadí (attachTopology()). Model sám si ho při
+	 * příštím přepočtu vytvoří znovu.
+	 */
+	public Topology detachTopology() {
+		Topology t = topology;
+		topology = null;
+		return t;
+	}
 
+	/** Převezme spojení nosníků od původního modelu, viz detachTopology(). */
+	public void attachTopology(Topology topology) {
+		this.topology = topology;
 	}
 
 	/** Připojí do modelu zadanou sílu. */
@@ -808,9 +1902,9 @@ public class Model implements Serializable {
 			force.enabled = true;
 		}
 		else {
-			// projdeme všechny nosníky a zjistíme, jestli síla neleží
+			// projdeme okolní nosníky a zjistíme, jestli síla neleží
 			// na některém z nich
-			for (Beam beam: beams) {
+			for (Beam beam: topology.getBeamsNear(force.origin)) {
 				testPointOnBeam(beam, force.origin, force);
 			}
 		}
@@ -825,7 +1919,7 @@ public class Model implements Serializable {
 			moment.enabled = true;
 		}
 		else {
-			for (Beam beam: beams) {
+			for (Beam beam: topology.getBeamsNear(moment.origin)) {
 				testPointOnBeam(beam, moment.origin, moment);
 			}
 		}
@@ -841,7 +1935,7 @@ public class Model implements Serializable {
 			support.enabled = true;
 		}
 		else {
-			for (Beam beam: beams) {
+			for (Beam beam: topology.getBeamsNear(support.origin)) {
 				testPointOnBeam(beam, support.origin, support);
 			}
 		}
@@ -857,15 +1951,21 @@ public class Model implements Serializable {
 		}
 	}
 
-	/** Vrátí všechny klouby, které leží na zadané čáře. */
+	/**
+	 * Vrátí klouby na přímce AB seřazené podle parametru: všechny uvnitř
+	 * úsečky AB a nejbližší kloub před ní a za ní (vzdálenější klouby
+	 * zatížení nepotřebuje). Hledají se jen v okolí přímky (Topology).
+	 */
 	private List <JointOnLine> getAllJointsOnLine(VectorXZ a, VectorXZ b) {
 		List <JointOnLine> list = new ArrayList <JointOnLine>();
-		for (VectorXZ point: joints.keySet()) {
-			float param = isPointOnLine2(a, b, point);
-			if (!Float.isNaN(param)) {
-				list.add(new JointOnLine(joints.get(point), param));
-			}
+		for (JointOnLine jol: getJointsOnLine(a, b, 0, 1)) {
+			if (jol.param > 0 && jol.param < 1) list.add(jol);
 		}
+		JointOnLine before = getNearestJointOnLine(a, b, true);
+		JointOnLine after = getNearestJointOnLine(a, b, false);
+		if (before != null) list.add(before);
+		if (after != null) list.add(after);
+
 		Collections.sort(list, new Comparator<JointOnLine>() {
 			public int compare(JointOnLine o1, JointOnLine o2) {
 				if (o1.param > o2.param) return 1;
@@ -876,6 +1976,52 @@ public class Model implements Serializable {
 		return list;
 	}
 
+	/** Vrátí klouby na přímce AB z okolí úseku přímky mezi parametry t0 a t1. */
+	private List <JointOnLine> getJointsOnLine(VectorXZ a, VectorXZ b, float t0, float t1) {
+		float margin = EPSILON * 200 / Math.max(scale, 1);
+		float x0 = a.x + t0*(b.x-a.x), z0 = a.z + t0*(b.z-a.z);
+		float x1 = a.x + t1*(b.x-a.x), z1 = a.z + t1*(b.z-a.z);
+		List <VectorXZ> near = new ArrayList <VectorXZ>();
+		topology.queryJoints(Math.min(x0, x1) - margin, Math.min(z0, z1) - margin,
+				Math.max(x0, x1) + margin, Math.max(z0, z1) + margin, near);
+		List <JointOnLine> list = new ArrayList <JointOnLine>();
+		for (VectorXZ point: near) {
+			float param = isPointOnLine2(a, b, point);
+			if (!Float.isNaN(param)) {
+				list.add(new JointOnLine(joints.get(point), param));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Najde nejbližší kloub na přímce AB s parametrem <= 0 (before), nebo >= 1.
+	 * Prohledává stále delší úseky přímky, dokud nevyjde z obdélníku kloubů.
+	 */
+	private JointOnLine getNearestJointOnLine(VectorXZ a, VectorXZ b, boolean before) {
+		float margin = EPSILON * 200 / Math.max(scale, 1);
+		// úseky ve vzdálenosti from..to (v parametru) od úsečky AB
+		for (float from = 0, to = 1; !Float.isInfinite(to); from = to, to *= 2) {
+			float t0 = before ? -to : 1 + from;
+			float t1 = before ? -from : 1 + to;
+			JointOnLine best = null;
+			for (JointOnLine jol: getJointsOnLine(a, b, t0, t1)) {
+				if (before ? jol.param > 0 : jol.param < 1) continue;
+				if (best == null || (before ? jol.param > best.param : jol.param < best.param)) best = jol;
+			}
+			if (best != null) return best;
+
+			float x0 = a.x + t0*(b.x-a.x), z0 = a.z + t0*(b.z-a.z);
+			float x1 = a.x + t1*(b.x-a.x), z1 = a.z + t1*(b.z-a.z);
+			if (!topology.intersectsJoints(Math.min(x0, x1) - margin, Math.min(z0, z1) - margin,
+					Math.max(x0, x1) + margin, Math.max(z0, z1) + margin)) {
+				// úsek už je mimo všechny klouby, dál žádný není
+				return null;
+			}
+		}
+		return null;
+	}
+
 
 	/** Připojí do modelu spojité zatížení. */
 	private void bindLoad(Load load) {
@@ -910,6 +2056,7 @@ public class Model implements Serializable {
 					partOfLoad.end = end;
 					partOfLoad.direction = load.direction;
 					partOfLoad.sizePerPixel = load.sizePerPixel;
+					partOfLoad.loadCase = load.loadCase;
 
 					// přidáme patřičnou část zatížení na nosník
 					beam.loads.add(partOfLoad);
@@ -944,8 +2091,7 @@ public class Model implements Serializable {
 		// počet kloubů
 		int nJoints = 0;
 		int nBeamsInJoints = 0;
-		for (VectorXZ p: joints.keySet()) {
-			Joint j = joints.get(p);
+		for (Joint j: joints.values()) {
 			if (j.beams.size() > 1) {
 				nJoints++;
 				nBeamsInJoints += j.beams.size();
@@ -962,21 +2108,98 @@ public class Model implements Serializable {
 		sb.append("Počet momentů:      "); sb.append(forces.size()); sb.append("\n");
 		sb.append("Počet sp. zatížení: "); sb.append(loads.size()); sb.append("\n");
 		sb.append("Počet podpor:       "); sb.append(supports.size()); sb.append("\n");
+		sb.append("Zatěžovací stavy:   "); sb.append(loadCases.size()); sb.append("\n");
 
 		sb.append("\n");
 		sb.append("\n");
 
+		if (determinate) {
+			sb.append(String.format(Locale.ENGLISH, "Poměr pivotů:       %.3e\n", pivotRatio));
+			sb.append(String.format(Locale.ENGLISH, "Reziduum řešení:    %.3e\n", residual));
+			if (factorization instanceof MixedPrecisionLUDecomposition) {
+				if (((MixedPrecisionLUDecomposition)factorization).isSinglePrecision()) {
+					sb.append(String.format(Locale.ENGLISH, "Zpřesňování:        %d kroků\n", refinementSteps));
+				}
+				else {
+					sb.append("Zpřesňování:        nekonverguje, rozklad v dvojnásobné přesnosti\n");
+				}
+			}
+			if (loadCaseResults != null && loadCaseResults.size() > 1) {
+				for (LoadCase.Result result: loadCaseResults) {
+					sb.append(String.format(Locale.ENGLISH, "  %-17s %.3e\n", result.loadCase.name + ":", result.residual));
+				}
+			}
+			if (indeterminacy > 0) {
+				sb.append(String.format(Locale.ENGLISH, "Deformační metoda:  %dx staticky neurčitá\n", indeterminacy));
+				if (stiffnessMethod != null && stiffnessMethod.getCondensedInstances() > 0) {
+					sb.append(String.format(Locale.ENGLISH, "Podkonstrukce:      %d instancí, %d kondenzací\n",
+							stiffnessMethod.getCondensedInstances(), stiffnessMethod.getCondensations()));
+				}
+			}
+			if (modes != null && !modes.isEmpty()) {
+				sb.append("Vlastní frekvence:\n");
+				for (Mode mode: modes) {
+					sb.append(String.format(Locale.ENGLISH, "  f%-16d %.4g Hz\n", mode.number, mode.getFrequency()));
+				}
+			}
+			if (bucklingModes != null && !bucklingModes.isEmpty()) {
+				sb.append("Kritické násobky:\n");
+				for (Mode mode: bucklingModes) {
+					sb.append(String.format(Locale.ENGLISH, "  %-17d %.4g\n", mode.number, mode.getCriticalFactor()));
+				}
+			}
+			sb.append("\n");
+		}
+
 		sb.append(reactionsString);
 
+		// obálka reakcí přes kombinace
+		Envelope envelope = getEnvelope();
+		if (envelope != null) {
+			sb.append("\n");
+			for (LoadCombination combination: loadCombinations) {
+				sb.append(combination.toString()); sb.append("\n");
+			}
+			sb.append("\nObálka reakcí:\n");
+			for (int u: unknownOrder) {
+				sb.append(String.format(Locale.ENGLISH, "%3s = % 9.3f .. % 9.3f\n", unknownNames[u], envelope.reactionMin[u], envelope.reactionMax[u]));
+			}
+		}
+
 		return sb.toString();
 	}
 
+	/**
+	 * Vrátí největší relativní reziduum |Ax - b| / (|A| |x| + |b|) v maximové
+	 * normě přes všechny sloupce pravé strany.
+	 */
+	private double relativeResidual(SparseMatrix a, ColumnMatrix x, ColumnMatrix b) {
+		double aNorm = a.normInf();
+		ColumnMatrix ax = a.times(x);
+		residuals = new double[b.getColumnDimension()];
+		double worst = 0;
+		for (int k = 0; k < b.getColumnDimension(); k++) {
+			double r = 0, xNorm = 0, bNorm = 0;
+			for (int i = 0; i < b.getRowDimension(); i++) {
+				r = Math.max(r, Math.abs(ax.get(i, k) - b.get(i, k)));
+				bNorm = Math.max(bNorm, Math.abs(b.get(i, k)));
+			}
+			for (int i = 0; i < x.getRowDimension(); i++) {
+				xNorm = Math.max(xNorm, Math.abs(x.get(i, k)));
+			}
+			double scale = aNorm * xNorm + bNorm;
+			if (scale > 0) residuals[k] = r / scale;
+			worst = Math.max(worst, residuals[k]);
+		}
+		return worst;
+	}
 	/** Vrátí nejzazší souřadnice kloubů v pořadí levá, horní, pravá, dolní. */
 	public float[] getModelBounds() {
 		float xMin = 0, xMax = 0;
 		float zMin = 0, zMax = 0;
 
-		for (VectorXZ point: joints.keySet()) {
+		for (Joint joint: joints.values()) {
+			VectorXZ point = joint.position;
 			if (point.x > xMax) xMax = point.x;
 			if (point.x < xMin) xMin = point.x;
 			if (point.z > zMax) zMax = point.z;
@@ -59,6 +59,9 @@ public abstract class Moment implements ModelEntity, Serializable {
 
 		public static final long serialVersionUID = 5101L;
 
+		/** Zatěžovací stav, do kterého moment patří. */
+		public LoadCase loadCase;
+
 		public transient boolean enabled;
 
 		/** Resetuje sílu. */
@@ -73,6 +76,9 @@ public abstract class Moment implements ModelEntity, Serializable {
 
 		public boolean opposite = false;
 
+		/** Index neznámé, viz Model.newUnknown(). */
+		public int unknown = -1;
+
 		public String getName() {
 			return name;
 		}
@@ -81,6 +87,14 @@ public abstract class Moment implements ModelEntity, Serializable {
 			this.name = name;
 		}
 
+		public int getUnknown() {
+			return unknown;
+		}
+
+		public void setUnknown(int unknown) {
+			this.unknown = unknown;
+		}
+
 		public void setSize(float size) {
 			this.size = size;
 		}
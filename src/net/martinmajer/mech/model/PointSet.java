@@ -0,0 +1,148 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Množina bodů podle klíčů zaokrouhlených poloh (VectorXZ.key()), viz
+ * JointMap. Bod v množině je, pokud splývá s některým vloženým bodem
+ * (VectorXZ.isNear()). Body se pamatují tak, jak byly vloženy.
+ * @author Martin
+ */
+public class PointSet {
+
+	/** Jednotka zaokrouhlení klíčů. */
+	private final double unit;
+
+	private long[] keys;
+	private VectorXZ[] points;
+	private int size = 0;
+
+	public PointSet(double unit) {
+		this.unit = unit;
+		keys = new long[16];
+		points = new VectorXZ[16];
+	}
+
+	public double getUnit() {
+		return unit;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(VectorXZ point) {
+		return find(point) >= 0;
+	}
+
+	/** Vrátí vložený bod, se kterým zadaný bod splývá, nebo null. */
+	public VectorXZ get(VectorXZ point) {
+		int i = find(point);
+		return i >= 0 ? points[i] : null;
+	}
+
+	/** Přidá bod, vrátí false, pokud už v množině byl. */
+	public boolean add(VectorXZ point) {
+		if (find(point) >= 0) return false;
+		long key = point.key(unit);
+		if (2*(size+1) > keys.length) resize(2*keys.length);
+		int i = slot(key);
+		while (points[i] != null) i = (i+1) & (keys.length-1);
+		keys[i] = key;
+		points[i] = point;
+		size++;
+		return true;
+	}
+
+	/** Odebere bod, vrátí false, pokud v množině nebyl. */
+	public boolean remove(VectorXZ point) {
+		int i = find(point);
+		if (i < 0) return false;
+		int mask = keys.length-1;
+		int j = i;
+		while (true) {
+			j = (j+1) & mask;
+			if (points[j] == null) break;
+			int k = slot(keys[j]);
+			if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j))) {
+				keys[i] = keys[j];
+				points[i] = points[j];
+				i = j;
+			}
+		}
+		points[i] = null;
+		size--;
+		return true;
+	}
+
+	/** Vrátí body množiny (tak, jak byly vloženy). */
+	public List <VectorXZ> toList() {
+		List <VectorXZ> list = new ArrayList <VectorXZ>(size);
+		for (int i = 0; i < keys.length; i++) {
+			if (points[i] != null) list.add(points[i]);
+		}
+		return list;
+	}
+
+
+	/** Pozice bodu, se kterým zadaný bod splývá, nebo -1, viz JointMap. */
+	private int find(VectorXZ point) {
+		long key = point.key(unit);
+		int i = find(key);
+		if (i >= 0) return i;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dz = -1; dz <= 1; dz++) {
+				if (dx == 0 && dz == 0) continue;
+				i = find(VectorXZ.neighborKey(key, dx, dz));
+				if (i >= 0 && points[i].isNear(point, unit)) return i;
+			}
+		}
+		return -1;
+	}
+
+	private int find(long key) {
+		int i = slot(key);
+		while (points[i] != null) {
+			if (keys[i] == key) return i;
+			i = (i+1) & (keys.length-1);
+		}
+		return -1;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & (keys.length-1);
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		VectorXZ[] oldPoints = points;
+		keys = new long[capacity];
+		points = new VectorXZ[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldPoints[i] == null) continue;
+			int j = slot(oldKeys[i]);
+			while (points[j] != null) j = (j+1) & (capacity-1);
+			keys[j] = oldKeys[i];
+			points[j] = oldPoints[i];
+		}
+	}
+}
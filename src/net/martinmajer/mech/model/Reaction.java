@@ -28,6 +28,11 @@ public interface Reaction {
 
 	public void setName(String name);
 
+	/** Index neznámé (sloupce matice soustavy), reakce jedné dvojice ho sdílejí. */
+	public int getUnknown();
+
+	public void setUnknown(int unknown);
+
 	public float getSize();
 
 	public void setSize(float size);
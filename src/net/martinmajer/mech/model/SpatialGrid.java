@@ -0,0 +1,150 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+
+/**
+ * Rovnoměrná mřížka pro hledání objektů v okolí bodu nebo obdélníku.
+ * Objekt se uloží do všech buněk, do kterých zasahuje jeho obdélník;
+ * dotaz vrátí objekty z buněk, do kterých zasahuje dotazovaný obdélník,
+ * tedy všechny, které ho mohou protínat (a případně i některé další).
+ * Objekty přes příliš mnoho buněk se vrací vždy.
+ * @author Martin
+ */
+class SpatialGrid <T> {
+
+	/** Největší počet buněk jednoho objektu, větší objekty se vrací vždy. */
+	private static final int MAX_CELLS = 256;
+
+	/** Velikost buňky. */
+	private final float cellSize;
+
+	/** Buňky podle indexu (x v horních, z v dolních 32 bitech). */
+	private final Map <Long, List <T>> cells = new HashMap <Long, List <T>>();
+
+	/** Objekty, které se do buněk nevešly. */
+	private final List <T> large = new ArrayList <T>();
+
+	/** Obdélník všech vložených objektů (při odebírání se nezmenšuje). */
+	private float minX = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+	private float maxX = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+	public SpatialGrid(float cellSize) {
+		this.cellSize = cellSize > 0 && !Float.isInfinite(cellSize) ? cellSize : 1;
+	}
+
+	/** Vloží bod. */
+	public void add(T item, VectorXZ point) {
+		add(item, point.x, point.z, point.x, point.z);
+	}
+
+	/** Vloží objekt s daným obdélníkem. */
+	public void add(T item, float minX, float minZ, float maxX, float maxZ) {
+		this.minX = Math.min(this.minX, minX);
+		this.minZ = Math.min(this.minZ, minZ);
+		this.maxX = Math.max(this.maxX, maxX);
+		this.maxZ = Math.max(this.maxZ, maxZ);
+		int x0 = cell(minX), x1 = cell(maxX);
+		int z0 = cell(minZ), z1 = cell(maxZ);
+		if ((long)(x1-x0+1)*(z1-z0+1) > MAX_CELLS) {
+			large.add(item);
+			return;
+		}
+		for (int x = x0; x <= x1; x++) {
+			for (int z = z0; z <= z1; z++) {
+				Long key = key(x, z);
+				List <T> list = cells.get(key);
+				if (list == null) {
+					list = new ArrayList <T>(4);
+					cells.put(key, list);
+				}
+				list.add(item);
+			}
+		}
+	}
+
+	/** Odebere bod. */
+	public void remove(T item, VectorXZ point) {
+		remove(item, point.x, point.z, point.x, point.z);
+	}
+
+	/** Odebere objekt vložený se zadaným obdélníkem. */
+	public void remove(T item, float minX, float minZ, float maxX, float maxZ) {
+		int x0 = cell(minX), x1 = cell(maxX);
+		int z0 = cell(minZ), z1 = cell(maxZ);
+		if ((long)(x1-x0+1)*(z1-z0+1) > MAX_CELLS) {
+			large.remove(item);
+			return;
+		}
+		for (int x = x0; x <= x1; x++) {
+			for (int z = z0; z <= z1; z++) {
+				Long key = key(x, z);
+				List <T> list = cells.get(key);
+				if (list == null) continue;
+				list.remove(item);
+				if (list.isEmpty()) cells.remove(key);
+			}
+		}
+	}
+
+	/** Přidá do result objekty, které mohou obsahovat zadaný bod. */
+	public void query(VectorXZ point, Collection <T> result) {
+		List <T> list = cells.get(key(cell(point.x), cell(point.z)));
+		if (list != null) result.addAll(list);
+		result.addAll(large);
+	}
+
+	/** Přidá do result objekty, které mohou protínat zadaný obdélník. */
+	public void query(float minX, float minZ, float maxX, float maxZ, Collection <T> result) {
+		int x0 = cell(minX), x1 = cell(maxX);
+		int z0 = cell(minZ), z1 = cell(maxZ);
+		if ((long)(x1-x0+1)*(z1-z0+1) > cells.size()) {
+			// obdélník přes víc buněk, než jich je obsazeno
+			for (Map.Entry <Long, List <T>> entry: cells.entrySet()) {
+				long k = entry.getKey();
+				int x = (int)(k >> 32), z = (int)k;
+				if (x >= x0 && x <= x1 && z >= z0 && z <= z1) result.addAll(entry.getValue());
+			}
+		}
+		else {
+			for (int x = x0; x <= x1; x++) {
+				for (int z = z0; z <= z1; z++) {
+					List <T> list = cells.get(key(x, z));
+					if (list != null) result.addAll(list);
+				}
+			}
+		}
+		result.addAll(large);
+	}
+
+	/** Zasahuje zadaný obdélník do obdélníku vložených objektů? */
+	public boolean intersects(float minX, float minZ, float maxX, float maxZ) {
+		return minX <= this.maxX && maxX >= this.minX && minZ <= this.maxZ && maxZ >= this.minZ;
+	}
+
+	private int cell(float c) {
+		double i = Math.floor(c / cellSize);
+		return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, i));
+	}
+
+	private static Long key(int x, int z) {
+		return ((long)x << 32) | (z & 0xffffffffL);
+	}
+}
@@ -0,0 +1,1179 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+import jama.*;
+import jama.util.Parallel;
+
+/**
+ * Deformační metoda pro staticky neurčité soustavy. Nosníky se v bodech
+ * allPoints rozdělí na prutové prvky rámu (tuhost v tahu EA a v ohybu EI),
+ * táhla jsou prvky příhradové. Neznámé jsou posuny uzlů a pootočení:
+ * v pevném kloubu mají všechny nosníky pootočení společné, v ostatních
+ * kloubech má každý nosník vlastní (kloub nepřenáší moment). Podpory
+ * předepisují nulové posuny. Neznámé se číslují v pořadí kloubů podle
+ * Joint.index, soustava se řeší Choleskyho rozkladem matice tuhosti
+ * uložené po profilu (skyline).
+ *
+ * Vnitřní uzly instancí podkonstrukcí (model.substructures) se staticky
+ * kondenzují: v soustavě zůstanou jen neznámé hranice s maticí
+ * S = K_bb - K_bi K_ii^-1 K_ib a vnitřek se po vyřešení dopočítá
+ * z u_i = K_ii^-1 f_i - X u_b, kde X = K_ii^-1 K_ib. Instance se stejnými
+ * prvky jako první instance podkonstrukce použijí její rozklad i matici S.
+ * Kondenzuje se jen vnitřek velký vůči hranici a sdílený více instancemi,
+ * jinak by hustý blok S soustavu zpomalil (viz worthCondensing()).
+ * Kondenzace i dopočet vnitřků běží pro instance paralelně.
+ *
+ * Z koncových sil prvků se nakonec dopočítají hodnoty všech reakcí modelu
+ * (podpor, táhel i sil mezi nosníky v kloubech) - průběhy vnitřních sil
+ * se pak počítají stejně jako u staticky určité soustavy.
+ *
+ * Se stejnými prvky a neznámými se počítají i vlastní tvary kmitání
+ * (modes()) z matice tuhosti a konzistentní matice hmotnosti.
+ *
+ * @author Martin
+ */
+class StiffnessMethod {
+
+	/** Uzel - posun ve dvou směrech. */
+	private static class Node {
+		/** Poloha uzlu. */
+		VectorXZ position;
+		/** Osy uzlu, první (c, s), druhá (-s, c); pootočené podle podpory. */
+		double c = 1, s = 0;
+		/** Čísla neznámých posunů ve směru os, -1 = posunu brání podpora. */
+		int u = -1, w = -1;
+		boolean fixedU = false, fixedW = false;
+		/** Pořadí při číslování neznámých, u kloubu Joint.index. */
+		double key;
+		/** Pootočení nosníků v uzlu. */
+		List <Rotation> rotations = new ArrayList <Rotation>();
+		/** Reakce podpor v uzlu. */
+		List <Force.Reaction> reactions = new ArrayList <Force.Reaction>();
+		/** Zatížení uzlu a součet koncových sil prvků {fx, fz} po zatěžovacích stavech. */
+		double[][] load, sum;
+		/** Prvky připojené k uzlu. */
+		List <Element> elements = new ArrayList <Element>();
+	}
+
+	/** Pootočení uzlu nosníku (nebo pevného kloubu). */
+	private static class Rotation {
+		/** Číslo neznámé, -1 = pootočení brání vetknutí. */
+		int dof = -1;
+		boolean fixed = false;
+		/** Momentové reakce podpor. */
+		List <Moment.Reaction> reactions = new ArrayList <Moment.Reaction>();
+		/** Zatížení momentem a součet koncových momentů prvků po zatěžovacích stavech. */
+		double[] load, sum;
+	}
+
+	/** Prvek rámu mezi dvěma uzly nosníku, nebo táhlo (bez pootočení). */
+	private static class Element {
+		Beam beam;
+		Node a, b;
+		Rotation ra, rb;
+		/** Jednotkový směr prvku a délka. */
+		double ex, ez, length;
+		double ea, ei;
+		/** Hmotnost na jednotku délky. */
+		double mass;
+		/** Spojité zatížení po zatěžovacích stavech {qx, qz} na jednotku délky. */
+		double[][] q;
+		/** Koncové síly {fxa, fza, ma, fxb, fzb, mb}, kterými uzly působí na prvek. */
+		double[][] end;
+	}
+
+	/** Instance podkonstrukce, neznámé v pořadí podle prvků nosníků vzoru. */
+	private static class Instance {
+		Substructure substructure;
+		List <Element> elements = new ArrayList <Element>();
+		/** Čísla neznámých vnitřku a hranice. */
+		int[] interior, boundary;
+		/**
+		 * Neznámé prvků {ua, wa, fia, ub, wb, fib} po prvcích v instanci:
+		 * pořadí ve vnitřku, -2-pořadí na hranici, -1 bez neznámé.
+		 */
+		int[] pattern;
+		Condensation condensation;
+	}
+
+	/**
+	 * Rozklad K_ii, X = K_ii^-1 K_ib a kondenzovaná matice hranice
+	 * S = K_bb - K_bi X, společné pro instance se stejnou tuhostí.
+	 */
+	private static class Condensation {
+		SkylineCholeskyDecomposition kii;
+		ColumnMatrix x;
+		double[][] s;
+	}
+
+	/**
+	 * Kondenzuje se jen vnitřek alespoň tolikrát větší než hranice
+	 * a sdílený alespoň tolika instancemi, viz worthCondensing().
+	 */
+	private static final int CONDENSE_RATIO = 3;
+	private static final int CONDENSE_INSTANCES = 2;
+
+	/** Počet úseků, po kterých se kreslí ohybová čára prvku ve vlastním tvaru. */
+	private static final int MODE_STEPS = 8;
+
+	private Model model;
+	/** Počet neznámých soustavy modelu (indexy reakcí). */
+	private int unknowns;
+	private Map <LoadCase, Integer> columns = new HashMap <LoadCase, Integer>();
+	private int cases;
+
+	private List <Node> nodes = new ArrayList <Node>();
+	private List <Element> elements = new ArrayList <Element>();
+	private Map <Joint, Node> jointNodes = new HashMap <Joint, Node>();
+	private Map <Joint, Rotation> jointRotations = new HashMap <Joint, Rotation>();
+
+	/** Uzel a pootočení, ve kterých působí reakce uložené v bodech nosníků. */
+	private Map <Reaction, Node> reactionNodes = new HashMap <Reaction, Node>();
+	private Map <Reaction, Rotation> reactionRotations = new HashMap <Reaction, Rotation>();
+
+	/** Kondenzované instance podkonstrukcí a počet různých rozkladů jejich vnitřků. */
+	private List <Instance> instances = new ArrayList <Instance>();
+	private int condensations = 0;
+
+	/** Počet neznámých. */
+	private int dofs = 0;
+	private boolean prepared = false;
+
+	/** Rozklad matice tuhosti z posledního výpočtu. */
+	private SkylineCholeskyDecomposition cholesky;
+
+	/** Úplná matice tuhosti a její rozklad pro vlastní tvary a vybočení. */
+	private SparseMatrix stiffness;
+	private SkylineCholeskyDecomposition stiffnessFactor;
+
+
+	StiffnessMethod(Model model, int unknowns) {
+		this.model = model;
+		this.unknowns = unknowns;
+		for (LoadCase loadCase: model.loadCases) {
+			columns.put(loadCase, columns.size());
+		}
+		cases = model.loadCases.size();
+	}
+
+	/** Počet neznámých posunů a pootočení. */
+	public int getUnknowns() {
+		return dofs;
+	}
+
+	/** Šířka pásu matice tuhosti. */
+	public int getBandwidth() {
+		return cholesky == null ? 0 : cholesky.getBandwidth();
+	}
+
+	/** Počet uložených prvků rozkladu (profil matice tuhosti). */
+	public long getProfile() {
+		return cholesky == null ? 0 : cholesky.getProfile();
+	}
+
+	/** Počet kondenzovaných instancí podkonstrukcí. */
+	public int getCondensedInstances() {
+		return instances.size();
+	}
+
+	/** Počet rozkladů vnitřků podkonstrukcí (ostatní instance je sdílejí). */
+	public int getCondensations() {
+		return condensations;
+	}
+
+	/**
+	 * Sestaví a vyřeší soustavu a vrátí hodnoty reakcí (řádky podle indexů neznámých,
+	 * sloupec za každý zatěžovací stav), nebo null, pokud matice tuhosti
+	 * není pozitivně definitní (konstrukce je pohyblivá).
+	 */
+	public ColumnMatrix solve() {
+		prepare();
+		findInstances();
+		condense();
+
+		// neznámé, které zůstanou v soustavě (bez vnitřků podkonstrukcí)
+		int[] reduced = new int[dofs];
+		Set <Element> condensed = new HashSet <Element>();
+		for (Instance instance: instances) {
+			for (int d: instance.interior) reduced[d] = -1;
+			condensed.addAll(instance.elements);
+		}
+		int n = 0;
+		for (int d = 0; d < dofs; d++) {
+			if (reduced[d] == 0) reduced[d] = n++;
+		}
+
+		TripletMatrix triplets = new TripletMatrix(n, n, 36*elements.size());
+		ColumnMatrix f = new ColumnMatrix(dofs, cases);
+		for (Node node: nodes) {
+			for (int k = 0; k < cases; k++) {
+				double fx = node.load[k][0], fz = node.load[k][1];
+				if (node.u >= 0) f.add(node.u, k, node.c*fx + node.s*fz);
+				if (node.w >= 0) f.add(node.w, k, -node.s*fx + node.c*fz);
+			}
+		}
+		for (Element e: elements) {
+			int[] index = indices(e);
+			double[][] t = transformation(e);
+			if (!condensed.contains(e)) {
+				double[][] kg = globalStiffness(e, t);
+				for (int i = 0; i < 6; i++) {
+					if (index[i] < 0) continue;
+					for (int j = 0; j < 6; j++) {
+						if (index[j] >= 0 && kg[i][j] != 0) triplets.add(reduced[index[i]], reduced[index[j]], kg[i][j]);
+					}
+				}
+			}
+			for (int k = 0; k < cases; k++) {
+				double[] fe = fixedEndForces(e, k);
+				for (int i = 0; i < 6; i++) {
+					if (index[i] < 0) continue;
+					double s = 0;
+					for (int j = 0; j < 6; j++) s += t[j][i]*fe[j];
+					f.add(index[i], k, s);
+				}
+			}
+		}
+
+		// hranice podkonstrukcí - matice S a zatížení f_b - X' f_i
+		ColumnMatrix fr = new ColumnMatrix(n, cases);
+		for (int d = 0; d < dofs; d++) {
+			if (reduced[d] < 0) continue;
+			for (int k = 0; k < cases; k++) fr.set(reduced[d], k, f.get(d, k));
+		}
+		for (Instance instance: instances) {
+			int[] b = instance.boundary, in = instance.interior;
+			ColumnMatrix x = instance.condensation.x;
+			double[][] sb = instance.condensation.s;
+			for (int i = 0; i < b.length; i++) {
+				for (int j = 0; j < b.length; j++) {
+					if (sb[i][j] != 0) triplets.add(reduced[b[i]], reduced[b[j]], sb[i][j]);
+				}
+				for (int k = 0; k < cases; k++) {
+					double s = 0;
+					for (int m = 0; m < in.length; m++) s += x.get(m, i)*f.get(in[m], k);
+					fr.add(reduced[b[i]], k, -s);
+				}
+			}
+		}
+
+		// husté bloky S rozbijí profil pořadí podle kloubů, soustava s nimi se přečísluje
+		SparseMatrix kr = triplets.compress();
+		cholesky = new SkylineCholeskyDecomposition(kr, instances.isEmpty() ? null : SparseOrdering.reverseCuthillMcKee(kr));
+		if (!cholesky.isSPD()) return null;
+		ColumnMatrix ur = cholesky.solve(fr);
+
+		ColumnMatrix u = new ColumnMatrix(dofs, cases);
+		for (int d = 0; d < dofs; d++) {
+			if (reduced[d] < 0) continue;
+			for (int k = 0; k < cases; k++) u.set(d, k, ur.get(reduced[d], k));
+		}
+		recover(u, f);
+
+		endForces(u);
+		return reactions(u);
+	}
+
+
+	/**
+	 * Vlastní tvary kmitání s nejnižšími frekvencemi (nejvýše count) -
+	 * zobecněný problém vlastních čísel K x = omega^2 M x s konzistentní
+	 * maticí hmotnosti. Podkonstrukce se nekondenzují (kondenzace tuhosti
+	 * by hmotnost vnitřků zanedbala).
+	 */
+	public List <Mode> modes(int count) {
+		prepare();
+		double[][][] mass = new double[elements.size()][][];
+		for (int i = 0; i < mass.length; i++) {
+			mass[i] = localMass(elements.get(i));
+		}
+		return eigenmodes(mass, count, false);
+	}
+
+	/**
+	 * Tvary vybočení s nejnižšími kritickými násobky zatížení (nejvýše
+	 * count) - (K + lambda K_G) x = 0, kde geometrická matice tuhosti K_G
+	 * plyne z normálových sil lineárního výpočtu zatěžovacího stavu
+	 * (průběhy vnitřních sil nosníků, síly v táhlech). Tah konstrukci
+	 * ztužuje, záporná vlastní čísla (vybočení při opačném zatížení) se
+	 * vynechají.
+	 */
+	public List <Mode> buckling(LoadCase loadCase, int count) {
+		prepare();
+		LoadCase.Result result = model.getResult(loadCase);
+		if (result == null) return new ArrayList <Mode>();
+
+		double[][][] geometric = new double[elements.size()][][];
+		Map <Beam, Integer> segments = new HashMap <Beam, Integer>();
+		for (int i = 0; i < geometric.length; i++) {
+			Element e = elements.get(i);
+			double n = 0;
+			if (e.beam.isRod) {
+				n = result.solution[e.beam.rodReaction.unknown];
+			}
+			else {
+				// prvky nosníku jsou ve stejném pořadí jako úseky průběhů
+				Integer segment = segments.get(e.beam);
+				segment = (segment == null) ? 0 : segment + 1;
+				segments.put(e.beam, segment);
+				List <Beam.ForcesDistribution> forces = model.getInternalForces(e.beam, loadCase);
+				if (forces != null && segment < forces.size()) {
+					Beam.ForcesDistribution d = forces.get(segment);
+					n = 0.5*(d.nStart + d.nEnd);
+				}
+			}
+			geometric[i] = localGeometric(e, -n);	// K x = lambda (-K_G) x
+		}
+		return eigenmodes(geometric, count, true);
+	}
+
+	/**
+	 * Nejnižší kladná vlastní čísla K x = lambda B x iterací v podprostoru
+	 * (blokovou inverzní iterací) s rozkladem matice tuhosti; B se sestaví
+	 * z matic prvků v jejich osách. Vrátí jen tvary, jejichž vlastní čísla
+	 * zkonvergovala; prázdný seznam, pokud je konstrukce pohyblivá.
+	 */
+	private List <Mode> eigenmodes(double[][][] local, int count, boolean buckling) {
+		List <Mode> modes = new ArrayList <Mode>();
+		if (dofs == 0) return modes;
+		SkylineCholeskyDecomposition factor = factorStiffness();
+		if (!factor.isSPD()) return modes;
+
+		TripletMatrix b = new TripletMatrix(dofs, dofs, 36*elements.size());
+		for (int n = 0; n < local.length; n++) {
+			Element e = elements.get(n);
+			int[] index = indices(e);
+			double[][] bg = global(local[n], transformation(e));
+			for (int i = 0; i < 6; i++) {
+				if (index[i] < 0) continue;
+				for (int j = 0; j < 6; j++) {
+					if (index[j] >= 0 && bg[i][j] != 0) b.add(index[i], index[j], bg[i][j]);
+				}
+			}
+		}
+		SubspaceIteration iteration = new SubspaceIteration(factor, stiffness, b.compress(), count, SubspaceIteration.DEFAULT_TOLERANCE);
+		double[] lambda = iteration.getRealEigenvalues();
+		ColumnMatrix v = iteration.getV();
+		for (int c = 0; c < iteration.getConvergedCount() && !Double.isInfinite(lambda[c]); c++) {
+			Mode mode = new Mode(c+1, lambda[c], buckling);
+			for (Element e: elements) shape(e, v, c, mode);
+			mode.normalize();
+			modes.add(mode);
+		}
+		return modes;
+	}
+
+	/**
+	 * Úplná matice tuhosti (bez kondenzace podkonstrukcí) a její rozklad,
+	 * sestaví se jednou pro vlastní tvary i vybočení. Pokud výpočet
+	 * deformační metodou nic nekondenzoval, rozložil tutéž matici - použije
+	 * se jeho rozklad.
+	 */
+	private SkylineCholeskyDecomposition factorStiffness() {
+		if (stiffnessFactor != null) return stiffnessFactor;
+		TripletMatrix k = new TripletMatrix(dofs, dofs, 36*elements.size());
+		for (Element e: elements) {
+			int[] index = indices(e);
+			double[][] kg = globalStiffness(e, transformation(e));
+			for (int i = 0; i < 6; i++) {
+				if (index[i] < 0) continue;
+				for (int j = 0; j < 6; j++) {
+					if (index[j] >= 0 && kg[i][j] != 0) k.add(index[i], index[j], kg[i][j]);
+				}
+			}
+		}
+		stiffness = k.compress();
+		if (cholesky != null && instances.isEmpty()) stiffnessFactor = cholesky;
+		else stiffnessFactor = new SkylineCholeskyDecomposition(stiffness, SparseOrdering.reverseCuthillMcKee(stiffness));
+		return stiffnessFactor;
+	}
+
+	/** Sestaví uzly a prvky a očísluje neznámé (jen při prvním výpočtu). */
+	private void prepare() {
+		if (prepared) return;
+		build();
+		constrain();
+		number();
+		prepared = true;
+	}
+
+	/** Vytvoří uzly, pootočení a prvky a rozdělí na ně zatížení. */
+	private void build() {
+		for (Beam beam: model.beams) {
+			if (beam.isRod) continue;
+
+			Set <Load> active = new HashSet <Load>();
+			List <Node> stations = new ArrayList <Node>();
+			Node node = null;
+			Rotation rotation = null;
+			VectorXZ position = null;
+			for (VectorXZ p: beam.allPoints) {
+				if (position == null || !p.equals(position)) {
+					// další bod nosníku, úsek od předchozího bodu je prvek
+					Joint joint = model.joints.get(p);
+					if (joint != null && !joint.beams.contains(beam)) joint = null;
+					Node next = (joint != null) ? jointNode(joint) : newNode();
+					Rotation nextRotation = (joint != null && joint.stiff) ? jointRotation(joint) : newRotation();
+					if (!next.rotations.contains(nextRotation)) next.rotations.add(nextRotation);
+					next.key = (joint != null) ? joint.index : Double.NaN;
+					next.position = p;
+					stations.add(next);
+					if (node != null) {
+						frame(beam, node, rotation, next, nextRotation, position, p, active);
+					}
+					node = next;
+					rotation = nextRotation;
+					position = p;
+				}
+				if (!(p instanceof Beam.InnerPoint)) continue;
+
+				Beam.InnerPoint ip = (Beam.InnerPoint)p;
+				if (ip.force instanceof Force.Action) {
+					int k = columns.get(((Force.Action)ip.force).loadCase);
+					node.load[k][0] += ip.force.size*ip.force.direction.x;
+					node.load[k][1] += ip.force.size*ip.force.direction.z;
+				}
+				else if (ip.force instanceof Force.Reaction) {
+					reactionNodes.put((Force.Reaction)ip.force, node);
+				}
+				if (ip.moment instanceof Moment.Action) {
+					rotation.load[columns.get(((Moment.Action)ip.moment).loadCase)] += ip.moment.size;
+				}
+				else if (ip.moment instanceof Moment.Reaction) {
+					reactionRotations.put((Moment.Reaction)ip.moment, rotation);
+				}
+				if (ip.load != null) {
+					if (!active.remove(ip.load)) active.add(ip.load);
+				}
+			}
+			interpolateKeys(stations);
+		}
+
+		// hmotné body, síly v ostatních kloubech jsou v bodech prvního nosníku
+		for (Joint joint: model.joints.values()) {
+			if (!joint.allRods) continue;
+			Node node = jointNode(joint);
+			node.key = joint.index;
+			for (Force force: joint.forces) {
+				if (force instanceof Force.Action) {
+					int k = columns.get(((Force.Action)force).loadCase);
+					node.load[k][0] += force.size*force.direction.x;
+					node.load[k][1] += force.size*force.direction.z;
+				}
+				else {
+					reactionNodes.put((Force.Reaction)force, node);
+				}
+			}
+		}
+
+		// táhla
+		for (Beam beam: model.beams) {
+			if (!beam.isRod) continue;
+			VectorXZ a = beam.mainPoints.get(0), b = beam.mainPoints.get(1);
+			element(beam, jointNode(model.joints.get(a)), jointNode(model.joints.get(b)), a, b);
+		}
+	}
+
+	/**
+	 * Uzly uvnitř nosníku (bez kloubu) se zařadí hned za ten z krajních
+	 * kloubů úseku, který je v pořadí dřív.
+	 */
+	private static void interpolateKeys(List <Node> stations) {
+		int last = -1;
+		for (int i = 0; i < stations.size(); i++) {
+			if (Double.isNaN(stations.get(i).key)) continue;
+			if (last >= 0 && i > last+1) {
+				double key = Math.min(stations.get(last).key, stations.get(i).key);
+				for (int j = last+1; j < i; j++) {
+					stations.get(j).key = key + 0.5*(j-last)/(i-last);
+				}
+			}
+			last = i;
+		}
+	}
+
+	private Node newNode() {
+		Node node = new Node();
+		node.load = new double[cases][2];
+		node.sum = new double[cases][2];
+		nodes.add(node);
+		return node;
+	}
+
+	private Rotation newRotation() {
+		Rotation rotation = new Rotation();
+		rotation.load = new double[cases];
+		rotation.sum = new double[cases];
+		return rotation;
+	}
+
+	private Node jointNode(Joint joint) {
+		Node node = jointNodes.get(joint);
+		if (node == null) {
+			node = newNode();
+			node.position = joint.position;
+			jointNodes.put(joint, node);
+		}
+		return node;
+	}
+
+	private Rotation jointRotation(Joint joint) {
+		Rotation rotation = jointRotations.get(joint);
+		if (rotation == null) {
+			rotation = newRotation();
+			jointRotations.put(joint, rotation);
+		}
+		return rotation;
+	}
+
+	private Element element(Beam beam, Node a, Node b, VectorXZ pa, VectorXZ pb) {
+		Element e = new Element();
+		e.beam = beam;
+		e.a = a;
+		e.b = b;
+		double dx = pb.x - pa.x, dz = pb.z - pa.z;
+		e.length = Math.sqrt(dx*dx + dz*dz);
+		e.ex = dx / e.length;
+		e.ez = dz / e.length;
+		e.ea = beam.getAxialStiffness();
+		e.mass = beam.getMass();
+		e.q = new double[cases][2];
+		elements.add(e);
+		a.elements.add(e);
+		b.elements.add(e);
+		return e;
+	}
+
+	/** Prvek rámu se spojitými zatíženími, která na úseku právě působí. */
+	private void frame(Beam beam, Node a, Rotation ra, Node b, Rotation rb, VectorXZ pa, VectorXZ pb, Set <Load> active) {
+		Element e = element(beam, a, b, pa, pb);
+		e.ra = ra;
+		e.rb = rb;
+		e.ei = beam.getBendingStiffness();
+		for (Load load: active) {
+			int k = columns.get(load.loadCase);
+			e.q[k][0] += load.sizePerPixel*load.direction.x;
+			e.q[k][1] += load.sizePerPixel*load.direction.z;
+		}
+	}
+
+	/**
+	 * Podpory. Jedna reakce (nebo více rovnoběžných) zabrání posunu ve svém
+	 * směru - první osa uzlu se natočí do tohoto směru, druhá zůstane volná;
+	 * různoběžné reakce zabrání posunu úplně.
+	 */
+	private void constrain() {
+		for (Support support: model.supports) {
+			if (!support.enabled) continue;
+			for (Reaction reaction: support.getReactions()) {
+				if (reaction instanceof Force.Reaction) {
+					Node node = reactionNodes.get(reaction);
+					if (node != null) node.reactions.add((Force.Reaction)reaction);
+				}
+				else {
+					Rotation rotation = reactionRotations.get(reaction);
+					if (rotation != null) {
+						rotation.reactions.add((Moment.Reaction)reaction);
+						rotation.fixed = true;
+					}
+				}
+			}
+		}
+		for (Node node: nodes) {
+			if (node.reactions.isEmpty()) continue;
+			VectorXZ d = node.reactions.get(0).direction;
+			double size = Math.sqrt(d.x*d.x + d.z*d.z);
+			node.c = d.x / size;
+			node.s = d.z / size;
+			node.fixedU = true;
+			for (Force.Reaction reaction: node.reactions) {
+				VectorXZ r = reaction.direction;
+				if (Math.abs(node.c*r.z - node.s*r.x) > 1e-6*Math.sqrt(r.x*r.x + r.z*r.z)) {
+					node.fixedW = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Očísluje neznámé po uzlech v pořadí kloubů, aby měla matice tuhosti
+	 * úzký profil.
+	 */
+	private void number() {
+		List <Node> sorted = new ArrayList <Node>(nodes);
+		Collections.sort(sorted, new Comparator <Node>() {
+			public int compare(Node n1, Node n2) {
+				return Double.compare(n1.key, n2.key);
+			}
+		});
+		for (Node node: sorted) {
+			if (node.elements.isEmpty()) continue;
+			if (!node.fixedU) node.u = dofs++;
+			if (!node.fixedW) node.w = dofs++;
+			for (Rotation rotation: node.rotations) {
+				if (!rotation.fixed && rotation.dof < 0) rotation.dof = dofs++;
+			}
+		}
+	}
+
+	/**
+	 * Najde instance podkonstrukcí. Uzel patří do vnitřku, pokud jsou
+	 * všechny jeho prvky z nosníků instance a není hraničním kloubem.
+	 * Neznámé se řadí podle prvků v pořadí nosníků vzoru, aby si neznámé
+	 * různých instancí odpovídaly.
+	 */
+	private void findInstances() {
+		if (model.substructures.isEmpty()) return;
+		Map <Beam, List <Element>> beamElements = new HashMap <Beam, List <Element>>();
+		for (Element e: elements) {
+			List <Element> list = beamElements.get(e.beam);
+			if (list == null) {
+				list = new ArrayList <Element>();
+				beamElements.put(e.beam, list);
+			}
+			list.add(e);
+		}
+
+		// pořadí neznámé v naposledy procházené instanci (viz Instance.pattern)
+		int[] local = new int[dofs];
+		int[] owner = new int[dofs];
+		Arrays.fill(owner, -1);
+		int count = 0;
+		for (Substructure substructure: model.substructures) {
+			for (Map.Entry <VectorXZ, List <Beam>> entry: substructure.findInstances(model).entrySet()) {
+				Set <Beam> beams = new HashSet <Beam>(entry.getValue());
+				Instance instance = new Instance();
+				instance.substructure = substructure;
+				for (Beam beam: entry.getValue()) {
+					List <Element> list = beamElements.get(beam);
+					if (list != null) instance.elements.addAll(list);
+				}
+				int id = count++;
+				int ni = 0, nb = 0;
+				int[] interior = new int[6*instance.elements.size()];
+				int[] boundary = new int[interior.length];
+				instance.pattern = new int[interior.length];
+				for (int k = 0; k < instance.elements.size(); k++) {
+					Element e = instance.elements.get(k);
+					int[] index = indices(e);
+					for (int i = 0; i < 6; i++) {
+						int d = index[i];
+						if (d >= 0 && owner[d] != id) {
+							Node node = (i < 3) ? e.a : e.b;
+							boolean inside = !substructure.isBoundary(node.position, entry.getKey());
+							for (Element other: node.elements) {
+								if (!beams.contains(other.beam)) inside = false;
+							}
+							if (inside) {
+								local[d] = ni;
+								interior[ni++] = d;
+							}
+							else {
+								local[d] = -2 - nb;
+								boundary[nb++] = d;
+							}
+							owner[d] = id;
+						}
+						instance.pattern[6*k + i] = (d < 0) ? -1 : local[d];
+					}
+				}
+				if (ni == 0) continue;
+				instance.interior = Arrays.copyOf(interior, ni);
+				instance.boundary = Arrays.copyOf(boundary, nb);
+				instances.add(instance);
+			}
+		}
+	}
+
+	/**
+	 * Kondenzuje instance podkonstrukcí. Instance se stejnými prvky
+	 * (liší se jen posunutím) a stejně očíslovanými neznámými mají stejné
+	 * bloky matice tuhosti, sestaví a kondenzuje se jen první z nich.
+	 * Skupiny, u kterých se kondenzace nevyplatí, a instance s pohyblivým
+	 * vnitřkem zůstanou v soustavě celé.
+	 */
+	private void condense() {
+		if (instances.isEmpty()) return;
+		Map <Instance, List <Instance>> groups = new LinkedHashMap <Instance, List <Instance>>();
+		Map <Substructure, List <Instance>> distinct = new HashMap <Substructure, List <Instance>>();
+		for (Instance instance: instances) {
+			List <Instance> list = distinct.get(instance.substructure);
+			if (list == null) {
+				list = new ArrayList <Instance>();
+				distinct.put(instance.substructure, list);
+			}
+			Instance same = null;
+			for (Instance other: list) {
+				if (sameStiffness(other, instance)) {
+					same = other;
+					break;
+				}
+			}
+			if (same == null) {
+				same = instance;
+				list.add(instance);
+				groups.put(instance, new ArrayList <Instance>());
+			}
+			groups.get(same).add(instance);
+		}
+
+		List <Instance> factorized = new ArrayList <Instance>();
+		long work = 0;
+		for (Map.Entry <Instance, List <Instance>> group: groups.entrySet()) {
+			Instance instance = group.getKey();
+			if (!worthCondensing(instance, group.getValue().size())) continue;
+			factorized.add(instance);
+			long ni = instance.interior.length, nb = instance.boundary.length;
+			work += ni*nb*nb;
+		}
+		final Instance[] first = factorized.toArray(new Instance[factorized.size()]);
+		Parallel.forRange(0, first.length, work, new Parallel.Loop() {
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) first[i].condensation = condensation(first[i]);
+			}
+		});
+
+		instances.clear();
+		for (Instance representative: first) {
+			if (representative.condensation == null) continue;
+			condensations++;
+			for (Instance instance: groups.get(representative)) {
+				instance.condensation = representative.condensation;
+				instances.add(instance);
+			}
+		}
+	}
+
+	/**
+	 * Vyplatí se kondenzovat skupinu instancí? Rozklad vnitřku a X se
+	 * spočítají jednou, ale blok S v soustavě provazuje celou hranici
+	 * instance a dopočet vnitřku stojí ni*nb operací na instanci.
+	 * Ušetří se tedy jen u vnitřku velkého vůči hranici, který sdílí
+	 * více instancí.
+	 */
+	private static boolean worthCondensing(Instance instance, int count) {
+		return count >= CONDENSE_INSTANCES && instance.interior.length >= CONDENSE_RATIO*instance.boundary.length;
+	}
+
+	/**
+	 * Sestaví bloky K_ii (řídký), K_ib a K_bb matice tuhosti instance
+	 * a kondenzuje je, null pokud je vnitřek pohyblivý. Vnitřek se
+	 * přečísluje (reverse Cuthill-McKee), aby měl rozklad úzký profil.
+	 */
+	private static Condensation condensation(Instance instance) {
+		int ni = instance.interior.length, nb = instance.boundary.length;
+		TripletMatrix triplets = new TripletMatrix(ni, ni, 36*instance.elements.size());
+		ColumnMatrix kib = new ColumnMatrix(ni, nb);
+		double[][] kbb = new double[nb][nb];
+		int[] local = new int[6];
+		for (int k = 0; k < instance.elements.size(); k++) {
+			Element e = instance.elements.get(k);
+			double[][] kg = globalStiffness(e, transformation(e));
+			for (int i = 0; i < 6; i++) {
+				int p = instance.pattern[6*k + i];
+				local[i] = (p >= -1) ? p : ni - 2 - p;
+			}
+			for (int i = 0; i < 6; i++) {
+				if (local[i] < 0) continue;
+				for (int j = 0; j < 6; j++) {
+					if (local[j] < 0) continue;
+					if (local[i] < ni && local[j] < ni) triplets.add(local[i], local[j], kg[i][j]);
+					else if (local[i] < ni) kib.add(local[i], local[j]-ni, kg[i][j]);
+					else if (local[j] >= ni) kbb[local[i]-ni][local[j]-ni] += kg[i][j];
+				}
+			}
+		}
+
+		SparseMatrix kii = triplets.compress();
+		Condensation c = new Condensation();
+		c.kii = new SkylineCholeskyDecomposition(kii, SparseOrdering.reverseCuthillMcKee(kii));
+		if (!c.kii.isSPD()) return null;
+		c.x = c.kii.solve(kib);
+		c.s = kbb;
+		// K_ib má nenulové jen řádky neznámých vnitřku u hranice
+		double[] x = c.x.getArray(), b = kib.getArray();
+		for (int i = 0; i < nb; i++) {
+			for (int m = 0; m < ni; m++) {
+				double bmi = b[m + i*ni];
+				if (bmi == 0) continue;
+				for (int j = 0; j < nb; j++) c.s[i][j] -= bmi*x[m + j*ni];
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Mají instance stejně očíslované neznámé a (až na přesnost souřadnic)
+	 * stejné prvky?
+	 */
+	private static boolean sameStiffness(Instance a, Instance b) {
+		if (a.interior.length != b.interior.length || !Arrays.equals(a.pattern, b.pattern)) return false;
+		for (int k = 0; k < a.elements.size(); k++) {
+			Element e = a.elements.get(k), f = b.elements.get(k);
+			if (!same(e.ea, f.ea) || !same(e.ei, f.ei) || !same(e.length, f.length)) return false;
+			if (!same(e.ex, f.ex) || !same(e.ez, f.ez)) return false;
+			if (!same(e.a.c, f.a.c) || !same(e.a.s, f.a.s) || !same(e.b.c, f.b.c) || !same(e.b.s, f.b.s)) return false;
+		}
+		return true;
+	}
+
+	private static boolean same(double x, double y) {
+		return Math.abs(x - y) <= 1e-6*Math.max(1, Math.max(Math.abs(x), Math.abs(y)));
+	}
+
+	/** Dopočítá posuny vnitřků instancí u_i = K_ii^-1 f_i - X u_b. */
+	private void recover(final ColumnMatrix u, final ColumnMatrix f) {
+		if (instances.isEmpty()) return;
+		final Instance[] all = instances.toArray(new Instance[instances.size()]);
+		long work = 0;
+		for (Instance instance: all) {
+			long ni = instance.interior.length;
+			work += ni*(ni + instance.boundary.length)*cases;
+		}
+		Parallel.forRange(0, all.length, work, new Parallel.Loop() {
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) {
+					int[] in = all[i].interior, b = all[i].boundary;
+					ColumnMatrix fi = new ColumnMatrix(in.length, cases);
+					ColumnMatrix ub = new ColumnMatrix(b.length, cases);
+					for (int k = 0; k < cases; k++) {
+						for (int m = 0; m < in.length; m++) fi.set(m, k, f.get(in[m], k));
+						for (int m = 0; m < b.length; m++) ub.set(m, k, u.get(b[m], k));
+					}
+					Condensation c = all[i].condensation;
+					ColumnMatrix ui = c.kii.solve(fi), xu = c.x.times(ub);
+					for (int k = 0; k < cases; k++) {
+						for (int m = 0; m < in.length; m++) u.set(in[m], k, ui.get(m, k) - xu.get(m, k));
+					}
+				}
+			}
+		});
+	}
+
+	/** Neznámé prvku {ua, wa, fia, ub, wb, fib}, -1 pro podepřené a chybějící. */
+	private static int[] indices(Element e) {
+		return new int[] {
+			e.a.u, e.a.w, e.ra == null ? -1 : e.ra.dof,
+			e.b.u, e.b.w, e.rb == null ? -1 : e.rb.dof
+		};
+	}
+
+	/**
+	 * Matice přechodu od os uzlů k osám prvku: podélný posun u ve směru
+	 * (ex, ez), příčný v ve směru (ez, -ex), pootočení beze změny. Při
+	 * pootočení fi se bod [x; z] posune o (fi*z, -fi*x) jako v rovnicích
+	 * rovnováhy, proto je dv/ds = fi.
+	 */
+	private static double[][] transformation(Element e) {
+		double[][] t = new double[6][6];
+		double tx = e.ez, tz = -e.ex;
+		Node[] ends = {e.a, e.b};
+		for (int i = 0; i < 2; i++) {
+			Node n = ends[i];
+			int o = 3*i;
+			t[o][o] = e.ex*n.c + e.ez*n.s;
+			t[o][o+1] = -e.ex*n.s + e.ez*n.c;
+			t[o+1][o] = tx*n.c + tz*n.s;
+			t[o+1][o+1] = -tx*n.s + tz*n.c;
+			t[o+2][o+2] = 1;
+		}
+		return t;
+	}
+
+	/** Matice tuhosti prutu v osách prvku. */
+	private static double[][] localStiffness(Element e) {
+		double l = e.length;
+		double a = e.ea/l;
+		double b = 12*e.ei/(l*l*l), c = 6*e.ei/(l*l), d = 4*e.ei/l, h = 2*e.ei/l;
+		return new double[][] {
+			{ a,  0,  0, -a,  0,  0},
+			{ 0,  b,  c,  0, -b,  c},
+			{ 0,  c,  d,  0, -c,  h},
+			{-a,  0,  0,  a,  0,  0},
+			{ 0, -b, -c,  0,  b, -c},
+			{ 0,  c,  h,  0, -c,  d}
+		};
+	}
+
+	/**
+	 * Konzistentní matice hmotnosti v osách prvku - podélně lineární
+	 * interpolace, příčně kubická jako u matice tuhosti; táhlo jen
+	 * posuny s lineární interpolací v obou směrech.
+	 */
+	private static double[][] localMass(Element e) {
+		double l = e.length;
+		double r = e.mass*l/6;
+		if (e.ra == null) {
+			return new double[][] {
+				{2*r,   0, 0,   r,   0, 0},
+				{  0, 2*r, 0,   0,   r, 0},
+				{  0,   0, 0,   0,   0, 0},
+				{  r,   0, 0, 2*r,   0, 0},
+				{  0,   r, 0,   0, 2*r, 0},
+				{  0,   0, 0,   0,   0, 0}
+			};
+		}
+		double m = e.mass*l/420;
+		double a = 156*m, b = 22*l*m, c = 54*m, d = 13*l*m, g = 4*l*l*m, h = 3*l*l*m;
+		return new double[][] {
+			{2*r, 0,  0,   r,  0,  0},
+			{  0, a,  b,   0,  c, -d},
+			{  0, b,  g,   0,  d, -h},
+			{  r, 0,  0, 2*r,  0,  0},
+			{  0, c,  d,   0,  a, -b},
+			{  0, -d, -h,  0, -b,  g}
+		};
+	}
+
+	/**
+	 * Geometrická matice tuhosti prvku v osách prvku od normálové síly n
+	 * (kladná v tahu) - příčný posun kubický jako u matice tuhosti, táhlo
+	 * s lineárním příčným posunem.
+	 */
+	private static double[][] localGeometric(Element e, double n) {
+		double l = e.length;
+		double[][] g = new double[6][6];
+		if (e.ra == null) {
+			double a = n/l;
+			g[1][1] = g[4][4] = a;
+			g[1][4] = g[4][1] = -a;
+			return g;
+		}
+		double r = n/(30*l);
+		double a = 36*r, b = 3*l*r, c = 4*l*l*r, d = l*l*r;
+		double[][] v = {
+			{ a,  b, -a,  b},
+			{ b,  c, -b, -d},
+			{-a, -b,  a, -b},
+			{ b, -d, -b,  c}
+		};
+		int[] dof = {1, 2, 4, 5};
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) g[dof[i]][dof[j]] = v[i][j];
+		}
+		return g;
+	}
+
+	/** T' * k * T */
+	private static double[][] globalStiffness(Element e, double[][] t) {
+		return global(localStiffness(e), t);
+	}
+
+	/** T' * k * T pro matici prvku v jeho osách. */
+	private static double[][] global(double[][] k, double[][] t) {
+		double[][] kt = new double[6][6];
+		for (int i = 0; i < 6; i++) {
+			for (int j = 0; j < 6; j++) {
+				double s = 0;
+				for (int m = 0; m < 6; m++) s += k[i][m]*t[m][j];
+				kt[i][j] = s;
+			}
+		}
+		double[][] kg = new double[6][6];
+		for (int i = 0; i < 6; i++) {
+			for (int j = 0; j < 6; j++) {
+				double s = 0;
+				for (int m = 0; m < 6; m++) s += t[m][i]*kt[m][j];
+				kg[i][j] = s;
+			}
+		}
+		return kg;
+	}
+
+	/** Uzlové síly ekvivalentní spojitému zatížení prvku (v osách prvku). */
+	private static double[] fixedEndForces(Element e, int k) {
+		double qn = e.q[k][0]*e.ex + e.q[k][1]*e.ez;
+		double qt = e.q[k][0]*e.ez - e.q[k][1]*e.ex;
+		double l = e.length;
+		return new double[] {qn*l/2, qt*l/2, qt*l*l/12, qn*l/2, qt*l/2, -qt*l*l/12};
+	}
+
+	/**
+	 * Body prvku a jejich posuny ve vlastním tvaru (sloupec c matice
+	 * vlastních vektorů): příčný posun Hermitovými polynomy z posunů
+	 * a pootočení konců, podélný lineárně.
+	 */
+	private static void shape(Element e, ColumnMatrix v, int c, Mode mode) {
+		double[] da = displacement(e.a, v, c), db = displacement(e.b, v, c);
+		double ua = e.ex*da[0] + e.ez*da[1], va = e.ez*da[0] - e.ex*da[1];
+		double ub = e.ex*db[0] + e.ez*db[1], vb = e.ez*db[0] - e.ex*db[1];
+		double fa = e.ra == null || e.ra.dof < 0 ? 0 : v.get(e.ra.dof, c);
+		double fb = e.rb == null || e.rb.dof < 0 ? 0 : v.get(e.rb.dof, c);
+		double l = e.length;
+		int steps = e.ra == null ? 1 : MODE_STEPS;
+		for (int i = 0; i <= steps; i++) {
+			double x = (double)i / steps, x2 = x*x, x3 = x2*x;
+			double u = (1-x)*ua + x*ub;
+			double w = (1 - 3*x2 + 2*x3)*va + l*(x - 2*x2 + x3)*fa + (3*x2 - 2*x3)*vb + l*(x3 - x2)*fb;
+			VectorXZ p = new VectorXZ((float)(e.a.position.x + x*l*e.ex), (float)(e.a.position.z + x*l*e.ez));
+			mode.add(e.beam, p, new VectorXZ((float)(u*e.ex + w*e.ez), (float)(u*e.ez - w*e.ex)));
+		}
+	}
+
+	/** Posun uzlu {x, z} v zatěžovacím stavu k. */
+	private static double[] displacement(Node node, ColumnMatrix u, int k) {
+		double u0 = node.u >= 0 ? u.get(node.u, k) : 0;
+		double u1 = node.w >= 0 ? u.get(node.w, k) : 0;
+		return new double[] {node.c*u0 - node.s*u1, node.s*u0 + node.c*u1};
+	}
+
+	/** Koncové síly prvků p = k*T*u - f a jejich součty v uzlech. */
+	private void endForces(ColumnMatrix u) {
+		for (Element e: elements) {
+			double[][] k = localStiffness(e);
+			e.end = new double[cases][];
+			for (int c = 0; c < cases; c++) {
+				double[] da = displacement(e.a, u, c), db = displacement(e.b, u, c);
+				double[] d = {
+					e.ex*da[0] + e.ez*da[1], e.ez*da[0] - e.ex*da[1], e.ra == null || e.ra.dof < 0 ? 0 : u.get(e.ra.dof, c),
+					e.ex*db[0] + e.ez*db[1], e.ez*db[0] - e.ex*db[1], e.rb == null || e.rb.dof < 0 ? 0 : u.get(e.rb.dof, c)
+				};
+				double[] p = fixedEndForces(e, c);
+				for (int i = 0; i < 6; i++) {
+					double s = 0;
+					for (int j = 0; j < 6; j++) s += k[i][j]*d[j];
+					p[i] = s - p[i];
+				}
+				// zpět do globálních os
+				e.end[c] = new double[] {
+					p[0]*e.ex + p[1]*e.ez, p[0]*e.ez - p[1]*e.ex, p[2],
+					p[3]*e.ex + p[4]*e.ez, p[3]*e.ez - p[4]*e.ex, p[5]
+				};
+				e.a.sum[c][0] += e.end[c][0];
+				e.a.sum[c][1] += e.end[c][1];
+				e.b.sum[c][0] += e.end[c][3];
+				e.b.sum[c][1] += e.end[c][4];
+				if (e.ra != null) e.ra.sum[c] += e.end[c][2];
+				if (e.rb != null) e.rb.sum[c] += e.end[c][5];
+			}
+		}
+	}
+
+	/** Hodnoty reakcí modelu z koncových sil prvků. */
+	private ColumnMatrix reactions(ColumnMatrix u) {
+		ColumnMatrix x = new ColumnMatrix(unknowns, cases);
+
+		// táhla - normálová síla, kladná v tahu
+		for (Element e: elements) {
+			if (e.beam.isRod) {
+				int row = e.beam.rodReaction.unknown;
+				for (int c = 0; c < cases; c++) {
+					x.set(row, c, e.end[c][3]*e.ex + e.end[c][4]*e.ez);
+				}
+			}
+		}
+
+		// podpory - rozdíl sil prvků a zatížení uzlu
+		for (Node node: nodes) {
+			if (node.reactions.isEmpty()) continue;
+			for (int c = 0; c < cases; c++) {
+				double[] r = split(node.reactions, node.sum[c][0] - node.load[c][0], node.sum[c][1] - node.load[c][1]);
+				for (int i = 0; i < r.length; i++) {
+					x.set(node.reactions.get(i).getUnknown(), c, r[i]);
+				}
+			}
+		}
+		Set <Rotation> rotations = new HashSet <Rotation>(reactionRotations.values());
+		for (Rotation rotation: rotations) {
+			int n = rotation.reactions.size();
+			for (int c = 0; c < cases; c++) {
+				double m = rotation.sum[c] - rotation.load[c];
+				for (Moment.Reaction reaction: rotation.reactions) {
+					x.set(reaction.unknown, c, reaction.opposite ? -m/n : m/n);
+				}
+			}
+		}
+
+		// klouby - dvojice sil mezi po sobě jdoucími nosníky; poslední nosník
+		// nese jen reakci od předchozího, každý další (od konce) rozdíl
+		for (Map.Entry <Joint, Node> entry: jointNodes.entrySet()) {
+			Joint joint = entry.getKey();
+			if (joint.allRods || joint.reactions.isEmpty()) continue;
+			List <Beam> beams = new ArrayList <Beam>();
+			for (Beam beam: joint.beams) {
+				if (!beam.isRod) beams.add(beam);
+			}
+			int per = joint.stiff ? 3 : 2;
+			for (int c = 0; c < cases; c++) {
+				double[] pair = new double[3];
+				for (int i = beams.size()-1; i >= 1; i--) {
+					double[] f = beamForce(entry.getValue(), beams.get(i), c);
+					for (int j = 0; j < 3; j++) pair[j] -= f[j];
+					// dvojice (i-1, i): x, z, případně m
+					for (int j = 0; j < per; j++) {
+						Reaction reaction = joint.reactions.get(per*(i-1) + j);
+						x.set(reaction.getUnknown(), c, pair[j]);
+					}
+				}
+			}
+		}
+		return x;
+	}
+
+	/** Součet koncových sil {fx, fz, m}, kterými uzel působí na prvky nosníku. */
+	private static double[] beamForce(Node node, Beam beam, int c) {
+		double[] f = new double[3];
+		for (Element e: node.elements) {
+			if (e.beam != beam) continue;
+			int o = (e.a == node) ? 0 : 3;
+			f[0] += e.end[c][o];
+			f[1] += e.end[c][o+1];
+			f[2] += e.end[c][o+2];
+		}
+		return f;
+	}
+
+	/**
+	 * Rozdělí sílu (rx, rz) mezi reakce v uzlu - řešení s nejmenší normou
+	 * (pro dvě různoběžné reakce jediné).
+	 */
+	private static double[] split(List <Force.Reaction> reactions, double rx, double rz) {
+		double gxx = 0, gxz = 0, gzz = 0;
+		for (Force.Reaction reaction: reactions) {
+			VectorXZ d = reaction.direction;
+			gxx += d.x*d.x;
+			gxz += d.x*d.z;
+			gzz += d.z*d.z;
+		}
+		double trace = gxx + gzz;
+		double det = gxx*gzz - gxz*gxz;
+		double yx, yz;
+		if (det > 1e-9*trace*trace) {
+			yx = (gzz*rx - gxz*rz)/det;
+			yz = (gxx*rz - gxz*rx)/det;
+		}
+		else {
+			// rovnoběžné reakce, pseudoinverze matice hodnosti 1
+			VectorXZ d = reactions.get(0).direction;
+			double size = Math.sqrt(d.x*d.x + d.z*d.z);
+			double vx = d.x/size, vz = d.z/size;
+			double s = (vx*rx + vz*rz)/trace;
+			yx = vx*s;
+			yz = vz*s;
+		}
+		double[] r = new double[reactions.size()];
+		for (int i = 0; i < r.length; i++) {
+			VectorXZ d = reactions.get(i).direction;
+			r[i] = d.x*yx + d.z*yz;
+		}
+		return r;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Podkonstrukce - skupina nosníků, která se v modelu opakuje (pole mostu,
+ * vazník haly). Vzor tvoří nosníky a hraniční klouby, kterými se napojuje
+ * na zbytek konstrukce; instance jsou kopie vzoru posunuté o zadané
+ * vektory. Deformační metoda vnitřek podkonstrukce staticky kondenzuje
+ * jednou pro vzor a kondenzovanou matici použije pro všechny instance
+ * se stejnou maticí tuhosti - pokud je vnitřek dost velký vůči hranici,
+ * jinak se podkonstrukce řeší jako zbytek modelu.
+ *
+ * @author Martin
+ */
+public class Substructure implements ModelEntity, Serializable {
+
+	static final long serialVersionUID = 9001L;
+
+	/** Odchylka souřadnic, do které se nosník považuje za posunutou kopii. */
+	private static final float TOLERANCE = 1e-3f;
+
+	public String name;
+
+	/** Jména nosníků vzoru. */
+	public List <String> beams = new ArrayList <String>();
+
+	/** Hraniční klouby vzoru. */
+	public List <VectorXZ> boundary = new ArrayList <VectorXZ>();
+
+	/** Posunutí instancí vůči vzoru (vzor sám je instance s nulovým posunutím). */
+	public List <VectorXZ> offsets = new ArrayList <VectorXZ>();
+
+
+	/**
+	 * Najde nosníky jednotlivých instancí (podle posunutí) v pořadí nosníků
+	 * vzoru. Instance, ke které v modelu chybí některý nosník, se vynechá.
+	 */
+	public Map <VectorXZ, List <Beam>> findInstances(Model model) {
+		List <Beam> pattern = getPattern(model);
+		Map <VectorXZ, List <Beam>> instances = new LinkedHashMap <VectorXZ, List <Beam>>();
+		if (pattern == null) return instances;
+
+		Map <Long, List <Beam>> index = indexBeams(model);
+		Set <Beam> used = new HashSet <Beam>();
+		for (VectorXZ offset: offsets) {
+			List <Beam> instance = match(pattern, offset, index);
+			if (instance == null || !Collections.disjoint(instance, used)) continue;
+			used.addAll(instance);
+			instances.put(offset, instance);
+		}
+		return instances;
+	}
+
+	/** Je bod hraničním kloubem instance s daným posunutím? */
+	public boolean isBoundary(VectorXZ point, VectorXZ offset) {
+		for (VectorXZ p: boundary) {
+			if (Math.abs(p.x + offset.x - point.x) <= TOLERANCE && Math.abs(p.z + offset.z - point.z) <= TOLERANCE) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Nahradí posunutí instancí všemi posunutími, pro která se v modelu
+	 * najdou všechny nosníky vzoru. Instance se nepřekrývají - kopie,
+	 * která sdílí nosník s dříve nalezenou, se vynechá.
+	 */
+	public void detectOffsets(Model model) {
+		List <Beam> pattern = getPattern(model);
+		offsets.clear();
+		if (pattern == null) return;
+
+		Map <Long, List <Beam>> index = indexBeams(model);
+		Set <Beam> used = new HashSet <Beam>();
+		VectorXZ first = pattern.get(0).mainPoints.get(0);
+		for (Beam beam: model.beams) {
+			if (beam.mainPoints.size() != pattern.get(0).mainPoints.size()) continue;
+			VectorXZ p = beam.mainPoints.get(0);
+			VectorXZ offset = new VectorXZ(p.x - first.x, p.z - first.z);
+			List <Beam> instance = match(pattern, offset, index);
+			if (instance == null || !Collections.disjoint(instance, used)) continue;
+			used.addAll(instance);
+			offsets.add(offset);
+		}
+	}
+
+	/** Nosníky vzoru, null pokud některý v modelu chybí. */
+	private List <Beam> getPattern(Model model) {
+		Map <String, Beam> byName = new HashMap <String, Beam>();
+		for (Beam beam: model.beams) {
+			byName.put(beam.name, beam);
+		}
+		List <Beam> pattern = new ArrayList <Beam>();
+		for (String name: beams) {
+			Beam beam = byName.get(name);
+			if (beam == null || beam.mainPoints.isEmpty()) return null;
+			pattern.add(beam);
+		}
+		return pattern.isEmpty() ? null : pattern;
+	}
+
+	/** Nosníky modelu podle zaokrouhlené polohy prvního bodu. */
+	private static Map <Long, List <Beam>> indexBeams(Model model) {
+		Map <Long, List <Beam>> index = new HashMap <Long, List <Beam>>();
+		for (Beam beam: model.beams) {
+			if (beam.mainPoints.isEmpty()) continue;
+			Long key = key(beam.mainPoints.get(0));
+			List <Beam> list = index.get(key);
+			if (list == null) {
+				list = new ArrayList <Beam>(1);
+				index.put(key, list);
+			}
+			list.add(beam);
+		}
+		return index;
+	}
+
+	private static Long key(VectorXZ p) {
+		return (long)Math.round(p.x / (10*TOLERANCE)) * 0x100000000L + Math.round(p.z / (10*TOLERANCE));
+	}
+
+	/** Posunuté kopie nosníků vzoru, null pokud některá chybí. */
+	private static List <Beam> match(List <Beam> pattern, VectorXZ offset, Map <Long, List <Beam>> index) {
+		List <Beam> instance = new ArrayList <Beam>(pattern.size());
+		for (Beam beam: pattern) {
+			VectorXZ p = beam.mainPoints.get(0);
+			List <Beam> candidates = index.get(key(new VectorXZ(p.x + offset.x, p.z + offset.z)));
+			Beam found = null;
+			if (candidates != null) {
+				for (Beam candidate: candidates) {
+					if (isCopy(beam, candidate, offset)) {
+						found = candidate;
+						break;
+					}
+				}
+			}
+			if (found == null) return null;
+			instance.add(found);
+		}
+		return instance;
+	}
+
+	private static boolean isCopy(Beam beam, Beam copy, VectorXZ offset) {
+		if (beam.mainPoints.size() != copy.mainPoints.size()) return false;
+		for (int i = 0; i < beam.mainPoints.size(); i++) {
+			VectorXZ p = beam.mainPoints.get(i), q = copy.mainPoints.get(i);
+			if (Math.abs(p.x + offset.x - q.x) > TOLERANCE || Math.abs(p.z + offset.z - q.z) > TOLERANCE) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Podkonstrukce " + name;
+	}
+
+	public String toLongString() {
+		return String.format(Locale.ENGLISH, "Podkonstrukce %s / %d nosníků / %d hraničních kloubů / %d instancí", name, beams.size(), boundary.size(), offsets.size());
+	}
+
+	public String getInfo() {
+		return toLongString();
+	}
+}
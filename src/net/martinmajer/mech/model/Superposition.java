@@ -0,0 +1,197 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Výpočet kombinací zatížení a obálek sečtením výsledků zatěžovacích stavů.
+ * Sčítání pro každou dvojici kombinace a nosník je nezávislé, úlohy se proto
+ * dělí mezi vlákna pomocí fork-join.
+ *
+ * @author Martin
+ */
+class Superposition {
+
+	/** Sdílený fond vláken pro výpočty kombinací. */
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	/** Počet položek, od kterého se úloha dále nedělí. */
+	private static final int THRESHOLD = 32;
+
+
+	/** Výsledky zatěžovacích stavů - reakce a průběhy sil nosníků ve stejném pořadí. */
+	private final double[][] caseSolutions;
+	private final Beam[] beams;
+	private final List <List <List <Beam.ForcesDistribution>>> caseForces;
+
+	/** Součinitele [kombinace][zatěžovací stav]. */
+	private final float[][] factors;
+
+	/** Výsledky [kombinace], průběhy [kombinace][nosník]. */
+	private double[][] solutions;
+	private List <List <List <Beam.ForcesDistribution>>> forces;
+
+
+	/**
+	 * @param caseSolutions řešení soustavy pro jednotlivé zatěžovací stavy
+	 * @param beams nosníky (ne táhla)
+	 * @param caseForces průběhy vnitřních sil nosníků pro jednotlivé stavy
+	 * @param factors součinitele [kombinace][zatěžovací stav]
+	 */
+	Superposition(double[][] caseSolutions, Beam[] beams, List <List <List <Beam.ForcesDistribution>>> caseForces, float[][] factors) {
+		this.caseSolutions = caseSolutions;
+		this.beams = beams;
+		this.caseForces = caseForces;
+		this.factors = factors;
+	}
+
+	/** Spočítá reakce a průběhy vnitřních sil všech kombinací. */
+	void combine() {
+		solutions = new double[factors.length][];
+		// seznamy mají pevnou délku, úlohy jen zapisují na svá místa
+		forces = new ArrayList <List <List <Beam.ForcesDistribution>>>(factors.length);
+		for (int c = 0; c < factors.length; c++) {
+			List <Beam.ForcesDistribution> none = null;
+			forces.add(new ArrayList <List <Beam.ForcesDistribution>>(Collections.nCopies(beams.length, none)));
+		}
+		// položka i: kombinace i / (nosníky + 1), poslední položka kombinace jsou reakce
+		POOL.invoke(new CombineTask(0, factors.length * (beams.length + 1)));
+	}
+
+	/** Reakce kombinace. */
+	double[] getSolution(int combination) {
+		return solutions[combination];
+	}
+
+	/** Průběhy vnitřních sil nosníku v kombinaci. */
+	List <Beam.ForcesDistribution> getForces(int combination, int beam) {
+		return forces.get(combination).get(beam);
+	}
+
+	/** Spočítá obálku přes všechny kombinace, kombinace musí být spočítané. */
+	Envelope envelope() {
+		Envelope.Segment[][] segments = new Envelope.Segment[beams.length][];
+		double[][] reactionRange = new double[2][];
+		POOL.invoke(new EnvelopeTask(0, beams.length + 1, segments, reactionRange));
+
+		Envelope envelope = new Envelope();
+		for (int b = 0; b < beams.length; b++) {
+			envelope.beams.put(beams[b], segments[b]);
+		}
+		envelope.reactionMin = reactionRange[0];
+		envelope.reactionMax = reactionRange[1];
+		return envelope;
+	}
+
+
+	/** Sečte reakce zatěžovacích stavů se součiniteli kombinace. */
+	private double[] combineSolution(int c) {
+		double[] result = new double[caseSolutions[0].length];
+		for (int k = 0; k < caseSolutions.length; k++) {
+			float f = factors[c][k];
+			if (f == 0) continue;
+			double[] x = caseSolutions[k];
+			for (int i = 0; i < result.length; i++) {
+				result[i] += f*x[i];
+			}
+		}
+		return result;
+	}
+
+	/** Úloha pro kombinace s položkami from..to-1. */
+	private class CombineTask extends RecursiveAction {
+		private final int from, to;
+
+		CombineTask(int from, int to) {
+			this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new CombineTask(from, mid), new CombineTask(mid, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				int c = i / (beams.length + 1);
+				int b = i % (beams.length + 1);
+				if (b == beams.length) solutions[c] = combineSolution(c);
+				else forces.get(c).set(b, Beam.superpose(caseForces.get(b), factors[c]));
+			}
+		}
+	}
+
+	/** Úloha pro obálky nosníků from..to-1, položka beams.length jsou reakce. */
+	private class EnvelopeTask extends RecursiveAction {
+		private final int from, to;
+		private final Envelope.Segment[][] segments;
+		private final double[][] reactionRange;
+
+		EnvelopeTask(int from, int to, Envelope.Segment[][] segments, double[][] reactionRange) {
+			this.from = from; this.to = to;
+			this.segments = segments; this.reactionRange = reactionRange;
+		}
+
+		@Override
+		protected void compute() {
+			// obálka jednoho nosníku prochází všechny kombinace, dělíme jemněji
+			if (to - from > 1 && (to - from) * factors.length > THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new EnvelopeTask(from, mid, segments, reactionRange),
+						new EnvelopeTask(mid, to, segments, reactionRange));
+				return;
+			}
+			for (int b = from; b < to; b++) {
+				if (b == beams.length) {
+					int n = caseSolutions[0].length;
+					double[] min = new double[n], max = new double[n];
+					Arrays.fill(min, Double.POSITIVE_INFINITY);
+					Arrays.fill(max, Double.NEGATIVE_INFINITY);
+					for (double[] x: solutions) {
+						for (int i = 0; i < n; i++) {
+							min[i] = Math.min(min[i], x[i]);
+							max[i] = Math.max(max[i], x[i]);
+						}
+					}
+					reactionRange[0] = min;
+					reactionRange[1] = max;
+				}
+				else {
+					int count = caseForces.get(b).get(0).size();
+					Envelope.Segment[] beamSegments = new Envelope.Segment[count];
+					for (int i = 0; i < count; i++) {
+						beamSegments[i] = new Envelope.Segment();
+					}
+					for (int c = 0; c < factors.length; c++) {
+						List <Beam.ForcesDistribution> dist = forces.get(c).get(b);
+						for (int i = 0; i < count; i++) {
+							beamSegments[i].add(dist.get(i));
+						}
+					}
+					segments[b] = beamSegments;
+				}
+			}
+		}
+	}
+
+}
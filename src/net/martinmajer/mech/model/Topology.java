@@ -0,0 +1,390 @@
+/*
+	Mechanika
+    Copyright (C) 2011 Martin Majer
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.martinmajer.mech.model;
+
+import jama.ColumnMatrix;
+import jama.Factorization;
+import jama.SparseMatrix;
+import java.util.*;
+
+/**
+ * Spojení nosníků v kloubech, udržované mezi přepočty modelu.
+ *
+ * Můžeme narazit na následující situace při spojování nosníků:
+ * 1) Nosník se jedním ze svých konců/zlomů dotýká konce/zlomu jiného nosníku
+ *		-> z bodu vytvoříme kloub
+ * 2) Nosník se jedním ze svých konců/zlomů dotýká jiného nosníku, ne na konci/zlomu
+ *		-> na druhý nosník vložíme bod navíc
+ * 3) Jiný nosník se jedním ze svých konců/zlomů dotýká tohoto nosníku, ne na konci/zlomu
+ *		-> dtto
+ * Pokud se nosníky kříží, žádný spoj nebude vytvořen.
+ *
+ * Pro každý nosník si pamatujeme jeho hlavní body a cizí klouby ležící
+ * na jeho úsecích, úseky a klouby jsou v mřížkách (SpatialGrid). Při
+ * přepočtu se porovnají nosníky modelu se zapamatovanými, přidaný nosník
+ * se otestuje jen proti okolním úsekům a kloubům, odebraný (nebo změněný)
+ * odebere jen své klouby z okolních nosníků. Klouby modelu se pak
+ * z uložených spojení vytvoří v lineárním čase (apply()).
+ *
+ * Při přepočtu na pozadí přechází spojení na kopii modelu (viz
+ * Model.detachTopology()), nosníky kopie se přiřadí podle jména.
+ *
+ * Se spojením se předává i soustava rovnic posledního přepočtu (Layout).
+ * Dokud se spojení nezmění, použije ji další přepočet, pokud vyjde
+ * soustava se stejnou strukturou.
+ *
+ * @author Martin
+ */
+public class Topology {
+
+	/**
+	 * Soustava rovnic rovnováhy z posledního přepočtu a to, co z ní lze
+	 * převzít: pořadí sloupců řídkého rozkladu LU platí pro každou soustavu
+	 * se stejnou strukturou, rozklad a rozbor hodnosti jen při stejných
+	 * hodnotách (třeba po změně tuhosti nosníku, která rovnice rovnováhy
+	 * nemění). Viz Model.recalculate().
+	 */
+	static class Layout {
+		final SparseMatrix matrix;
+		int[] columnOrdering;
+		Factorization factorization;
+		int rank = -1;
+		ColumnMatrix nullSpace;
+
+		Layout(SparseMatrix matrix) {
+			this.matrix = matrix;
+		}
+
+		/** Má zadaná matice stejnou strukturu? */
+		boolean hasPattern(SparseMatrix m) {
+			return m.getRowDimension() == matrix.getRowDimension()
+					&& m.getColumnDimension() == matrix.getColumnDimension()
+					&& Arrays.equals(m.getRowPointers(), matrix.getRowPointers())
+					&& Arrays.equals(m.getColumnIndices(), matrix.getColumnIndices());
+		}
+
+		/** Má zadaná matice stejnou strukturu i hodnoty? */
+		boolean hasValues(SparseMatrix m) {
+			return hasPattern(m) && Arrays.equals(m.getValues(), matrix.getValues());
+		}
+	}
+
+	/** Záznam o nosníku. */
+	private static class Entry {
+		/** Nosník (po přechodu na kopii modelu nosník kopie). */
+		Beam beam;
+
+		/** Hlavní body v době vložení, podle nich se pozná změna nosníku. */
+		List <VectorXZ> points;
+		boolean closed;
+
+		/** Klouby (body v joints), se kterými hlavní body splynuly. */
+		VectorXZ[] joints;
+
+		/** Cizí klouby na úsecích nosníku podle klíče bodu: bod a začátek úseku. */
+		Map <Long, VectorXZ[]> inner = new HashMap <Long, VectorXZ[]>();
+	}
+
+	/** Měřítko, pro které platí tolerance isPointOnLine(). */
+	private final int scale;
+	private final double unit;
+	private final float margin;
+	private final float cellSize;
+
+	private Map <Beam, Entry> entries = new IdentityHashMap <Beam, Entry>();
+
+	/** Úseky nosníků. */
+	private final SpatialGrid <Entry> segments;
+
+	/**
+	 * Hlavní body nosníků (budoucí klouby) a nosníky, které v nich mají
+	 * hlavní bod. Splývající hlavní body (VectorXZ.isNear()) zastupuje
+	 * první vložený, pod jeho klíčem jsou nosníky v ends.
+	 */
+	private final SpatialGrid <VectorXZ> points;
+	private final PointSet joints;
+	private final Map <Long, List <Entry>> ends = new HashMap <Long, List <Entry>>();
+
+	/** Soustava posledního přepočtu, null po změně spojení. */
+	private Layout layout;
+
+	/** Součet délek a počet úseků, podle nich se pozná nevhodná velikost buňky. */
+	private float length = 0;
+	private int count = 0;
+
+
+	/** Vytvoří spojení všech nosníků modelu. */
+	Topology(Model model) {
+		scale = model.scale;
+		unit = model.getPrecision();
+		margin = Model.EPSILON * 200 / Math.max(scale, 1);
+		float length = 0;
+		int count = 0;
+		for (Beam beam: model.beams) {
+			for (int i = 1; i < beam.mainPoints.size(); i++) {
+				VectorXZ a = beam.mainPoints.get(i-1), b = beam.mainPoints.get(i);
+				length += Math.abs(b.x-a.x) + Math.abs(b.z-a.z);
+				count++;
+			}
+		}
+		cellSize = count > 0 ? length / count : 1;
+		segments = new SpatialGrid <Entry>(cellSize);
+		points = new SpatialGrid <VectorXZ>(cellSize);
+		joints = new PointSet(unit);
+		for (Beam beam: model.beams) {
+			add(model, beam);
+		}
+	}
+
+	/**
+	 * Srovná spojení s nosníky modelu: odebere zmizelé a změněné nosníky
+	 * a přidá nové. Vrátí false, pokud se spojení musí vytvořit znovu
+	 * (jiné měřítko nebo velikost buňky neodpovídá úsekům).
+	 */
+	boolean update(Model model) {
+		if (model.scale != scale) return false;
+
+		// nosníky kopie modelu přiřadíme podle jména
+		Map <String, Beam> byName = null;
+		for (Beam beam: model.beams) {
+			if (entries.containsKey(beam)) continue;
+			if (byName == null) byName = new HashMap <String, Beam>();
+			byName.put(beam.name, beam);
+		}
+		if (byName != null) {
+			Map <Beam, Entry> moved = new IdentityHashMap <Beam, Entry>();
+			for (Entry e: entries.values()) {
+				Beam beam = byName.remove(e.beam.name);
+				if (beam != null) e.beam = beam;
+				moved.put(e.beam, e);
+			}
+			entries = moved;
+		}
+
+		Set <Beam> current = Collections.newSetFromMap(new IdentityHashMap <Beam, Boolean>());
+		current.addAll(model.beams);
+		for (Entry e: new ArrayList <Entry>(entries.values())) {
+			if (!current.contains(e.beam) || e.closed != e.beam.closed || !e.points.equals(e.beam.mainPoints)) {
+				remove(e);
+				layout = null;
+			}
+		}
+		for (Beam beam: model.beams) {
+			if (!entries.containsKey(beam)) {
+				add(model, beam);
+				layout = null;
+			}
+		}
+
+		if (count == 0) return true;
+		float mean = length / count;
+		return mean > cellSize / 4 && mean < cellSize * 4;
+	}
+
+	/**
+	 * Vytvoří klouby modelu a vloží cizí klouby do nosníků. Model musí být
+	 * po reset(), spojení po update().
+	 */
+	void apply(Model model) {
+		// připojíme nosníky do kloubů v hlavních bodech
+		for (Beam beam: model.beams) {
+			for (VectorXZ point: beam.mainPoints) {
+				// podíváme se, jestli je na zadané pozici nějaký kloub
+				Joint joint = model.joints.get(point);
+				if (joint == null) { // kloub neexistuje, vytvoříme ho
+					joint = new Joint(point);
+					if (model.stiffPoints.contains(point)) joint.stiff = true;
+					model.joints.put(point.clone(), joint);
+				}
+				else if (!joint.position.equals(point)) {
+					// bod splývá s kloubem jen po zaokrouhlení, body nosníku
+					// pro výpočet nahradíme polohou kloubu (mainPoints se nemění)
+					beam.movePoint(point, joint.position);
+				}
+
+				// přidáme do kloubu nosník
+				joint.beams.add(beam);
+			}
+		}
+
+		// klouby uvnitř úseků
+		for (Beam beam: model.beams) {
+			for (VectorXZ[] inner: entries.get(beam).inner.values()) {
+				Joint joint = model.joints.get(inner[0]);
+				VectorXZ after = model.joints.get(inner[1]).position;
+				joint.beams.add(beam);
+				Beam.InnerPoint innerPoint = new Beam.InnerPoint(joint.position);
+				innerPoint.joint = joint;
+				beam.insertInnerPoint(after, innerPoint);
+				beam.insertInnerJoint(after, innerPoint);
+			}
+		}
+	}
+
+	/**
+	 * Zapamatuje si soustavu nového přepočtu a vrátí soustavu minulého,
+	 * pokud se od něj nezměnilo spojení a má stejnou strukturu, jinak null.
+	 */
+	Layout replaceLayout(SparseMatrix matrix) {
+		Layout previous = (layout != null && layout.hasPattern(matrix)) ? layout : null;
+		layout = new Layout(matrix);
+		return previous;
+	}
+
+	/** Soustava právě probíhajícího (nebo posledního) přepočtu. */
+	Layout getLayout() {
+		return layout;
+	}
+
+	/** Vrátí nosníky, na jejichž úsecích může ležet zadaný bod, seřazené podle jména. */
+	List <Beam> getBeamsNear(VectorXZ point) {
+		Set <Entry> near = new LinkedHashSet <Entry>();
+		segments.query(point, near);
+		List <Beam> list = new ArrayList <Beam>(near.size());
+		for (Entry e: near) {
+			list.add(e.beam);
+		}
+		Collections.sort(list, new Comparator<Beam>() {
+			public int compare(Beam b1, Beam b2) {
+				return b1.name.compareTo(b2.name);
+			}
+		});
+		return list;
+	}
+
+	/** Přidá do result klouby (hlavní body nosníků), které mohou ležet v zadaném obdélníku. */
+	void queryJoints(float minX, float minZ, float maxX, float maxZ, Collection <VectorXZ> result) {
+		points.query(minX, minZ, maxX, maxZ, result);
+	}
+
+	/** Zasahuje zadaný obdélník do obdélníku kloubů? */
+	boolean intersectsJoints(float minX, float minZ, float maxX, float maxZ) {
+		return points.intersects(minX, minZ, maxX, maxZ);
+	}
+
+
+	/** Přidá nosník a najde jeho spojení s okolními nosníky. */
+	private void add(Model model, Beam beam) {
+		Entry e = new Entry();
+		e.beam = beam;
+		e.points = new ArrayList <VectorXZ>(beam.mainPoints);
+		e.closed = beam.closed;
+		entries.put(beam, e);
+		e.joints = new VectorXZ[e.points.size()];
+		for (int i = 0; i < e.joints.length; i++) {
+			VectorXZ joint = joints.get(e.points.get(i));
+			e.joints[i] = (joint != null) ? joint : e.points.get(i);
+		}
+
+		// body nosníku na úsecích okolních nosníků
+		for (VectorXZ point: e.joints) {
+			Set <Entry> near = new LinkedHashSet <Entry>();
+			segments.query(point, near);
+			for (Entry other: near) {
+				if (other != e) testPoint(model, other, point);
+			}
+		}
+
+		// okolní klouby na úsecích nosníku
+		int n = e.points.size();
+		for (int i = e.closed ? 0 : 1; i < n; i++) {
+			List <VectorXZ> near = new ArrayList <VectorXZ>();
+			float[] box = box(e.points.get(i == 0 ? n-1 : i-1), e.points.get(i));
+			points.query(box[0], box[1], box[2], box[3], near);
+			for (VectorXZ point: near) {
+				testPoint(model, e, point);
+			}
+		}
+
+		// nosník vložíme do mřížek
+		for (VectorXZ point: e.joints) {
+			Long key = point.key(unit);
+			List <Entry> list = ends.get(key);
+			if (list == null) {
+				list = new ArrayList <Entry>(2);
+				ends.put(key, list);
+				points.add(point, point);
+				joints.add(point);
+			}
+			list.add(e);
+		}
+		for (int i = e.closed ? 0 : 1; i < n; i++) {
+			VectorXZ a = e.points.get(i == 0 ? n-1 : i-1), b = e.points.get(i);
+			float[] box = box(a, b);
+			segments.add(e, box[0], box[1], box[2], box[3]);
+			length += Math.abs(b.x-a.x) + Math.abs(b.z-a.z);
+			count++;
+		}
+	}
+
+	/** Odebere nosník a jeho klouby z okolních nosníků. */
+	private void remove(Entry e) {
+		entries.remove(e.beam);
+		int n = e.points.size();
+		for (int i = e.closed ? 0 : 1; i < n; i++) {
+			VectorXZ a = e.points.get(i == 0 ? n-1 : i-1), b = e.points.get(i);
+			float[] box = box(a, b);
+			segments.remove(e, box[0], box[1], box[2], box[3]);
+			length -= Math.abs(b.x-a.x) + Math.abs(b.z-a.z);
+			count--;
+		}
+		for (VectorXZ point: e.joints) {
+			Long key = point.key(unit);
+			List <Entry> list = ends.get(key);
+			list.remove(e);
+			if (!list.isEmpty()) continue;
+
+			// bod už není kloubem, zmizí z okolních nosníků
+			ends.remove(key);
+			points.remove(point, point);
+			joints.remove(point);
+			Set <Entry> near = new LinkedHashSet <Entry>();
+			segments.query(point, near);
+			for (Entry other: near) {
+				other.inner.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Leží bod uvnitř některého úseku nosníku (ne v jeho hlavním bodě)?
+	 * Pokud ano, zapamatuje si ho jako kloub na prvním takovém úseku.
+	 */
+	private void testPoint(Model model, Entry e, VectorXZ point) {
+		long key = point.key(unit);
+		for (VectorXZ p: e.joints) {
+			if (p.isNear(point, unit)) return;
+		}
+		// projdeme všechny úseky testovaného nosníku
+		int n = e.points.size();
+		for (int i = e.closed ? 0 : 1; i < n; i++) {
+			VectorXZ lineA = e.points.get(i == 0 ? n-1 : i-1), lineB = e.points.get(i);
+			if (model.isPointOnLine(lineA, lineB, point)) {
+				e.inner.put(key, new VectorXZ[] { point, lineA });
+				return;
+			}
+		}
+	}
+
+	/** Obdélník úseku zvětšený o toleranci isPointOnLine(). */
+	private float[] box(VectorXZ a, VectorXZ b) {
+		return new float[] { Math.min(a.x, b.x) - margin, Math.min(a.z, b.z) - margin,
+				Math.max(a.x, b.x) + margin, Math.max(a.z, b.z) + margin };
+	}
+}
@@ -26,6 +26,9 @@ import java.io.Serializable;
  */
 public class VectorXZ implements Cloneable, Serializable {
 
+	/** Původní vypočtená hodnota, kvůli kompatibilitě uložených souborů. */
+	static final long serialVersionUID = -4068598754994585833L;
+
 	/** X-ová souřadnice. */
 	public final float x;
 
@@ -87,6 +90,47 @@ public class VectorXZ implements Cloneable, Serializable {
 		return hash;
 	}
 
+	/**
+	 * Vrátí bod zaokrouhlený na násobky zadané jednotky (nebo sebe, pokud
+	 * už zaokrouhlený je), viz Model.getPrecision().
+	 */
+	public VectorXZ quantize(double unit) {
+		float qx = (float)(quantize(x, unit) * unit);
+		float qz = (float)(quantize(z, unit) * unit);
+		if (qx == x && qz == z) return this;
+		else return new VectorXZ(qx, qz);
+	}
+
+	/**
+	 * Klíč bodu, celočíselné souřadnice v násobcích zadané jednotky
+	 * (x v horních, z v dolních 32 bitech). Body se stejným klíčem splývají,
+	 * body blízko hranice zaokrouhlení ale mohou splývat i s bodem
+	 * v sousední buňce, viz isNear().
+	 */
+	public long key(double unit) {
+		return ((long)quantize(x, unit) << 32) | (quantize(z, unit) & 0xffffffffL);
+	}
+
+	/** Klíč sousední buňky posunuté o dx, dz (-1, 0, 1), viz key(). */
+	public static long neighborKey(long key, int dx, int dz) {
+		return ((long)((int)(key >> 32) + dx) << 32) | (((int)key + dz) & 0xffffffffL);
+	}
+
+	/**
+	 * Splývá bod se zadaným bodem? Splývají body, které se liší méně než
+	 * o jednotku v obou souřadnicích. Takové body mají stejný klíč nebo
+	 * klíče sousedních buněk, takže při hledání stačí projít sousední
+	 * buňky (JointMap, PointSet). Vztah není tranzitivní, v řetězci
+	 * blízkých bodů rozhoduje pořadí vložení.
+	 */
+	public boolean isNear(VectorXZ p, double unit) {
+		return Math.abs((double)x - p.x) < unit && Math.abs((double)z - p.z) < unit;
+	}
+
+	private static int quantize(float c, double unit) {
+		return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(c / unit)));
+	}
+
 	@Override
 	public VectorXZ clone() {
 		return new VectorXZ(this.x, this.z);